@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.gs.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.remoting.httpinvoker.HttpInvokerServiceExporter;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+import sernet.hui.common.io.CompactObjectInputStream;
+import sernet.hui.common.io.CompactObjectOutputStream;
+import sernet.hui.common.io.CompactSerialization;
+
+/**
+ * An HTTP invoker exporter which supports the compact format of
+ * {@link CompactObjectOutputStream} in addition to plain Java serialization.
+ * Requests with a compact content type (see {@link CompactSerialization}) are
+ * read and answered in the compact format, all other requests are handled by
+ * the default implementation.
+ */
+public class CompactHttpInvokerServiceExporter extends HttpInvokerServiceExporter {
+
+    private static final String HTTP_HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HTTP_HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String ENCODING_GZIP = "gzip";
+
+    @Override
+    protected RemoteInvocation readRemoteInvocation(HttpServletRequest request, InputStream is)
+            throws IOException, ClassNotFoundException {
+        String contentType = request.getContentType();
+        if (!CompactSerialization.isCompact(contentType)) {
+            return super.readRemoteInvocation(request, is);
+        }
+        InputStream in = CompactSerialization.isCompressed(contentType) ? new GZIPInputStream(is)
+                : is;
+        ObjectInputStream ois = new CompactObjectInputStream(in, getBeanClassLoader());
+        try {
+            return doReadRemoteInvocation(ois);
+        } finally {
+            ois.close();
+        }
+    }
+
+    @Override
+    protected void writeRemoteInvocationResult(HttpServletRequest request,
+            HttpServletResponse response, RemoteInvocationResult result, OutputStream os)
+            throws IOException {
+        String contentType = request.getContentType();
+        if (!CompactSerialization.isCompact(contentType)) {
+            super.writeRemoteInvocationResult(request, response, result, os);
+            return;
+        }
+        OutputStream out = os;
+        if (CompactSerialization.isCompressed(contentType) && acceptsGzip(request)) {
+            response.setContentType(CompactSerialization.CONTENT_TYPE_GZIP);
+            response.setHeader(HTTP_HEADER_CONTENT_ENCODING, ENCODING_GZIP);
+            out = new GZIPOutputStream(os);
+        } else {
+            response.setContentType(CompactSerialization.CONTENT_TYPE);
+        }
+        ObjectOutputStream oos = new CompactObjectOutputStream(out);
+        try {
+            doWriteRemoteInvocationResult(result, oos);
+            oos.flush();
+        } finally {
+            oos.close();
+        }
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HTTP_HEADER_ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains(ENCODING_GZIP);
+    }
+}
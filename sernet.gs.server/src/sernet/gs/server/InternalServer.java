@@ -79,6 +79,8 @@ public class InternalServer implements IInternalServer {
 
     private boolean searchDisabled = false;
 
+    private boolean searchEmbeddedLucene = false;
+
     /**
      * Applies the given database credentials to the verinice server and checks
      * their validity.
@@ -125,9 +127,10 @@ public class InternalServer implements IInternalServer {
     }
 
     @Override
-    public void configureSearch(boolean disable, boolean indexOnStartup) {
+    public void configureSearch(boolean disable, boolean embeddedLucene, boolean indexOnStartup) {
         ServerPropertyPlaceholderConfigurer.setSearchProperties(indexOnStartup); 
         searchDisabled = disable;
+        searchEmbeddedLucene = embeddedLucene;
     }
 
 
@@ -265,6 +268,8 @@ public class InternalServer implements IInternalServer {
         StringBuilder sb = new StringBuilder();  
         if(searchDisabled) {
             sb.append("classpath:/sernet/gs/server/spring/veriniceserver-search-dummy.xml \n"); //NON-NLS-1$
+        } else if(searchEmbeddedLucene) {
+            sb.append("classpath:/sernet/gs/server/spring/veriniceserver-search-lucene.xml \n"); //NON-NLS-1$
         } else {
             sb.append("classpath:/sernet/gs/server/spring/veriniceserver-search-base.xml \n"); //NON-NLS-1$
             sb.append("classpath:/sernet/gs/server/spring/veriniceserver-search-osgi.xml \n"); //NON-NLS-1$
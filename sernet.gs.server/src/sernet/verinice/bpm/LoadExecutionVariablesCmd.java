@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.bpm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.jbpm.api.cmd.Command;
+import org.jbpm.api.cmd.Environment;
+import org.jbpm.pvm.internal.model.ExecutionImpl;
+import org.jbpm.pvm.internal.type.Variable;
+
+import sernet.gs.service.CollectionUtil;
+
+/**
+ * Loads the variables of many jBPM executions with a few queries. For every
+ * execution the returned map contains the same values as
+ * ExecutionService.getVariables(executionId, names) with all variable names,
+ * including the variables of the parent executions.
+ * 
+ * The command must be executed by ProcessEngine.execute(Command) to convert
+ * serialized and Hibernate variables in a jBPM environment.
+ */
+public class LoadExecutionVariablesCmd implements Command<Map<String, Map<String, Object>>> {
+
+    private static final long serialVersionUID = 6062823441213006213L;
+
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private static final String HQL_EXECUTIONS = "select execution from org.jbpm.pvm.internal.model.ExecutionImpl execution "
+            + "where execution.id in (:ids)";
+
+    private static final String HQL_VARIABLES = "select var from org.jbpm.pvm.internal.type.Variable var "
+            + "where var.execution.processInstance.dbid in (:dbIds)";
+
+    private final Collection<String> executionIds;
+
+    /**
+     * @param executionIds
+     *            Ids of the executions, see Task.getExecutionId()
+     */
+    public LoadExecutionVariablesCmd(Collection<String> executionIds) {
+        super();
+        this.executionIds = new HashSet<>(executionIds);
+    }
+
+    /*
+     * @see org.jbpm.api.cmd.Command#execute(org.jbpm.api.cmd.Environment)
+     */
+    @Override
+    public Map<String, Map<String, Object>> execute(Environment environment) {
+        Session session = environment.get(Session.class);
+        List<ExecutionImpl> executions = loadExecutions(session);
+        Map<Long, Map<String, Variable>> variablesByExecution = loadVariables(session, executions);
+        Map<String, Map<String, Object>> result = new HashMap<>(executions.size());
+        for (ExecutionImpl execution : executions) {
+            result.put(execution.getId(), getValues(execution, variablesByExecution));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ExecutionImpl> loadExecutions(Session session) {
+        List<ExecutionImpl> executions = new ArrayList<>(executionIds.size());
+        for (List<String> partition : CollectionUtil.partition(new ArrayList<>(executionIds),
+                MAX_IDS_PER_QUERY)) {
+            executions.addAll(session.createQuery(HQL_EXECUTIONS)
+                    .setParameterList("ids", partition).list());
+        }
+        return executions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Map<String, Variable>> loadVariables(Session session,
+            List<ExecutionImpl> executions) {
+        Set<Long> processInstanceDbIds = new HashSet<>();
+        for (ExecutionImpl execution : executions) {
+            processInstanceDbIds.add(execution.getProcessInstance().getDbid());
+        }
+        Map<Long, Map<String, Variable>> variablesByExecution = new HashMap<>();
+        for (List<Long> partition : CollectionUtil.partition(new ArrayList<>(processInstanceDbIds),
+                MAX_IDS_PER_QUERY)) {
+            List<Variable> variables = session.createQuery(HQL_VARIABLES)
+                    .setParameterList("dbIds", partition).list();
+            for (Variable variable : variables) {
+                variablesByExecution
+                        .computeIfAbsent(variable.getExecution().getDbid(), k -> new HashMap<>())
+                        .put(variable.getKey(), variable);
+            }
+        }
+        return variablesByExecution;
+    }
+
+    /**
+     * Returns the variable values of the execution. Variables of an execution
+     * hide variables with the same key of its parents.
+     */
+    private Map<String, Object> getValues(ExecutionImpl execution,
+            Map<Long, Map<String, Variable>> variablesByExecution) {
+        Deque<ExecutionImpl> executionPath = new ArrayDeque<>();
+        for (ExecutionImpl current = execution; current != null; current = current.getParent()) {
+            executionPath.push(current);
+        }
+        Map<String, Object> values = new HashMap<>();
+        for (ExecutionImpl current : executionPath) {
+            Map<String, Variable> variables = variablesByExecution.get(current.getDbid());
+            if (variables != null) {
+                for (Variable variable : variables.values()) {
+                    values.put(variable.getKey(), variable.getValue(current));
+                }
+            }
+        }
+        return values;
+    }
+
+}
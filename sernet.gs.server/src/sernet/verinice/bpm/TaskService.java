@@ -20,12 +20,13 @@
  ******************************************************************************/
 package sernet.verinice.bpm;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -33,6 +34,11 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Restrictions;
 import org.jbpm.api.Execution;
 import org.jbpm.api.ExecutionService;
 import org.jbpm.api.ManagementService;
@@ -40,17 +46,19 @@ import org.jbpm.api.ProcessEngine;
 import org.jbpm.api.task.Task;
 import org.jbpm.pvm.internal.task.TaskImpl;
 import org.jbpm.pvm.internal.type.Variable;
+import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.remoting.httpinvoker.HttpInvokerProxyFactoryBean;
 
+import sernet.gs.service.CollectionUtil;
 import sernet.gs.service.RetrieveInfo;
 import sernet.gs.service.ServerInitializer;
 import sernet.hui.common.VeriniceContext;
 import sernet.verinice.interfaces.CommandException;
 import sernet.verinice.interfaces.IAuthService;
 import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.interfaces.IDao;
 import sernet.verinice.interfaces.ICommandService;
 import sernet.verinice.interfaces.IConfigurationService;
-import sernet.verinice.interfaces.IDao;
 import sernet.verinice.interfaces.bpm.ICompleteServerHandler;
 import sernet.verinice.interfaces.bpm.IGenericProcess;
 import sernet.verinice.interfaces.bpm.IGsmIsmExecuteProzess;
@@ -135,6 +143,24 @@ public class TaskService implements ITaskService {
 
     private static final String PROCESS_NAME_OF_TASK_WITH_RELEASE_PROCESS = "individual-task-release-process";
 
+    private static final int MAX_PARAMETERS_PER_QUERY = 1000;
+
+    private static final String HQL_SCOPE_TITLES = "select elmt.dbId, props.propertyValue, elmt.uuid "
+            + "from CnATreeElement elmt " + "inner join elmt.entity as entity "
+            + "inner join entity.typedPropertyLists as propertyList "
+            + "inner join propertyList.properties as props " + "where elmt.dbId in (:dbIds) "
+            + "AND props.propertyType IN (:titleProperties)";
+
+    private static final Map<String, String> SORT_PROPERTIES;
+
+    static {
+        SORT_PROPERTIES = new HashMap<>();
+        SORT_PROPERTIES.put(ITaskParameter.SORT_BY_CREATE_DATE, "task.createTime"); //$NON-NLS-1$
+        SORT_PROPERTIES.put(ITaskParameter.SORT_BY_DUE_DATE, "task.duedate"); //$NON-NLS-1$
+        SORT_PROPERTIES.put(ITaskParameter.SORT_BY_TYPE, "task.name"); //$NON-NLS-1$
+        SORT_PROPERTIES.put(ITaskParameter.SORT_BY_ASSIGNEE, "task.assignee"); //$NON-NLS-1$
+    }
+
     private ProcessEngine processEngine;
 
     private IAuthService authService;
@@ -210,8 +236,7 @@ public class TaskService implements ITaskService {
             if (log.isDebugEnabled()) {
                 log.debug("getTaskList, hql: " + hql); //$NON-NLS-1$
             }
-            @SuppressWarnings("unchecked")
-            List<Object> jbpmTaskList = getJbpmTaskDao().findByQuery(hql, paramList.toArray());
+            List<?> jbpmTaskList = findTasks(hql, paramList.toArray(), parameter);
             if (log.isDebugEnabled()) {
                 log.debug("getTaskList, number of tasks: " + jbpmTaskList.size()); //$NON-NLS-1$
             }
@@ -227,8 +252,7 @@ public class TaskService implements ITaskService {
     }
 
     private List<ITask> populateTaskList(List<?> jbpmTaskList) {
-        List<ITask> taskList;
-        taskList = new ArrayList<>();
+        List<Task> jbpmTasks = new ArrayList<>(jbpmTaskList.size());
         Task task = null;
         for (Iterator<?> iterator = jbpmTaskList.iterator(); iterator.hasNext();) {
             Object object = iterator.next();
@@ -239,22 +263,129 @@ public class TaskService implements ITaskService {
                 task = (Task) ((Object[]) object)[0];
             }
             if (task != null) {
-                try {
-                    ITask taskInfo = map(task);
-                    taskInfo.setOutcomes(getOutcomeList(task));
-                    taskList.add(taskInfo);
-                } catch (ElementNotFoundException enfe) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("populateTaskList, element not found (no read permission?): " //$NON-NLS-1$
-                                + enfe.getUuid());
-                    }
-                    // ignore task
+                jbpmTasks.add(task);
+            }
+        }
+        TaskMappingData mappingData = loadMappingData(jbpmTasks);
+        List<ITask> taskList = new ArrayList<>(jbpmTasks.size());
+        for (Task jbpmTask : jbpmTasks) {
+            try {
+                ITask taskInfo = map(jbpmTask, mappingData);
+                taskInfo.setOutcomes(getOutcomeList(jbpmTask));
+                taskList.add(taskInfo);
+            } catch (ElementNotFoundException enfe) {
+                if (log.isDebugEnabled()) {
+                    log.debug("populateTaskList, element not found (no read permission?): " //$NON-NLS-1$
+                            + enfe.getUuid());
                 }
+                // ignore task
             }
         }
         return taskList;
     }
 
+    /**
+     * Loads the process variables, elements, scope titles and assignee names
+     * of all tasks with a few queries instead of several queries per task.
+     */
+    private TaskMappingData loadMappingData(List<Task> tasks) {
+        TaskMappingData data = new TaskMappingData();
+        List<String> executionIds = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            executionIds.add(task.getExecutionId());
+        }
+        data.variables = getProcessEngine().execute(new LoadExecutionVariablesCmd(executionIds));
+
+        Set<String> uuids = new HashSet<>();
+        for (Map<String, Object> varMap : data.variables.values()) {
+            addIfNotNull(uuids, (String) varMap.get(IGenericProcess.VAR_UUID));
+            addIfNotNull(uuids, (String) varMap.get(IIsaExecutionProcess.VAR_AUDIT_UUID));
+        }
+        data.elements = loadElements(uuids);
+
+        Set<Integer> scopeIds = new HashSet<>();
+        for (CnATreeElement element : data.elements.values()) {
+            addIfNotNull(scopeIds, element.getScopeId());
+        }
+        data.scopeTitles = loadScopeTitles(scopeIds);
+        return data;
+    }
+
+    private static <T> void addIfNotNull(Set<T> set, T value) {
+        if (value != null) {
+            set.add(value);
+        }
+    }
+
+    private Map<String, CnATreeElement> loadElements(Set<String> uuids) {
+        Map<String, CnATreeElement> elements = new HashMap<>(uuids.size());
+        for (List<String> partition : CollectionUtil.partition(new ArrayList<>(uuids),
+                MAX_PARAMETERS_PER_QUERY)) {
+            DetachedCriteria criteria = DetachedCriteria.forClass(CnATreeElement.class);
+            criteria.add(Restrictions.in("uuid", partition));
+            RetrieveInfo.getPropertyInstance().configureCriteria(criteria);
+            @SuppressWarnings("unchecked")
+            List<CnATreeElement> elementList = getElementDao().findByCriteria(criteria);
+            for (CnATreeElement element : elementList) {
+                elements.put(element.getUuid(), element);
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Returns the titles and uuids of the scopes with the given db ids. Only
+     * IT networks and organizations have a title, see
+     * {@link #HQL_SCOPE_TITLES}.
+     */
+    private Map<Integer, String[]> loadScopeTitles(Set<Integer> scopeIds) {
+        Map<Integer, String[]> titles = new HashMap<>(scopeIds.size());
+        Set<Integer> ambiguousScopeIds = new HashSet<>();
+        for (List<Integer> partition : CollectionUtil.partition(new ArrayList<>(scopeIds),
+                MAX_PARAMETERS_PER_QUERY)) {
+            List<?> hqlResult = getElementDao().findByQuery(HQL_SCOPE_TITLES,
+                    new String[] { "dbIds", "titleProperties" }, new Object[] { partition,
+                            Arrays.asList(ITVerbund.PROP_NAME, Organization.PROP_NAME) });
+            for (Object row : hqlResult) {
+                Object[] values = (Object[]) row;
+                Integer dbId = (Integer) values[0];
+                if (titles.put(dbId, new String[] { (String) values[1], (String) values[2] }) != null) {
+                    ambiguousScopeIds.add(dbId);
+                }
+            }
+        }
+        titles.keySet().removeAll(ambiguousScopeIds);
+        return titles;
+    }
+
+    /**
+     * Executes the task query and returns only the page of tasks defined by
+     * first and max. results of the parameter. The jBPM DAOs do not execute
+     * callbacks, so the query is run in a callback of the element DAO.
+     */
+    private List<?> findTasks(final String hql, final Object[] params,
+            final ITaskParameter parameter) {
+        if (parameter.getFirstResult() == null && parameter.getMaxResults() == null) {
+            return getJbpmTaskDao().findByQuery(hql, params);
+        }
+        return getElementDao().findByCallback(new HibernateCallback() {
+            @Override
+            public Object doInHibernate(Session session) throws HibernateException, SQLException {
+                Query query = session.createQuery(hql);
+                for (int i = 0; i < params.length; i++) {
+                    query.setParameter(i, params[i]);
+                }
+                if (parameter.getFirstResult() != null) {
+                    query.setFirstResult(parameter.getFirstResult());
+                }
+                if (parameter.getMaxResults() != null) {
+                    query.setMaxResults(parameter.getMaxResults());
+                }
+                return query.list();
+            }
+        });
+    }
+
     private List<KeyValue> getOutcomeList(Task task) {
         Set<String> outcomeSet = getTaskService().getOutcomes(task.getId());
         List<KeyValue> outcomeList = new ArrayList<>(outcomeSet.size());
@@ -356,6 +487,7 @@ public class TaskService implements ITaskService {
                 && !parameter.getRead()) {
             addReadStatus(sb, paramList, where, ITaskService.VAR_UNREAD);
         }
+        addOrder(sb, parameter);
         retValues[0] = paramList;
         retValues[1] = sb.toString();
         return retValues;
@@ -370,6 +502,20 @@ public class TaskService implements ITaskService {
         paramList.add(status);
     }
 
+    private void addOrder(StringBuilder sb, ITaskParameter parameter) {
+        if (parameter.getSortBy() == null) {
+            return;
+        }
+        String sortProperty = SORT_PROPERTIES.get(parameter.getSortBy());
+        if (sortProperty == null) {
+            log.warn("Unknown sort property of tasks: " + parameter.getSortBy()); //$NON-NLS-1$
+            return;
+        }
+        sb.append("order by ").append(sortProperty); //$NON-NLS-1$
+        sb.append(parameter.isSortAscending() ? " asc, " : " desc, "); //$NON-NLS-1$ //$NON-NLS-2$
+        sb.append("task.dbid asc "); //$NON-NLS-1$
+    }
+
     private String getQuestionMarkList(List<String> uuidList) {
         return String.join(",", Collections.nCopies(uuidList.size(), "?"));
     }
@@ -403,15 +549,19 @@ public class TaskService implements ITaskService {
     }
 
     private TaskInformation map(Task task) {
+        return map(task, loadMappingData(Collections.singletonList(task)));
+    }
+
+    private TaskInformation map(Task task, TaskMappingData data) {
         TaskInformation taskInformation = new TaskInformation();
         taskInformation.setId(task.getId());
         taskInformation.setType(task.getName());
         taskInformation.setCreateDate(task.getCreateTime());
-        taskInformation.setAssignee(getConfigurationService().getName(task.getAssignee()));
+        taskInformation.setAssignee(data.getAssigneeName(task.getAssignee()));
 
         log.debug("map, setting read status..."); //$NON-NLS-1$
 
-        Map<String, Object> varMap = loadVariables(task);
+        Map<String, Object> varMap = data.getVariables(task);
         taskInformation.setName(loadTaskTitle(task.getName(), varMap));
         taskInformation.setDescription(loadTaskDescription(task.getName(), varMap));
 
@@ -428,8 +578,8 @@ public class TaskService implements ITaskService {
             taskInformation.setProperties((Set<String>) value);
         }
 
-        mapElement(taskInformation, varMap);
-        mapAudit(taskInformation, varMap);
+        mapElement(taskInformation, varMap, data);
+        mapAudit(taskInformation, varMap, data);
 
         if (log.isDebugEnabled()) {
             log.debug("map, loading type..."); //$NON-NLS-1$
@@ -478,20 +628,8 @@ public class TaskService implements ITaskService {
         return handler.loadTitle(taskId, varMap);
     }
 
-    private Map<String, Object> loadVariables(Task task) {
-        if (log.isDebugEnabled()) {
-            log.debug("loadVariables, loading element..."); //$NON-NLS-1$
-        }
-        String executionId = task.getExecutionId();
-        return loadVariablesForProcess(executionId);
-    }
-
-    private Map<String, Object> loadVariablesForProcess(String executionId) {
-        Set<String> varNameSet = getExecutionService().getVariableNames(executionId);
-        return getExecutionService().getVariables(executionId, varNameSet);
-    }
-
-    private TaskInformation mapAudit(TaskInformation taskInformation, Map<String, Object> varMap) {
+    private TaskInformation mapAudit(TaskInformation taskInformation, Map<String, Object> varMap,
+            TaskMappingData data) {
 
         log.debug("mapAudit, loading audit..."); //$NON-NLS-1$
 
@@ -499,16 +637,16 @@ public class TaskService implements ITaskService {
         String elementUuid = (String) varMap.get(IIsaExecutionProcess.VAR_UUID);
 
         if (uuidAudit != null) {// task references child of Audit
-            return handleAuditElement(taskInformation, uuidAudit);
+            return handleAuditElement(taskInformation, uuidAudit, data);
         } else { // task references child of ITVerbund or Organization
-            return handleNonAuditElement(taskInformation, elementUuid);
+            return handleNonAuditElement(taskInformation, elementUuid, data);
         }
     }
 
     private TaskInformation handleNonAuditElement(TaskInformation taskInformation,
-            String elementUuid) {
+            String elementUuid, TaskMappingData data) {
 
-        String[] dbResult = getTitlefromDB(elementUuid);
+        String[] dbResult = data.getScopeTitle(elementUuid);
         String title = dbResult[0];
         String uuid = dbResult[1];
 
@@ -522,12 +660,10 @@ public class TaskService implements ITaskService {
         return taskInformation;
     }
 
-    private TaskInformation handleAuditElement(TaskInformation taskInformation, String uuidAudit) {
-        CnATreeElement audit;
+    private TaskInformation handleAuditElement(TaskInformation taskInformation, String uuidAudit,
+            TaskMappingData data) {
         taskInformation.setUuidGroup(uuidAudit);
-        RetrieveInfo ri = new RetrieveInfo();
-        ri.setProperties(true);
-        audit = getElementDao().findByUuid(uuidAudit, ri);
+        CnATreeElement audit = data.elements.get(uuidAudit);
 
         if (audit != null) {
             taskInformation.setGroupTitle(audit.getTitle());
@@ -536,45 +672,8 @@ public class TaskService implements ITaskService {
         return taskInformation;
     }
 
-    private String[] getTitlefromDB(String elementUuid) {
-        String[] results = null;
-        String hql = "select props.propertyValue, elmt.uuid from CnATreeElement elmt "
-                + "inner join elmt.entity as entity "
-                + "inner join entity.typedPropertyLists as propertyList "
-                + "inner join propertyList.properties as props " + "where  elmt.dbId = ("
-                + "select scopeId from CnATreeElement element2 where element2.uuid = :uuid " + ") "
-                + "AND props.propertyType IN (:titleProperties)";
-        List hqlResult = getElementDao().findByQuery(hql,
-                new String[] { "uuid", "titleProperties" }, new Object[] { elementUuid,
-                        Arrays.asList(ITVerbund.PROP_NAME, Organization.PROP_NAME) });
-        if (hqlResult instanceof Collection && hqlResult.size() == 1) {
-            results = getValuesFromHQLResult(hqlResult);
-        }
-        if (results != null && results.length == 2 && results[0] != null && results[1] != null) {
-            return results;
-        } else {
-            return new String[] { "", "" };
-        }
-    }
-
-    private String[] getValuesFromHQLResult(List hqlResult) {
-        String[] results = new String[2];
-        if (hqlResult.get(0) instanceof Object[]) {
-            Object[] hqlResultArr = (Object[]) hqlResult.get(0);
-            if (hqlResultArr.length == 2) {
-                if (hqlResultArr[0] instanceof String) {
-                    results[0] = (String) hqlResultArr[0];
-                }
-                if (hqlResultArr[1] instanceof String) {
-                    results[1] = (String) hqlResultArr[1];
-                }
-            }
-        }
-        return results;
-    }
-
     private TaskInformation mapElement(TaskInformation taskInformation,
-            Map<String, Object> varMap) {
+            Map<String, Object> varMap, TaskMappingData data) {
 
         String uuid = (String) varMap.get(IGenericProcess.VAR_UUID);
         taskInformation.setUuid(uuid);
@@ -584,9 +683,7 @@ public class TaskService implements ITaskService {
             return taskInformation;
         }
 
-        RetrieveInfo ri = new RetrieveInfo();
-        ri.setProperties(true);
-        CnATreeElement element = getElementDao().findByUuid(uuid, ri);
+        CnATreeElement element = data.elements.get(uuid);
 
         if (element != null) {
             taskInformation.setElementTitle(element.getTitle());
@@ -992,6 +1089,43 @@ public class TaskService implements ITaskService {
         this.taskReminderBlacklist = taskReminderBlacklist;
     }
 
+    /**
+     * Data loaded by {@link TaskService#loadMappingData(List)} to map a list of
+     * jBPM tasks to {@link TaskInformation}s.
+     */
+    private final class TaskMappingData {
+
+        private Map<String, Map<String, Object>> variables;
+        private Map<String, CnATreeElement> elements;
+        private Map<Integer, String[]> scopeTitles;
+        private final Map<String, String> assigneeNames = new HashMap<>();
+
+        private Map<String, Object> getVariables(Task task) {
+            Map<String, Object> varMap = variables.get(task.getExecutionId());
+            return (varMap != null) ? varMap : new HashMap<>();
+        }
+
+        private String getAssigneeName(String assignee) {
+            if (!assigneeNames.containsKey(assignee)) {
+                assigneeNames.put(assignee, getConfigurationService().getName(assignee));
+            }
+            return assigneeNames.get(assignee);
+        }
+
+        /**
+         * Returns the title and the uuid of the scope of an element or two
+         * empty strings if the scope has no title.
+         */
+        private String[] getScopeTitle(String elementUuid) {
+            CnATreeElement element = (elementUuid != null) ? elements.get(elementUuid) : null;
+            String[] title = (element != null) ? scopeTitles.get(element.getScopeId()) : null;
+            if (title != null && title[0] != null && title[1] != null) {
+                return title;
+            }
+            return new String[] { "", "" };
+        }
+    }
+
     @Override
     public ITask findTask(String taskId) {
         Task task = getTaskService().getTask(taskId);
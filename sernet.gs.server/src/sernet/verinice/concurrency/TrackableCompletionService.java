@@ -23,6 +23,8 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -38,13 +40,24 @@ final public class TrackableCompletionService<V> implements ClosableCompletionSe
 
     private final ThreadPoolExecutor threadPoolExecutor;
 
+    /**
+     * Limits the number of submitted tasks which are not finished yet, null
+     * if the number is not limited
+     */
+    private final Semaphore unfinishedTasks;
+
     private TrackableCompletionService() {
-        threadPoolExecutor = VeriniceThreadPoolExecutor.newInstance();
-        completionService = new ExecutorCompletionService<V>(threadPoolExecutor);
+        this(VeriniceThreadPoolExecutor.newInstance(), null);
     }
 
     private TrackableCompletionService(String name) {
-        threadPoolExecutor = VeriniceThreadPoolExecutor.newInstance(name);
+        this(VeriniceThreadPoolExecutor.newInstance(name), null);
+    }
+
+    private TrackableCompletionService(ThreadPoolExecutor threadPoolExecutor,
+            Semaphore unfinishedTasks) {
+        this.threadPoolExecutor = threadPoolExecutor;
+        this.unfinishedTasks = unfinishedTasks;
         completionService = new ExecutorCompletionService<V>(threadPoolExecutor);
     }
 
@@ -55,7 +68,22 @@ final public class TrackableCompletionService<V> implements ClosableCompletionSe
      */
     @Override
     public Future<V> submit(Callable<V> task) {
-        return completionService.submit(task);
+        if (unfinishedTasks == null) {
+            return completionService.submit(task);
+        }
+        acquire();
+        try {
+            return completionService.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    unfinishedTasks.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            unfinishedTasks.release();
+            throw e;
+        }
     }
 
     /*
@@ -64,7 +92,22 @@ final public class TrackableCompletionService<V> implements ClosableCompletionSe
      */
     @Override
     public Future<V> submit(Runnable task, V result) {
-        return completionService.submit(task, result);
+        return submit(() -> {
+            task.run();
+            return result;
+        });
+    }
+
+    /**
+     * Blocks until the number of unfinished tasks is below the limit.
+     */
+    private void acquire() {
+        try {
+            unfinishedTasks.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a free slot.", e);
+        }
     }
 
     /*
@@ -125,4 +168,21 @@ final public class TrackableCompletionService<V> implements ClosableCompletionSe
         return new TrackableCompletionService<V>(name);
     }
 
+    /**
+     * Returns a new {@link ClosableCompletionService} which accepts at most
+     * <code>maxUnfinishedTasks</code> tasks that are not finished yet. Submitting
+     * a task blocks until one of the unfinished tasks is finished, so a
+     * producer can not queue more tasks than the workers can handle.
+     * 
+     * @param name
+     *            all worker threads will have this as prefix.
+     * @param maxUnfinishedTasks
+     *            the maximum number of submitted tasks which are not finished
+     */
+    public static <V> ClosableCompletionService<V> newBoundedInstance(String name,
+            int maxUnfinishedTasks) {
+        return new TrackableCompletionService<V>(VeriniceThreadPoolExecutor.newInstance(name),
+                new Semaphore(maxUnfinishedTasks));
+    }
+
 }
@@ -26,7 +26,6 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
@@ -37,6 +36,7 @@ import org.hibernate.criterion.Restrictions;
 
 import sernet.gs.service.CollectionUtil;
 import sernet.gs.service.TimeFormatter;
+import sernet.verinice.interfaces.IAuthService;
 import sernet.verinice.interfaces.IBaseDao;
 import sernet.verinice.interfaces.graph.DirectedVeriniceGraph;
 import sernet.verinice.interfaces.graph.Edge;
@@ -74,6 +74,10 @@ public class GraphService implements IGraphService, Serializable {
 
     private IBaseDao<CnALink, CnALink.Id> cnaLinkDao;
 
+    private transient IAuthService authService;
+
+    private transient GraphSnapshotCache graphSnapshotCache;
+
     @Override
     public VeriniceGraph create(List<? extends IGraphElementLoader> loaderList) {
         return create(loaderList, true);
@@ -118,6 +122,34 @@ public class GraphService implements IGraphService, Serializable {
         return graph;
     }
 
+    /**
+     * Returns a graph from the {@link GraphSnapshotCache} or creates a new one
+     * and adds it to the cache. Graphs are cached per user since the loaded
+     * elements depend on the permissions of the user. The elements of a cached
+     * graph are detached and shared with other callers.
+     */
+    @Override
+    public VeriniceGraph createSnapshot(List<? extends IGraphElementLoader> loaderList,
+            String[] relationIds) {
+        GraphSnapshotKey key = null;
+        if (getGraphSnapshotCache() != null && getAuthService() != null) {
+            key = GraphSnapshotKey.create(getAuthService().getUsername(), loaderList,
+                    relationIds);
+        }
+        if (key == null) {
+            return create(loaderList, relationIds);
+        }
+        VeriniceGraph graph = getGraphSnapshotCache().get(key);
+        if (graph == null) {
+            long generation = getGraphSnapshotCache().getGeneration();
+            long start = System.currentTimeMillis();
+            graph = create(loaderList, relationIds);
+            graph = getGraphSnapshotCache().put(key, graph, System.currentTimeMillis() - start,
+                    generation);
+        }
+        return graph;
+    }
+
     private void doCreate(VeriniceGraph graph, List<? extends IGraphElementLoader> loaderList,
             String[] relationIds, boolean loadLinks) {
         long time = initRuntime();
@@ -155,9 +187,11 @@ public class GraphService implements IGraphService, Serializable {
             }
             elementsByDBId.put(element.getDbId(), element);
         }
-        for (CnATreeElement parent : elementList) {
-            Set<CnATreeElement> children = parent.getChildren();
-            for (CnATreeElement child : children) {
+        // The parent id is used instead of the children of an element,
+        // elements with selected properties only are loaded without children
+        for (CnATreeElement child : elementList) {
+            CnATreeElement parent = elementsByDBId.get(child.getParentId());
+            if (parent != null) {
                 createParentChildEdge(parent, child, graph, elementsByDBId);
             }
         }
@@ -262,6 +296,22 @@ public class GraphService implements IGraphService, Serializable {
         this.cnaLinkDao = cnaLinkDao;
     }
 
+    public IAuthService getAuthService() {
+        return authService;
+    }
+
+    public void setAuthService(IAuthService authService) {
+        this.authService = authService;
+    }
+
+    public GraphSnapshotCache getGraphSnapshotCache() {
+        return graphSnapshotCache;
+    }
+
+    public void setGraphSnapshotCache(GraphSnapshotCache graphSnapshotCache) {
+        this.graphSnapshotCache = graphSnapshotCache;
+    }
+
     private long initRuntime() {
         long time = 0;
         if (LOG_RUNTIME.isDebugEnabled()) {
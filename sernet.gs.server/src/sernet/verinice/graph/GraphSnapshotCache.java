@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import sernet.verinice.interfaces.graph.VeriniceGraph;
+import sernet.verinice.model.common.CnATreeElement;
+
+/**
+ * A server-side cache of {@link VeriniceGraph}s which are shared by all
+ * callers which load a graph with the same configuration, see
+ * {@link GraphService#createSnapshot(java.util.List, String[])}.
+ * 
+ * The cache is bounded by the total cost of its graphs, which is the number of
+ * vertices and edges. The least recently used graphs are evicted first. Graphs
+ * are evicted after a maximum age as well, since not every change of the
+ * database is written to the change log.
+ * 
+ * A graph is invalidated when an element of the graph or an element in one of
+ * its scopes is changed, see {@link #elementsChanged(Collection)}.
+ * 
+ * The cache stores detached copies of the graphs, the elements of a cached
+ * graph are not attached to the Hibernate session of the thread which loaded
+ * the graph. The copies are shared by all callers and must not be changed.
+ * Several threads may read a copy at once, the entities of a copy are
+ * compacted and reading their properties does not change them.
+ */
+public class GraphSnapshotCache {
+
+    private static final Logger LOG = Logger.getLogger(GraphSnapshotCache.class);
+
+    private static final long DEFAULT_MAX_COST = 2000000;
+
+    private static final long DEFAULT_MAX_AGE_MILLIS = 60000;
+
+    private final Map<GraphSnapshotKey, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f,
+            true);
+
+    private long maxCost = DEFAULT_MAX_COST;
+
+    private long maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+
+    private long totalCost;
+
+    // incremented on every invalidation to detect graphs that were loaded
+    // while the database changed
+    private long generation;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private long invalidations;
+
+    private long savedBuildTimeMillis;
+
+    /**
+     * @return the cached graph or null if there is no valid graph for the key
+     */
+    public synchronized VeriniceGraph get(GraphSnapshotKey key) {
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot != null && isExpired(snapshot)) {
+            remove(key);
+            snapshot = null;
+        }
+        if (snapshot == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        savedBuildTimeMillis += snapshot.buildTimeMillis;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Returning cached graph, saved " + snapshot.buildTimeMillis + " ms, key: "
+                    + key);
+        }
+        return snapshot.graph;
+    }
+
+    /**
+     * Returns the current generation of the cache. Pass it to
+     * {@link #put(GraphSnapshotKey, VeriniceGraph, long, long)} after loading
+     * a graph.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Adds a detached copy of a graph to the cache. The graph is discarded if
+     * the cache was invalidated since the given generation, because the graph
+     * may contain outdated elements. Graphs which are not serializable are
+     * not cached.
+     * 
+     * @return the cached copy of the graph or the graph itself if it was not
+     *         cached
+     */
+    public VeriniceGraph put(GraphSnapshotKey key, VeriniceGraph graph, long buildTimeMillis,
+            long generationBeforeLoading) {
+        long cost = (long) graph.getGraph().vertexSet().size()
+                + graph.getGraph().edgeSet().size();
+        if (cost > getMaxCost() || getGeneration() != generationBeforeLoading
+                || !(graph instanceof Serializable)) {
+            return graph;
+        }
+        // the copy is created outside of the lock, it may take a while
+        VeriniceGraph detachedGraph = detach(graph);
+        if (detachedGraph == null) {
+            return graph;
+        }
+        synchronized (this) {
+            if (generationBeforeLoading != generation) {
+                return graph;
+            }
+            remove(key);
+            snapshots.put(key, new Snapshot(detachedGraph, cost, buildTimeMillis));
+            totalCost += cost;
+            evict();
+        }
+        return detachedGraph;
+    }
+
+    /**
+     * Invalidates all graphs which contain one of the elements or which may
+     * contain elements of the scopes of the elements. If a transaction is
+     * active, the graphs are invalidated after the transaction was committed,
+     * otherwise a graph loaded before the commit would be cached with the old
+     * state of the elements. Nothing is invalidated if the transaction is
+     * rolled back.
+     */
+    @SuppressWarnings("unchecked")
+    public void elementsChanged(Collection<CnATreeElement> elements) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<CnATreeElement> changedElements = (List<CnATreeElement>) TransactionSynchronizationManager
+                    .getResource(this);
+            if (changedElements == null) {
+                changedElements = new ArrayList<>();
+                TransactionSynchronizationManager.bindResource(this, changedElements);
+                TransactionSynchronizationManager
+                        .registerSynchronization(new AfterCommitSynchronization(changedElements));
+            }
+            changedElements.addAll(elements);
+        } else {
+            invalidate(elements);
+        }
+    }
+
+    private synchronized void invalidate(Collection<CnATreeElement> elements) {
+        generation++;
+        Iterator<Map.Entry<GraphSnapshotKey, Snapshot>> iterator = snapshots.entrySet()
+                .iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<GraphSnapshotKey, Snapshot> entry = iterator.next();
+            if (isAffected(entry.getKey(), entry.getValue(), elements)) {
+                totalCost -= entry.getValue().cost;
+                invalidations++;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean isAffected(GraphSnapshotKey key, Snapshot snapshot,
+            Collection<CnATreeElement> elements) {
+        for (CnATreeElement element : elements) {
+            if (key.containsScope(element.getScopeId())
+                    || snapshot.graph.getElement(element.getDbId()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all graphs, e.g. after the permissions of users changed.
+     */
+    public synchronized void clear() {
+        generation++;
+        invalidations += snapshots.size();
+        snapshots.clear();
+        totalCost = 0;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<GraphSnapshotKey, Snapshot>> iterator = snapshots.entrySet()
+                .iterator();
+        while (totalCost > maxCost && iterator.hasNext()) {
+            totalCost -= iterator.next().getValue().cost;
+            evictions++;
+            iterator.remove();
+        }
+    }
+
+    private void remove(GraphSnapshotKey key) {
+        Snapshot snapshot = snapshots.remove(key);
+        if (snapshot != null) {
+            totalCost -= snapshot.cost;
+        }
+    }
+
+    private static VeriniceGraph detach(VeriniceGraph graph) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(graph);
+            }
+            try (ObjectInputStream in = new GraphInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (VeriniceGraph) in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            LOG.warn("Graph is not cached, creating a detached copy failed", e);
+            return null;
+        }
+    }
+
+    private boolean isExpired(Snapshot snapshot) {
+        return System.currentTimeMillis() - snapshot.created > maxAgeMillis;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return the sum of the build times of all graphs returned from the cache
+     */
+    public synchronized long getSavedBuildTimeMillis() {
+        return savedBuildTimeMillis;
+    }
+
+    public synchronized long getTotalCost() {
+        return totalCost;
+    }
+
+    public synchronized long getMaxCost() {
+        return maxCost;
+    }
+
+    /**
+     * @param maxCost
+     *            The maximum sum of vertices and edges of all cached graphs
+     */
+    public synchronized void setMaxCost(long maxCost) {
+        this.maxCost = maxCost;
+        evict();
+    }
+
+    public synchronized long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    public synchronized void setMaxAgeMillis(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    private final class AfterCommitSynchronization extends TransactionSynchronizationAdapter {
+
+        private final List<CnATreeElement> changedElements;
+
+        private AfterCommitSynchronization(List<CnATreeElement> changedElements) {
+            this.changedElements = changedElements;
+        }
+
+        @Override
+        public void afterCommit() {
+            invalidate(changedElements);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(GraphSnapshotCache.this);
+        }
+    }
+
+    /**
+     * Resolves the classes of the graph with the class loader of this bundle
+     * instead of the default class loader of the stream.
+     */
+    private static final class GraphInputStream extends ObjectInputStream {
+
+        private GraphInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false,
+                        GraphSnapshotCache.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final VeriniceGraph graph;
+
+        private final long cost;
+
+        private final long buildTimeMillis;
+
+        private final long created = System.currentTimeMillis();
+
+        private Snapshot(VeriniceGraph graph, long cost, long buildTimeMillis) {
+            this.graph = graph;
+            this.cost = cost;
+            this.buildTimeMillis = buildTimeMillis;
+        }
+    }
+}
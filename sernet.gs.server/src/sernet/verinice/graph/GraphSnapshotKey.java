@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.commons.lang.ArrayUtils;
+
+import sernet.verinice.interfaces.graph.GraphElementLoader;
+import sernet.verinice.interfaces.graph.IGraphElementLoader;
+
+/**
+ * Identifies a graph in the {@link GraphSnapshotCache} by the user who loaded
+ * it, the configuration of the element loaders and the relation ids.
+ * 
+ * Only graphs loaded by {@link GraphElementLoader}s without an element filter
+ * can be identified, see {@link #create(String, List, String[])}.
+ */
+final class GraphSnapshotKey {
+
+    private final String username;
+
+    private final List<List<Object>> loaders;
+
+    private final List<String> relationIds;
+
+    private final Set<Integer> scopeIds;
+
+    private final int hashCode;
+
+    private GraphSnapshotKey(String username, List<List<Object>> loaders,
+            List<String> relationIds, Set<Integer> scopeIds) {
+        this.username = username;
+        this.loaders = loaders;
+        this.relationIds = relationIds;
+        this.scopeIds = scopeIds;
+        this.hashCode = Arrays.hashCode(new Object[] { username, loaders, relationIds });
+    }
+
+    /**
+     * @return A key for a graph or null if the loaded elements can not be
+     *         identified by the configuration of the loaders
+     */
+    static GraphSnapshotKey create(String username,
+            List<? extends IGraphElementLoader> loaderList, String[] relationIds) {
+        List<List<Object>> loaders = new ArrayList<>(loaderList.size());
+        Set<Integer> scopeIds = new HashSet<>();
+        for (IGraphElementLoader loader : loaderList) {
+            if (!(loader instanceof GraphElementLoader)) {
+                return null;
+            }
+            GraphElementLoader graphElementLoader = (GraphElementLoader) loader;
+            if (graphElementLoader.getElementFilter() != null) {
+                return null;
+            }
+            Integer[] loaderScopeIds = graphElementLoader.getScopeIds();
+            if (ArrayUtils.isEmpty(loaderScopeIds)) {
+                // elements of all scopes are loaded
+                scopeIds = null;
+            } else if (scopeIds != null) {
+                scopeIds.addAll(Arrays.asList(loaderScopeIds));
+            }
+            loaders.add(Arrays.asList(loader.getClass().getName(),
+                    sortedList(loaderScopeIds), sortedList(graphElementLoader.getTypeIds()),
+                    sortedList(graphElementLoader.getPropertyTypeIds())));
+        }
+        return new GraphSnapshotKey(username, loaders, sortedList(relationIds),
+                scopeIds == null ? null : Collections.unmodifiableSet(scopeIds));
+    }
+
+    private static <T extends Comparable<? super T>> List<T> sortedList(T[] values) {
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        List<T> list = new ArrayList<>(Arrays.asList(values));
+        Collections.sort(list);
+        return list;
+    }
+
+    /**
+     * @return true if elements of the scope with the given id may be part of
+     *         the graph
+     */
+    boolean containsScope(Integer scopeId) {
+        return scopeIds == null || scopeIds.contains(scopeId);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        GraphSnapshotKey other = (GraphSnapshotKey) obj;
+        return hashCode == other.hashCode && Objects.equals(username, other.username)
+                && loaders.equals(other.loaders) && relationIds.equals(other.relationIds);
+    }
+
+    @Override
+    public String toString() {
+        return "GraphSnapshotKey [username=" + username + ", loaders=" + loaders
+                + ", relationIds=" + relationIds + "]";
+    }
+}
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.hibernate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.MatchMode;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.SessionImplementor;
+
+import sernet.gs.service.RetrieveInfo;
+import sernet.verinice.interfaces.IElementHierarchyDao;
+import sernet.verinice.interfaces.IRetrieveInfo;
+import sernet.verinice.model.common.CnATreeElement;
+
+/**
+ * Hibernate implementation of {@link IElementHierarchyDao}. Descendants are
+ * found by a prefix search on the indexed column tree_path, ancestors by the
+ * database IDs contained in the path.
+ */
+public class ElementHierarchyDao extends HibernateDao<CnATreeElement, Integer>
+        implements IElementHierarchyDao {
+
+    private static final Logger LOG = Logger.getLogger(ElementHierarchyDao.class);
+
+    private static final String HQL_UPDATE_DESCENDANTS = "update CnATreeElement "
+            + "set treePath = concat(:newPath, substring(treePath, :start)) "
+            + "where treePath like :oldPath";
+
+    private static final String HQL_UPDATE_CHILDREN = "update CnATreeElement "
+            + "set treePath = :treePath where parentId = :parentId";
+
+    private static final String HQL_UPDATE_ROOTS = "update CnATreeElement "
+            + "set treePath = :treePath where parentId is null";
+
+    private static final String HQL_SELECT_PARENT_IDS = "select e.dbId, e.parentId "
+            + "from CnATreeElement e where e.parentId is not null";
+
+    private static final String HQL_SELECT_TREE_PATH = "select e.treePath "
+            + "from CnATreeElement e where e.dbId = ?";
+
+    public ElementHierarchyDao() {
+        super(CnATreeElement.class);
+    }
+
+    @Override
+    public void updateTreePath(CnATreeElement element) {
+        String treePath = element.createTreePath();
+        if (treePath == null) {
+            LOG.warn("Tree path of parent is not known, element: " + element.getUuid());
+            return;
+        }
+        String oldTreePath = element.getTreePath();
+        if (treePath.equals(oldTreePath)) {
+            return;
+        }
+        element.setTreePath(treePath);
+        if (oldTreePath != null && element.getDbId() != null) {
+            String oldSubtreePath = oldTreePath + element.getDbId()
+                    + CnATreeElement.TREE_PATH_SEPARATOR;
+            int number = updateTreePathOfDescendants(oldSubtreePath, element.getSubtreePath());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Tree path of " + number + " descendants updated, element: "
+                        + element.getUuid());
+            }
+        }
+    }
+
+    private int updateTreePathOfDescendants(String oldSubtreePath, String newSubtreePath) {
+        return (Integer) executeCallback(session -> {
+            int number = session.createQuery(HQL_UPDATE_DESCENDANTS)
+                    .setString("newPath", newSubtreePath)
+                    .setInteger("start", oldSubtreePath.length() + 1)
+                    .setString("oldPath", oldSubtreePath + "%").executeUpdate();
+            updateLoadedDescendants((SessionImplementor) session, oldSubtreePath,
+                    newSubtreePath);
+            return number;
+        });
+    }
+
+    /**
+     * The bulk update does not change the descendants which are already
+     * loaded in the session. Their paths are set here, otherwise Hibernate
+     * would write the old paths back when they are flushed.
+     */
+    private static void updateLoadedDescendants(SessionImplementor session,
+            String oldSubtreePath, String newSubtreePath) {
+        for (Object entity : session.getPersistenceContext().getEntitiesByKey().values()) {
+            if (entity instanceof CnATreeElement) {
+                CnATreeElement element = (CnATreeElement) entity;
+                String treePath = element.getTreePath();
+                if (treePath != null && treePath.startsWith(oldSubtreePath)) {
+                    element.setTreePath(
+                            newSubtreePath + treePath.substring(oldSubtreePath.length()));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Integer> findDescendantIds(CnATreeElement element, String typeId) {
+        DetachedCriteria criteria = createDescendantCriteria(element, typeId);
+        criteria.setProjection(Projections.property("dbId"));
+        return getHibernateTemplate().findByCriteria(criteria);
+    }
+
+    @Override
+    public List<CnATreeElement> findDescendants(CnATreeElement element, String typeId,
+            IRetrieveInfo ri) {
+        DetachedCriteria criteria = createDescendantCriteria(element, typeId);
+        IRetrieveInfo ri0 = (ri == null) ? new RetrieveInfo() : ri;
+        ri0.configureCriteria(criteria);
+        return findByCriteria(criteria);
+    }
+
+    private DetachedCriteria createDescendantCriteria(CnATreeElement element, String typeId) {
+        DetachedCriteria criteria = DetachedCriteria.forClass(CnATreeElement.class);
+        criteria.add(Restrictions.like("treePath", getSubtreePath(element), MatchMode.START));
+        if (typeId != null) {
+            criteria.add(Restrictions.eq("objectType", typeId));
+        }
+        return criteria;
+    }
+
+    @Override
+    public List<CnATreeElement> findAncestors(CnATreeElement element, IRetrieveInfo ri) {
+        List<Integer> ancestorIds = getAncestorIds(getTreePath(element));
+        if (ancestorIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        DetachedCriteria criteria = DetachedCriteria.forClass(CnATreeElement.class);
+        criteria.add(Restrictions.in("dbId", ancestorIds));
+        IRetrieveInfo ri0 = (ri == null) ? new RetrieveInfo() : ri;
+        ri0.configureCriteria(criteria);
+        List<CnATreeElement> ancestors = new ArrayList<>(findByCriteria(criteria));
+        ancestors.sort(Comparator.comparingInt(ancestor -> ancestorIds.indexOf(ancestor.getDbId())));
+        return ancestors;
+    }
+
+    private static List<Integer> getAncestorIds(String treePath) {
+        List<Integer> ancestorIds = new ArrayList<>();
+        for (String id : treePath.split(CnATreeElement.TREE_PATH_SEPARATOR)) {
+            if (!id.isEmpty()) {
+                ancestorIds.add(Integer.valueOf(id));
+            }
+        }
+        return ancestorIds;
+    }
+
+    private String getSubtreePath(CnATreeElement element) {
+        return getTreePath(element) + element.getDbId() + CnATreeElement.TREE_PATH_SEPARATOR;
+    }
+
+    private String getTreePath(CnATreeElement element) {
+        String treePath = element.getTreePath();
+        if (treePath == null && element.getDbId() != null) {
+            List<?> result = getHibernateTemplate().find(HQL_SELECT_TREE_PATH,
+                    element.getDbId());
+            treePath = result.isEmpty() ? null : (String) result.get(0);
+        }
+        if (treePath == null) {
+            throw new IllegalStateException(
+                    "Tree path of element is not known, uuid: " + element.getUuid());
+        }
+        return treePath;
+    }
+
+    @Override
+    public int createTreePaths() {
+        Map<Integer, List<Integer>> childIdsByParentId = loadChildIdsByParentId();
+        int number = (Integer) executeCallback(session -> session.createQuery(HQL_UPDATE_ROOTS)
+                .setString("treePath", CnATreeElement.TREE_PATH_SEPARATOR).executeUpdate());
+
+        // All children of a parent share the same path, so one statement per
+        // parent is sufficient. The parents are processed top down.
+        Set<Integer> childIds = new HashSet<>();
+        childIdsByParentId.values().forEach(childIds::addAll);
+        Map<Integer, String> subtreePathByParentId = new HashMap<>();
+        Deque<Integer> parentIds = new ArrayDeque<>();
+        for (Integer parentId : childIdsByParentId.keySet()) {
+            if (!childIds.contains(parentId)) {
+                subtreePathByParentId.put(parentId, CnATreeElement.TREE_PATH_SEPARATOR + parentId
+                        + CnATreeElement.TREE_PATH_SEPARATOR);
+                parentIds.add(parentId);
+            }
+        }
+        while (!parentIds.isEmpty()) {
+            Integer parentId = parentIds.poll();
+            String subtreePath = subtreePathByParentId.remove(parentId);
+            number += (Integer) executeCallback(session -> session
+                    .createQuery(HQL_UPDATE_CHILDREN).setString("treePath", subtreePath)
+                    .setInteger("parentId", parentId).executeUpdate());
+            for (Integer childId : childIdsByParentId.get(parentId)) {
+                if (childIdsByParentId.containsKey(childId)) {
+                    subtreePathByParentId.put(childId,
+                            subtreePath + childId + CnATreeElement.TREE_PATH_SEPARATOR);
+                    parentIds.add(childId);
+                }
+            }
+        }
+        return number;
+    }
+
+    private Map<Integer, List<Integer>> loadChildIdsByParentId() {
+        List<Object[]> parentChildRelationships = getHibernateTemplate()
+                .find(HQL_SELECT_PARENT_IDS);
+        Map<Integer, List<Integer>> childIdsByParentId = new HashMap<>();
+        for (Object[] row : parentChildRelationships) {
+            childIdsByParentId.computeIfAbsent((Integer) row[1], id -> new ArrayList<>())
+                    .add((Integer) row[0]);
+        }
+        return childIdsByParentId;
+    }
+}
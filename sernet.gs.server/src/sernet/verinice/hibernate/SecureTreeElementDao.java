@@ -18,7 +18,11 @@
 package sernet.verinice.hibernate;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.hibernate.HibernateException;
@@ -26,6 +30,7 @@ import org.hibernate.Session;
 import org.hibernate.criterion.DetachedCriteria;
 import org.springframework.orm.hibernate3.HibernateCallback;
 
+import sernet.gs.service.CollectionUtil;
 import sernet.gs.service.SecurityException;
 import sernet.verinice.interfaces.ApplicationRoles;
 import sernet.verinice.interfaces.IAuthService;
@@ -45,6 +50,11 @@ public class SecureTreeElementDao extends TreeElementDao<CnATreeElement, Integer
 
 	private final Logger log = Logger.getLogger(SecureTreeElementDao.class);
 
+	/**
+	 * Maximum number of element ids in the IN clause of one permission query
+	 */
+	private static final int MAX_IDS_PER_QUERY = 1000;
+
 	private IAuthService authService;
 	private IBaseDao<Configuration, Integer> configurationDao;
 	private IBaseDao<Permission, Integer> permissionDao;
@@ -126,6 +136,40 @@ public class SecureTreeElementDao extends TreeElementDao<CnATreeElement, Integer
         checkRights(id, scopeId, getAuthService().getUsername());
     }
 
+    /*
+     * @see
+     * sernet.verinice.interfaces.IBaseDao#checkRightsOfElements(java.util.
+     * Collection, java.io.Serializable)
+     */
+    @Override
+    public void checkRightsOfElements(Collection<Integer> dbIds, Integer scopeId) {
+        checkRightsOfElements(dbIds, scopeId, getAuthService().getUsername());
+    }
+
+    /**
+     * Checks if the user with the given user name has write permissions for
+     * all elements with the given db ids. The roles of the user are resolved
+     * once and the permissions are loaded with one query per
+     * {@value #MAX_IDS_PER_QUERY} ids.
+     * 
+     * Throws a sernet.gs.service.SecurityException if no write permissions are
+     * granted for at least one of the elements.
+     */
+    public void checkRightsOfElements(Collection<Integer> dbIds, Integer scopeId,
+            String username) {
+        if (dbIds.isEmpty() || !isPermissionHandlingNeeded()) {
+            return;
+        }
+        String[] roleArray = getDynamicRoles(username);
+        if (roleArray == null) {
+            log.error("Role array is null for user: " + username);
+        }
+        if (!hasAdminRole(roleArray)) {
+            checkRightsForNonAdmin(dbIds, username, roleArray);
+        }
+        checkScope(dbIds.iterator().next(), scopeId, username);
+    }
+
 	/* (non-Javadoc)
 	 * @see sernet.verinice.hibernate.TreeElementDao#checkRights(java.lang.Object, java.lang.String)
 	 */
@@ -151,6 +195,10 @@ public class SecureTreeElementDao extends TreeElementDao<CnATreeElement, Integer
         if(!hasAdminRole(roleArray)) {	    
             checkRightsForNonAdmin(dbId, username, roleArray);
         }
+        checkScope(dbId, scopeId, username);
+    }
+
+    private void checkScope(Integer dbId, Integer scopeId, String username) {
         if (isScopeOnly() && scopeId != null
                 && !scopeId.equals(getConfigurationService().getScopeId(username))) {
             final String message = "User: " + username
@@ -185,6 +233,43 @@ public class SecureTreeElementDao extends TreeElementDao<CnATreeElement, Integer
         }
     }
 
+    @SuppressWarnings("unchecked")
+    protected void checkRightsForNonAdmin(Collection<Integer> dbIds, String username,
+            String[] roleArray) {
+        String hql = createHqlForIds(roleArray);
+        if (log.isDebugEnabled()) {
+            log.debug("checkRights, hql: " + hql);
+            log.debug("checkRights, number of entity db-ids: " + dbIds.size());
+        }
+        Set<Integer> writableIds = new HashSet<>(dbIds.size());
+        for (List<Integer> partition : CollectionUtil.partition(new ArrayList<>(dbIds),
+                MAX_IDS_PER_QUERY)) {
+            List idList = getPermissionDao().findByQuery(hql,
+                    new String[] { "dbIds", "writeAllowed" },
+                    new Object[] { partition, Boolean.TRUE });
+            writableIds.addAll(idList);
+        }
+        for (Integer dbId : dbIds) {
+            if (!writableIds.contains(dbId)) {
+                final String message = "User: " + username
+                        + " has no right to write CnATreeElement with id: " + dbId;
+                log.warn(message);
+                throw new SecurityException(message);
+            }
+        }
+    }
+
+    protected String createHqlForIds(String[] roleArray) {
+        String roleParam = createRoleParam(roleArray);
+        StringBuilder sb = new StringBuilder();
+        sb.append("select distinct p.cnaTreeElement.dbId from Permission p");
+        sb.append(" where p.cnaTreeElement.dbId in (:dbIds) and p.role in (");
+        // workaraound, because adding roles as ? param does not work
+        sb.append(roleParam);
+        sb.append(") and p.writeAllowed = :writeAllowed");
+        return sb.toString();
+    }
+
     protected String createHql(String[] roleArray) {
         String roleParam = createRoleParam(roleArray);
         StringBuilder sb = new StringBuilder();
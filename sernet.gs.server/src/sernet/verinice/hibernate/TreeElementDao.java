@@ -34,6 +34,7 @@ import sernet.verinice.model.common.CnALink;
 import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.model.iso27k.InheritLogger;
 import sernet.verinice.search.IElementSearchDao;
+import sernet.verinice.search.IndexUpdateQueue;
 
 public class TreeElementDao<T, ID extends Serializable> extends HibernateDao<T, ID>
         implements IBaseDao<T, ID> {
@@ -43,6 +44,7 @@ public class TreeElementDao<T, ID extends Serializable> extends HibernateDao<T,
     private IElementSearchDao searchDao;
     private IJsonBuilder jsonBuilder;
     private IElementTitleCache titleCache;
+    private IndexUpdateQueue indexUpdateQueue;
 
     public TreeElementDao(Class<T> type) {
         super(type);
@@ -204,7 +206,12 @@ public class TreeElementDao<T, ID extends Serializable> extends HibernateDao<T,
             if (getSearchDao() != null) {
                 IJsonBuilder builder = getJsonBuilder();
                 if (builder != null && builder.isIndexableElement(element)) {
-                    getSearchDao().updateOrIndex(element.getUuid(), builder.getJson(element));
+                    if (getIndexUpdateQueue() != null && getIndexUpdateQueue().isActive()) {
+                        getIndexUpdateQueue().add(element.getUuid());
+                    } else {
+                        getSearchDao().updateOrIndex(element.getUuid(),
+                                builder.getJson(element));
+                    }
                 }
             }
         } catch (Exception e) {
@@ -282,6 +289,18 @@ public class TreeElementDao<T, ID extends Serializable> extends HibernateDao<T,
         this.jsonBuilder = jsonBuilder;
     }
 
+    public IndexUpdateQueue getIndexUpdateQueue() {
+        return indexUpdateQueue;
+    }
+
+    /**
+     * If an active queue is set, index updates are sent asynchronously after
+     * the transaction was committed.
+     */
+    public void setIndexUpdateQueue(IndexUpdateQueue indexUpdateQueue) {
+        this.indexUpdateQueue = indexUpdateQueue;
+    }
+
     public IElementTitleCache getTitleCache() {
         return titleCache;
     }
@@ -71,7 +71,7 @@ public abstract class BaseDao implements ISearchDao {
     /**
      * {@link ISearchService.ES_FIELD_UUID} and {@link ISearchService.ES_FIELD_PERMISSION_ROLES} missing here, since they should not be searchable 
      */
-    private final List<String> EXTRA_FIELDS = Arrays.asList(new String[]{
+    static final List<String> EXTRA_FIELDS = Arrays.asList(new String[]{
             ISearchService.ES_FIELD_UUID,
             ISearchService.ES_FIELD_TITLE,
             ISearchService.ES_FIELD_ELEMENT_TYPE,
@@ -202,7 +202,6 @@ public abstract class BaseDao implements ISearchDao {
     }
     
     
-    @Override
     public MultiSearchRequestBuilder prepareQueryWithAllFields(String typeId, VeriniceQuery query, String username){
         Map<String, String> map = new ConcurrentHashMap<String, String>();
         for(String property : HUITypeFactory.getInstance().getEntityType(typeId).getAllPropertyTypeIds()){
@@ -215,7 +214,6 @@ public abstract class BaseDao implements ISearchDao {
         
     }
     
-    @Override
     public MultiSearchRequestBuilder prepareQueryWithSpecializedFields(Map<String, String> fieldmap, String typeId, String username){
         MultiSearchRequestBuilder multiSearchBuilder = getClient().prepareMultiSearch();
 
@@ -243,7 +241,7 @@ public abstract class BaseDao implements ISearchDao {
         MultiSearchRequestBuilder requestBuilder = getClient().prepareMultiSearch();
         // only 1 call per query, instead of calling
         // isPermissionHandlingNeeded() from within for-loop
-        boolean permissionHandlingNeeded = isPermissionHandlingNeeded();
+        boolean permissionHandlingNeeded = isPermissionHandlingNeeded(getAuthService());
         for(String field : map.keySet()){
             String value = map.get(field);
             SearchRequestBuilder searchBuilder = getClient().prepareSearch(getIndex())
@@ -294,13 +292,13 @@ public abstract class BaseDao implements ISearchDao {
         return requestBuilder;
     }
 
-    private boolean isPermissionHandlingNeeded() {
-        return getAuthService()!=null 
-                && getAuthService().isPermissionHandlingNeeded() 
-                && !hasAdminRole(getAuthService().getRoles());
+    static boolean isPermissionHandlingNeeded(IAuthService authService) {
+        return authService!=null 
+                && authService.isPermissionHandlingNeeded() 
+                && !hasAdminRole(authService.getRoles());
     }
     
-    private boolean hasAdminRole(String[] roles) {
+    private static boolean hasAdminRole(String[] roles) {
         if(roles!=null) {
             for (String r : roles) {
                 if (ApplicationRoles.ROLE_ADMIN.equals(r))
@@ -315,7 +313,7 @@ public abstract class BaseDao implements ISearchDao {
     }
 
     private TermsFilterBuilder createPermissionFilter(String username) {
-        return FilterBuilders.inFilter(ISearchService.ES_FIELD_PERMISSION_ROLES + "." + ISearchService.ES_FIELD_PERMISSION_NAME, getRoleString(username).toArray());
+        return FilterBuilders.inFilter(ISearchService.ES_FIELD_PERMISSION_ROLES + "." + ISearchService.ES_FIELD_PERMISSION_NAME, getRoleString(getConfigurationService(), username).toArray());
     }
     
     private TermFilterBuilder createScopeIdFilter(int scopeId){
@@ -324,7 +322,6 @@ public abstract class BaseDao implements ISearchDao {
     
   
     
-    @Override
     public MultiSearchResponse executeMultiSearch (MultiSearchRequestBuilder srb){
         try{
             return srb.execute().actionGet();
@@ -414,14 +411,14 @@ public abstract class BaseDao implements ISearchDao {
         this.clientFactory = clientFactory;
     }
     
-    private List<String> getRoleString(String username){
+    static List<String> getRoleString(IConfigurationService configurationService, String username){
         List<String> applicationRoles = Arrays.asList(new String[] { ApplicationRoles.ROLE_ADMIN, ApplicationRoles.ROLE_LOCAL_ADMIN,
               ApplicationRoles.ROLE_GUEST,
               ApplicationRoles.ROLE_LDAPUSER, 
               ApplicationRoles.ROLE_USER,
               ApplicationRoles.ROLE_WEB});
       List<String> userRoles = new ArrayList<String>(0);
-      String[] roles = getConfigurationService().getRoles(username);
+      String[] roles = configurationService.getRoles(username);
       for(int i = 0; i < roles.length; i++){
           if(!applicationRoles.contains(roles[i])){
               userRoles.add(roles[i].toLowerCase());
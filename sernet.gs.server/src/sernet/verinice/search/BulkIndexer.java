@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.ImmutableSettings;
+
+import sernet.gs.service.TimeFormatter;
+
+/**
+ * Sends documents to Elasticsearch with the bulk API during a full reindex.
+ *
+ * Documents are collected until the configured number of actions or the
+ * configured request size is reached; the batch is then sent by the thread
+ * that added the last document. While the indexer is open, refreshing is
+ * turned off and the number of replicas is reduced. Both settings are
+ * restored by {@link #close()}, followed by a single refresh.
+ *
+ * Failures are collected per batch instead of throwing one exception per
+ * element. Call {@link #open()} before adding documents and {@link #close()}
+ * after the last document was added.
+ */
+public class BulkIndexer {
+
+    private static final Logger LOG = Logger.getLogger(BulkIndexer.class);
+
+    private static final String SETTING_REFRESH_INTERVAL = "index.refresh_interval";
+    private static final String SETTING_NUMBER_OF_REPLICAS = "index.number_of_replicas";
+    private static final String REFRESH_DISABLED = "-1";
+    private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+
+    private ISearchDao searchDao;
+    private ElasticsearchClientFactory clientFactory;
+
+    private int bulkActions = 500;
+    private int bulkSizeMb = 5;
+    private int replicasDuringIndexing = 0;
+
+    private final Object lock = new Object();
+    private BulkRequestBuilder currentRequest;
+    private long currentRequestBytes;
+
+    private String originalRefreshInterval;
+    private String originalNumberOfReplicas;
+
+    private final AtomicLong numberOfDocuments = new AtomicLong();
+    private final AtomicLong numberOfFailures = new AtomicLong();
+    private final AtomicLong numberOfBatches = new AtomicLong();
+    private final AtomicLong numberOfFailedBatches = new AtomicLong();
+    private long start;
+
+    /**
+     * Turns off refreshing and reduces the replicas of the index.
+     */
+    public void open() {
+        start = System.currentTimeMillis();
+        GetSettingsResponse settings = getClient().admin().indices()
+                .prepareGetSettings(getIndex()).execute().actionGet();
+        originalRefreshInterval = settings.getSetting(getIndex(), SETTING_REFRESH_INTERVAL);
+        originalNumberOfReplicas = settings.getSetting(getIndex(), SETTING_NUMBER_OF_REPLICAS);
+        updateSettings(REFRESH_DISABLED, String.valueOf(getReplicasDuringIndexing()));
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Bulk indexing started, actions per batch: " + getBulkActions()
+                    + ", max. batch size: " + getBulkSizeMb() + " MB");
+        }
+    }
+
+    /**
+     * Adds a document to the current batch. The batch is sent if it reaches
+     * the configured number of actions or size.
+     */
+    public void add(String id, String json) {
+        byte[] source = json.getBytes(StandardCharsets.UTF_8);
+        BulkRequestBuilder fullRequest = null;
+        synchronized (lock) {
+            if (currentRequest == null) {
+                currentRequest = getClient().prepareBulk();
+                currentRequestBytes = 0;
+            }
+            currentRequest.add(
+                    getClient().prepareIndex(getIndex(), getSearchDao().getType(), id)
+                            .setSource(source));
+            currentRequestBytes += source.length;
+            if (currentRequest.numberOfActions() >= getBulkActions()
+                    || currentRequestBytes >= getBulkSizeMb() * BYTES_PER_MB) {
+                fullRequest = currentRequest;
+                currentRequest = null;
+            }
+        }
+        if (fullRequest != null) {
+            execute(fullRequest);
+        }
+    }
+
+    /**
+     * Sends the remaining documents, restores the index settings, refreshes
+     * the index and logs the throughput.
+     */
+    public void close() {
+        BulkRequestBuilder lastRequest;
+        synchronized (lock) {
+            lastRequest = currentRequest;
+            currentRequest = null;
+        }
+        try {
+            if (lastRequest != null) {
+                execute(lastRequest);
+            }
+        } finally {
+            String refreshInterval = originalRefreshInterval != null ? originalRefreshInterval
+                    : DEFAULT_REFRESH_INTERVAL;
+            updateSettings(refreshInterval, originalNumberOfReplicas);
+            getClient().admin().indices().prepareRefresh(getIndex()).execute().actionGet();
+            logStatistics();
+        }
+    }
+
+    private void execute(BulkRequestBuilder request) {
+        int actions = request.numberOfActions();
+        long batch = numberOfBatches.incrementAndGet();
+        try {
+            BulkResponse response = request.execute().actionGet();
+            numberOfDocuments.addAndGet(actions);
+            if (response.hasFailures()) {
+                handleFailures(batch, response);
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug("Batch " + batch + " indexed, documents: " + actions + ", took: "
+                        + response.getTookInMillis() + " ms");
+            }
+        } catch (RuntimeException e) {
+            numberOfFailedBatches.incrementAndGet();
+            numberOfFailures.addAndGet(actions);
+            LOG.error("Batch " + batch + " with " + actions + " documents failed.", e);
+        }
+    }
+
+    private void handleFailures(long batch, BulkResponse response) {
+        numberOfFailedBatches.incrementAndGet();
+        int failures = 0;
+        for (BulkItemResponse item : response.getItems()) {
+            if (item.isFailed()) {
+                failures++;
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Indexing failed, uuid: " + item.getId() + ", "
+                            + item.getFailureMessage());
+                }
+            }
+        }
+        numberOfFailures.addAndGet(failures);
+        LOG.error("Batch " + batch + ": " + failures + " of " + response.getItems().length
+                + " documents failed, first failure: " + getFirstFailureMessage(response));
+    }
+
+    private static String getFirstFailureMessage(BulkResponse response) {
+        for (BulkItemResponse item : response.getItems()) {
+            if (item.isFailed()) {
+                return item.getId() + ": " + item.getFailureMessage();
+            }
+        }
+        return null;
+    }
+
+    private void updateSettings(String refreshInterval, String numberOfReplicas) {
+        ImmutableSettings.Builder settings = ImmutableSettings.settingsBuilder()
+                .put(SETTING_REFRESH_INTERVAL, refreshInterval);
+        if (numberOfReplicas != null) {
+            settings.put(SETTING_NUMBER_OF_REPLICAS, numberOfReplicas);
+        }
+        getClient().admin().indices().prepareUpdateSettings(getIndex()).setSettings(settings)
+                .execute().actionGet();
+    }
+
+    private void logStatistics() {
+        if (LOG.isInfoEnabled()) {
+            long ms = Math.max(System.currentTimeMillis() - start, 1);
+            long documents = numberOfDocuments.get();
+            LOG.info("Bulk indexing finished, documents: " + documents + ", failed documents: "
+                    + numberOfFailures.get() + ", batches: " + numberOfBatches.get()
+                    + ", failed batches: " + numberOfFailedBatches.get() + ", runtime: "
+                    + TimeFormatter.getHumanRedableTime(ms) + ", throughput: "
+                    + (documents * 1000 / ms) + " docs/s");
+        }
+    }
+
+    public long getNumberOfDocuments() {
+        return numberOfDocuments.get();
+    }
+
+    public long getNumberOfFailures() {
+        return numberOfFailures.get();
+    }
+
+    private String getIndex() {
+        return getSearchDao().getIndex();
+    }
+
+    private Client getClient() {
+        return getClientFactory().getClient();
+    }
+
+    public ISearchDao getSearchDao() {
+        return searchDao;
+    }
+
+    public void setSearchDao(ISearchDao searchDao) {
+        this.searchDao = searchDao;
+    }
+
+    public ElasticsearchClientFactory getClientFactory() {
+        return clientFactory;
+    }
+
+    public void setClientFactory(ElasticsearchClientFactory clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    public int getBulkActions() {
+        return bulkActions;
+    }
+
+    public void setBulkActions(int bulkActions) {
+        this.bulkActions = bulkActions;
+    }
+
+    public int getBulkSizeMb() {
+        return bulkSizeMb;
+    }
+
+    public void setBulkSizeMb(int bulkSizeMb) {
+        this.bulkSizeMb = bulkSizeMb;
+    }
+
+    public int getReplicasDuringIndexing() {
+        return replicasDuringIndexing;
+    }
+
+    public void setReplicasDuringIndexing(int replicasDuringIndexing) {
+        this.replicasDuringIndexing = replicasDuringIndexing;
+    }
+}
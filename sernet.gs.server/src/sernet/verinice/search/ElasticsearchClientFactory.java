@@ -114,6 +114,15 @@ public class ElasticsearchClientFactory implements DisposableBean {
     }
 
     private Builder getAnylysisConf() {
+        return ImmutableSettings.settingsBuilder().loadFromClasspath(getAnalysisConfigurationPath());
+    }
+
+    /**
+     * Returns the class path of the analysis configuration for the default
+     * locale. The configuration of {@link #LOCALE_DEFAULT} is returned if
+     * there is no configuration for the default locale.
+     */
+    static String getAnalysisConfigurationPath() {
         String configurationPath = getSearchAnalysisConfiguration(Locale.getDefault());
         if (!fileExists(configurationPath)) {
             LOG.warn("Can not find ElasticSearch configuration for locale: " + Locale.getDefault()
@@ -123,21 +132,21 @@ public class ElasticsearchClientFactory implements DisposableBean {
         if (LOG.isInfoEnabled()) {
             LOG.info("Loading ElasticSearch analysis configuration: " + configurationPath);
         }
-        return ImmutableSettings.settingsBuilder().loadFromClasspath(configurationPath);
+        return configurationPath;
     }
 
-    private boolean fileExists(String path) {
+    private static boolean fileExists(String path) {
         return ElasticsearchClientFactory.class.getClassLoader().getResource(path) != null;
     }
 
-    private String getSearchAnalysisConfiguration(Locale locale) {
+    private static String getSearchAnalysisConfiguration(Locale locale) {
         return new StringBuilder().append(SERNET_VERINICE_SEARCH_ANALYSIS_JSON)
                 .append(SEPERATOR_LANGUAGE).append(locale.getLanguage()).append(SEPERATOR_EXTENSION)
                 .append(JSON_EXTENSION).toString().toLowerCase();
     }
 
-    private String getMapping() {
-        InputStream in = this.getClass()
+    static String getMapping() {
+        InputStream in = ElasticsearchClientFactory.class
                 .getResourceAsStream("/sernet/verinice/search/mapping.json");
         String mapping = null;
         try {
@@ -19,12 +19,9 @@
  ******************************************************************************/
 package sernet.verinice.search;
 
-import java.util.Map;
-
 import org.elasticsearch.action.ActionResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.search.MultiSearchRequestBuilder;
 import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.index.query.MatchQueryBuilder.Operator;
@@ -147,30 +144,6 @@ public class ElementDaoDummy implements IElementSearchDao {
         return null;
     }
 
-    /* (non-Javadoc)
-     * @see sernet.verinice.search.ISearchDao#prepareQueryWithAllFields(java.lang.String, sernet.verinice.model.search.VeriniceQuery, java.lang.String)
-     */
-    @Override
-    public MultiSearchRequestBuilder prepareQueryWithAllFields(String typeId, VeriniceQuery query, String username) {
-        return null;
-    }
-
-    /* (non-Javadoc)
-     * @see sernet.verinice.search.ISearchDao#prepareQueryWithSpecializedFields(java.util.Map, java.lang.String, java.lang.String)
-     */
-    @Override
-    public MultiSearchRequestBuilder prepareQueryWithSpecializedFields(Map<String, String> fieldmap, String typeId, String username) {
-        return null;
-    }
-
-    /* (non-Javadoc)
-     * @see sernet.verinice.search.ISearchDao#executeMultiSearch(org.elasticsearch.action.search.MultiSearchRequestBuilder)
-     */
-    @Override
-    public MultiSearchResponse executeMultiSearch(MultiSearchRequestBuilder srb) {
-        return null;
-    }
-
     /* (non-Javadoc)
      * @see sernet.verinice.search.ISearchDao#find(java.lang.String, sernet.verinice.model.search.VeriniceQuery)
      */
@@ -179,12 +152,4 @@ public class ElementDaoDummy implements IElementSearchDao {
         return null;
     }
 
-    /* (non-Javadoc)
-     * @see sernet.verinice.search.IElementSearchDao#findAndGroupByType(java.lang.String)
-     */
-    @Override
-    public SearchResponse findAndGroupByType(String term) {
-        return null;
-    }
-
 }
@@ -19,12 +19,14 @@
  ******************************************************************************/
 package sernet.verinice.search;
 
-import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 /**
+ * Search DAO for the elements of verinice.
+ *
+ * Aggregations and Elasticsearch request builders are not part of this
+ * interface, they are only provided by {@link ElementDao}.
+ *
  * @author Daniel Murygin <dm[at]sernet[dot]de>
  */
 public interface IElementSearchDao extends ISearchDao {
 
-    public SearchResponse findAndGroupByType(String term);
 }
@@ -20,13 +20,10 @@
  ******************************************************************************/
 package sernet.verinice.search;
 
-import java.util.Map;
-
 import org.elasticsearch.action.ActionResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryResponse;
 import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.search.MultiSearchRequestBuilder;
 import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.index.query.MatchQueryBuilder.Operator;
@@ -71,12 +68,6 @@ public interface ISearchDao {
 
     public SearchResponse find(String property, String title, Operator operator);
     
-    public MultiSearchRequestBuilder prepareQueryWithAllFields(String typeId, VeriniceQuery query, String username);
-    
-    public MultiSearchRequestBuilder prepareQueryWithSpecializedFields(Map<String, String> fieldmap, String typeId, String username);
-    
-    public MultiSearchResponse executeMultiSearch(MultiSearchRequestBuilder srb);
-
     /**
      * @param typeId
      * @param query
@@ -44,6 +44,7 @@ public class IndexThread extends DummyAuthenticatorCallable<List<IndexedElementD
     private List<String> uuids;
     private IJsonBuilder jsonBuilder;
     private boolean logIndexedElementDetails = false;
+    private BulkIndexer bulkIndexer;
 
     /*
      * @see sernet.verinice.search.DummyAuthenticatorCallable#doCall()
@@ -61,7 +62,11 @@ public class IndexThread extends DummyAuthenticatorCallable<List<IndexedElementD
             json = getJsonBuilder().getJson(cnATreeElement);
 
             if (json != null) {
-                getSearchDao().updateOrIndex(cnATreeElement.getUuid(), json);
+                if (bulkIndexer != null) {
+                    bulkIndexer.add(cnATreeElement.getUuid(), json);
+                } else {
+                    getSearchDao().updateOrIndex(cnATreeElement.getUuid(), json);
+                }
                 if (logIndexedElementDetails) {
                     result.add(new IndexedElementDetails(cnATreeElement.getUuid(),
                             cnATreeElement.getTitle()));
@@ -118,6 +123,14 @@ public class IndexThread extends DummyAuthenticatorCallable<List<IndexedElementD
         this.jsonBuilder = jsonBuilder;
     }
 
+    /**
+     * If a bulk indexer is set, documents are added to its batches instead of
+     * being sent to the index one by one.
+     */
+    public void setBulkIndexer(BulkIndexer bulkIndexer) {
+        this.bulkIndexer = bulkIndexer;
+    }
+
     public void setReturnIndexedElementDetails(boolean logIndexedElementDetails) {
         this.logIndexedElementDetails = logIndexedElementDetails;
 
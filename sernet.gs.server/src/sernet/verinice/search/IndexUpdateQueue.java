@@ -0,0 +1,453 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Restrictions;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import sernet.gs.server.security.DummyAuthenticationRunnable;
+import sernet.gs.service.ServerInitializer;
+import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.interfaces.search.IJsonBuilder;
+import sernet.verinice.model.common.CnATreeElement;
+
+/**
+ * Updates the search index asynchronously after a transaction was committed.
+ *
+ * {@link #add(String)} collects the UUIDs of changed elements for the current
+ * transaction. After the commit the UUIDs are moved to a queue, repeated
+ * updates of the same element are coalesced into one. A background worker
+ * loads the elements and sends them in bulk requests to Elasticsearch, either
+ * when a batch is full or when the oldest waiting element reaches the max.
+ * staleness. If the queue reaches its capacity, writers are blocked until the
+ * worker has caught up.
+ *
+ * Queue depth, number of coalesced updates and flush latency are available by
+ * getters and are logged in debug level of logger
+ * "sernet.verinice.search.IndexUpdateQueue.runtime".
+ */
+public class IndexUpdateQueue {
+
+    private static final Logger LOG = Logger.getLogger(IndexUpdateQueue.class);
+    private static final Logger LOG_RUNTIME = Logger
+            .getLogger(IndexUpdateQueue.class.getName() + ".runtime");
+
+    private static final String THREAD_NAME = "index-update-queue";
+    private static final long SHUTDOWN_TIMEOUT_MS = 30000;
+
+    private boolean enabled = false;
+    private int batchSize = 200;
+    private int capacity = 10000;
+    private long maxStalenessMs = 2000;
+
+    /**
+     * Factory for the element DAO, the DAO itself can not be injected
+     * because it references this queue
+     */
+    private ObjectFactory elementDaoFactory;
+    private IJsonBuilder jsonBuilder;
+    private ISearchDao searchDao;
+    private ElasticsearchClientFactory clientFactory;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    /**
+     * Waiting UUIDs mapped to the time they were queued, in queue order
+     */
+    private final Map<String, Long> pending = new LinkedHashMap<>();
+
+    private volatile boolean running = false;
+    private Thread worker;
+
+    private final AtomicLong numberOfQueuedUpdates = new AtomicLong();
+    private final AtomicLong numberOfCoalescedUpdates = new AtomicLong();
+    private final AtomicLong numberOfIndexedElements = new AtomicLong();
+    private final AtomicLong numberOfFailures = new AtomicLong();
+    private final AtomicLong numberOfFlushes = new AtomicLong();
+    private final AtomicLong totalFlushTime = new AtomicLong();
+    private volatile long maxFlushTime = 0;
+
+    public void init() {
+        if (!isEnabled()) {
+            LOG.info("Asynchronous index update is disabled.");
+            return;
+        }
+        running = true;
+        worker = new Thread(new Worker(), THREAD_NAME);
+        worker.setDaemon(true);
+        worker.start();
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Asynchronous index update started, batch size: " + getBatchSize()
+                    + ", capacity: " + getCapacity() + ", max. staleness: "
+                    + getMaxStalenessMs() + " ms");
+        }
+    }
+
+    /**
+     * Stops the worker after all waiting elements are indexed.
+     */
+    public void shutdown() {
+        if (worker == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            worker.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker = null;
+    }
+
+    /**
+     * Schedules an index update of an element. If a transaction is active,
+     * the element is queued after the transaction was committed. Updates are
+     * discarded if the transaction is rolled back.
+     */
+    @SuppressWarnings("unchecked")
+    public void add(String uuid) {
+        if (uuid == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Set<String> uuids = (Set<String>) TransactionSynchronizationManager.getResource(this);
+            if (uuids == null) {
+                uuids = new LinkedHashSet<>();
+                TransactionSynchronizationManager.bindResource(this, uuids);
+                TransactionSynchronizationManager
+                        .registerSynchronization(new AfterCommitSynchronization(uuids));
+            }
+            uuids.add(uuid);
+        } else {
+            enqueue(Collections.singleton(uuid));
+        }
+    }
+
+    private void enqueue(Collection<String> uuids) {
+        lock.lock();
+        try {
+            for (String uuid : uuids) {
+                if (pending.containsKey(uuid)) {
+                    numberOfCoalescedUpdates.incrementAndGet();
+                    continue;
+                }
+                while (running && pending.size() >= getCapacity()) {
+                    notEmpty.signal();
+                    notFull.await();
+                }
+                pending.put(uuid, System.currentTimeMillis());
+                numberOfQueuedUpdates.incrementAndGet();
+            }
+            if (pending.size() >= getBatchSize()) {
+                notEmpty.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while waiting for the index update queue, "
+                    + "some elements are not indexed.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<String> takeBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            long waitTime = getWaitTime();
+            while (running && waitTime != 0) {
+                if (waitTime < 0) {
+                    notEmpty.await();
+                } else {
+                    notEmpty.await(waitTime, TimeUnit.MILLISECONDS);
+                }
+                waitTime = getWaitTime();
+            }
+            List<String> batch = new ArrayList<>(Math.min(pending.size(), getBatchSize()));
+            Iterator<String> iterator = pending.keySet().iterator();
+            while (iterator.hasNext() && batch.size() < getBatchSize()) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns 0 if a batch is due, the time to wait for the oldest element
+     * otherwise or -1 if the queue is empty. Caller must hold the lock.
+     */
+    private long getWaitTime() {
+        if (pending.isEmpty()) {
+            return -1;
+        }
+        if (pending.size() >= getBatchSize()) {
+            return 0;
+        }
+        long oldest = pending.values().iterator().next();
+        long age = System.currentTimeMillis() - oldest;
+        return Math.max(getMaxStalenessMs() - age, 0);
+    }
+
+    private void flush(List<String> uuids) {
+        long start = System.currentTimeMillis();
+        try {
+            numberOfIndexedElements.addAndGet(index(uuids));
+        } catch (Exception e) {
+            numberOfFailures.incrementAndGet();
+            LOG.error("Error while updating index, number of elements: " + uuids.size(), e);
+        }
+        long time = System.currentTimeMillis() - start;
+        numberOfFlushes.incrementAndGet();
+        totalFlushTime.addAndGet(time);
+        if (time > maxFlushTime) {
+            maxFlushTime = time;
+        }
+        if (LOG_RUNTIME.isDebugEnabled()) {
+            LOG_RUNTIME.debug("Index updated, elements: " + uuids.size() + ", runtime: " + time
+                    + " ms, queue depth: " + getQueueDepth() + ", coalesced updates: "
+                    + getNumberOfCoalescedUpdates());
+        }
+    }
+
+    /**
+     * Loads the elements and sends them with one bulk request to
+     * Elasticsearch. Returns the number of indexed elements.
+     */
+    protected int index(List<String> uuids) {
+        ServerInitializer.inheritVeriniceContextState();
+        List<CnATreeElement> elements = loadElements(uuids);
+        Client client = getClientFactory().getClient();
+        BulkRequestBuilder request = client.prepareBulk();
+        for (CnATreeElement element : elements) {
+            String json = getJsonBuilder().getJson(element);
+            if (json != null) {
+                request.add(client.prepareIndex(getSearchDao().getIndex(),
+                        getSearchDao().getType(), element.getUuid()).setSource(json));
+            }
+        }
+        if (request.numberOfActions() == 0) {
+            return 0;
+        }
+        BulkResponse response = request.execute().actionGet();
+        if (response.hasFailures()) {
+            numberOfFailures.incrementAndGet();
+            LOG.error("Error while updating index: " + response.buildFailureMessage());
+        }
+        return request.numberOfActions();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<CnATreeElement> loadElements(List<String> uuids) {
+        DetachedCriteria criteria = DetachedCriteria.forClass(CnATreeElement.class);
+        criteria.add(Restrictions.in("uuid", uuids));
+        criteria.setFetchMode("permissions", FetchMode.JOIN);
+        criteria.setFetchMode("entity", FetchMode.JOIN);
+        criteria.setFetchMode("entity.typedPropertyLists", FetchMode.JOIN);
+        criteria.setFetchMode("entity.typedPropertyLists.properties", FetchMode.JOIN);
+        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        return getElementDao().findByCriteria(criteria);
+    }
+
+    private final class Worker extends DummyAuthenticationRunnable {
+        @Override
+        public void doRun() {
+            while (running || getQueueDepth() > 0) {
+                try {
+                    List<String> batch = takeBatch();
+                    if (!batch.isEmpty()) {
+                        flush(batch);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOG.warn("Index update worker interrupted, queue depth: "
+                            + getQueueDepth());
+                    return;
+                } catch (RuntimeException e) {
+                    LOG.error("Error in index update worker", e);
+                }
+            }
+        }
+    }
+
+    private final class AfterCommitSynchronization extends TransactionSynchronizationAdapter {
+
+        private final Set<String> uuids;
+
+        private AfterCommitSynchronization(Set<String> uuids) {
+            this.uuids = uuids;
+        }
+
+        @Override
+        public void afterCommit() {
+            enqueue(uuids);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(IndexUpdateQueue.this);
+        }
+    }
+
+    /**
+     * Returns true if the worker is running and updates are accepted.
+     */
+    public boolean isActive() {
+        return running;
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getNumberOfQueuedUpdates() {
+        return numberOfQueuedUpdates.get();
+    }
+
+    public long getNumberOfCoalescedUpdates() {
+        return numberOfCoalescedUpdates.get();
+    }
+
+    public long getNumberOfIndexedElements() {
+        return numberOfIndexedElements.get();
+    }
+
+    public long getNumberOfFailures() {
+        return numberOfFailures.get();
+    }
+
+    public long getNumberOfFlushes() {
+        return numberOfFlushes.get();
+    }
+
+    public long getAverageFlushTime() {
+        long flushes = numberOfFlushes.get();
+        return (flushes == 0) ? 0 : totalFlushTime.get() / flushes;
+    }
+
+    public long getMaxFlushTime() {
+        return maxFlushTime;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public long getMaxStalenessMs() {
+        return maxStalenessMs;
+    }
+
+    public void setMaxStalenessMs(long maxStalenessMs) {
+        this.maxStalenessMs = maxStalenessMs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private IBaseDao<CnATreeElement, Integer> getElementDao() {
+        return (IBaseDao<CnATreeElement, Integer>) elementDaoFactory.getObject();
+    }
+
+    public ObjectFactory getElementDaoFactory() {
+        return elementDaoFactory;
+    }
+
+    public void setElementDaoFactory(ObjectFactory elementDaoFactory) {
+        this.elementDaoFactory = elementDaoFactory;
+    }
+
+    public IJsonBuilder getJsonBuilder() {
+        return jsonBuilder;
+    }
+
+    public void setJsonBuilder(IJsonBuilder jsonBuilder) {
+        this.jsonBuilder = jsonBuilder;
+    }
+
+    public ISearchDao getSearchDao() {
+        return searchDao;
+    }
+
+    public void setSearchDao(ISearchDao searchDao) {
+        this.searchDao = searchDao;
+    }
+
+    public ElasticsearchClientFactory getClientFactory() {
+        return clientFactory;
+    }
+
+    public void setClientFactory(ElasticsearchClientFactory clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+}
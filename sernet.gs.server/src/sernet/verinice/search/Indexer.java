@@ -19,8 +19,6 @@
  ******************************************************************************/
 package sernet.verinice.search;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -33,6 +31,7 @@ import org.elasticsearch.common.collect.Lists;
 import org.springframework.beans.factory.ObjectFactory;
 
 import sernet.gs.server.security.DummyAuthenticationRunnable;
+import sernet.gs.service.ElementUuidCursor;
 import sernet.gs.service.ServerInitializer;
 import sernet.gs.service.TimeFormatter;
 import sernet.verinice.concurrency.ClosableCompletionService;
@@ -55,10 +54,17 @@ public class Indexer {
 
     private static final Logger LOG = Logger.getLogger(Indexer.class);
 
-    private static final String HQL_LOAD_UUIDS = "select e.uuid from CnATreeElement e";
-
     private static final int INDEXING_CHUNK_SIZE = 50;
 
+    private static final int UUID_PAGE_SIZE = 1000;
+
+    /**
+     * Limits the number of index threads which are queued or running
+     */
+    private static final int UNFINISHED_INDEX_THREADS_PER_PROCESSOR = 4;
+
+    private static final String INDEXING_POOL_NAME = "index-worker";
+
     private IBaseDao<CnATreeElement, Integer> elementDao;
 
     private IElementTitleCache titleCache;
@@ -71,6 +77,18 @@ public class Indexer {
      */
     private ObjectFactory indexThreadFactory;
 
+    /**
+     * Factory to create {@link BulkIndexer} instances configured in
+     * veriniceserver-search-base.xml
+     */
+    private ObjectFactory bulkIndexerFactory;
+
+    /**
+     * If true, the documents are sent with the bulk API of Elasticsearch and
+     * refreshing is turned off during indexing.
+     */
+    private boolean bulkIndexing = false;
+
     /**
      * Creates an index in an non blocking way, means this method creates all
      * necessary index threads and returns immediately. It gives no guarantee
@@ -102,54 +120,70 @@ public class Indexer {
     }
 
     private ClosableCompletionService<List<IndexedElementDetails>> doIndex(
-            boolean logIndexedElementDetails) {
+            boolean logIndexedElementDetails, BulkIndexer bulkIndexer) {
 
         indexingStart = System.currentTimeMillis();
 
         ClosableCompletionService<List<IndexedElementDetails>> completionService = TrackableCompletionService
-                .newInstance();
-        List<String> allUuids = geAllCnATreeElementUUIDS();
+                .newBoundedInstance(INDEXING_POOL_NAME, getMaxUnfinishedIndexThreads());
 
         if (LOG.isInfoEnabled()) {
-            LOG.info("Elements: " + allUuids.size() + ", start indexing...");
+            LOG.info("Start indexing...");
         }
 
+        ServerInitializer.inheritVeriniceContextState();
         getTitleCache().load(ITVerbund.TYPE_ID_HIBERNATE, Organization.TYPE_ID, ItNetwork.TYPE_ID);
-        Collection<IndexThread> indexThreads = createIndexThreadsByUuids(allUuids,
-                logIndexedElementDetails);
-
-        for (IndexThread indexThread : indexThreads) {
-            completionService.submit(indexThread);
+        int numberOfElements = 0;
+        ElementUuidCursor cursor = new ElementUuidCursor(getElementDao(), UUID_PAGE_SIZE);
+        while (cursor.hasNext()) {
+            List<String> uuids = cursor.next();
+            numberOfElements += uuids.size();
+            // Blocks if too many index threads are unfinished
+            for (List<String> chunk : Lists.partition(uuids, INDEXING_CHUNK_SIZE)) {
+                completionService.submit(
+                        createIndexThread(chunk, logIndexedElementDetails, bulkIndexer));
+            }
+            handleFinishedIndexThreads(completionService, logIndexedElementDetails);
         }
 
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("All threads created ans submitted to completion service.");
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Elements: " + numberOfElements
+                    + ", all threads created and submitted to completion service.");
         }
 
         completionService.shutDown();
         return completionService;
     }
 
-    @SuppressWarnings("unchecked")
-    private List<String> geAllCnATreeElementUUIDS() {
-        List<String> allUuids;
-
-        ServerInitializer.inheritVeriniceContextState();
-        allUuids = getElementDao().findByQuery(HQL_LOAD_UUIDS, null);
+    private static int getMaxUnfinishedIndexThreads() {
+        return Runtime.getRuntime().availableProcessors() * UNFINISHED_INDEX_THREADS_PER_PROCESSOR;
+    }
 
-        return allUuids;
+    /**
+     * Removes the results of all finished index threads from the completion
+     * service without waiting.
+     */
+    private static void handleFinishedIndexThreads(
+            ClosableCompletionService<List<IndexedElementDetails>> completionService,
+            boolean logIndexedElementDetails) {
+        Future<List<IndexedElementDetails>> future = completionService.poll();
+        while (future != null) {
+            handleFinishedIndexThread(future, logIndexedElementDetails);
+            future = completionService.poll();
+        }
     }
 
     private void logNonBlockingIndexingTermination(
             final ClosableCompletionService<List<IndexedElementDetails>> completionService,
-            boolean logIndexedElementDetails) {
-        if (LOG.isInfoEnabled()) {
+            boolean logIndexedElementDetails, final BulkIndexer bulkIndexer) {
+        if (LOG.isInfoEnabled() || bulkIndexer != null) {
             ExecutorService executor = Executors.newFixedThreadPool(1);
             executor.execute(new Runnable() {
                 @Override
                 public void run() {
                     ServerInitializer.inheritVeriniceContextState();
                     awaitIndexingTermination(completionService, logIndexedElementDetails);
+                    closeBulkIndexer(bulkIndexer);
                     printIndexingTimeConsumption();
                 }
             });
@@ -157,6 +191,25 @@ public class Indexer {
         }
     }
 
+    private BulkIndexer openBulkIndexer() {
+        if (!isBulkIndexing()) {
+            return null;
+        }
+        BulkIndexer bulkIndexer = (BulkIndexer) bulkIndexerFactory.getObject();
+        bulkIndexer.open();
+        return bulkIndexer;
+    }
+
+    private static void closeBulkIndexer(BulkIndexer bulkIndexer) {
+        if (bulkIndexer != null) {
+            try {
+                bulkIndexer.close();
+            } catch (Exception e) {
+                LOG.error("Error while finishing bulk indexing.", e);
+            }
+        }
+    }
+
     private void printIndexingTimeConsumption() {
         long end = System.currentTimeMillis();
         long ms = end - indexingStart;
@@ -190,12 +243,17 @@ public class Indexer {
 
         ServerInitializer.inheritVeriniceContextState();
         boolean logIndexedElementDetails = LOG.isDebugEnabled();
-        ClosableCompletionService<List<IndexedElementDetails>> completionService = doIndex(
-                logIndexedElementDetails);
-
-        // This call causes the blocking since it takes every completed task
-        // from the executor queue.
-        awaitIndexingTermination(completionService, logIndexedElementDetails);
+        BulkIndexer bulkIndexer = openBulkIndexer();
+        try {
+            ClosableCompletionService<List<IndexedElementDetails>> completionService = doIndex(
+                    logIndexedElementDetails, bulkIndexer);
+
+            // This call causes the blocking since it takes every completed
+            // task from the executor queue.
+            awaitIndexingTermination(completionService, logIndexedElementDetails);
+        } finally {
+            closeBulkIndexer(bulkIndexer);
+        }
 
         printIndexingTimeConsumption();
     }
@@ -207,47 +265,62 @@ public class Indexer {
             try {
                 Future<List<IndexedElementDetails>> future = completionService.poll(500l,
                         TimeUnit.MILLISECONDS);
-                if (logIndexedElementDetails && future != null) {
-                    // if the last element was removed from the queue in the
-                    // previous iteration and the current iteration started
-                    // before the executor could properly terminate, the queue
-                    // will be empty. We should be able to exit from the loop
-                    // after the current iteration.
-                    List<IndexedElementDetails> elements = future.get();
-                    for (IndexedElementDetails details : elements) {
-                        LOG.debug("element was indexed " + details.getTitle() + " - uuid "
-                                + details.getUuid());
-                    }
+                // if the last element was removed from the queue in the
+                // previous iteration and the current iteration started
+                // before the executor could properly terminate, the queue
+                // will be empty. We should be able to exit from the loop
+                // after the current iteration.
+                if (future != null) {
+                    handleFinishedIndexThread(future, logIndexedElementDetails);
                 }
-            } catch (Exception e) {
-                LOG.error("Indexing failed for an element", e);
+            } catch (InterruptedException e) {
+                LOG.error("Interrupted while waiting for indexing termination", e);
+                Thread.currentThread().interrupt();
+                return;
             }
         }
     }
 
-    private Collection<IndexThread> createIndexThreadsByUuids(List<String> allUuids,
+    private static void handleFinishedIndexThread(Future<List<IndexedElementDetails>> future,
             boolean logIndexedElementDetails) {
-        List<List<String>> chunks = Lists.partition(allUuids, INDEXING_CHUNK_SIZE);
-        Collection<IndexThread> indexThreads = new ArrayList<>(chunks.size());
-        for (List<String> chunk : chunks) {
-            IndexThread indexThread = (IndexThread) indexThreadFactory.getObject();
-            indexThread.setUuids(chunk);
-            indexThread.setReturnIndexedElementDetails(logIndexedElementDetails);
-            indexThreads.add(indexThread);
+        try {
+            List<IndexedElementDetails> elements = future.get();
+            if (logIndexedElementDetails) {
+                for (IndexedElementDetails details : elements) {
+                    LOG.debug("element was indexed " + details.getTitle() + " - uuid "
+                            + details.getUuid());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.error("Indexing failed for an element", e);
         }
-        return indexThreads;
+    }
+
+    private IndexThread createIndexThread(List<String> uuids, boolean logIndexedElementDetails,
+            BulkIndexer bulkIndexer) {
+        IndexThread indexThread = (IndexThread) indexThreadFactory.getObject();
+        indexThread.setUuids(uuids);
+        indexThread.setReturnIndexedElementDetails(logIndexedElementDetails);
+        indexThread.setBulkIndexer(bulkIndexer);
+        return indexThread;
     }
 
     private final class DummyAuthenticationRunnableExtension extends DummyAuthenticationRunnable {
         @Override
         public void doRun() {
+            BulkIndexer bulkIndexer = null;
             try {
                 boolean logIndexedElementDetails = LOG.isDebugEnabled();
+                bulkIndexer = openBulkIndexer();
                 ClosableCompletionService<List<IndexedElementDetails>> completionService = doIndex(
-                        logIndexedElementDetails);
-                logNonBlockingIndexingTermination(completionService, logIndexedElementDetails);
+                        logIndexedElementDetails, bulkIndexer);
+                logNonBlockingIndexingTermination(completionService, logIndexedElementDetails,
+                        bulkIndexer);
             } catch (Exception e) {
                 LOG.error("Error while indexing elements.", e);
+                closeBulkIndexer(bulkIndexer);
             }
         }
     }
@@ -260,6 +333,22 @@ public class Indexer {
         this.indexThreadFactory = indexThreadFactory;
     }
 
+    public ObjectFactory getBulkIndexerFactory() {
+        return bulkIndexerFactory;
+    }
+
+    public void setBulkIndexerFactory(ObjectFactory bulkIndexerFactory) {
+        this.bulkIndexerFactory = bulkIndexerFactory;
+    }
+
+    public boolean isBulkIndexing() {
+        return bulkIndexing;
+    }
+
+    public void setBulkIndexing(boolean bulkIndexing) {
+        this.bulkIndexing = bulkIndexing;
+    }
+
     public IBaseDao<CnATreeElement, Integer> getElementDao() {
         return elementDao;
     }
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.search;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.core.KeywordTokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.cz.CzechStemFilter;
+import org.apache.lucene.analysis.de.GermanLightStemFilter;
+import org.apache.lucene.analysis.de.GermanNormalizationFilter;
+import org.apache.lucene.analysis.en.KStemFilter;
+import org.apache.lucene.analysis.it.ItalianLightStemFilter;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.analysis.util.ElisionFilter;
+import org.apache.lucene.util.Version;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+/**
+ * Creates the Lucene analyzers for {@link LuceneElementDao} from the same
+ * configuration files that are used for the Elasticsearch index: the
+ * analyzers are built from analysis_&lt;language&gt;.json and assigned to the
+ * fields as defined in mapping.json.
+ *
+ * Only the tokenizers and token filters used in these files are supported.
+ */
+final class LuceneAnalyzerFactory {
+
+    private static final Logger LOG = Logger.getLogger(LuceneAnalyzerFactory.class);
+
+    static final Version LUCENE_VERSION = Version.LUCENE_4_10_3;
+
+    private static final String DEFAULT_ANALYZER = "verinice_analyzer";
+    private static final String PREFIX_ANALYZER = "analysis.analyzer.";
+    private static final String PREFIX_FILTER = "analysis.filter.";
+    private static final String TOKENIZER_KEYWORD = "keyword";
+    private static final String TOKENIZER_STANDARD = "standard";
+
+    private LuceneAnalyzerFactory() {
+        super();
+    }
+
+    /**
+     * @return An analyzer which analyzes each field of the mapping with its
+     *         configured analyzer and all other fields with the default
+     *         analyzer of the mapping
+     */
+    static Analyzer createAnalyzer() {
+        Settings settings = ImmutableSettings.settingsBuilder()
+                .loadFromClasspath(ElasticsearchClientFactory.getAnalysisConfigurationPath())
+                .build();
+        Map<String, Object> mapping = getTypeMapping();
+        Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
+        addFieldAnalyzers(settings, getMap(mapping, "properties"), "", fieldAnalyzers);
+        String defaultAnalyzer = (String) mapping.get("index_analyzer");
+        return new PerFieldAnalyzerWrapper(
+                createAnalyzer(settings, defaultAnalyzer != null ? defaultAnalyzer : DEFAULT_ANALYZER),
+                fieldAnalyzers);
+    }
+
+    private static Map<String, Object> getTypeMapping() {
+        Map<String, Object> mapping = XContentHelper
+                .convertToMap(ElasticsearchClientFactory.getMapping().getBytes(StandardCharsets.UTF_8), false).v2();
+        return getMap(mapping, ElementDao.TYPE_NAME);
+    }
+
+    private static void addFieldAnalyzers(Settings settings, Map<String, Object> properties,
+            String prefix, Map<String, Analyzer> fieldAnalyzers) {
+        for (Entry<String, Object> entry : properties.entrySet()) {
+            String field = prefix + entry.getKey();
+            @SuppressWarnings("unchecked")
+            Map<String, Object> fieldMapping = (Map<String, Object>) entry.getValue();
+            if (fieldMapping.containsKey("properties")) {
+                addFieldAnalyzers(settings, getMap(fieldMapping, "properties"), field + ".",
+                        fieldAnalyzers);
+            } else if ("not_analyzed".equals(fieldMapping.get("index"))
+                    || !"string".equals(fieldMapping.get("type"))) {
+                fieldAnalyzers.put(field, new KeywordAnalyzer());
+            } else if (fieldMapping.containsKey("analyzer")) {
+                fieldAnalyzers.put(field,
+                        createAnalyzer(settings, (String) fieldMapping.get("analyzer")));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getMap(Map<String, Object> map, String key) {
+        return (Map<String, Object>) map.get(key);
+    }
+
+    private static Analyzer createAnalyzer(Settings settings, String name) {
+        final String tokenizer = settings.get(PREFIX_ANALYZER + name + ".tokenizer",
+                TOKENIZER_STANDARD);
+        final String[] filters = settings.getAsArray(PREFIX_ANALYZER + name + ".filter");
+        final Settings filterSettings = settings.getByPrefix(PREFIX_FILTER);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Analyzer " + name + ": tokenizer " + tokenizer + ", filters "
+                    + Arrays.toString(filters));
+        }
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName, Reader reader) {
+                Tokenizer source = createTokenizer(tokenizer, reader);
+                TokenStream stream = source;
+                for (String filter : filters) {
+                    stream = createFilter(filter, filterSettings.getByPrefix(filter + "."), stream);
+                }
+                return new TokenStreamComponents(source, stream);
+            }
+        };
+    }
+
+    private static Tokenizer createTokenizer(String tokenizer, Reader reader) {
+        if (TOKENIZER_KEYWORD.equals(tokenizer)) {
+            return new KeywordTokenizer(reader);
+        }
+        if (!TOKENIZER_STANDARD.equals(tokenizer)) {
+            LOG.warn("Unsupported tokenizer: " + tokenizer + ", using standard tokenizer.");
+        }
+        return new StandardTokenizer(LUCENE_VERSION, reader);
+    }
+
+    private static TokenStream createFilter(String name, Settings settings, TokenStream stream) {
+        String type = settings.get("type", name);
+        if ("lowercase".equals(type)) {
+            return new LowerCaseFilter(LUCENE_VERSION, stream);
+        }
+        if ("german_normalization".equals(type)) {
+            return new GermanNormalizationFilter(stream);
+        }
+        if ("elision".equals(type)) {
+            return new ElisionFilter(stream, new CharArraySet(LUCENE_VERSION,
+                    Arrays.asList(settings.getAsArray("articles")), true));
+        }
+        if ("stemmer".equals(type)) {
+            return createStemmer(settings.get("language"), stream);
+        }
+        LOG.warn("Unsupported token filter: " + name + ", filter is ignored.");
+        return stream;
+    }
+
+    private static TokenStream createStemmer(String language, TokenStream stream) {
+        if ("light_german".equals(language)) {
+            return new GermanLightStemFilter(stream);
+        }
+        if ("light_english".equals(language)) {
+            return new KStemFilter(stream);
+        }
+        if ("czech".equals(language)) {
+            return new CzechStemFilter(stream);
+        }
+        if ("light_italian".equals(language)) {
+            return new ItalianLightStemFilter(stream);
+        }
+        LOG.warn("Unsupported stemmer language: " + language + ", stemmer is ignored.");
+        return stream;
+    }
+
+}
@@ -0,0 +1,577 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.StringText;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.index.query.MatchQueryBuilder.Operator;
+import org.elasticsearch.search.highlight.HighlightField;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+
+import sernet.hui.common.connect.EntityType;
+import sernet.hui.common.connect.HUITypeFactory;
+import sernet.verinice.interfaces.IAuthService;
+import sernet.verinice.interfaces.IConfigurationService;
+import sernet.verinice.interfaces.IDirectoryCreator;
+import sernet.verinice.interfaces.search.ISearchService;
+import sernet.verinice.model.search.Occurence;
+import sernet.verinice.model.search.VeriniceQuery;
+
+/**
+ * Search DAO which stores the documents in a local Lucene index instead of
+ * an Elasticsearch node. It is used by the standalone client to start without
+ * an embedded Elasticsearch node.
+ *
+ * The documents are analyzed like in the Elasticsearch index, see
+ * {@link LuceneAnalyzerFactory}. Updates and deletions are visible after the
+ * near real time reader is refreshed, which happens immediately after
+ * {@link #update(String, String)} and {@link #delete(String)} and every
+ * {@link #getRefreshIntervalMs()} milliseconds otherwise. Changes are
+ * committed to disk every {@link #getCommitIntervalMs()} milliseconds and when
+ * the DAO is destroyed.
+ *
+ * The search results are returned as Elasticsearch responses, so that
+ * {@link sernet.verinice.service.SearchService} can process them like the
+ * results of {@link ElementDao}.
+ */
+public class LuceneElementDao implements IElementSearchDao {
+
+    private static final Logger LOG = Logger.getLogger(LuceneElementDao.class);
+
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_SOURCE = "_source";
+    private static final String FIELD_ALL = "_all";
+    private static final String FIELD_PERMISSION_NAME = ISearchService.ES_FIELD_PERMISSION_ROLES
+            + "." + ISearchService.ES_FIELD_PERMISSION_NAME;
+
+    private static final int DEFAULT_SIZE = 10;
+    private static final int FIND_PROPERTY_SIZE = 20;
+    private static final int HIGHLIGHT_FRAGMENTS = 5;
+
+    private IDirectoryCreator directoryCreator;
+    private IConfigurationService configurationService;
+    private IAuthService authService;
+
+    private long refreshIntervalMs = 1000;
+    private long commitIntervalMs = 30000;
+
+    private Analyzer analyzer;
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ScheduledExecutorService maintenanceExecutor;
+
+    public void init() throws IOException {
+        long startTime = System.currentTimeMillis();
+        analyzer = LuceneAnalyzerFactory.createAnalyzer();
+        directory = FSDirectory.open(new File(getDirectoryCreator().create()));
+        IndexWriterConfig config = new IndexWriterConfig(LuceneAnalyzerFactory.LUCENE_VERSION,
+                analyzer);
+        config.setOpenMode(OpenMode.CREATE_OR_APPEND);
+        writer = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(writer, true, null);
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lucene-index-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenanceExecutor.scheduleWithFixedDelay(this::refresh, getRefreshIntervalMs(),
+                getRefreshIntervalMs(), TimeUnit.MILLISECONDS);
+        maintenanceExecutor.scheduleWithFixedDelay(this::commit, getCommitIntervalMs(),
+                getCommitIntervalMs(), TimeUnit.MILLISECONDS);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Lucene index opened in " + (System.currentTimeMillis() - startTime)
+                    + " ms, documents: " + writer.numDocs());
+        }
+    }
+
+    public void destroy() throws IOException {
+        if (maintenanceExecutor != null) {
+            maintenanceExecutor.shutdownNow();
+        }
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+        } finally {
+            if (directory != null) {
+                directory.close();
+            }
+        }
+    }
+
+    private void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Error while refreshing the Lucene index reader", e);
+        }
+    }
+
+    private void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Error while committing the Lucene index", e);
+        }
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#updateOrIndex(java.lang.String,
+     * java.lang.String)
+     */
+    @Override
+    public ActionResponse updateOrIndex(String id, String json) {
+        return index(id, json);
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#update(java.lang.String,
+     * java.lang.String)
+     */
+    @Override
+    public ActionResponse update(String id, String json) {
+        IndexResponse response = index(id, json);
+        refresh();
+        return response;
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#index(java.lang.String,
+     * java.lang.String)
+     */
+    @Override
+    public IndexResponse index(String id, String json) {
+        try {
+            writer.updateDocument(new Term(FIELD_ID, id), createDocument(id, json));
+        } catch (IOException e) {
+            LOG.error("Error while indexing", e);
+            throw new RuntimeException(e);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Index updated, uuid: " + id);
+        }
+        return new IndexResponse(getIndex(), getType(), id, 0, true);
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#delete(java.lang.String)
+     */
+    @Override
+    public DeleteResponse delete(String id) {
+        try {
+            writer.deleteDocuments(new Term(FIELD_ID, id));
+        } catch (IOException e) {
+            LOG.error("Error while removing from index", e);
+            throw new RuntimeException(e);
+        }
+        refresh();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Index removed, uuid: " + id);
+        }
+        return new DeleteResponse(getIndex(), getType(), id, 0, true);
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#clear()
+     */
+    @Override
+    public void clear() {
+        try {
+            writer.deleteAll();
+            writer.commit();
+        } catch (IOException e) {
+            LOG.error("Error while deleting index", e);
+            throw new RuntimeException(e);
+        }
+        refresh();
+    }
+
+    private Document createDocument(String id, String json) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_ID, id, Field.Store.YES));
+        document.add(new StoredField(FIELD_SOURCE, json));
+        Map<String, Object> source = XContentHelper
+                .convertToMap(json.getBytes(StandardCharsets.UTF_8), false).v2();
+        addFields(document, "", source);
+        return document;
+    }
+
+    private static void addFields(Document document, String prefix, Object value) {
+        if (value instanceof Map) {
+            for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                addFields(document, prefix + entry.getKey() + ".", entry.getValue());
+            }
+        } else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                addFields(document, prefix, element);
+            }
+        } else if (value != null) {
+            String field = prefix.substring(0, prefix.length() - 1);
+            document.add(new TextField(field, value.toString(), Field.Store.NO));
+            document.add(new TextField(FIELD_ALL, value.toString(), Field.Store.NO));
+        }
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#findAll()
+     */
+    @Override
+    public SearchResponse findAll() {
+        return search(new MatchAllDocsQuery(), DEFAULT_SIZE, Collections.<String> emptySet());
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#find(java.lang.String)
+     */
+    @Override
+    public SearchResponse find(String title) {
+        return find(title, Operator.OR);
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#find(java.lang.String,
+     * org.elasticsearch.index.query.MatchQueryBuilder.Operator)
+     */
+    @Override
+    public SearchResponse find(String title, Operator operator) {
+        return search(createMatchQuery(FIELD_ALL, title, operator), DEFAULT_SIZE,
+                Collections.<String> emptySet());
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#findByPhrase(java.lang.String)
+     */
+    @Override
+    public SearchResponse findByPhrase(String title) {
+        return search(new QueryBuilder(analyzer).createPhraseQuery(FIELD_ALL, title),
+                DEFAULT_SIZE, getAllPropertyTypeIds());
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#findByPhrase(java.lang.String,
+     * java.lang.String)
+     */
+    @Override
+    public SearchResponse findByPhrase(String phrase, String entityType) {
+        Query phraseQuery = new QueryBuilder(analyzer).createPhraseQuery(FIELD_ALL, phrase);
+        if (phraseQuery == null || entityType == null) {
+            return search(phraseQuery, DEFAULT_SIZE, getAllPropertyTypeIds());
+        }
+        BooleanQuery query = new BooleanQuery();
+        query.add(phraseQuery, Occur.MUST);
+        query.add(new TermQuery(new Term(ISearchService.ES_FIELD_ELEMENT_TYPE, entityType)),
+                Occur.MUST);
+        return search(query, DEFAULT_SIZE, getAllPropertyTypeIds());
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#find(java.lang.String,
+     * java.lang.String)
+     */
+    @Override
+    public SearchResponse find(String property, String title) {
+        return find(property, title, Operator.OR);
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#find(java.lang.String,
+     * java.lang.String, org.elasticsearch.index.query.MatchQueryBuilder.Operator)
+     */
+    @Override
+    public SearchResponse find(String property, String title, Operator operator) {
+        Collection<String> highlightedFields = FIELD_ALL.equals(property)
+                ? getAllPropertyTypeIds()
+                : Collections.singleton(property);
+        return search(createMatchQuery(property, title, operator), FIND_PROPERTY_SIZE,
+                highlightedFields);
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#find(java.lang.String,
+     * sernet.verinice.model.search.VeriniceQuery)
+     */
+    @Override
+    public MultiSearchResponse find(String typeId, VeriniceQuery query) {
+        String username = getAuthService().getUsername();
+        Query filter = createFilterQuery(typeId, query, username);
+        int size = query.getLimit() > 0 ? query.getLimit() : DEFAULT_SIZE;
+        Set<String> fields = new LinkedHashSet<>();
+        Collections.addAll(fields,
+                HUITypeFactory.getInstance().getEntityType(typeId).getAllPropertyTypeIds());
+        fields.addAll(BaseDao.EXTRA_FIELDS);
+        String value = query.getQuery();
+        List<MultiSearchResponse.Item> items = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            Query fieldQuery = (value != null && !value.isEmpty())
+                    ? new QueryBuilder(analyzer).createPhraseQuery(field, value)
+                    : new MatchAllDocsQuery();
+            SearchResponse response = search(
+                    fieldQuery != null ? new FilteredQuery(fieldQuery, new QueryWrapperFilter(filter))
+                            : null,
+                    size, Collections.singleton(field));
+            items.add(new MultiSearchResponse.Item(response, null));
+        }
+        return new MultiSearchResponse(items.toArray(new MultiSearchResponse.Item[items.size()]));
+    }
+
+    private Query createFilterQuery(String typeId, VeriniceQuery query, String username) {
+        BooleanQuery filter = new BooleanQuery();
+        filter.add(new TermQuery(new Term(ISearchService.ES_FIELD_ELEMENT_TYPE, typeId)),
+                Occur.MUST);
+        if (BaseDao.isPermissionHandlingNeeded(getAuthService())) {
+            BooleanQuery permissionFilter = new BooleanQuery();
+            for (String role : BaseDao.getRoleString(getConfigurationService(), username)) {
+                permissionFilter.add(new TermQuery(new Term(FIELD_PERMISSION_NAME, role)),
+                        Occur.SHOULD);
+            }
+            filter.add(permissionFilter, Occur.MUST);
+            if (query.isScopeOnly()) {
+                filter.add(createScopeIdQuery(getConfigurationService().getScopeId(username)),
+                        Occur.MUST);
+            }
+        }
+        if (query.getScopeId() != -1) {
+            filter.add(createScopeIdQuery(query.getScopeId()), Occur.MUST);
+        }
+        return filter;
+    }
+
+    private static Query createScopeIdQuery(Integer scopeId) {
+        return new TermQuery(new Term(ISearchService.ES_FIELD_SCOPE_ID, String.valueOf(scopeId)));
+    }
+
+    private Query createMatchQuery(String field, String text, Operator operator) {
+        return new QueryBuilder(analyzer).createBooleanQuery(field, text,
+                operator == Operator.AND ? Occur.MUST : Occur.SHOULD);
+    }
+
+    private static Collection<String> getAllPropertyTypeIds() {
+        Set<String> propertyTypeIds = new LinkedHashSet<>();
+        for (EntityType type : HUITypeFactory.getInstance().getAllEntityTypes()) {
+            Collections.addAll(propertyTypeIds, type.getAllPropertyTypeIds());
+        }
+        return propertyTypeIds;
+    }
+
+    /**
+     * Executes a query and returns the result as Elasticsearch response.
+     *
+     * @param query
+     *            The query, null if the analyzed query text contains no terms
+     * @param size
+     *            The maximum number of hits
+     * @param highlightedFields
+     *            The fields to highlight the query terms in
+     */
+    private SearchResponse search(Query query, int size, Collection<String> highlightedFields) {
+        long startTime = System.currentTimeMillis();
+        InternalSearchHits hits;
+        if (query == null) {
+            hits = InternalSearchHits.empty();
+        } else {
+            IndexSearcher searcher = null;
+            try {
+                searcher = searcherManager.acquire();
+                hits = createHits(searcher, query, searcher.search(query, size),
+                        highlightedFields);
+            } catch (IOException e) {
+                LOG.error("Error while searching", e);
+                throw new RuntimeException(e);
+            } finally {
+                release(searcher);
+            }
+        }
+        InternalSearchResponse internalResponse = new InternalSearchResponse(hits, null, null,
+                null, false, null);
+        return new SearchResponse(internalResponse, null, 1, 1,
+                System.currentTimeMillis() - startTime, ShardSearchFailure.EMPTY_ARRAY);
+    }
+
+    private InternalSearchHits createHits(IndexSearcher searcher, Query query, TopDocs topDocs,
+            Collection<String> highlightedFields) throws IOException {
+        Highlighter highlighter = new Highlighter(
+                new SimpleHTMLFormatter(Occurence.HTML_OPEN_TAG, Occurence.HTML_CLOSING_TAG),
+                new QueryScorer(query));
+        InternalSearchHit[] hits = new InternalSearchHit[topDocs.scoreDocs.length];
+        for (int i = 0; i < hits.length; i++) {
+            ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+            Document document = searcher.doc(scoreDoc.doc);
+            String json = document.get(FIELD_SOURCE);
+            InternalSearchHit hit = new InternalSearchHit(scoreDoc.doc, document.get(FIELD_ID),
+                    new StringText(getType()), null);
+            hit.sourceRef(new BytesArray(json));
+            hit.score(scoreDoc.score);
+            hit.highlightFields(highlight(highlighter, hit.getSource(), highlightedFields));
+            hits[i] = hit;
+        }
+        return new InternalSearchHits(hits, topDocs.totalHits, topDocs.getMaxScore());
+    }
+
+    private Map<String, HighlightField> highlight(Highlighter highlighter,
+            Map<String, Object> source, Collection<String> highlightedFields) throws IOException {
+        Map<String, HighlightField> highlightFields = new HashMap<>();
+        for (String field : highlightedFields) {
+            Object value = source.get(field);
+            if (value == null) {
+                continue;
+            }
+            try {
+                String[] fragments = highlighter.getBestFragments(analyzer, field,
+                        value.toString(), HIGHLIGHT_FRAGMENTS);
+                if (fragments.length > 0) {
+                    Text[] texts = new Text[fragments.length];
+                    for (int i = 0; i < fragments.length; i++) {
+                        texts[i] = new StringText(fragments[i]);
+                    }
+                    highlightFields.put(field, new HighlightField(field, texts));
+                }
+            } catch (InvalidTokenOffsetsException e) {
+                LOG.warn("Error while highlighting field " + field, e);
+            }
+        }
+        return highlightFields;
+    }
+
+    private void release(IndexSearcher searcher) {
+        if (searcher != null) {
+            try {
+                searcherManager.release(searcher);
+            } catch (IOException e) {
+                LOG.error("Error while releasing index searcher", e);
+            }
+        }
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#getIndex()
+     */
+    @Override
+    public String getIndex() {
+        return INDEX_NAME;
+    }
+
+    /*
+     * @see sernet.verinice.search.ISearchDao#getType()
+     */
+    @Override
+    public String getType() {
+        return ElementDao.TYPE_NAME;
+    }
+
+    public IDirectoryCreator getDirectoryCreator() {
+        return directoryCreator;
+    }
+
+    public void setDirectoryCreator(IDirectoryCreator directoryCreator) {
+        this.directoryCreator = directoryCreator;
+    }
+
+    public IConfigurationService getConfigurationService() {
+        return configurationService;
+    }
+
+    public void setConfigurationService(IConfigurationService configurationService) {
+        this.configurationService = configurationService;
+    }
+
+    public IAuthService getAuthService() {
+        return authService;
+    }
+
+    public void setAuthService(IAuthService authService) {
+        this.authService = authService;
+    }
+
+    public long getRefreshIntervalMs() {
+        return refreshIntervalMs;
+    }
+
+    public void setRefreshIntervalMs(long refreshIntervalMs) {
+        this.refreshIntervalMs = refreshIntervalMs;
+    }
+
+    public long getCommitIntervalMs() {
+        return commitIntervalMs;
+    }
+
+    public void setCommitIntervalMs(long commitIntervalMs) {
+        this.commitIntervalMs = commitIntervalMs;
+    }
+
+}
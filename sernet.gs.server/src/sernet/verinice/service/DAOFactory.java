@@ -34,6 +34,7 @@ import sernet.verinice.interfaces.IAttachmentDao;
 import sernet.verinice.interfaces.IBaseDao;
 import sernet.verinice.interfaces.IDAOFactory;
 import sernet.verinice.interfaces.IElementEntityDao;
+import sernet.verinice.interfaces.IElementHierarchyDao;
 import sernet.verinice.interfaces.IFinishedRiskAnalysisListsDao;
 import sernet.verinice.model.bp.elements.Application;
 import sernet.verinice.model.bp.elements.BpDocument;
@@ -168,6 +169,8 @@ public class DAOFactory implements IDAOFactory {
      */
     private IElementEntityDao elementEntityDao;
 
+    private IElementHierarchyDao elementHierarchyDao;
+
     private IAttachmentDao attachmentDao;
 
     private IFinishedRiskAnalysisListsDao finishedRiskAnalysisListsDao;
@@ -881,6 +884,16 @@ public class DAOFactory implements IDAOFactory {
         this.elementEntityDao = elementEntityDao;
     }
 
+    @Override
+    public IElementHierarchyDao getElementHierarchyDao() {
+        return elementHierarchyDao;
+    }
+
+    @Override
+    public void setElementHierarchyDao(IElementHierarchyDao elementHierarchyDao) {
+        this.elementHierarchyDao = elementHierarchyDao;
+    }
+
     @Override
     public IAttachmentDao getAttachmentDao() {
         return attachmentDao;
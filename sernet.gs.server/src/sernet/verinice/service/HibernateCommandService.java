@@ -20,18 +20,25 @@ package sernet.verinice.service;
 
 import java.io.Serializable;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.security.AccessDeniedException;
 
 import sernet.hui.common.VeriniceContext;
+import sernet.verinice.graph.GraphSnapshotCache;
 import sernet.verinice.interfaces.ApplicationRoles;
 import sernet.verinice.interfaces.CommandException;
 import sernet.verinice.interfaces.ElementChange;
@@ -45,10 +52,13 @@ import sernet.verinice.interfaces.IConfigurationService;
 import sernet.verinice.interfaces.IGraphCommand;
 import sernet.verinice.interfaces.IHibernateCommandService;
 import sernet.verinice.interfaces.INoAccessControl;
+import sernet.verinice.interfaces.IRightsChangeListener;
 import sernet.verinice.interfaces.IRightsServerHandler;
+import sernet.verinice.interfaces.IRightsService;
 import sernet.verinice.interfaces.graph.IGraphService;
 import sernet.verinice.interfaces.ldap.ILdapCommand;
 import sernet.verinice.interfaces.ldap.ILdapService;
+import sernet.verinice.model.auth.Auth;
 import sernet.verinice.model.bsi.BSIModel;
 import sernet.verinice.model.common.ChangeLogEntry;
 import sernet.verinice.model.common.CnATreeElement;
@@ -59,14 +69,22 @@ import sernet.verinice.service.sync.VnaSchemaVersion;
  * Command service that executes commands using hibernate DAOs to access the
  * database.
  * 
+ * The roles, the admin flag and the scope of the user are resolved once at the
+ * outermost executeCommand call and reused by all nested commands, see
+ * {@link SecurityContext}. The context is discarded when the user data or the
+ * rights configuration changes.
+ * 
  * @author koderman[at]sernet[dot]de
  * @version $Rev$ $LastChangedDate$ $LastChangedBy$
  * 
  */
-public class HibernateCommandService implements ICommandService, IHibernateCommandService {
+public class HibernateCommandService implements ICommandService, IHibernateCommandService,
+        IRightsChangeListener, ApplicationContextAware {
 	
 	private static final Logger log = Logger.getLogger(HibernateCommandService.class);
 
+	private static final ThreadLocal<SecurityContext> securityContext = new ThreadLocal<>();
+
 	// injected by spring
 	private DAOFactory daoFactory;
 	
@@ -75,6 +93,8 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
 	private IAuthService authService;
 	
 	private IGraphService graphService;
+
+	private GraphSnapshotCache graphSnapshotCache;
 	
 	private ILdapService ldapService;
     
@@ -94,6 +114,17 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
 	
 	private Map<Class<? extends ICommand>,Set<String>> commandActionIds;
 	
+	private ApplicationContext appContext;
+	
+	private IRightsService rightsService;
+	
+	// incremented whenever user data or rights change, invalidates all security contexts
+	private final AtomicInteger securityGeneration = new AtomicInteger();
+	
+	private final AtomicLong securityContextHits = new AtomicLong();
+	
+	private final AtomicLong securityContextMisses = new AtomicLong();
+	
 
     /**
 	 * This method is encapsulated in a transaction by the Spring container.
@@ -119,8 +150,10 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
 		if (log.isDebugEnabled()) {
             log.debug("Service executing command: " + command.getClass().getSimpleName() + " / user: " + username); 
 		}
-		    
+		
+		SecurityContext context = null;
 		try {
+            context = enterSecurityContext(username);
             checkRightsForAction(command, username);
 		    
 			// inject service and database access:
@@ -149,8 +182,8 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
 			// When a command is being executed that should be subject to access
 			// control (this is the default) and the logged in user is non-
 			// privileged the filter is configured and activated.
-			if (authService.isPermissionHandlingNeeded() && !(command instanceof INoAccessControl) ) {
-			    configureFilter(getBsiModelDao());
+			if (context.isPermissionHandlingNeeded() && !(command instanceof INoAccessControl) ) {
+			    configureFilter(getBsiModelDao(), context);
 			} else {
 			    disableScopeFilter(getBsiModelDao());
 			}
@@ -179,10 +212,128 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
 			// TODO ak kein exception handler -> initialization must have gone wrong, abort application completely?
 			if (exceptionHandler != null)
 				exceptionHandler.handle(e);
+		} finally {
+		    if (context != null) {
+		        leaveSecurityContext();
+		    }
 		}
 		return command;
 	}
 
+    /**
+     * Executes the commands one after another. All commands run in the
+     * transaction of this call and share the security context which is
+     * resolved only once.
+     */
+    @Override
+    public <T extends ICommand> List<T> executeCommands(List<T> commands) throws CommandException {
+        if (!dbOpen) {
+            throw new CommandException("DB connection closed.");
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Service executing " + commands.size() + " commands");
+        }
+        List<T> executedCommands = new ArrayList<>(commands.size());
+        enterSecurityContext(getAuthService().getUsername());
+        try {
+            for (T command : commands) {
+                executedCommands.add(executeCommand(command));
+            }
+        } finally {
+            leaveSecurityContext();
+        }
+        return executedCommands;
+    }
+
+    /**
+     * Returns the security context of the current thread if it is still valid
+     * for the given user or creates a new one. The context is removed when
+     * the outermost command is finished, see {@link #leaveSecurityContext()}.
+     */
+    private SecurityContext enterSecurityContext(String username) {
+        SecurityContext context = securityContext.get();
+        if (context != null && context.isValid(username, securityGeneration.get())) {
+            securityContextHits.incrementAndGet();
+        } else {
+            securityContextMisses.incrementAndGet();
+            int depth = (context != null) ? context.depth : 0;
+            context = createSecurityContext(username);
+            context.depth = depth;
+            securityContext.set(context);
+        }
+        context.depth++;
+        return context;
+    }
+
+    private void leaveSecurityContext() {
+        SecurityContext context = securityContext.get();
+        if (context == null) {
+            return;
+        }
+        context.depth--;
+        if (context.depth <= 0) {
+            securityContext.remove();
+            if (log.isDebugEnabled()) {
+                log.debug("Security context hits: " + getSecurityContextHits() + ", misses: "
+                        + getSecurityContextMisses());
+            }
+        }
+    }
+
+    private SecurityContext createSecurityContext(String username) {
+        registerRightsChangeListener();
+        int generation = securityGeneration.get();
+        boolean permissionHandlingNeeded = authService.isPermissionHandlingNeeded();
+        if (!permissionHandlingNeeded) {
+            return new SecurityContext(username, generation, false, false, null, false, null);
+        }
+        boolean admin = hasAdminRole(authService.getRoles());
+        String[] roles = admin ? null : getConfigurationService().getRoles(username);
+        boolean scopeOnly = getConfigurationService().isScopeOnly(username);
+        Integer scopeId = scopeOnly ? getConfigurationService().getScopeId(username) : null;
+        return new SecurityContext(username, generation, true, admin, roles, scopeOnly, scopeId);
+    }
+
+    /**
+     * Returns the security context of the current thread or a new one if no
+     * command is running in this thread.
+     */
+    private SecurityContext getSecurityContext() {
+        String username = authService.getUsername();
+        SecurityContext context = securityContext.get();
+        if (context != null && context.isValid(username, securityGeneration.get())) {
+            securityContextHits.incrementAndGet();
+            return context;
+        }
+        securityContextMisses.incrementAndGet();
+        return createSecurityContext(username);
+    }
+
+    /**
+     * Registers this service as listener of the rights service. This is done
+     * lazily because the rights service is not fully configured when this
+     * service is created, see RightsServerHandler.
+     */
+    private void registerRightsChangeListener() {
+        if (rightsService != null || appContext == null) {
+            return;
+        }
+        synchronized (this) {
+            if (rightsService == null) {
+                try {
+                    rightsService = (IRightsService) appContext.getBean("rightsService");
+                    rightsService.addChangeListener(this);
+                } catch (BeansException e) {
+                    log.warn("Can not register as listener of the rights service.");
+                    if (log.isDebugEnabled()) {
+                        log.debug("stacktrace: ", e);
+                    }
+                    appContext = null;
+                }
+            }
+        }
+    }
+
     /**
      * Check if the given command is allowed to execute by the given user as
      * defined in the authorization configuration see {@link XmlRightsService}
@@ -211,14 +362,18 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
      */
     @Override
     public void configureFilter(IBaseDao dao) {
-        if(authService.isPermissionHandlingNeeded()) {
-            if(!hasAdminRole(authService.getRoles())) {
+        configureFilter(dao, getSecurityContext());
+    }
+
+    private void configureFilter(IBaseDao dao, SecurityContext context) {
+        if(context.isPermissionHandlingNeeded()) {
+            if(!context.isAdmin()) {
             	if(log.isDebugEnabled()) {
-            		log.debug("Enabling security access filter for user: " + authService.getUsername());
+            		log.debug("Enabling security access filter for user: " + context.getUsername());
             	}
-            	setAccessFilterEnabled(true,dao);
+            	enableAccessFilter(dao, context.getRoles());
             }
-            configureScopeFilter(dao);
+            configureScopeFilter(dao, context);
         }
     }
     
@@ -227,13 +382,14 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
      */
     @Override
     public void disableFilter(IBaseDao dao) {
-        setAccessFilterEnabled(false,dao);
         disableScopeFilter(dao);
     }
     
     private void log(IChangeLoggingCommand notifyCommand) {
 		List<ElementChange> elementChanges = notifyCommand.getChanges();
+		List<CnATreeElement> changedElements = new ArrayList<>(elementChanges.size());
 		for (ElementChange changedElement : elementChanges) {
+			changedElements.add(changedElement.getElement());
 			
 			// save reference to element, if it has not been deleted:
 			CnATreeElement referencedElement = null;
@@ -248,6 +404,9 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
 					changedElement.getTime());
 			log(logEntry, referencedElement);
 		}
+		if (graphSnapshotCache != null) {
+		    graphSnapshotCache.elementsChanged(changedElements);
+		}
 	}
 
 	/**
@@ -293,6 +452,19 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
         this.graphService = graphService;
     }
 
+    public GraphSnapshotCache getGraphSnapshotCache() {
+        return graphSnapshotCache;
+    }
+
+    /**
+     * @param graphSnapshotCache
+     *            Graphs in this cache are invalidated when elements are
+     *            changed or permissions change
+     */
+    public void setGraphSnapshotCache(GraphSnapshotCache graphSnapshotCache) {
+        this.graphSnapshotCache = graphSnapshotCache;
+    }
+
 
     public ILdapService getLdapService() {
 		return ldapService;
@@ -359,9 +531,9 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
     /**
      * 
      */
-    private void configureScopeFilter(IBaseDao dao) {
-        if(getConfigurationService().isScopeOnly(authService.getUsername())) {
-            final Integer userScopeId = getConfigurationService().getScopeId(authService.getUsername());
+    private void configureScopeFilter(IBaseDao dao, SecurityContext context) {
+        if(context.isScopeOnly()) {
+            final Integer userScopeId = context.getScopeId();
             dao.executeCallback(new HibernateCallback() {
                 @Override
                 public Object doInHibernate(Session session) throws HibernateException, SQLException {
@@ -374,19 +546,14 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
         }
     }
 	
-    private void setAccessFilterEnabled(boolean enable, IBaseDao dao) {
-        if (enable) {
-            final Object[] roles = getConfigurationService().getRoles(authService.getUsername());
-            dao.executeCallback(new HibernateCallback() {
-                @Override
-                public Object doInHibernate(Session session) throws HibernateException, SQLException {
-                    session.enableFilter("userAccessReadFilter").setParameterList("currentRoles", roles).setParameter("readAllowed", Boolean.TRUE);
-                    return null;
-                }
-            });
-        } else {
-            disableScopeFilter(dao);
-        }
+    private void enableAccessFilter(IBaseDao dao, final Object[] roles) {
+        dao.executeCallback(new HibernateCallback() {
+            @Override
+            public Object doInHibernate(Session session) throws HibernateException, SQLException {
+                session.enableFilter("userAccessReadFilter").setParameterList("currentRoles", roles).setParameter("readAllowed", Boolean.TRUE);
+                return null;
+            }
+        });
     }
 
 
@@ -415,7 +582,47 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
     public void discardUserData(){
 	    getConfigurationService().discardUserData();
 	    getRightsServerHandler().discardData();
+	    securityGeneration.incrementAndGet();
+	    clearGraphSnapshotCache();
 	}
+
+    /*
+     * @see
+     * sernet.verinice.interfaces.IRightsChangeListener#configurationChanged(
+     * sernet.verinice.model.auth.Auth)
+     */
+    @Override
+    public void configurationChanged(Auth auth) {
+        securityGeneration.incrementAndGet();
+        clearGraphSnapshotCache();
+    }
+
+    private void clearGraphSnapshotCache() {
+        if (graphSnapshotCache != null) {
+            graphSnapshotCache.clear();
+        }
+    }
+
+    /**
+     * @return the number of commands and filter configurations which reused
+     *         the security context of an enclosing command
+     */
+    public long getSecurityContextHits() {
+        return securityContextHits.get();
+    }
+
+    /**
+     * @return the number of commands and filter configurations which had to
+     *         resolve the roles and the scope of the user
+     */
+    public long getSecurityContextMisses() {
+        return securityContextMisses.get();
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.appContext = applicationContext;
+    }
 	
 	private IBaseDao<BSIModel, Serializable> getBsiModelDao() {
 	    if(dao==null) {
@@ -435,5 +642,61 @@ public class HibernateCommandService implements ICommandService, IHibernateComma
     public void setCommandActionIds(Map<Class<? extends ICommand>, Set<String>> commandActionIds) {
         this.commandActionIds = commandActionIds;
     }
+
+    /**
+     * Roles, admin flag and scope of a user resolved for a command and all
+     * nested commands executed in the same thread.
+     */
+    private static final class SecurityContext {
+
+        private final String username;
+        private final int generation;
+        private final boolean permissionHandlingNeeded;
+        private final boolean admin;
+        private final String[] roles;
+        private final boolean scopeOnly;
+        private final Integer scopeId;
+        private int depth;
+
+        SecurityContext(String username, int generation, boolean permissionHandlingNeeded,
+                boolean admin, String[] roles, boolean scopeOnly, Integer scopeId) {
+            this.username = username;
+            this.generation = generation;
+            this.permissionHandlingNeeded = permissionHandlingNeeded;
+            this.admin = admin;
+            this.roles = roles;
+            this.scopeOnly = scopeOnly;
+            this.scopeId = scopeId;
+        }
+
+        boolean isValid(String currentUsername, int currentGeneration) {
+            return generation == currentGeneration
+                    && (username == null ? currentUsername == null : username.equals(currentUsername));
+        }
+
+        String getUsername() {
+            return username;
+        }
+
+        boolean isPermissionHandlingNeeded() {
+            return permissionHandlingNeeded;
+        }
+
+        boolean isAdmin() {
+            return admin;
+        }
+
+        String[] getRoles() {
+            return roles;
+        }
+
+        boolean isScopeOnly() {
+            return scopeOnly;
+        }
+
+        Integer getScopeId() {
+            return scopeId;
+        }
+    }
 	
 }
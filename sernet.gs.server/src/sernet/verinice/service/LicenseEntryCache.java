@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import sernet.verinice.model.licensemanagement.LicenseManagementEntry;
+
+/**
+ * Cache of the decrypted values of the {@link LicenseManagementEntry}s read
+ * from the license files. Every decryption derives a key with many PBE
+ * iterations, so each value is decrypted only once per entry and the results
+ * are reused until the set of license files changes. A new instance must be
+ * created whenever the license files are read again.
+ * 
+ * Values are keyed by the encrypted license id of the entry, which is unique
+ * for every license file, and by the encrypted value or column name.
+ * 
+ * Lookups of entries by a value which was encrypted with the password of an
+ * entry, e.g. the content id of a restricted property, are cached as well.
+ */
+final class LicenseEntryCache {
+
+    private static final char SEPARATOR = '\u0000';
+
+    private final Map<String, Object> decryptedColumns = new ConcurrentHashMap<>();
+
+    private final Map<String, Optional<String>> decryptedValues = new ConcurrentHashMap<>();
+
+    private volatile Map<String, LicenseManagementEntry> entriesByLicenseId;
+
+    private volatile Map<String, Set<LicenseManagementEntry>> entriesByContentId;
+
+    private final Map<String, Set<LicenseManagementEntry>> entriesByEncryptedValue =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Returns the decrypted value of a column of an entry and decrypts it with
+     * the given supplier if it is not in the cache.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T getDecryptedColumn(LicenseManagementEntry entry, String propertyType,
+            Supplier<T> decryption) {
+        String key = entry.getLicenseID() + SEPARATOR + propertyType;
+        Object value = decryptedColumns.get(key);
+        if (value == null) {
+            value = decryption.get();
+            if (value != null) {
+                decryptedColumns.put(key, value);
+            }
+        }
+        return (T) value;
+    }
+
+    /**
+     * Returns an encrypted value decrypted with the password of an entry. The
+     * decryption function returns null if the value can not be decrypted with
+     * the password of the entry. Null is cached as well.
+     */
+    String getDecryptedValue(LicenseManagementEntry entry, String encryptedValue,
+            Function<String, String> decryption) {
+        String key = entry.getLicenseID() + SEPARATOR + encryptedValue;
+        return decryptedValues
+                .computeIfAbsent(key, k -> Optional.ofNullable(decryption.apply(encryptedValue)))
+                .orElse(null);
+    }
+
+    /**
+     * @return An unmodifiable map of all entries by their decrypted license id
+     */
+    Map<String, LicenseManagementEntry> getEntriesByLicenseId(Set<LicenseManagementEntry> entries,
+            Function<LicenseManagementEntry, String> licenseIdDecryption) {
+        Map<String, LicenseManagementEntry> result = entriesByLicenseId;
+        if (result == null) {
+            Map<String, LicenseManagementEntry> map = new HashMap<>();
+            for (LicenseManagementEntry entry : copy(entries)) {
+                map.put(licenseIdDecryption.apply(entry), entry);
+            }
+            result = Collections.unmodifiableMap(map);
+            entriesByLicenseId = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return An unmodifiable map of all entries by their decrypted content id
+     */
+    Map<String, Set<LicenseManagementEntry>> getEntriesByContentId(
+            Set<LicenseManagementEntry> entries,
+            Function<LicenseManagementEntry, String> contentIdDecryption) {
+        Map<String, Set<LicenseManagementEntry>> result = entriesByContentId;
+        if (result == null) {
+            Map<String, Set<LicenseManagementEntry>> map = new HashMap<>();
+            for (LicenseManagementEntry entry : copy(entries)) {
+                map.computeIfAbsent(contentIdDecryption.apply(entry), k -> new HashSet<>())
+                        .add(entry);
+            }
+            for (Map.Entry<String, Set<LicenseManagementEntry>> mapEntry : map.entrySet()) {
+                mapEntry.setValue(Collections.unmodifiableSet(mapEntry.getValue()));
+            }
+            result = Collections.unmodifiableMap(map);
+            entriesByContentId = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entries which match a value of the given column that was
+     * encrypted with the password of an entry. The lookup function finds the
+     * matching entries if they are not in the cache.
+     * 
+     * @return An unmodifiable set of the matching entries
+     */
+    Set<LicenseManagementEntry> getEntriesByEncryptedValue(String propertyType,
+            String encryptedValue, Function<String, Set<LicenseManagementEntry>> lookup) {
+        String key = propertyType + SEPARATOR + encryptedValue;
+        return entriesByEncryptedValue.computeIfAbsent(key,
+                k -> Collections.unmodifiableSet(lookup.apply(encryptedValue)));
+    }
+
+    private static Set<LicenseManagementEntry> copy(Set<LicenseManagementEntry> entries) {
+        synchronized (entries) {
+            return new HashSet<>(entries);
+        }
+    }
+}
@@ -32,9 +32,12 @@ import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.swing.text.html.HTMLWriter;
@@ -87,6 +90,8 @@ public class LicenseManagementServerModeService implements ILicenseManagementSer
 
     protected Set<LicenseManagementEntry> existingLicenses = null;
 
+    private volatile LicenseEntryCache licenseCache = new LicenseEntryCache();
+
     public void init() {
         try {
             watchVNLDirectory();
@@ -141,28 +146,20 @@ public class LicenseManagementServerModeService implements ILicenseManagementSer
      */
     private LicenseManagementEntry findEntryForLicenseId(String encryptedLicenseId, boolean decrypt)
             throws LicenseManagementException {
-        LicenseManagementEntry entryToUse = null;
+        if (decrypt) {
+            Map<String, LicenseManagementEntry> entriesByLicenseId = getLicenseEntriesByLicenseId();
+            Set<LicenseManagementEntry> entries = licenseCache.getEntriesByEncryptedValue(
+                    LicenseManagementEntry.COLUMN_LICENSEID, encryptedLicenseId,
+                    value -> findEntriesByEncryptedValue(
+                            toMultimap(entriesByLicenseId), value));
+            return entries.isEmpty() ? null : entries.iterator().next();
+        }
         for (LicenseManagementEntry entry : getExistingLicenses()) {
-            if (decrypt) {
-                String plainLicenseId = getCryptoService().decryptLicenseRestrictedProperty(
-                        getUserPasswordAsString(entry), encryptedLicenseId);
-                String plainEntryLicenseId = decrypt(entry,
-                        LicenseManagementEntry.COLUMN_LICENSEID);
-                if (plainLicenseId.equals(plainEntryLicenseId)) {
-                    entryToUse = entry;
-                }
-
-            } else {
-                if (entry.getLicenseID().equals(encryptedLicenseId)) {
-                    entryToUse = entry;
-                }
-            }
-
-            if (entryToUse != null) {
-                break;
+            if (entry.getLicenseID().equals(encryptedLicenseId)) {
+                return entry;
             }
         }
-        return entryToUse;
+        return null;
     }
 
     @Override
@@ -260,11 +257,10 @@ public class LicenseManagementServerModeService implements ILicenseManagementSer
 
     /**
      * 
-     * Iterates over all {@link LicenseManagementEntry} and decrypts their
-     * contentId. Tries to decrypt the given @param encryptedContentId with the
-     * password of the {@link LicenseManagementEntry} and after that compares
-     * both contentIds. If they are equal, the entry will be added to a set that
-     * gets returned after the iteration has finished
+     * Returns the {@link LicenseManagementEntry}s whose decrypted contentId
+     * equals the given @param encryptedContentId decrypted with the password
+     * of the entry. The entries are looked up in the license cache, the
+     * contentId is decrypted with the passwords of all entries only once.
      * 
      * @param encryptedContentId
      * @param uniqueEntryCollection
@@ -274,88 +270,100 @@ public class LicenseManagementServerModeService implements ILicenseManagementSer
     private Set<LicenseManagementEntry> getLicenseEntriesViaDecryptedContentIds(
             String encryptedContentId, Set<LicenseManagementEntry> uniqueEntryCollection)
             throws LicenseManagementException {
-        for (LicenseManagementEntry entry : getExistingLicenses()) {
-            try {
-                String plainContentId = getCryptoService().decryptLicenseRestrictedProperty(
-                        getUserPasswordAsString(entry), encryptedContentId);
-                String plainEntryContentId = decrypt(entry,
-                        LicenseManagementEntry.COLUMN_CONTENTID);
-                if (plainContentId.equals(plainEntryContentId)) {
-                    uniqueEntryCollection.add(entry);
+        Map<String, Set<LicenseManagementEntry>> entriesByContentId =
+                getLicenseEntriesByContentId();
+        uniqueEntryCollection.addAll(licenseCache.getEntriesByEncryptedValue(
+                LicenseManagementEntry.COLUMN_CONTENTID, encryptedContentId,
+                value -> findEntriesByEncryptedValue(entriesByContentId, value)));
+        return uniqueEntryCollection;
+    }
+
+    /**
+     * Decrypts the value with the password of every entry and returns the
+     * entries whose decrypted column value, the key of the map, equals the
+     * decrypted value.
+     */
+    private Set<LicenseManagementEntry> findEntriesByEncryptedValue(
+            Map<String, ? extends Collection<LicenseManagementEntry>> entriesByPlainValue,
+            String encryptedValue) {
+        Set<LicenseManagementEntry> entries = new HashSet<>();
+        for (Map.Entry<String, ? extends Collection<LicenseManagementEntry>> mapEntry :
+                entriesByPlainValue.entrySet()) {
+            for (LicenseManagementEntry entry : mapEntry.getValue()) {
+                // this is try & error, so fails are ok here
+                String plainValue = decryptWithEntryPassword(entry, encryptedValue);
+                if (plainValue != null && plainValue.equals(mapEntry.getKey())) {
+                    entries.add(entry);
                 }
-            } catch (EncryptionException e) {
-                log.info("Could not decrypt correctly for value:\t" + encryptedContentId
-                        + "with entry (licenseId):\t" + entry.getLicenseID(), e);
-                continue;
             }
         }
-        return uniqueEntryCollection;
+        return entries;
+    }
+
+    private static Map<String, Set<LicenseManagementEntry>> toMultimap(
+            Map<String, LicenseManagementEntry> entries) {
+        Map<String, Set<LicenseManagementEntry>> multimap = new HashMap<>(entries.size());
+        for (Map.Entry<String, LicenseManagementEntry> entry : entries.entrySet()) {
+            multimap.put(entry.getKey(), Collections.singleton(entry.getValue()));
+        }
+        return multimap;
     }
 
     @Override
     public LicenseManagementEntry getLicenseEntryForLicenseId(String licenseId, boolean decrypt)
             throws LicenseManagementException {
+        if (decrypt) {
+            return getLicenseEntriesByLicenseId().get(licenseId);
+        }
         for (LicenseManagementEntry entry : getExistingLicenses()) {
-            if (!decrypt) { // don't use decryption
-                if (entry.getLicenseID().equals(licenseId)) {
-                    return entry;
-                }
-            } else { // use decryption
-                String plainEntryLicenseId = decrypt(entry,
-                        LicenseManagementEntry.COLUMN_LICENSEID);
-                if (plainEntryLicenseId.equals(licenseId)) {
-                    return entry;
-                }
+            if (entry.getLicenseID().equals(licenseId)) {
+                return entry;
             }
-
         }
         return null;
     }
 
+    /**
+     * @return An unmodifiable map of all existing license entries by their
+     *         decrypted license id
+     */
+    public Map<String, LicenseManagementEntry> getLicenseEntriesByLicenseId()
+            throws LicenseManagementException {
+        return licenseCache.getEntriesByLicenseId(getExistingLicenses(),
+                entry -> decrypt(entry, LicenseManagementEntry.COLUMN_LICENSEID));
+    }
+
+    /**
+     * @return An unmodifiable map of all existing license entries by their
+     *         decrypted content id
+     */
+    public Map<String, Set<LicenseManagementEntry>> getLicenseEntriesByContentId()
+            throws LicenseManagementException {
+        return licenseCache.getEntriesByContentId(getExistingLicenses(),
+                entry -> decrypt(entry, LicenseManagementEntry.COLUMN_CONTENTID));
+    }
+
     @Override
     public Set<String> getLicenseIdsForContentId(String contentId, boolean decrypted)
             throws LicenseManagementException {
         // unless contentId is crypted with pw and salt, this returns an empty
         // set
         Set<String> uniqueIds = new HashSet<>();
-        for (LicenseManagementEntry entry : getExistingLicenses()) {
-            String plainLicenseId = decrypt(entry, LicenseManagementEntry.COLUMN_LICENSEID);
-            if (!decrypted) {
-                if (entry.getContentIdentifier().equals(contentId)) {
-                    uniqueIds.add(plainLicenseId);
-                }
-            } else {
-                String plainContentIdEntry = decrypt(entry,
-                        LicenseManagementEntry.COLUMN_CONTENTID);
-                String plainContentIdInput = "";
-                try {
-                    plainContentIdInput = getCryptoService().decryptLicenseRestrictedProperty(
-                            getUserPasswordAsString(entry), contentId);
-                } catch (EncryptionException e) {
-                    // this is try & error, so fails are ok here
-                    continue;
-                }
-                if (plainContentIdEntry.equals(plainContentIdInput)) {
-                    uniqueIds.add(plainLicenseId);
-                }
-            }
+        for (LicenseManagementEntry entry : getLicenseEntriesForContentId(contentId, decrypted)) {
+            uniqueIds.add(decrypt(entry, LicenseManagementEntry.COLUMN_LICENSEID));
         }
-
         return uniqueIds;
     }
 
     @Override
     public Set<String> getAllContentIds(boolean decrypted) throws LicenseManagementException {
         Set<String> allIds = new HashSet<>();
+        if (decrypted) {
+            allIds.addAll(getLicenseEntriesByContentId().keySet());
+            return allIds;
+        }
         for (LicenseManagementEntry entry : getExistingLicenses()) {
-            if (decrypted) {
-                Object decryptedValue = decrypt(entry, LicenseManagementEntry.COLUMN_CONTENTID);
-                String decryptedString = String.valueOf(decryptedValue);
-                allIds.add(decryptedString);
-            } else {
-                allIds.add(entry.getContentIdentifier());
-            }
-
+            allIds.add(entry.getContentIdentifier());
         }
         return allIds;
     }
@@ -524,8 +532,49 @@ public class LicenseManagementServerModeService implements ILicenseManagementSer
         return cryptoService;
     }
 
+    /**
+     * Returns the decrypted value of a column of an entry. Values are decrypted
+     * only once, until the license files are read again.
+     */
     @Override
     public <T extends Object> T decrypt(LicenseManagementEntry entry, String propertyType) {
+        return licenseCache.getDecryptedColumn(entry, propertyType,
+                () -> decryptUncached(entry, propertyType));
+    }
+
+    /**
+     * Decrypts a value with the password of an entry. Results are cached until
+     * the license files are read again.
+     * 
+     * @return the decrypted value or null if the value can not be decrypted
+     *         with the password of the entry
+     */
+    protected String decryptWithEntryPassword(LicenseManagementEntry entry,
+            String encryptedValue) {
+        return licenseCache.getDecryptedValue(entry, encryptedValue, value -> {
+            try {
+                return getCryptoService().decryptLicenseRestrictedProperty(
+                        getUserPasswordAsString(entry), value);
+            } catch (EncryptionException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Could not decrypt value:\t" + value
+                            + " with entry (licenseId):\t" + entry.getLicenseID(), e);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Discards all cached decrypted values. Must be called when the set of
+     * existing licenses changes.
+     */
+    protected void clearLicenseCache() {
+        licenseCache = new LicenseEntryCache();
+    }
+
+    private <T extends Object> T decryptUncached(LicenseManagementEntry entry,
+            String propertyType) {
         String plainText = "";
         switch (propertyType) {
         case LicenseManagementEntry.COLUMN_CONTENTID:
@@ -610,6 +659,8 @@ public class LicenseManagementServerModeService implements ILicenseManagementSer
             String msg = "Error while reading license files from " + getVNLRepository();
             log.error(msg, e);
             throw new LicenseManagementException(msg);
+        } finally {
+            clearLicenseCache();
         }
         return existingLicenses;
     }
@@ -707,12 +758,7 @@ public class LicenseManagementServerModeService implements ILicenseManagementSer
         if (StringUtils.isNotEmpty(licenseIdToUse)) { // is user valid for
                                                       // content
             // get related licenceInformation
-            for (LicenseManagementEntry existingEntry : getExistingLicenses()) {
-                if (licenseIdToUse.equals(
-                        this.decrypt(existingEntry, LicenseManagementEntry.COLUMN_LICENSEID))) {
-                    entry = existingEntry;
-                }
-            }
+            entry = getLicenseEntriesByLicenseId().get(licenseIdToUse);
             // decrypt
             try {
                 if (entry != null) {
@@ -942,9 +988,12 @@ public class LicenseManagementServerModeService implements ILicenseManagementSer
         String plainContentId = "";
         String plainLicenseId = "";
         if (entry == null) {
+            plainContentId = decryptWithEntryPassword(existingEntry, encryptedContentId);
+            if (plainContentId == null) {
+                // candidate to encrypt was the wrong one, so we try the next
+                return null;
+            }
             try {
-                plainContentId = getCryptoService().decryptLicenseRestrictedProperty(
-                        getUserPasswordAsString(existingEntry), encryptedContentId);
                 if (StringUtils.isNotEmpty(encryptedLicenseId)) {
                     plainLicenseId = getCryptoService().decryptLicenseRestrictedProperty(
                             existingEntry.getUserPassword(), encryptedLicenseId);
@@ -178,6 +178,7 @@ public class LicenseManagementStandaloneModeService
         }
         
         existingLicenses.addAll(mapVNLFilesToObjects(vnlFiles));
+        clearLicenseCache();
         return existingLicenses;
     }
 
@@ -354,19 +355,12 @@ public class LicenseManagementStandaloneModeService
     private LicenseManagementEntry getLicenseEntryToUseForDecryption(
             String encryptedContentId) throws LicenseManagementException {
         for (LicenseManagementEntry existingEntry : getExistingLicenses()){
-            try{
-                String plainEntryContentId = decrypt(existingEntry, 
-                        LicenseManagementEntry.COLUMN_CONTENTID);
-                String plainContentId = getCryptoService().
-                        decryptLicenseRestrictedProperty(
-                                getUserPasswordAsString(existingEntry), encryptedContentId);
-                if (plainContentId.equals(plainEntryContentId)){
-                    return existingEntry;
-                }
-            } catch (EncryptionException e){
-                // encryption failed, so try the next licenseEntry
-                // no error handling needed (try&error(/next))
-                continue;
+            String plainEntryContentId = decrypt(existingEntry, 
+                    LicenseManagementEntry.COLUMN_CONTENTID);
+            // if decryption fails, try the next licenseEntry
+            String plainContentId = decryptWithEntryPassword(existingEntry, encryptedContentId);
+            if (plainEntryContentId.equals(plainContentId)){
+                return existingEntry;
             }
         }
         return null;
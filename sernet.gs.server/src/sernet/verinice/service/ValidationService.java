@@ -55,7 +55,7 @@ import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.model.validation.CnAValidation;
 import sernet.verinice.service.commands.LoadElementByUuid;
 import sernet.verinice.service.commands.LoadSubtreeIds;
-import sernet.verinice.service.commands.crud.LoadScopeElementsById;
+import sernet.verinice.service.commands.crud.LoadScopeElementPage;
 
 public class ValidationService implements IValidationService {
 
@@ -68,6 +68,8 @@ public class ValidationService implements IValidationService {
     // values from CnAValidation.hbm.xml
     private static final int MAXLENGTH_DBSTRING = 250;
 
+    private static final int VALIDATION_PAGE_SIZE = 200;
+
     private HUITypeFactory huiTypeFactory;
 
     /*
@@ -400,19 +402,19 @@ public class ValidationService implements IValidationService {
     @Override
     public void createValidationsForScope(Integer scope) throws CommandException {
         ServerInitializer.inheritVeriniceContextState();
-        LoadScopeElementsById command = new LoadScopeElementsById(scope);
-        command = getCommandService().executeCommand(command);
-        List<CnATreeElement> elementsToValidate = new ArrayList<>();
-
-        for (CnATreeElement elmt : command.getResults()) {
-            // IBSIStrukturKategorie does not have any fields to validate
-            if (!(elmt instanceof IBSIStrukturKategorie)) {
-                elementsToValidate.add(elmt);
+        int lastDbId = -1;
+        LoadScopeElementPage page;
+        do {
+            page = getCommandService().executeCommand(
+                    new LoadScopeElementPage(scope, lastDbId, VALIDATION_PAGE_SIZE));
+            for (CnATreeElement elmt : page.getElements()) {
+                // IBSIStrukturKategorie does not have any fields to validate
+                if (!(elmt instanceof IBSIStrukturKategorie)) {
+                    createValidationForSingleElement(elmt);
+                }
             }
-        }
-        for (CnATreeElement elmt : elementsToValidate) {
-            createValidationForSingleElement(elmt);
-        }
+            lastDbId = page.getLastDbId();
+        } while (!page.isLastPage());
     }
 
     @Override
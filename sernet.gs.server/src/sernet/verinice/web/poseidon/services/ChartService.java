@@ -65,6 +65,9 @@ public class ChartService extends GenericChartService {
 
     private static final Logger log = Logger.getLogger(ChartService.class);
 
+    private static final String[] CONTROL_PROPERTY_TYPE_IDS = new String[] {
+            Organization.PROP_NAME, Control.PROP_IMPL };
+
     @ManagedProperty("#{menuService}")
     private MenuService menuService = new MenuService();
 
@@ -91,7 +94,8 @@ public class ChartService extends GenericChartService {
      */
     public StateData aggregateSafeguardStates(Integer scopeId) {
         VeriniceGraph g = loadSafeguards(scopeId,
-                new String[] { ITVerbund.TYPE_ID, MassnahmenUmsetzung.TYPE_ID });
+                new String[] { ITVerbund.TYPE_ID, MassnahmenUmsetzung.TYPE_ID },
+                new String[] { ITVerbund.PROP_NAME, MassnahmenUmsetzung.P_UMSETZUNG });
         CalculateSafeguardImplementationStrategy strategy = new SimpleSumOfStates();
         return new StateData(getItNetworkTitle(g),
                 strategy.aggregateData(g.getElements(MassnahmenUmsetzung.class)));
@@ -178,8 +182,11 @@ public class ChartService extends GenericChartService {
     public ModuleStateData groupByModuleChapterSafeguardStates(String scopeId,
             GroupByStrategy groupByStrategie) {
         Integer scope = checkScopeId(scopeId);
-        VeriniceGraph g = loadSafeguards(scope, new String[] { ITVerbund.TYPE_ID,
-                BausteinUmsetzung.HIBERNATE_TYPE_ID, MassnahmenUmsetzung.HIBERNATE_TYPE_ID });
+        VeriniceGraph g = loadSafeguards(scope,
+                new String[] { ITVerbund.TYPE_ID, BausteinUmsetzung.HIBERNATE_TYPE_ID,
+                        MassnahmenUmsetzung.HIBERNATE_TYPE_ID },
+                new String[] { ITVerbund.PROP_NAME, BausteinUmsetzung.P_NR,
+                        MassnahmenUmsetzung.P_UMSETZUNG });
 
         if (g.getElements(MassnahmenUmsetzung.class).isEmpty()) {
             return new ModuleStateData(getItNetworkTitle(g));
@@ -207,6 +214,7 @@ public class ChartService extends GenericChartService {
         IGraphElementLoader graphElementLoader = new GraphElementLoader();
         graphElementLoader.setTypeIds(
                 new String[] { Organization.TYPE_ID, ControlGroup.TYPE_ID, Control.TYPE_ID });
+        graphElementLoader.setPropertyTypeIds(CONTROL_PROPERTY_TYPE_IDS);
         graphElementLoader.setScopeId(scopeId);
         VeriniceGraph veriniceGraph = graphService
                 .createDirectedGraph(Collections.singletonList(graphElementLoader), false);
@@ -234,6 +242,7 @@ public class ChartService extends GenericChartService {
         IGraphElementLoader graphElementLoader = new GraphElementLoader();
         graphElementLoader.setTypeIds(
                 new String[] { Organization.TYPE_ID, ControlGroup.TYPE_ID, Control.TYPE_ID });
+        graphElementLoader.setPropertyTypeIds(CONTROL_PROPERTY_TYPE_IDS);
 
         VeriniceGraph veriniceGraph = graphService
                 .createDirectedGraph(Collections.singletonList(graphElementLoader), false);
@@ -255,10 +264,12 @@ public class ChartService extends GenericChartService {
         return veriniceGraph.getElements(Organization.class).iterator().next().getTitle();
     }
 
-    private VeriniceGraph loadSafeguards(Integer scopeId, String... typeIds) {
+    private VeriniceGraph loadSafeguards(Integer scopeId, String[] typeIds,
+            String[] propertyTypeIds) {
         IGraphService graphService = getGraphService();
         IGraphElementLoader graphElementLoader = new GraphElementLoader();
         graphElementLoader.setTypeIds(typeIds);
+        graphElementLoader.setPropertyTypeIds(propertyTypeIds);
         if (scopeId != null) {
             graphElementLoader.setScopeId(scopeId);
         }
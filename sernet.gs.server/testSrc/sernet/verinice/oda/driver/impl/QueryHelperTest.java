@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.oda.driver.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.datatools.connectivity.oda.OdaException;
+import org.junit.Before;
+import org.junit.Test;
+
+import sernet.verinice.interfaces.CommandException;
+import sernet.verinice.interfaces.GenericCommand;
+import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.interfaces.ICachedCommand;
+import sernet.verinice.interfaces.ICommand;
+import sernet.verinice.interfaces.ICommandService;
+import sernet.verinice.service.sync.VnaSchemaVersion;
+
+/**
+ * Tests that {@link Query.Helper} executes a list of commands with one request
+ * and answers commands from prefetched results until the query is closed.
+ */
+public class QueryHelperTest {
+
+    private CountingCommandService commandService;
+
+    private Query query;
+
+    private Query.Helper helper;
+
+    @Before
+    public void setUp() {
+        commandService = new CountingCommandService();
+        query = new Query(1, null) {
+            @Override
+            ICommandService getCommandService() {
+                return commandService;
+            }
+        };
+        helper = query.getHelper();
+    }
+
+    @Test
+    public void testExecuteAllSendsOneRequest() {
+        List<ICommand> commands = Arrays.<ICommand> asList(new TestCommand("a"),
+                new CachedTestCommand("b"), new CachedTestCommand("c"));
+
+        List<ICommand> executedCommands = helper.executeAll(commands);
+
+        assertEquals(Arrays.asList(3), commandService.batchSizes);
+        assertEquals(0, commandService.singleRequests);
+        assertEquals(3, executedCommands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            assertSame(commands.get(i), executedCommands.get(i));
+        }
+        assertEquals("result-a", ((TestCommand) executedCommands.get(0)).getResult());
+        assertEquals("result-c", ((CachedTestCommand) executedCommands.get(2)).getResult());
+    }
+
+    @Test
+    public void testExecuteAllWithArray() {
+        ICommand[] executedCommands = helper
+                .executeAll(new ICommand[] { new CachedTestCommand("a"), new TestCommand("b") });
+
+        assertEquals(Arrays.asList(2), commandService.batchSizes);
+        assertEquals(2, executedCommands.length);
+        assertEquals("result-a", ((CachedTestCommand) executedCommands[0]).getResult());
+        assertEquals("result-b", ((TestCommand) executedCommands[1]).getResult());
+    }
+
+    @Test
+    public void testPrefetchedResultsAreInjected() {
+        helper.prefetch(new ICommand[] { new CachedTestCommand("a"), new CachedTestCommand("b"),
+                new TestCommand("c") });
+        assertEquals(Arrays.asList(3), commandService.batchSizes);
+
+        CachedTestCommand command = (CachedTestCommand) helper.execute(new CachedTestCommand("b"));
+        assertEquals("result-b", command.getResult());
+        assertEquals(0, command.getExecutions());
+        assertEquals(0, commandService.singleRequests);
+
+        command = (CachedTestCommand) helper.execute(new CachedTestCommand("d"));
+        assertEquals("result-d", command.getResult());
+        assertEquals(1, command.getExecutions());
+        assertEquals(1, commandService.singleRequests);
+
+        // commands which are not cachable are always sent to the server
+        TestCommand testCommand = (TestCommand) helper.execute(new TestCommand("c"));
+        assertEquals("result-c", testCommand.getResult());
+        assertEquals(2, commandService.singleRequests);
+        assertEquals(1, commandService.batchSizes.size());
+    }
+
+    @Test
+    public void testCloseDiscardsPrefetchedResults() throws OdaException {
+        helper.prefetch(Arrays.<ICommand> asList(new CachedTestCommand("a")));
+        helper.execute(new CachedTestCommand("a"));
+        assertEquals(0, commandService.singleRequests);
+
+        query.close();
+
+        CachedTestCommand command = (CachedTestCommand) helper.execute(new CachedTestCommand("a"));
+        assertEquals("result-a", command.getResult());
+        assertEquals(1, command.getExecutions());
+        assertEquals(1, commandService.singleRequests);
+    }
+
+    /**
+     * Executes the commands locally and counts the requests.
+     */
+    private static final class CountingCommandService implements ICommandService {
+
+        private int singleRequests = 0;
+
+        private final List<Integer> batchSizes = new ArrayList<>();
+
+        @Override
+        public <T extends ICommand> T executeCommand(T command) throws CommandException {
+            singleRequests++;
+            command.execute();
+            return command;
+        }
+
+        @Override
+        public <T extends ICommand> List<T> executeCommands(List<T> commands)
+                throws CommandException {
+            batchSizes.add(commands.size());
+            for (T command : commands) {
+                command.execute();
+            }
+            return new ArrayList<>(commands);
+        }
+
+        @Override
+        public void configureFilter(IBaseDao dao) {
+        }
+
+        @Override
+        public void disableFilter(IBaseDao dao) {
+        }
+
+        @Override
+        public void discardUserData() {
+        }
+
+        @Override
+        public Properties getProperties() {
+            return new Properties();
+        }
+
+        @Override
+        public VnaSchemaVersion getVnaSchemaVersion() {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class TestCommand extends GenericCommand {
+
+        private final String id;
+
+        private String result;
+
+        private int executions = 0;
+
+        TestCommand(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void execute() {
+            executions++;
+            result = "result-" + id;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        int getExecutions() {
+            return executions;
+        }
+
+        String getResult() {
+            return result;
+        }
+
+        void setResult(String result) {
+            this.result = result;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class CachedTestCommand extends TestCommand implements ICachedCommand {
+
+        CachedTestCommand(String id) {
+            super(id);
+        }
+
+        @Override
+        public String getCacheID() {
+            return getId();
+        }
+
+        @Override
+        public void injectCacheResult(Object result) {
+            setResult((String) result);
+        }
+
+        @Override
+        public Object getCacheableResult() {
+            return getResult();
+        }
+    }
+}
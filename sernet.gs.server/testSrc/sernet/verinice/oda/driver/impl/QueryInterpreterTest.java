@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.oda.driver.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import bsh.EvalError;
+
+/**
+ * Tests that the scripts of the data sets of one report run share a
+ * {@link QueryInterpreter} without seeing the variables of each other.
+ */
+public class QueryInterpreterTest {
+
+    private static final Map<String, Object> NO_VARIABLES = Collections.emptyMap();
+
+    private QueryInterpreter interpreter;
+
+    @Before
+    public void setUp() throws EvalError {
+        Map<String, Object> scriptVariables = new HashMap<>();
+        scriptVariables.put("limit", 42);
+        interpreter = new QueryInterpreter(scriptVariables);
+    }
+
+    @Test
+    public void testScriptIsDeclaredAsMethod() throws EvalError {
+        assertEquals(3, interpreter.eval("a + b", variables("a", 1, "b", 2)));
+        assertEquals(10, interpreter.eval("a + b", variables("a", 5, "b", 5)));
+        assertEquals(7, interpreter.eval("a + b;", variables("a", 3, "b", 4)));
+        // the first script is the method __script0, the one with semicolon
+        // is a different script
+        assertEquals(3, interpreter.eval("__script0()", variables("a", 1, "b", 2)));
+        assertEquals(7, interpreter.eval("__script1()", variables("a", 3, "b", 4)));
+    }
+
+    @Test
+    public void testHelperFunctions() throws EvalError {
+        assertEquals(42, interpreter.eval("vars(\"limit\")", NO_VARIABLES));
+        assertEquals("unknown does not exist.",
+                interpreter.eval("vars(\"unknown\")", NO_VARIABLES));
+        assertEquals("value", interpreter.eval("inpv(\"name\")",
+                variables("_inpv", Collections.singletonMap("name", "value"))));
+
+        Map<String, Object> variables = variables("__columns", null, "__inParameters", null);
+        interpreter.eval("columns(new String[] { \"a\", \"b\" });"
+                + " inParameters(new String[] { \"c\" });", variables);
+        assertArrayEquals(new String[] { "a", "b" }, (String[]) interpreter.get("__columns"));
+        assertArrayEquals(new String[] { "c" }, (String[]) interpreter.get("__inParameters"));
+    }
+
+    @Test
+    public void testDataSetsDefiningSameVariable() throws EvalError {
+        String firstDataSet = "list = new ArrayList(); list.add(\"first\"); list";
+        String secondDataSet = "list = new ArrayList(); list.add(\"second\");"
+                + " list.add(\"second\"); list";
+        assertEquals(Collections.singletonList("first"),
+                interpreter.eval(firstDataSet, NO_VARIABLES));
+        assertEquals(2, ((List<?>) interpreter.eval(secondDataSet, NO_VARIABLES)).size());
+        assertEquals(Collections.singletonList("first"),
+                interpreter.eval(firstDataSet, NO_VARIABLES));
+        assertEquals("undefined",
+                interpreter.eval("(list == void) ? \"undefined\" : list", NO_VARIABLES));
+    }
+
+    @Test
+    public void testFallbackEvaluation() throws EvalError {
+        // a script which can not be declared as a method is evaluated
+        // directly, so the parse error refers to the lines of the script and
+        // not to the lines of the method declaration
+        String script = "a = 1;\na +";
+        for (int i = 0; i < 2; i++) {
+            try {
+                interpreter.eval(script, NO_VARIABLES);
+                fail("No EvalError for invalid script");
+            } catch (EvalError e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("line 2,"));
+            }
+        }
+        // the interpreter can still be used
+        assertEquals(2, interpreter.eval("a + 1", variables("a", 1)));
+    }
+
+    private static Map<String, Object> variables(Object... namesAndValues) {
+        Map<String, Object> variables = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            variables.put((String) namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return variables;
+    }
+}
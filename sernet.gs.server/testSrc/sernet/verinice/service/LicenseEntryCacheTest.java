@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import sernet.verinice.model.licensemanagement.LicenseManagementEntry;
+
+/**
+ * Tests that {@link LicenseEntryCache} decrypts values and looks up entries
+ * only once per instance.
+ */
+public class LicenseEntryCacheTest {
+
+    @Test
+    public void testLookupByEncryptedValue() {
+        LicenseEntryCache cache = new LicenseEntryCache();
+        LicenseManagementEntry entry = createEntry("license-1", "content");
+        AtomicInteger lookups = new AtomicInteger();
+
+        Set<LicenseManagementEntry> entries = cache.getEntriesByEncryptedValue(
+                LicenseManagementEntry.COLUMN_CONTENTID, "encrypted", value -> {
+                    lookups.incrementAndGet();
+                    return new HashSet<>(Collections.singleton(entry));
+                });
+        assertEquals(Collections.singleton(entry), entries);
+        assertSame(entries, cache.getEntriesByEncryptedValue(
+                LicenseManagementEntry.COLUMN_CONTENTID, "encrypted", value -> {
+                    lookups.incrementAndGet();
+                    return new HashSet<>();
+                }));
+        assertEquals(1, lookups.get());
+
+        assertTrue(cache.getEntriesByEncryptedValue(LicenseManagementEntry.COLUMN_LICENSEID,
+                "encrypted", value -> {
+                    lookups.incrementAndGet();
+                    return new HashSet<>();
+                }).isEmpty());
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void testDecryptedValuesAreCachedPerEntry() {
+        LicenseEntryCache cache = new LicenseEntryCache();
+        LicenseManagementEntry entry1 = createEntry("license-1", "content");
+        LicenseManagementEntry entry2 = createEntry("license-2", "content");
+        AtomicInteger decryptions = new AtomicInteger();
+
+        assertNull(cache.getDecryptedValue(entry1, "encrypted", value -> {
+            decryptions.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.getDecryptedValue(entry1, "encrypted", value -> {
+            decryptions.incrementAndGet();
+            return "plain";
+        }));
+        assertEquals("plain", cache.getDecryptedValue(entry2, "encrypted", value -> {
+            decryptions.incrementAndGet();
+            return "plain";
+        }));
+        assertEquals(2, decryptions.get());
+    }
+
+    @Test
+    public void testNewCacheLooksUpEntriesAgain() {
+        LicenseManagementEntry entry1 = createEntry("license-1", "content-1");
+        LicenseManagementEntry entry2 = createEntry("license-2", "content-2");
+        Set<LicenseManagementEntry> existingEntries = new HashSet<>();
+        existingEntries.add(entry1);
+
+        LicenseEntryCache cache = new LicenseEntryCache();
+        Map<String, Set<LicenseManagementEntry>> entriesByContentId = cache.getEntriesByContentId(
+                existingEntries, LicenseManagementEntry::getContentIdentifier);
+        assertEquals(Collections.singleton("content-1"), entriesByContentId.keySet());
+
+        existingEntries.add(entry2);
+        assertSame(entriesByContentId, cache.getEntriesByContentId(existingEntries,
+                LicenseManagementEntry::getContentIdentifier));
+
+        // the service creates a new cache when the license files are read
+        cache = new LicenseEntryCache();
+        assertEquals(2, cache.getEntriesByContentId(existingEntries,
+                LicenseManagementEntry::getContentIdentifier).size());
+        assertSame(entry2, cache
+                .getEntriesByLicenseId(existingEntries, LicenseManagementEntry::getLicenseID)
+                .get("license-2"));
+    }
+
+    private static LicenseManagementEntry createEntry(String licenseId, String contentId) {
+        LicenseManagementEntry entry = new LicenseManagementEntry();
+        entry.setLicenseID(licenseId);
+        entry.setContentIdentifier(contentId);
+        return entry;
+    }
+}
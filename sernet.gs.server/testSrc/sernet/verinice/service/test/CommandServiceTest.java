@@ -57,6 +57,7 @@ import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.model.iso27k.IISO27kRoot;
 import sernet.verinice.model.iso27k.ImportIsoGroup;
 import sernet.verinice.model.iso27k.Organization;
+import sernet.verinice.service.HibernateCommandService;
 import sernet.verinice.service.commands.LoadElementByTypeId;
 import sernet.verinice.service.commands.LoadElementByUuid;
 import sernet.verinice.service.commands.LoadTreeItem;
@@ -87,6 +88,9 @@ public class CommandServiceTest extends CommandServiceProvider {
     @Resource(name = "huiTypeFactory")
     private HUITypeFactory huiTypeFactory;
 
+    @Resource(name = "hibernateCommandService")
+    private HibernateCommandService hibernateCommandService;
+
     private List<String> uuidList;
     private String currentDate;
 
@@ -168,6 +172,27 @@ public class CommandServiceTest extends CommandServiceProvider {
         }
     }
 
+    /**
+     * Calls LoadElementByUuid for all elements in DB with one call of
+     * executeCommands and checks that the results are returned in order.
+     */
+    @Test
+    public void testExecuteCommands() throws Exception {
+        List<String> uuidList = getAllUuids();
+        List<LoadElementByUuid<CnATreeElement>> commands = new LinkedList<>();
+        for (String uuid : uuidList) {
+            commands.add(new LoadElementByUuid<CnATreeElement>(uuid));
+        }
+        commands = commandService.executeCommands(commands);
+
+        assertEquals(uuidList.size(), commands.size());
+        for (int i = 0; i < uuidList.size(); i++) {
+            CnATreeElement element = commands.get(i).getElement();
+            assertNotNull(element);
+            assertEquals(uuidList.get(i), element.getUuid());
+        }
+    }
+
     /**
      * Creates a new organization and for every group in it NUMBER_PER_GROUP
      * elements.
@@ -198,6 +223,26 @@ public class CommandServiceTest extends CommandServiceProvider {
         }
     }
 
+    /**
+     * Removes an organization and checks that the nested commands of
+     * RemoveElement reuse the security context of the outer command.
+     */
+    @Test
+    public void testNestedCommandsReuseSecurityContext() throws Exception {
+        Organization organization = createOrganization();
+        long hits = hibernateCommandService.getSecurityContextHits();
+        long misses = hibernateCommandService.getSecurityContextMisses();
+
+        RemoveElement<CnATreeElement> removeCommand = new RemoveElement<CnATreeElement>(
+                organization);
+        commandService.executeCommand(removeCommand);
+
+        assertEquals("Outer command did not create a security context.", misses + 1,
+                hibernateCommandService.getSecurityContextMisses());
+        assertTrue("Nested commands did not reuse the security context.",
+                hibernateCommandService.getSecurityContextHits() > hits);
+    }
+
     protected void loadChangeAndCheckElement(String uuid) throws CommandException {
         LoadElementByUuid<CnATreeElement> loadByUuid;
         CnATreeElement element = loadElement(uuid, new RetrieveInfo());
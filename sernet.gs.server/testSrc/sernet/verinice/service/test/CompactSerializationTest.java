@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+import sernet.hui.common.io.CompactObjectInputStream;
+import sernet.hui.common.io.CompactObjectOutputStream;
+import sernet.verinice.interfaces.CommandException;
+import sernet.verinice.model.common.CnATreeElement;
+import sernet.verinice.model.iso27k.Asset;
+import sernet.verinice.model.iso27k.Control;
+import sernet.verinice.model.iso27k.PersonIso;
+import sernet.verinice.service.commands.LoadCnAElementByEntityTypeId;
+import sernet.verinice.service.commands.SyncCommand;
+import sernet.verinice.service.commands.SyncParameter;
+import sernet.verinice.service.commands.SyncParameterException;
+
+/**
+ * Compares the payload size and the CPU time of commands transferred with
+ * plain Java serialization and with the compact format of
+ * {@link CompactObjectOutputStream}.
+ */
+@TransactionConfiguration(transactionManager = "txManager", defaultRollback = true)
+@Transactional
+public class CompactSerializationTest extends CommandServiceProvider {
+
+    private static final Logger LOG = Logger.getLogger(CompactSerializationTest.class);
+
+    private static final int ROUNDS = 20;
+
+    private enum Format {
+        JAVA, COMPACT, COMPACT_GZIP
+    }
+
+    @Test
+    public void compareSerializationOfCommands() throws Exception {
+        importModplast();
+        int numberOfElements = 0;
+        for (String typeId : new String[] { Asset.TYPE_ID, Control.TYPE_ID,
+                PersonIso.TYPE_ID }) {
+            LoadCnAElementByEntityTypeId command = commandService
+                    .executeCommand(new LoadCnAElementByEntityTypeId(typeId));
+            numberOfElements += command.getElements().size();
+
+            long javaSize = serialize(command, Format.JAVA).length;
+            long compactSize = serialize(command, Format.COMPACT).length;
+            long gzipSize = serialize(command, Format.COMPACT_GZIP).length;
+            LOG.info(typeId + ", " + command.getElements().size() + " elements, java: "
+                    + javaSize + " bytes, " + measure(command, Format.JAVA)
+                    + " us, compact: " + compactSize + " bytes, "
+                    + measure(command, Format.COMPACT) + " us, compact gzip: " + gzipSize
+                    + " bytes, " + measure(command, Format.COMPACT_GZIP) + " us");
+            if (!command.getElements().isEmpty()) {
+                assertTrue(compactSize < javaSize);
+                assertTrue(gzipSize < compactSize);
+            }
+
+            assertSameElements(command.getElements(),
+                    ((LoadCnAElementByEntityTypeId) deserialize(
+                            serialize(command, Format.COMPACT), Format.COMPACT)).getElements());
+        }
+        assertTrue(numberOfElements > 0);
+    }
+
+    private void importModplast() throws IOException, CommandException, SyncParameterException {
+        try (InputStream is = ImportPerformanceTest.class
+                .getResourceAsStream("modplast-1.1.vna")) {
+            byte[] bytes = IOUtils.toByteArray(is);
+            SyncParameter parameter = new SyncParameter(true, false, false, false);
+            commandService.executeCommand(new SyncCommand(parameter, bytes));
+        }
+    }
+
+    private static void assertSameElements(List<CnATreeElement> expected,
+            List<CnATreeElement> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            CnATreeElement element = expected.get(i);
+            CnATreeElement copy = actual.get(i);
+            assertEquals(element.getUuid(), copy.getUuid());
+            assertEquals(element.getDbId(), copy.getDbId());
+            assertEquals(element.getScopeId(), copy.getScopeId());
+            assertEquals(element.getParentId(), copy.getParentId());
+            assertEquals(element.getTypeId(), copy.getTypeId());
+            assertEquals(element.getTitle(), copy.getTitle());
+            assertEquals(element.getEntity().getUuid(), copy.getEntity().getUuid());
+            assertEquals(element.getEntity().getTypedPropertyLists().keySet(),
+                    copy.getEntity().getTypedPropertyLists().keySet());
+            for (String propertyTypeId : element.getEntity().getTypedPropertyLists().keySet()) {
+                assertEquals(element.getEntity().getRawPropertyValue(propertyTypeId),
+                        copy.getEntity().getRawPropertyValue(propertyTypeId));
+            }
+        }
+    }
+
+    /**
+     * Returns the average time in microseconds to serialize and deserialize
+     * the command
+     */
+    private static long measure(Object command, Format format) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            deserialize(serialize(command, format), format);
+        }
+        return (System.nanoTime() - start) / ROUNDS / 1000;
+    }
+
+    private static byte[] serialize(Object object, Format format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = format == Format.COMPACT_GZIP ? new GZIPOutputStream(bytes) : bytes;
+        try (ObjectOutputStream objectOut = format == Format.JAVA ? new ObjectOutputStream(out)
+                : new CompactObjectOutputStream(out)) {
+            objectOut.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes, Format format)
+            throws IOException, ClassNotFoundException {
+        InputStream in = new ByteArrayInputStream(bytes);
+        if (format == Format.COMPACT_GZIP) {
+            in = new GZIPInputStream(in);
+        }
+        try (ObjectInputStream objectIn = format == Format.JAVA ? new ObjectInputStream(in)
+                : new CompactObjectInputStream(in, null)) {
+            return objectIn.readObject();
+        }
+    }
+}
@@ -19,25 +19,34 @@
  ******************************************************************************/
 package sernet.verinice.service.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Resource;
+
 import org.apache.log4j.Logger;
 import org.junit.Test;
 
 import sernet.gs.service.RetrieveInfo;
 import sernet.verinice.interfaces.CommandException;
+import sernet.verinice.interfaces.IElementHierarchyDao;
 import sernet.verinice.model.common.CnATreeElement;
+import sernet.verinice.model.iso27k.Asset;
 import sernet.verinice.model.iso27k.Group;
 import sernet.verinice.model.iso27k.Organization;
 import sernet.verinice.service.commands.CutCommand;
 import sernet.verinice.service.commands.LoadElementByUuid;
 import sernet.verinice.service.commands.RemoveElement;
+import sernet.verinice.service.commands.migration.MigrateDbTo1_07D;
 
 /**
  * Test {@link CutCommand} by moving elements of all types to a sub-folder.
@@ -51,6 +60,9 @@ public class CutTest extends CommandServiceProvider {
     private static final int NUMBER_PER_GROUP = 1; 
     
     private List<String> uuidList;
+
+    @Resource(name = "elementHierarchyDao")
+    private IElementHierarchyDao elementHierarchyDao;
     
     @Test
     public void testCut() throws Exception {
@@ -77,6 +89,94 @@ public class CutTest extends CommandServiceProvider {
         } 
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMoveGroupWithGrandchildren() throws CommandException {
+        Organization organization = createOrganization();
+        Group<CnATreeElement> assetGroup = getGroupForClass(organization, Asset.class);
+        Group<CnATreeElement> target = (Group<CnATreeElement>) createNewNamedGroup(assetGroup,
+                "target");
+        Group<CnATreeElement> group = (Group<CnATreeElement>) createNewNamedGroup(assetGroup,
+                "group");
+        Group<CnATreeElement> subGroup = (Group<CnATreeElement>) createNewNamedGroup(group,
+                "subGroup");
+        CnATreeElement grandchild = createNewElement(subGroup, Asset.class, 0);
+
+        commandService.executeCommand(
+                new CutCommand(target.getUuid(), Collections.singletonList(group.getUuid())));
+
+        checkTreePath(target, group);
+        checkTreePath(group, subGroup);
+        checkTreePath(subGroup, grandchild);
+        assertEquals("Descendants of target are wrong",
+                new HashSet<>(Arrays.asList(group.getDbId(), subGroup.getDbId(),
+                        grandchild.getDbId())),
+                new HashSet<>(elementHierarchyDao.findDescendantIds(target, null)));
+        assertTrue("Moved group is still a descendant of its old parent",
+                elementHierarchyDao.findDescendantIds(assetGroup, null)
+                        .containsAll(Arrays.asList(group.getDbId(), grandchild.getDbId())));
+        removeOrganization(organization);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCutSeveralElements() throws CommandException {
+        Organization organization = createOrganization();
+        Group<CnATreeElement> assetGroup = getGroupForClass(organization, Asset.class);
+        Group<CnATreeElement> target = (Group<CnATreeElement>) createNewNamedGroup(assetGroup,
+                "target");
+        Group<CnATreeElement> group1 = (Group<CnATreeElement>) createNewNamedGroup(assetGroup,
+                "group1");
+        CnATreeElement child1 = createNewElement(group1, Asset.class, 1);
+        Group<CnATreeElement> group2 = (Group<CnATreeElement>) createNewNamedGroup(assetGroup,
+                "group2");
+        CnATreeElement child2 = createNewElement(group2, Asset.class, 2);
+        CnATreeElement asset = createNewElement(assetGroup, Asset.class, 3);
+
+        commandService.executeCommand(new CutCommand(target.getUuid(),
+                Arrays.asList(group1.getUuid(), group2.getUuid(), asset.getUuid())));
+
+        checkTreePath(target, group1);
+        checkTreePath(group1, child1);
+        checkTreePath(target, group2);
+        checkTreePath(group2, child2);
+        checkTreePath(target, asset);
+        removeOrganization(organization);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMigrateTreePaths() throws CommandException {
+        Organization organization = createOrganization();
+        Group<CnATreeElement> assetGroup = getGroupForClass(organization, Asset.class);
+        Group<CnATreeElement> group = (Group<CnATreeElement>) createNewNamedGroup(assetGroup,
+                "group");
+        CnATreeElement child = createNewElement(group, Asset.class, 0);
+        elementDao.updateByQuery("update CnATreeElement set treePath = null where scopeId = ?",
+                new Object[] { organization.getDbId() });
+
+        commandService.executeCommand(new MigrateDbTo1_07D());
+
+        CnATreeElement loadedOrganization = elementDao.findByUuid(organization.getUuid(),
+                new RetrieveInfo());
+        assertNotNull("Tree path of organization is not set", loadedOrganization.getTreePath());
+        checkTreePath(organization, assetGroup);
+        checkTreePath(assetGroup, group);
+        checkTreePath(group, child);
+        removeOrganization(organization);
+    }
+
+    private void checkTreePath(CnATreeElement parent, CnATreeElement child) {
+        CnATreeElement loadedParent = elementDao.findByUuid(parent.getUuid(), new RetrieveInfo());
+        CnATreeElement loadedChild = elementDao.findByUuid(child.getUuid(), new RetrieveInfo());
+        assertEquals("Parent of element is wrong: " + loadedChild.getUuid(),
+                loadedParent.getDbId(), loadedChild.getParentId());
+        assertNotNull("Tree path of element is not set: " + loadedParent.getUuid(),
+                loadedParent.getTreePath());
+        assertEquals("Tree path of element is wrong: " + loadedChild.getUuid(),
+                loadedParent.getSubtreePath(), loadedChild.getTreePath());
+    }
+
     /**
      * @param organization
      * @throws CommandException 
@@ -125,6 +225,12 @@ public class CutTest extends CommandServiceProvider {
             
             Set<CnATreeElement> childrenOfSubGroup =  subGroup.getChildren();
             assertTrue("Sub-group has more or less than one child: " + child.getTypeId(), childrenOfGroup.size()==1);        
+            subGroup = (Group<CnATreeElement>) elementDao.findByUuid(subGroup.getUuid(),
+                    RetrieveInfo.getChildrenInstance());
+            for (CnATreeElement movedElement : subGroup.getChildren()) {
+                assertEquals("Tree path of moved element is wrong: " + movedElement.getTypeId(),
+                        subGroup.getSubtreePath(), movedElement.getTreePath());
+            }
         }
     }
 }
@@ -19,11 +19,13 @@
  ******************************************************************************/
 package sernet.verinice.service.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -32,6 +34,7 @@ import javax.annotation.Resource;
 import org.apache.log4j.Logger;
 import org.junit.Test;
 
+import sernet.gs.service.ElementUuidCursor;
 import sernet.gs.service.RetrieveInfo;
 import sernet.hui.common.connect.HUITypeFactory;
 import sernet.hui.common.connect.Property;
@@ -89,6 +92,20 @@ public class DaoTest extends UuidLoader {
         search(searchTerm);
     }
     
+    @Test
+    public void testElementUuidCursor() throws Exception {
+        List<String> uuidList = getAllUuids();
+        List<String> cursorUuidList = new LinkedList<String>();
+        ElementUuidCursor cursor = new ElementUuidCursor(elementDao, 7);
+        while (cursor.hasNext()) {
+            List<String> page = cursor.next();
+            assertTrue(page.size() <= 7);
+            cursorUuidList.addAll(page);
+        }
+        assertEquals(uuidList.size(), cursorUuidList.size());
+        assertEquals(new HashSet<String>(uuidList), new HashSet<String>(cursorUuidList));
+    }
+
     @Test
     public void testCreateAndDelete() throws Exception {
         createAndDelete(AssetGroup.TYPE_ID, Asset.class);
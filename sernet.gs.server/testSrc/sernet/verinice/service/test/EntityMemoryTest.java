@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import sernet.gs.service.ServerInitializer;
+import sernet.hui.common.connect.Entity;
+import sernet.hui.common.connect.HUITypeFactory;
+import sernet.hui.common.io.CompactObjectOutputStream;
+import sernet.verinice.model.iso27k.Asset;
+
+/**
+ * Compares the memory used by entities with property lists and by compacted
+ * entities, see {@link Entity#compact()}. Only the serialized size is
+ * asserted, the heap numbers depend on the garbage collector and are logged.
+ */
+public class EntityMemoryTest extends ContextConfiguration {
+
+    private static final Logger LOG = Logger.getLogger(EntityMemoryTest.class);
+
+    private static final int NUMBER_OF_ENTITIES = 10000;
+
+    @Test
+    public void compareMemoryOfCompactEntities() throws IOException {
+        ServerInitializer.inheritVeriniceContextState();
+        long usedBefore = getUsedMemory();
+        List<Entity> entities = createEntities();
+        long usedWithPropertyLists = getUsedMemory() - usedBefore;
+        long serializedWithPropertyLists = getSerializedSize(entities);
+
+        for (Entity entity : entities) {
+            assertTrue(entity.compact());
+        }
+        long usedCompact = getUsedMemory() - usedBefore;
+        long serializedCompact = getSerializedSize(entities);
+
+        LOG.info(NUMBER_OF_ENTITIES + " entities with property lists, heap: "
+                + usedWithPropertyLists / 1024 + " KB, serialized: "
+                + serializedWithPropertyLists / 1024 + " KB");
+        LOG.info(NUMBER_OF_ENTITIES + " compact entities, heap: " + usedCompact / 1024
+                + " KB, serialized: " + serializedCompact / 1024 + " KB");
+        assertTrue(serializedCompact < serializedWithPropertyLists);
+    }
+
+    private List<Entity> createEntities() {
+        HUITypeFactory typeFactory = HUITypeFactory.getInstance();
+        List<Entity> entities = new ArrayList<>(NUMBER_OF_ENTITIES);
+        for (int i = 0; i < NUMBER_OF_ENTITIES; i++) {
+            Entity entity = EntityTest.createAssetEntity();
+            entity.setSimpleValue(typeFactory.getPropertyType(Asset.TYPE_ID, Asset.PROP_NAME),
+                    "Asset " + i);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The compact store is only part of the compact serialized form, the
+     * default form contains property lists
+     */
+    private static long getSerializedSize(List<Entity> entities) throws IOException {
+        CountingOutputStream out = new CountingOutputStream(new NullOutputStream());
+        try (ObjectOutputStream objectOut = new CompactObjectOutputStream(out)) {
+            objectOut.writeObject(new ArrayList<>(entities));
+        }
+        return out.getByteCount();
+    }
+}
@@ -20,8 +20,21 @@
 package sernet.verinice.service.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 
@@ -32,10 +45,14 @@ import sernet.gs.service.ServerInitializer;
 import sernet.hui.common.connect.Entity;
 import sernet.hui.common.connect.HUITypeFactory;
 import sernet.hui.common.connect.Property;
+import sernet.hui.common.connect.PropertyList;
+import sernet.hui.common.connect.PropertyType;
 import sernet.snutils.AssertException;
 import sernet.snutils.FormInputParser;
+import sernet.verinice.model.bsi.MassnahmenUmsetzung;
 import sernet.verinice.model.iso27k.Asset;
 import sernet.verinice.model.iso27k.Audit;
+import sernet.verinice.model.iso27k.Control;
 
 /**
  * THis test class contains tests for basic
@@ -110,4 +127,227 @@ public class EntityTest extends ContextConfiguration {
         assertEquals(valueMessages, returnValue);
     }
 
+    /**
+     * Tests that the property values of a compacted entity are the same as
+     * the values of an entity with property lists
+     */
+    @Test
+    public void testCompactEntity() {
+        ServerInitializer.inheritVeriniceContextState();
+        Entity entity = createAssetEntity();
+        Entity compactEntity = createAssetEntity();
+        assertTrue(compactEntity.compact());
+        assertTrue(compactEntity.isCompact());
+
+        for (String propertyTypeId : huiTypeFactory.getEntityType(Asset.TYPE_ID)
+                .getAllPropertyTypeIds()) {
+            if (huiTypeFactory.getPropertyType(Asset.TYPE_ID, propertyTypeId).isReference()) {
+                continue;
+            }
+            assertEquals(entity.getPropertyValue(propertyTypeId),
+                    compactEntity.getPropertyValue(propertyTypeId));
+            assertEquals(entity.getRawPropertyValue(propertyTypeId),
+                    compactEntity.getRawPropertyValue(propertyTypeId));
+            assertEquals(entity.getNumericValue(propertyTypeId),
+                    compactEntity.getNumericValue(propertyTypeId));
+            assertEquals(entity.getInt(propertyTypeId), compactEntity.getInt(propertyTypeId));
+            assertEquals(entity.getFirstIntValue(propertyTypeId),
+                    compactEntity.getFirstIntValue(propertyTypeId));
+        }
+        assertTrue(compactEntity.isCompact());
+
+        Entity processEntity = new Entity(sernet.verinice.model.iso27k.Process.TYPE_ID);
+        processEntity.setPropertyValue(sernet.verinice.model.iso27k.Process.PROP_USER,
+                StringUtils.join(PROP_VALUES_USER, ","));
+        String value = processEntity
+                .getPropertyValue(sernet.verinice.model.iso27k.Process.PROP_USER);
+        assertTrue(processEntity.compact());
+        assertEquals(value,
+                processEntity.getPropertyValue(sernet.verinice.model.iso27k.Process.PROP_USER));
+        assertTrue(processEntity.isSelected(sernet.verinice.model.iso27k.Process.PROP_USER,
+                sernet.verinice.model.iso27k.Process.PROP_VALUE_USER_2));
+    }
+
+    /**
+     * Tests that a compacted entity creates property lists again if a
+     * property is changed
+     */
+    @Test
+    public void testChangeCompactEntity() {
+        ServerInitializer.inheritVeriniceContextState();
+        Entity entity = createAssetEntity();
+        assertTrue(entity.compact());
+        entity.setSimpleValue(huiTypeFactory.getPropertyType(Asset.TYPE_ID, Asset.PROP_NAME),
+                "Mail Server");
+        assertFalse(entity.isCompact());
+        assertEquals("Mail Server", entity.getPropertyValue(Asset.PROP_NAME));
+        assertEquals(3, entity.getNumericValue(Asset.ASSET_VALUE_CONFIDENTIALITY).intValue());
+    }
+
+    /**
+     * Tests that property lists which are created from a compacted entity
+     * have the ids of the original property lists and properties
+     */
+    @Test
+    public void testCompactEntityKeepsIds() {
+        ServerInitializer.inheritVeriniceContextState();
+        Entity entity = createAssetEntity();
+        int dbId = 1;
+        for (PropertyList propertyList : entity.getTypedPropertyLists().values()) {
+            propertyList.setDbId(dbId++);
+            for (Property property : propertyList.getProperties()) {
+                property.setDbId(dbId++);
+            }
+        }
+        PropertyList nameList = entity.getTypedPropertyLists().get(Asset.PROP_NAME);
+        String uuid = nameList.getUuid();
+        Integer listDbId = nameList.getDbId();
+        Integer propertyDbId = nameList.getProperty(0).getDbId();
+
+        assertTrue(entity.compact());
+        nameList = entity.getTypedPropertyLists().get(Asset.PROP_NAME);
+        assertFalse(entity.isCompact());
+        assertEquals(uuid, nameList.getUuid());
+        assertEquals(listDbId, nameList.getDbId());
+        assertEquals(propertyDbId, nameList.getProperty(0).getDbId());
+    }
+
+    /**
+     * Tests that options are looked up in the compact store
+     */
+    @Test
+    public void testIsSelectedInCompactEntity() {
+        ServerInitializer.inheritVeriniceContextState();
+        Entity processEntity = new Entity(sernet.verinice.model.iso27k.Process.TYPE_ID);
+        processEntity.setPropertyValue(sernet.verinice.model.iso27k.Process.PROP_USER,
+                StringUtils.join(PROP_VALUES_USER, ","));
+        assertTrue(processEntity.compact());
+        assertTrue(processEntity
+                .isSelected(sernet.verinice.model.iso27k.Process.PROP_VALUE_USER_3));
+        assertFalse(processEntity.isSelected("no_option"));
+        assertTrue(processEntity.isCompact());
+    }
+
+    /**
+     * Tests that the default serialized form of a compacted entity contains
+     * property lists
+     */
+    @Test
+    public void testSerializeCompactEntity() throws IOException, ClassNotFoundException {
+        ServerInitializer.inheritVeriniceContextState();
+        Entity entity = createAssetEntity();
+        assertTrue(entity.compact());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(entity);
+        }
+        assertTrue(entity.isCompact());
+        Entity deserializedEntity;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserializedEntity = (Entity) in.readObject();
+        }
+        assertFalse(deserializedEntity.isCompact());
+        assertEquals(entity.getPropertyValue(Asset.PROP_NAME),
+                deserializedEntity.getPropertyValue(Asset.PROP_NAME));
+        assertEquals(entity.getNumericValue(Asset.ASSET_VALUE_CONFIDENTIALITY),
+                deserializedEntity.getNumericValue(Asset.ASSET_VALUE_CONFIDENTIALITY));
+    }
+
+    /**
+     * Tests that the implementation state of controls and safeguards is read
+     * without creating the property lists of a compacted entity
+     */
+    @Test
+    public void testReadImplementationOfCompactEntity() {
+        ServerInitializer.inheritVeriniceContextState();
+        Entity controlEntity = new Entity(Control.TYPE_ID);
+        assertTrue(controlEntity.compact());
+        assertEquals(Control.IMPLEMENTED_NOTEDITED, Control.getImplementation(controlEntity));
+
+        controlEntity = new Entity(Control.TYPE_ID);
+        controlEntity.setSimpleValue(
+                huiTypeFactory.getPropertyType(Control.TYPE_ID, Control.PROP_IMPL),
+                Control.IMPLEMENTED_YES);
+        assertTrue(controlEntity.compact());
+        assertTrue(Control.isImplemented(controlEntity));
+        assertTrue(Control.isPlanned(controlEntity));
+        assertTrue(controlEntity.isCompact());
+
+        MassnahmenUmsetzung safeguard = new MassnahmenUmsetzung();
+        safeguard.setEntity(new Entity(MassnahmenUmsetzung.TYPE_ID));
+        safeguard.getEntity().setSimpleValue(huiTypeFactory
+                .getPropertyType(MassnahmenUmsetzung.TYPE_ID, MassnahmenUmsetzung.P_UMSETZUNG),
+                MassnahmenUmsetzung.P_UMSETZUNG_JA);
+        assertTrue(safeguard.getEntity().compact());
+        assertEquals(MassnahmenUmsetzung.P_UMSETZUNG_JA, safeguard.getUmsetzung());
+        assertTrue(safeguard.getEntity().isCompact());
+    }
+
+    /**
+     * Tests that a compacted entity can be read and serialized by several
+     * threads at once and that reading a reference property does not create
+     * the property lists of the entity
+     */
+    @Test
+    public void testReadCompactEntityConcurrently() throws Exception {
+        ServerInitializer.inheritVeriniceContextState();
+        PropertyType referenceType = huiTypeFactory.getPropertyType(
+                MassnahmenUmsetzung.TYPE_ID, MassnahmenUmsetzung.P_UMSETZUNGDURCH_LINK);
+        NameReferenceResolver resolver = NameReferenceResolver.install(referenceType);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final Entity entity = new Entity(MassnahmenUmsetzung.TYPE_ID);
+            entity.setPropertyValue(MassnahmenUmsetzung.P_UMSETZUNGDURCH_LINK, "42");
+            entity.setSimpleValue(huiTypeFactory.getPropertyType(MassnahmenUmsetzung.TYPE_ID,
+                    MassnahmenUmsetzung.P_UMSETZUNG), MassnahmenUmsetzung.P_UMSETZUNG_JA);
+            assertTrue(entity.compact());
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int j = 0; j < 500; j++) {
+                            assertEquals(NameReferenceResolver.NAME_PREFIX + "42",
+                                    entity.getPropertyValue(
+                                            MassnahmenUmsetzung.P_UMSETZUNGDURCH_LINK));
+                            assertEquals(MassnahmenUmsetzung.P_UMSETZUNG_JA, entity
+                                    .getRawPropertyValue(MassnahmenUmsetzung.P_UMSETZUNG));
+                            try (ObjectOutputStream out = new ObjectOutputStream(
+                                    new ByteArrayOutputStream())) {
+                                out.writeObject(entity);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            assertTrue(entity.isCompact());
+        } finally {
+            executor.shutdownNow();
+            resolver.uninstall();
+        }
+    }
+
+    static Entity createAssetEntity() {
+        Entity entity = new Entity(Asset.TYPE_ID);
+        HUITypeFactory typeFactory = HUITypeFactory.getInstance();
+        entity.initDefaultValues(typeFactory);
+        entity.setSimpleValue(typeFactory.getPropertyType(Asset.TYPE_ID, Asset.PROP_NAME),
+                "Email Server (Headquarter)");
+        entity.setSimpleValue(typeFactory.getPropertyType(Asset.TYPE_ID, Asset.PROP_ABBR),
+                "A-01");
+        entity.setNumericValue(
+                typeFactory.getPropertyType(Asset.TYPE_ID, Asset.ASSET_VALUE_CONFIDENTIALITY), 3);
+        entity.setNumericValue(
+                typeFactory.getPropertyType(Asset.TYPE_ID, Asset.ASSET_VALUE_INTEGRITY), 2);
+        entity.setNumericValue(
+                typeFactory.getPropertyType(Asset.TYPE_ID, Asset.ASSET_VALUE_AVAILABILITY), 1);
+        return entity;
+    }
+
 }
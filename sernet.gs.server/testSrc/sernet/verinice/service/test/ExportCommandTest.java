@@ -19,18 +19,33 @@
  ******************************************************************************/
 package sernet.verinice.service.test;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipFile;
+
+import javax.xml.bind.JAXB;
 
 import org.apache.log4j.Logger;
 import org.junit.Test;
 
+import de.sernet.sync.data.SyncObject;
+import de.sernet.sync.sync.SyncRequest;
 import sernet.verinice.interfaces.CommandException;
 import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.service.commands.ExportCommand;
 import sernet.verinice.service.commands.SyncParameter;
 import sernet.verinice.service.commands.SyncParameterException;
+import sernet.verinice.service.sync.VeriniceArchive;
 import sernet.verinice.service.test.helper.vnaimport.BeforeAllVNAImportHelper;
 
 /**
@@ -45,7 +60,7 @@ public class ExportCommandTest extends BeforeAllVNAImportHelper {
     private static final String VNA_FILENAME = "Export_Test.vna";
     private static final String SOURCE_ID = "41a219";
     private static final String EXT_ID_BP_ITNETWORK = "1f581c34-b512-46ba-ab74-7d9b776748dc";
-    
+
     /**
      * Tests the command by loading only processes that are relevant for data
      * privacy and additionally filtering out all target objects of the type "room" from
@@ -70,6 +85,77 @@ public class ExportCommandTest extends BeforeAllVNAImportHelper {
         assertTrue("Export did not produce any data.", 
                 cmd.getResult() != null && cmd.getResult().length>0);
     }
+
+    /**
+     * Tests that the parallel export creates the same XML every time.
+     */
+    @Test
+    public void exportScopeIsDeterministic() throws CommandException {
+        // Given:
+        CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_BP_ITNETWORK);
+
+        // When:
+        ExportCommand first = new ExportCommand(Arrays.asList(org), "testSourceId", false,
+                SyncParameter.EXPORT_FORMAT_XML_PURE);
+        first = commandService.executeCommand(first);
+        ExportCommand second = new ExportCommand(Arrays.asList(org), "testSourceId", false,
+                SyncParameter.EXPORT_FORMAT_XML_PURE);
+        second = commandService.executeCommand(second);
+
+        // Then:
+        assertArrayEquals(first.getResult(), second.getResult());
+    }
+
+    /**
+     * Tests that the streamed archive contains the same objects as the
+     * archive created in memory.
+     */
+    @Test
+    public void exportScopeToFile() throws CommandException, IOException {
+        // Given:
+        CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_BP_ITNETWORK);
+        File streamed = File.createTempFile("streamed", VeriniceArchive.EXTENSION_VERINICE_ARCHIVE);
+        streamed.deleteOnExit();
+        File inMemory = File.createTempFile("in-memory", VeriniceArchive.EXTENSION_VERINICE_ARCHIVE);
+        inMemory.deleteOnExit();
+
+        // When:
+        ExportCommand cmd = new ExportCommand(Arrays.asList(org), "testSourceId", false,
+                SyncParameter.EXPORT_FORMAT_VERINICE_ARCHIV, streamed.getAbsolutePath());
+        cmd = commandService.executeCommand(cmd);
+        ExportCommand inMemoryCmd = new ExportCommand(Arrays.asList(org), "testSourceId", false,
+                SyncParameter.EXPORT_FORMAT_VERINICE_ARCHIV, inMemory.getAbsolutePath());
+        inMemoryCmd.setStreamingExport(false);
+        inMemoryCmd = commandService.executeCommand(inMemoryCmd);
+
+        // Then:
+        assertNull(cmd.getResult());
+        SyncRequest streamedRequest = readSyncRequest(streamed);
+        SyncRequest inMemoryRequest = readSyncRequest(inMemory);
+        assertEquals("testSourceId", streamedRequest.getSourceId());
+        Set<String> extIds = collectExtIds(streamedRequest.getSyncData().getSyncObject());
+        assertTrue("Export did not produce any objects.", extIds.size() > 1);
+        assertEquals(collectExtIds(inMemoryRequest.getSyncData().getSyncObject()), extIds);
+        assertEquals(inMemoryRequest.getSyncData().getSyncLink().size(),
+                streamedRequest.getSyncData().getSyncLink().size());
+    }
+
+    private static SyncRequest readSyncRequest(File vna) throws IOException {
+        try (ZipFile zipFile = new ZipFile(vna);
+                InputStream in = zipFile
+                        .getInputStream(zipFile.getEntry(VeriniceArchive.VERINICE_XML))) {
+            return JAXB.unmarshal(in, SyncRequest.class);
+        }
+    }
+
+    private static Set<String> collectExtIds(List<SyncObject> syncObjects) {
+        Set<String> extIds = new HashSet<>();
+        for (SyncObject syncObject : syncObjects) {
+            extIds.add(syncObject.getExtId());
+            extIds.addAll(collectExtIds(syncObject.getChildren()));
+        }
+        return extIds;
+    }
     
     @Override
     protected String getFilePath() {
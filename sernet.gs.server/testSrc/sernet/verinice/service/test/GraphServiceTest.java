@@ -19,17 +19,41 @@
  ******************************************************************************/
 package sernet.verinice.service.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 
 import org.apache.log4j.Logger;
 import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import sernet.gs.service.RetrieveInfo;
+import sernet.hui.common.connect.Entity;
+import sernet.hui.common.connect.HUITypeFactory;
+import sernet.verinice.graph.GraphSnapshotCache;
 import sernet.verinice.interfaces.CommandException;
 import sernet.verinice.interfaces.IBaseDao;
 import sernet.verinice.interfaces.graph.GraphElementLoader;
@@ -38,6 +62,7 @@ import sernet.verinice.interfaces.graph.IGraphService;
 import sernet.verinice.interfaces.graph.VeriniceGraph;
 import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.model.iso27k.Asset;
+import sernet.verinice.model.iso27k.AssetGroup;
 import sernet.verinice.model.iso27k.Control;
 import sernet.verinice.model.iso27k.IncidentScenario;
 import sernet.verinice.model.iso27k.Threat;
@@ -63,9 +88,15 @@ public class GraphServiceTest extends BeforeAllVNAImportHelper {
     @Resource(name = "graphService")
     IGraphService graphService;
 
+    @Resource(name = "graphSnapshotCache")
+    GraphSnapshotCache graphSnapshotCache;
+
     @Resource(name = "cnaTreeElementDao")
     protected IBaseDao<CnATreeElement, Long> elementDao;
 
+    @Resource(name = "txManager")
+    PlatformTransactionManager transactionManager;
+
     @Test
     public void testLoadNode() throws Exception {
         List<String> uuidListAsset = getUuidsOfType(Asset.TYPE_ID);
@@ -129,6 +160,212 @@ public class GraphServiceTest extends BeforeAllVNAImportHelper {
         assertTrue("Number od links targets is not 3", targets.size() == 3);
     }
 
+    @Test
+    public void testElementIndexes() throws Exception {
+        CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_ORG);
+        VeriniceGraph graph = createGraph(org.getDbId(), new String[] { Asset.TYPE_ID,
+                Control.TYPE_ID, IncidentScenario.TYPE_ID, Vulnerability.TYPE_ID, Threat.TYPE_ID },
+                null);
+        for (CnATreeElement element : graph.getGraph().vertexSet()) {
+            assertSame(element, graph.getElement(element.getUuid()));
+            assertSame(element, graph.getElement(element.getDbId()));
+            assertTrue(graph.getElements(element.getTypeId()).contains(element));
+            assertTrue(graph.getElements(element.getClass()).contains(element));
+        }
+        int numberOfAssets = graph.getElements(Asset.TYPE_ID).size();
+        assertEquals(numberOfAssets, graph.getElements(Asset.class).size());
+
+        CnATreeElement asset = graph.getElements(Asset.TYPE_ID).iterator().next();
+        graph.removeVertex(asset);
+        assertFalse(graph.getGraph().containsVertex(asset));
+        assertNull(graph.getElement(asset.getUuid()));
+        assertNull(graph.getElement(asset.getDbId()));
+        assertEquals(numberOfAssets - 1, graph.getElements(Asset.TYPE_ID).size());
+        assertEquals(numberOfAssets - 1, graph.getElements(Asset.class).size());
+    }
+
+    @Test
+    public void testSnapshotIsSharedUntilElementChanges() throws Exception {
+        CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_ORG);
+        IGraphElementLoader loader = new GraphElementLoader();
+        loader.setTypeIds(new String[] { Asset.TYPE_ID, IncidentScenario.TYPE_ID });
+        loader.setScopeId(org.getDbId());
+        List<IGraphElementLoader> loaderList = Collections.singletonList(loader);
+
+        VeriniceGraph graph = graphService.createSnapshot(loaderList, null);
+        assertSame(graph, graphService.createSnapshot(loaderList, null));
+
+        graphSnapshotCache.elementsChanged(Collections.singletonList(org));
+        VeriniceGraph reloadedGraph = graphService.createSnapshot(loaderList, null);
+        assertNotSame(graph, reloadedGraph);
+        assertEquals(graph.getElements().size(), reloadedGraph.getElements().size());
+    }
+
+    @Test
+    public void testSnapshotIsInvalidatedAfterCommit() throws Exception {
+        final CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_ORG);
+        IGraphElementLoader loader = new GraphElementLoader();
+        loader.setTypeIds(new String[] { Asset.TYPE_ID });
+        loader.setScopeId(org.getDbId());
+        final List<IGraphElementLoader> loaderList = Collections.singletonList(loader);
+        final VeriniceGraph graph = graphService.createSnapshot(loaderList, null);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                graphSnapshotCache.elementsChanged(Collections.singletonList(org));
+                status.setRollbackOnly();
+            }
+        });
+        assertSame(graph, graphService.createSnapshot(loaderList, null));
+
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                graphSnapshotCache.elementsChanged(Collections.singletonList(org));
+                assertSame(graph, graphService.createSnapshot(loaderList, null));
+            }
+        });
+        assertNotSame(graph, graphService.createSnapshot(loaderList, null));
+    }
+
+    /**
+     * Tests that several threads read and serialize the same snapshot at once
+     * and get the same values as from a graph which is not shared
+     */
+    @Test
+    public void testReadSnapshotConcurrently() throws Exception {
+        CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_ORG);
+        IGraphElementLoader loader = new GraphElementLoader();
+        loader.setTypeIds(new String[] { Asset.TYPE_ID, IncidentScenario.TYPE_ID });
+        loader.setScopeId(org.getDbId());
+        final List<IGraphElementLoader> loaderList = Collections.singletonList(loader);
+        final Map<String, Map<String, String>> expectedValues = getPropertyValues(
+                graphService.create(loaderList, null));
+        final VeriniceGraph graph = graphService.createSnapshot(loaderList, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int j = 0; j < 10; j++) {
+                            VeriniceGraph snapshot = graphService.createSnapshot(loaderList,
+                                    null);
+                            assertSame(graph, snapshot);
+                            assertEquals(expectedValues, getPropertyValues(snapshot));
+                            try (ObjectOutputStream out = new ObjectOutputStream(
+                                    new ByteArrayOutputStream())) {
+                                out.writeObject(snapshot);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (CnATreeElement element : graph.getElements()) {
+            assertTrue(element.getEntity() == null || element.getEntity().isCompact());
+        }
+    }
+
+    /**
+     * @return The values of all properties of the elements of the graph by
+     *         uuid and property type id
+     */
+    private static Map<String, Map<String, String>> getPropertyValues(VeriniceGraph graph) {
+        Map<String, Map<String, String>> values = new HashMap<>();
+        for (CnATreeElement element : graph.getElements()) {
+            Entity entity = element.getEntity();
+            Map<String, String> elementValues = new HashMap<>();
+            for (String propertyTypeId : HUITypeFactory.getInstance()
+                    .getEntityType(element.getTypeId()).getAllPropertyTypeIds()) {
+                elementValues.put(propertyTypeId, entity.getPropertyValue(propertyTypeId));
+            }
+            elementValues.put("linkTargets",
+                    String.valueOf(graph.getLinkTargets(element).size()));
+            values.put(element.getUuid(), elementValues);
+        }
+        return values;
+    }
+
+    @Test
+    public void testSnapshotContainsDetachedElements() throws Exception {
+        CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_ORG);
+        IGraphElementLoader loader = new GraphElementLoader();
+        loader.setTypeIds(new String[] { Asset.TYPE_ID });
+        loader.setScopeId(org.getDbId());
+        VeriniceGraph graph = graphService.createSnapshot(Collections.singletonList(loader),
+                null);
+
+        for (CnATreeElement element : graph.getElements()) {
+            CnATreeElement loadedElement = elementDao.findByUuid(element.getUuid(),
+                    new RetrieveInfo());
+            assertEquals(loadedElement, element);
+            assertNotSame(loadedElement, element);
+        }
+    }
+
+    @Test
+    public void testDeserializedDirectedGraphIsCompact() throws Exception {
+        CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_ORG);
+        IGraphElementLoader loader = new GraphElementLoader();
+        loader.setTypeIds(new String[] { Asset.TYPE_ID, IncidentScenario.TYPE_ID });
+        loader.setScopeId(org.getDbId());
+        VeriniceGraph graph = graphService.createDirectedGraph(Collections.singletonList(loader));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(graph);
+        }
+        VeriniceGraph deserializedGraph;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserializedGraph = (VeriniceGraph) in.readObject();
+        }
+
+        assertEquals(graph.getElements().size(), deserializedGraph.getElements().size());
+        assertEquals(graph.getGraph().edgeSet().size(),
+                deserializedGraph.getGraph().edgeSet().size());
+        for (CnATreeElement element : deserializedGraph.getElements()) {
+            assertTrue(element.getEntity() == null || element.getEntity().isCompact());
+            assertSame(element, deserializedGraph.getElement(element.getUuid()));
+        }
+    }
+
+    @Test
+    public void testLoadSelectedProperties() throws Exception {
+        CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_ORG);
+        String[] typeIds = new String[] { AssetGroup.TYPE_ID, Asset.TYPE_ID };
+        VeriniceGraph graph = createGraph(org.getDbId(), typeIds, null);
+        elementDao.clear();
+
+        IGraphElementLoader loader = new GraphElementLoader();
+        loader.setTypeIds(typeIds);
+        loader.setScopeId(org.getDbId());
+        loader.setPropertyTypeIds(new String[] { AssetGroup.PROP_NAME, Asset.PROP_NAME });
+        loader.setCnaTreeElementDao(elementDao);
+        VeriniceGraph projectedGraph = graphService.create(Collections.singletonList(loader),
+                false);
+
+        assertEquals(graph.getElements().size(), projectedGraph.getElements().size());
+        for (CnATreeElement element : graph.getElements()) {
+            CnATreeElement projectedElement = projectedGraph.getElement(element.getDbId());
+            assertEquals(element.getTitle(), projectedElement.getTitle());
+            assertEquals(graph.getChildren(element).size(),
+                    projectedGraph.getChildren(projectedElement).size());
+            assertTrue(projectedElement.getEntity().isCompact());
+        }
+    }
+
     private VeriniceGraph createGraph(Integer scopeId, String[] typeIds, String[] relationsTypeIds)
             throws CommandException {
         IGraphElementLoader loader = new GraphElementLoader();
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import sernet.verinice.search.IndexUpdateQueue;
+
+/**
+ * Tests that the {@link IndexUpdateQueue} coalesces repeated updates of an
+ * element and indexes all waiting elements when it is shut down. The
+ * elements are not sent to Elasticsearch, the test records the batches.
+ */
+public class IndexUpdateQueueTest {
+
+    private static final long TIMEOUT_MS = 10000;
+
+    private RecordingIndexUpdateQueue queue;
+
+    @Before
+    public void setUp() {
+        queue = new RecordingIndexUpdateQueue();
+        queue.setEnabled(true);
+        queue.setBatchSize(10);
+        // long enough that only full batches and the shutdown flush the queue
+        queue.setMaxStalenessMs(TIMEOUT_MS * 6);
+        queue.init();
+    }
+
+    @After
+    public void tearDown() {
+        queue.shutdown();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testRepeatedUpdatesAreCoalesced() {
+        for (int i = 0; i < 5; i++) {
+            queue.add("a");
+        }
+        queue.add("b");
+        queue.add("a");
+
+        assertEquals(2, queue.getQueueDepth());
+        assertEquals(2, queue.getNumberOfQueuedUpdates());
+        assertEquals(5, queue.getNumberOfCoalescedUpdates());
+
+        queue.shutdown();
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")), queue.getBatches());
+    }
+
+    @Test
+    public void testUpdatesAreQueuedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        queue.add("a");
+        queue.add("b");
+        queue.add("a");
+        assertEquals(0, queue.getQueueDepth());
+
+        for (Object synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            ((TransactionSynchronization) synchronization).afterCommit();
+            ((TransactionSynchronization) synchronization)
+                    .afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        assertEquals(2, queue.getQueueDepth());
+
+        queue.add("a");
+        assertEquals(2, queue.getQueueDepth());
+        assertEquals(1, queue.getNumberOfCoalescedUpdates());
+    }
+
+    @Test
+    public void testFullBatchIsFlushed() throws InterruptedException {
+        for (int i = 0; i < 25; i++) {
+            queue.add("element-" + i);
+        }
+        long end = System.currentTimeMillis() + TIMEOUT_MS;
+        while (queue.getNumberOfFlushes() < 2 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, queue.getNumberOfFlushes());
+        assertEquals(5, queue.getQueueDepth());
+        for (List<String> batch : queue.getBatches()) {
+            assertEquals(10, batch.size());
+        }
+    }
+
+    @Test
+    public void testFlushOnShutdown() {
+        for (int i = 0; i < 15; i++) {
+            queue.add("element-" + i);
+        }
+        queue.shutdown();
+
+        assertFalse(queue.isActive());
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(15, queue.getNumberOfIndexedElements());
+        List<String> indexed = new ArrayList<>();
+        for (List<String> batch : queue.getBatches()) {
+            assertTrue(batch.size() <= 10);
+            indexed.addAll(batch);
+        }
+        assertEquals(15, indexed.size());
+        for (int i = 0; i < 15; i++) {
+            assertEquals("element-" + i, indexed.get(i));
+        }
+    }
+
+    private static final class RecordingIndexUpdateQueue extends IndexUpdateQueue {
+
+        private final List<List<String>> batches = Collections
+                .synchronizedList(new ArrayList<List<String>>());
+
+        @Override
+        protected int index(List<String> uuids) {
+            batches.add(new ArrayList<>(uuids));
+            return uuids.size();
+        }
+
+        private List<List<String>> getBatches() {
+            synchronized (batches) {
+                return new ArrayList<>(batches);
+            }
+        }
+    }
+}
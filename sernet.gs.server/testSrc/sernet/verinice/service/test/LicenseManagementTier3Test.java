@@ -248,6 +248,36 @@ public class LicenseManagementTier3Test extends BeforeEachVNAImportHelper {
         }
     }
 
+    @Test
+    public void entriesByEncryptedContentId() throws IOException, LicenseManagementException {
+        String encryptedContentId = getDynamicEncryptedString(CONTENT_ID,
+                cryptoPassword.toCharArray(), cryptoSalt);
+        int numberOfEntries = licenseManagementService
+                .getLicenseEntriesForContentId(encryptedContentId, true).size();
+        Assert.assertEquals(numberOfEntries, licenseManagementService
+                .getLicenseEntriesForContentId(encryptedContentId, true).size());
+
+        File repoFile = null;
+        try {
+            String licenseId = "entriesByEncryptedContentId";
+            LicenseManagementEntry entry = getSingleCryptedEntry();
+            entry.setLicenseID(
+                    cryptoService.encrypt(licenseId, cryptoPassword.toCharArray(), cryptoSalt));
+            // adding a license file reads the files again and clears the cache
+            repoFile = addLicenseToRepository(entry);
+            Set<LicenseManagementEntry> entries = licenseManagementService
+                    .getLicenseEntriesForContentId(encryptedContentId, true);
+            Assert.assertEquals(numberOfEntries + 1, entries.size());
+            Assert.assertTrue(entries.contains(entry));
+            Assert.assertTrue(licenseManagementService
+                    .getLicenseIdsForContentId(encryptedContentId, true).contains(licenseId));
+            Assert.assertTrue(
+                    licenseManagementService.getAllContentIds(true).contains(CONTENT_ID));
+        } finally {
+            FileUtils.forceDelete(repoFile);
+        }
+    }
+
     private File addLicenseToRepository(LicenseManagementEntry entry)
             throws LicenseManagementException, IOException {
         File vnlFile = null;
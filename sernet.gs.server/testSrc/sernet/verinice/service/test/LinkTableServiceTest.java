@@ -39,10 +39,18 @@ import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.junit.Test;
 
+import sernet.hui.common.connect.Entity;
+import sernet.hui.common.connect.HUITypeFactory;
+import sernet.hui.common.connect.PropertyType;
 import sernet.verinice.interfaces.CommandException;
 import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.interfaces.graph.Edge;
+import sernet.verinice.interfaces.graph.UndirectedVeriniceGraph;
+import sernet.verinice.interfaces.graph.VeriniceGraph;
+import sernet.verinice.model.bsi.MassnahmenUmsetzung;
 import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.model.iso27k.Asset;
+import sernet.verinice.model.iso27k.Control;
 import sernet.verinice.service.commands.LoadCnAElementByEntityTypeId;
 import sernet.verinice.service.commands.SyncParameter;
 import sernet.verinice.service.commands.SyncParameterException;
@@ -50,6 +58,7 @@ import sernet.verinice.service.linktable.ILinkTableConfiguration;
 import sernet.verinice.service.linktable.ILinkTableService;
 import sernet.verinice.service.linktable.LinkTableConfiguration;
 import sernet.verinice.service.linktable.LinkTableService;
+import sernet.verinice.service.linktable.RowComparator;
 import sernet.verinice.service.linktable.generator.GraphLinkedTableCreator;
 import sernet.verinice.service.linktable.vlt.VeriniceLinkTableIO;
 import sernet.verinice.service.test.helper.vnaimport.BeforeAllVNAImportHelper;
@@ -182,6 +191,124 @@ public class LinkTableServiceTest extends BeforeAllVNAImportHelper {
 
     }
 
+    @Test
+    public void testParallelModeCreatesSameTable() throws CommandException {
+        CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_ORG);
+
+        LinkTableConfiguration.Builder builder = new LinkTableConfiguration.Builder();
+        builder.addScopeId(org.getScopeId()).addColumnPath("asset.asset_name")
+                .addColumnPath("asset/control.control_name")
+                .addColumnPath("asset/incident_scenario.incident_scenario_name");
+        LinkTableConfiguration configuration = builder.build();
+
+        service.setLinkTableCreator(new GraphLinkedTableCreator());
+        List<List<String>> sequentialTable = service.createTable(configuration);
+
+        service.setLinkTableCreator(new GraphLinkedTableCreator(4));
+        List<List<String>> parallelTable = service.createTable(configuration);
+
+        assertEquals(sequentialTable, parallelTable);
+    }
+
+    /**
+     * Tests that the parallel mode creates the same table as the sequential
+     * mode if the partitions read reference properties of compacted elements
+     */
+    @Test
+    public void testParallelModeWithReferenceProperties() {
+        PropertyType referenceType = HUITypeFactory.getInstance().getPropertyType(
+                MassnahmenUmsetzung.TYPE_ID, MassnahmenUmsetzung.P_UMSETZUNGDURCH_LINK);
+        NameReferenceResolver resolver = NameReferenceResolver.install(referenceType);
+        try {
+            VeriniceGraph graph = new UndirectedVeriniceGraph();
+            for (int i = 0; i < 500; i++) {
+                MassnahmenUmsetzung safeguard = new MassnahmenUmsetzung();
+                safeguard.setDbId(i);
+                safeguard.setEntity(new Entity(MassnahmenUmsetzung.TYPE_ID));
+                safeguard.getEntity().setSimpleValue(HUITypeFactory.getInstance()
+                        .getPropertyType(MassnahmenUmsetzung.TYPE_ID, MassnahmenUmsetzung.P_NAME),
+                        "Safeguard " + i);
+                safeguard.getEntity().setPropertyValue(MassnahmenUmsetzung.P_UMSETZUNGDURCH_LINK,
+                        String.valueOf(i % 10));
+                assertTrue(safeguard.getEntity().compact());
+                graph.addVertex(safeguard);
+            }
+            LinkTableConfiguration configuration = new LinkTableConfiguration.Builder()
+                    .addColumnPath("mnums.mnums_name")
+                    .addColumnPath("mnums.mnums_umsetzungdurch_link").build();
+
+            List<List<String>> sequentialTable = new GraphLinkedTableCreator()
+                    .createTable(graph, configuration);
+            List<List<String>> parallelTable = new GraphLinkedTableCreator(4)
+                    .createTable(graph, configuration);
+
+            assertEquals(501, sequentialTable.size());
+            assertEquals(sequentialTable, parallelTable);
+            for (List<String> row : parallelTable.subList(1, parallelTable.size())) {
+                assertTrue(row.get(1).startsWith(NameReferenceResolver.NAME_PREFIX));
+            }
+            for (CnATreeElement element : graph.getElements()) {
+                assertTrue(element.getEntity().isCompact());
+            }
+        } finally {
+            resolver.uninstall();
+        }
+    }
+
+    @Test
+    public void testCreateTableOnGeneratedGraph() {
+        VeriniceGraph graph = new UndirectedVeriniceGraph();
+        List<List<String>> expectedRows = new LinkedList<>();
+        int dbId = 0;
+        for (int i = 0; i < 1000; i++) {
+            Asset asset = new Asset(null, "Asset " + i);
+            asset.setDbId(dbId++);
+            graph.addVertex(asset);
+            int numberOfControls = i % 4;
+            if (numberOfControls == 0) {
+                expectedRows.add(Arrays.asList(asset.getTitle(), ""));
+            }
+            for (int j = 0; j < numberOfControls; j++) {
+                Control control = new Control(null);
+                control.setTitel("Control " + i + "." + j);
+                control.setDbId(dbId++);
+                graph.addVertex(control);
+                graph.addEdge(new Edge(asset, control, "rel_asset_control"));
+                expectedRows.add(Arrays.asList(asset.getTitle(), control.getTitle()));
+            }
+        }
+        Collections.sort(expectedRows, new RowComparator());
+        LinkTableConfiguration configuration = new LinkTableConfiguration.Builder()
+                .addColumnPath("asset.asset_name")
+                .addColumnPath("asset/control.control_name").build();
+
+        long start = System.currentTimeMillis();
+        List<List<String>> table = new GraphLinkedTableCreator().createTable(graph,
+                configuration);
+        LOG.info("Link table of generated graph created in "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        assertEquals(Arrays.asList("asset.asset_name", "asset/control.control_name"),
+                table.get(0));
+        assertEquals(expectedRows, table.subList(1, table.size()));
+        assertEquals(table, new GraphLinkedTableCreator(4).createTable(graph, configuration));
+    }
+
+    @Test
+    public void testConfiguredNumberOfThreads() {
+        String property = GraphLinkedTableCreator.NUMBER_OF_THREADS_PROPERTY;
+        try {
+            System.clearProperty(property);
+            assertEquals(1, GraphLinkedTableCreator.getConfiguredNumberOfThreads());
+            System.setProperty(property, "4");
+            assertEquals(4, GraphLinkedTableCreator.getConfiguredNumberOfThreads());
+            System.setProperty(property, "0");
+            assertEquals(1, GraphLinkedTableCreator.getConfiguredNumberOfThreads());
+        } finally {
+            System.clearProperty(property);
+        }
+    }
+
     @Test
     public void testCreateWithVltFile() throws CommandException, IOException {
         CnATreeElement org = loadElement(SOURCE_ID, EXT_ID_ORG);
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sernet.verinice.interfaces.CommandException;
+import sernet.verinice.model.common.CnATreeElement;
+import sernet.verinice.model.iso27k.Asset;
+import sernet.verinice.model.iso27k.AssetGroup;
+import sernet.verinice.model.iso27k.Control;
+import sernet.verinice.model.iso27k.Group;
+import sernet.verinice.model.iso27k.Organization;
+import sernet.verinice.service.commands.crud.LoadReportElements;
+
+/**
+ * Tests that {@link LoadReportElements} finds the elements of a type in all
+ * levels of the subtree of the root element.
+ */
+public class LoadReportElementsTest extends CommandServiceProvider {
+
+    private Organization organization;
+
+    private Group<CnATreeElement> assetGroup;
+
+    private Group<CnATreeElement> subGroup;
+
+    private Set<String> assetUuids;
+
+    private Set<String> controlUuids;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void createElements() throws CommandException {
+        organization = createOrganization();
+        assetGroup = getGroupForClass(organization, Asset.class);
+        subGroup = (Group<CnATreeElement>) createNewNamedGroup(assetGroup, "sub group");
+        Group<CnATreeElement> subSubGroup = (Group<CnATreeElement>) createNewNamedGroup(
+                subGroup, "sub sub group");
+        assetUuids = new HashSet<>(Arrays.asList(
+                createNewElement(assetGroup, Asset.class, 1).getUuid(),
+                createNewElement(subGroup, Asset.class, 2).getUuid(),
+                createNewElement(subSubGroup, Asset.class, 3).getUuid(),
+                createNewElement(subSubGroup, Asset.class, 4).getUuid()));
+        Group<CnATreeElement> controlGroup = getGroupForClass(organization, Control.class);
+        controlUuids = new HashSet<>(Arrays.asList(
+                createNewElement(controlGroup, Control.class, 1).getUuid(),
+                createNewElement(controlGroup, Control.class, 2).getUuid()));
+    }
+
+    @After
+    public void removeElements() throws CommandException {
+        removeOrganization(organization);
+    }
+
+    @Test
+    public void testLoadElementsOfType() throws CommandException {
+        List<CnATreeElement> assets = loadElements(Asset.TYPE_ID, organization);
+        assertEquals(assetUuids, getUuids(assets));
+        for (CnATreeElement asset : assets) {
+            assertNotNull(asset.getTitle());
+            assertNotNull(asset.getParent().getTitle());
+        }
+        assertEquals(controlUuids, getUuids(loadElements(Control.TYPE_ID, organization)));
+        assertEquals(3, loadElements(AssetGroup.TYPE_ID, organization).size());
+        assertEquals(3, loadElements(Asset.TYPE_ID, subGroup).size());
+    }
+
+    @Test
+    public void testElementsAreSortedByTitle() throws CommandException {
+        List<CnATreeElement> assets = loadElements(Asset.TYPE_ID, assetGroup);
+        assertEquals(4, assets.size());
+        for (int i = 0; i < assets.size(); i++) {
+            assertEquals(getClass().getSimpleName() + "_" + (i + 1), assets.get(i).getTitle());
+        }
+    }
+
+    @Test
+    public void testRootElementOfType() throws CommandException {
+        List<CnATreeElement> groups = loadElements(AssetGroup.TYPE_ID, subGroup);
+        assertEquals(1, groups.size());
+        assertEquals(subGroup.getUuid(), groups.get(0).getUuid());
+    }
+
+    private List<CnATreeElement> loadElements(String typeId, CnATreeElement root)
+            throws CommandException {
+        LoadReportElements command = new LoadReportElements(typeId, root.getDbId());
+        return commandService.executeCommand(command).getElements();
+    }
+
+    private static Set<String> getUuids(List<CnATreeElement> elements) {
+        Set<String> uuids = new HashSet<>();
+        for (CnATreeElement element : elements) {
+            uuids.add(element.getUuid());
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.io.FileUtils;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.MatchQueryBuilder.Operator;
+import org.elasticsearch.search.SearchHit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sernet.gs.service.RetrieveInfo;
+import sernet.verinice.interfaces.CommandException;
+import sernet.verinice.interfaces.IAuthService;
+import sernet.verinice.interfaces.IConfigurationService;
+import sernet.verinice.interfaces.IDirectoryCreator;
+import sernet.verinice.interfaces.search.ISearchService;
+import sernet.verinice.model.common.CnATreeElement;
+import sernet.verinice.model.iso27k.Asset;
+import sernet.verinice.model.samt.SamtTopic;
+import sernet.verinice.model.search.VeriniceQuery;
+import sernet.verinice.search.JsonBuilder;
+import sernet.verinice.search.LuceneElementDao;
+import sernet.verinice.service.commands.SyncParameter;
+import sernet.verinice.service.commands.SyncParameterException;
+import sernet.verinice.service.test.helper.vnaimport.BeforeEachVNAImportHelper;
+
+/**
+ * Tests the search DAO which stores the documents in a local Lucene index.
+ */
+public class LuceneElementDaoTest extends BeforeEachVNAImportHelper {
+
+    private static final String VNA_FILENAME = "ElasticsearchTest.vna";
+
+    private static final String SOURCE_ID = "1460b5";
+
+    private static final String TITLE = "Cryptography";
+    private static final String NEW_TITLE = "SerNet NOT defined yet";
+    private static final String PHRASE = "Protection from malware";
+
+    private File indexFolder;
+
+    @Resource(name = "authService")
+    private IAuthService authService;
+
+    @Resource(name = "configurationService")
+    private IConfigurationService configurationService;
+
+    private LuceneElementDao searchDao;
+
+    private JsonBuilder jsonBuilder = new JsonBuilder();
+
+    private List<String> indexedUuids = new ArrayList<>();
+
+    @Before
+    public void openIndex() throws IOException {
+        indexFolder = Files.createTempDirectory("lucene").toFile();
+        searchDao = new LuceneElementDao();
+        searchDao.setAuthService(authService);
+        searchDao.setConfigurationService(configurationService);
+        searchDao.setDirectoryCreator(new IDirectoryCreator() {
+            @Override
+            public String create() {
+                return indexFolder.getAbsolutePath();
+            }
+
+            @Override
+            public String create(String subDirectory) {
+                return new File(indexFolder, subDirectory).getAbsolutePath();
+            }
+        });
+        searchDao.init();
+        indexElementsFromVna();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws CommandException {
+        try {
+            searchDao.destroy();
+            FileUtils.deleteDirectory(indexFolder);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        super.tearDown();
+    }
+
+    @Test
+    public void testIndexAndFind() {
+        SearchResponse response = searchDao.find(TITLE);
+        assertTrue("No element found with '" + TITLE + "'",
+                response.getHits().getTotalHits() > 0);
+
+        for (String uuid : indexedUuids) {
+            response = searchDao.find(ISearchService.ES_FIELD_UUID, uuid);
+            assertEquals("Element not found, uuid: " + uuid, 1,
+                    response.getHits().getTotalHits());
+            assertEquals(uuid, response.getHits().getAt(0).getId());
+        }
+    }
+
+    @Test
+    public void testFindByPhrase() {
+        SearchResponse response = searchDao.findByPhrase(PHRASE);
+        assertTrue("Phrase '" + PHRASE + "' not found", response.getHits().getTotalHits() > 0);
+        for (SearchHit hit : response.getHits()) {
+            assertTrue("Phrase '" + PHRASE + "' is not highlighted",
+                    !hit.getHighlightFields().isEmpty());
+        }
+    }
+
+    @Test
+    public void testFindByPhraseAndType() {
+        SearchResponse response = searchDao.findByPhrase(PHRASE, SamtTopic.TYPE_ID);
+        assertTrue("Phrase '" + PHRASE + "' not found in type " + SamtTopic.TYPE_ID,
+                response.getHits().getTotalHits() > 0);
+        for (SearchHit hit : response.getHits()) {
+            assertEquals(SamtTopic.TYPE_ID,
+                    hit.getSource().get(ISearchService.ES_FIELD_ELEMENT_TYPE));
+        }
+
+        response = searchDao.findByPhrase(PHRASE, Asset.TYPE_ID);
+        assertEquals("Phrase '" + PHRASE + "' found in type " + Asset.TYPE_ID, 0,
+                response.getHits().getTotalHits());
+    }
+
+    @Test
+    public void testFindByTypeAndQuery() {
+        MultiSearchResponse response = searchDao.find(SamtTopic.TYPE_ID,
+                new VeriniceQuery(PHRASE, VeriniceQuery.MAX_LIMIT));
+        assertNotNull(response);
+        long hits = 0;
+        for (MultiSearchResponse.Item item : response.getResponses()) {
+            hits += item.getResponse().getHits().getTotalHits();
+        }
+        assertTrue("Phrase '" + PHRASE + "' not found in type " + SamtTopic.TYPE_ID, hits > 0);
+
+        response = searchDao.find(Asset.TYPE_ID,
+                new VeriniceQuery(PHRASE, VeriniceQuery.MAX_LIMIT));
+        for (MultiSearchResponse.Item item : response.getResponses()) {
+            assertEquals(0, item.getResponse().getHits().getTotalHits());
+        }
+    }
+
+    @Test
+    public void testUpdate() {
+        assertEquals(0, searchDao.find(NEW_TITLE, Operator.AND).getHits().getTotalHits());
+
+        SearchResponse response = searchDao.find(TITLE);
+        String uuid = response.getHits().getAt(0).getId();
+        CnATreeElement element = elementDao.findByUuid(uuid,
+                RetrieveInfo.getPropertyInstance().setPermissions(true));
+        element.setTitel(NEW_TITLE);
+        searchDao.update(uuid, jsonBuilder.getJson(element));
+
+        response = searchDao.find(NEW_TITLE, Operator.AND);
+        assertEquals("Updated element not found", 1, response.getHits().getTotalHits());
+        assertEquals(uuid, response.getHits().getAt(0).getId());
+    }
+
+    @Test
+    public void testDelete() {
+        SearchResponse response = searchDao.find(TITLE);
+        long hits = response.getHits().getTotalHits();
+        String uuid = response.getHits().getAt(0).getId();
+
+        searchDao.delete(uuid);
+
+        assertEquals(hits - 1, searchDao.find(TITLE).getHits().getTotalHits());
+        assertEquals(0,
+                searchDao.find(ISearchService.ES_FIELD_UUID, uuid).getHits().getTotalHits());
+    }
+
+    @Test
+    public void testClear() {
+        assertTrue(searchDao.findAll().getHits().getTotalHits() > 0);
+        searchDao.clear();
+        assertEquals(0, searchDao.findAll().getHits().getTotalHits());
+    }
+
+    private void indexElementsFromVna() {
+        for (String uuid : getUuidsFromVna()) {
+            CnATreeElement element = elementDao.findByUuid(uuid,
+                    RetrieveInfo.getPropertyInstance().setPermissions(true));
+            String json = jsonBuilder.getJson(element);
+            if (json != null) {
+                // update refreshes the reader after indexing
+                searchDao.update(uuid, json);
+                indexedUuids.add(uuid);
+            }
+        }
+    }
+
+    private List<String> getUuidsFromVna() {
+        return elementDao.findByQuery(
+                "select e.uuid from CnATreeElement e where e.sourceId = ?",
+                new Object[] { SOURCE_ID });
+    }
+
+    @Override
+    protected String getFilePath() {
+        return this.getClass().getResource(VNA_FILENAME).getPath();
+    }
+
+    @Override
+    protected SyncParameter getSyncParameter() throws SyncParameterException {
+        return new SyncParameter(true, true, true, false,
+                SyncParameter.EXPORT_FORMAT_VERINICE_ARCHIV);
+    }
+
+}
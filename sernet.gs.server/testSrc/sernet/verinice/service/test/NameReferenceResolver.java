@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sernet.hui.common.connect.Entity;
+import sernet.hui.common.connect.IReferenceResolver;
+import sernet.hui.common.connect.Property;
+import sernet.hui.common.connect.PropertyOption;
+import sernet.hui.common.connect.PropertyType;
+import sernet.hui.common.multiselectionlist.IMLPropertyOption;
+
+/**
+ * Resolves references without a database, the name of a referenced entity is
+ * "Person " followed by the value of the reference property.
+ *
+ * Use {@link #install(PropertyType)} and {@link #uninstall()} to replace the
+ * resolver of a property type of the shared type factory during a test.
+ */
+class NameReferenceResolver implements IReferenceResolver {
+
+    static final String NAME_PREFIX = "Person ";
+
+    private final PropertyType propertyType;
+
+    private final IReferenceResolver originalResolver;
+
+    private NameReferenceResolver(PropertyType propertyType) {
+        this.propertyType = propertyType;
+        this.originalResolver = propertyType.getReferenceResolver();
+    }
+
+    static NameReferenceResolver install(PropertyType propertyType) {
+        NameReferenceResolver resolver = new NameReferenceResolver(propertyType);
+        propertyType.setReferenceResolver(resolver);
+        return resolver;
+    }
+
+    void uninstall() {
+        propertyType.setReferenceResolver(originalResolver);
+    }
+
+    @Override
+    public List<IMLPropertyOption> getReferencedEntitesForType(String referencedEntityTypeId,
+            List<Property> references) {
+        List<IMLPropertyOption> result = new ArrayList<>(references.size());
+        for (Property reference : references) {
+            String id = reference.getPropertyValue();
+            result.add(new PropertyOption(id, NAME_PREFIX + id));
+        }
+        return result;
+    }
+
+    @Override
+    public List<IMLPropertyOption> getAllEntitesForType(String referencedEntityTypeId) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public void addNewEntity(Entity parentEntity, String newName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getTitlesOfLinkedObjects(String referencedCnaLinkType, String entityUuid) {
+        return "";
+    }
+
+    @Override
+    public void createLinks(String referencedEntityType, String linkType, String entityUuid) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -18,7 +18,10 @@
 package sernet.verinice.service.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.Resource;
@@ -26,15 +29,21 @@ import javax.annotation.Resource;
 import org.junit.After;
 import org.junit.Test;
 
+import sernet.gs.service.RetrieveInfo;
 import sernet.verinice.interfaces.CommandException;
 import sernet.verinice.model.common.CnALink;
+import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.model.iso27k.Asset;
+import sernet.verinice.model.iso27k.Group;
 import sernet.verinice.model.iso27k.IncidentScenario;
 import sernet.verinice.model.iso27k.Organization;
+import sernet.verinice.service.commands.LoadCnAElementByExternalID;
+import sernet.verinice.service.commands.LoadElementByUuid;
 import sernet.verinice.service.commands.SyncParameter;
 import sernet.verinice.service.commands.SyncParameterException;
 import sernet.verinice.service.risk.RiskAnalysisConfiguration;
 import sernet.verinice.service.risk.RiskAnalysisService;
+import sernet.verinice.service.risk.RiskAnalysisServiceImpl;
 import sernet.verinice.service.test.helper.vnaimport.BeforeEachVNAImportHelper;
 
 /**
@@ -48,9 +57,17 @@ public class RiskAnalysisServiceTest extends BeforeEachVNAImportHelper {
     private static final String EXT_ID_ORGANIZATION = "3107a3aa-efdc-49d7-bddd-7fc7e581bbbb";
     private static final String EXT_ID_ASSET = "fce4e1c2-039c-4b0d-8709-1a7347765a57";
 
+    // More assets than the minimum partition size of the risk analysis job
+    private static final int NUMBER_OF_ASSET_COPIES = 60;
+
+    private static final int OUTDATED_RISK = 42;
+
     @Resource(name = "riskAnalysisService")
     RiskAnalysisService riskAnalysisService;
 
+    @Resource(name = "riskAnalysisServiceImpl")
+    RiskAnalysisServiceImpl riskAnalysisServiceImpl;
+
     @Override
     @After
     public void tearDown() throws CommandException {
@@ -73,6 +90,122 @@ public class RiskAnalysisServiceTest extends BeforeEachVNAImportHelper {
         }
     }
 
+    /**
+     * Tests that an incremental risk analysis recomputes the assets which are
+     * affected by a changed scenario and skips all other assets
+     */
+    @Test
+    public void testIncrementalRiskAnalysis() throws CommandException {
+        Organization org = (Organization) loadElement(SOURCE_ID, EXT_ID_ORGANIZATION);
+        riskAnalysisService.runRiskAnalysis(new RiskAnalysisConfiguration(org.getDbId()));
+        Asset asset = loadAssetWithLinks();
+        CnATreeElement scenario = null;
+        for (CnALink link : asset.getLinksUp()) {
+            if (IncidentScenario.REL_INCSCEN_ASSET.equals(link.getRelationId())) {
+                scenario = link.getDependant();
+            }
+        }
+        assertNotNull(scenario);
+
+        // an asset without scenarios is not affected by the changed scenario
+        @SuppressWarnings("unchecked")
+        CnATreeElement unaffectedAsset = createNewElement(
+                (Group<CnATreeElement>) asset.getParent(), Asset.class, 0);
+        unaffectedAsset.setNumericProperty(Asset.ASSET_RISK_C, OUTDATED_RISK);
+        unaffectedAsset = updateElement(unaffectedAsset);
+        // the asset is linked to the changed scenario
+        asset.setNumericProperty(Asset.ASSET_RISK_C, OUTDATED_RISK);
+        asset.setNumericProperty(Asset.ASSET_CONTROLRISK_I, OUTDATED_RISK);
+        updateElement(asset);
+
+        RiskAnalysisConfiguration configuration = new RiskAnalysisConfiguration(org.getDbId());
+        configuration.addChangedElement(scenario);
+        riskAnalysisService.runRiskAnalysis(configuration);
+
+        asset = (Asset) loadElement(SOURCE_ID, EXT_ID_ASSET);
+        checkRiskValues(asset);
+        for (CnALink link : asset.getLinksUp()) {
+            if (IncidentScenario.REL_INCSCEN_ASSET.equals(link.getRelationId())) {
+                checkRiskValues(link);
+            }
+        }
+        assertEquals(OUTDATED_RISK, loadAsset(unaffectedAsset.getUuid())
+                .getNumericProperty(Asset.ASSET_RISK_C));
+
+        riskAnalysisService.runRiskAnalysis(new RiskAnalysisConfiguration(org.getDbId()));
+        assertEquals(0, loadAsset(unaffectedAsset.getUuid())
+                .getNumericProperty(Asset.ASSET_RISK_C));
+    }
+
+    @Test
+    public void testMultiThreadedRiskAnalysis() throws CommandException {
+        Organization org = (Organization) loadElement(SOURCE_ID, EXT_ID_ORGANIZATION);
+        Asset asset = loadAssetWithLinks();
+        List<String> copyUuids = createCopies(asset, NUMBER_OF_ASSET_COPIES);
+
+        int numberOfThreads = riskAnalysisServiceImpl.getNumberOfThreads();
+        riskAnalysisServiceImpl.setNumberOfThreads(4);
+        try {
+            riskAnalysisService.runRiskAnalysis(new RiskAnalysisConfiguration(org.getDbId()));
+        } finally {
+            riskAnalysisServiceImpl.setNumberOfThreads(numberOfThreads);
+        }
+
+        checkRiskValues((Asset) loadElement(SOURCE_ID, EXT_ID_ASSET));
+        for (String uuid : copyUuids) {
+            Asset copy = loadAsset(uuid);
+            checkRiskValues(copy);
+            for (CnALink link : copy.getLinksUp()) {
+                if (IncidentScenario.REL_INCSCEN_ASSET.equals(link.getRelationId())) {
+                    checkRiskValues(link);
+                }
+            }
+        }
+    }
+
+    private Asset loadAssetWithLinks() throws CommandException {
+        LoadCnAElementByExternalID command = new LoadCnAElementByExternalID(SOURCE_ID,
+                EXT_ID_ASSET, true, true);
+        command.setParent(true);
+        command.setProperties(true);
+        command = commandService.executeCommand(command);
+        return (Asset) command.getElements().get(0);
+    }
+
+    private Asset loadAsset(String uuid) throws CommandException {
+        LoadElementByUuid<Asset> loadCommand = new LoadElementByUuid<>(uuid,
+                RetrieveInfo.getPropertyInstance().setLinksUp(true));
+        return commandService.executeCommand(loadCommand).getElement();
+    }
+
+    /**
+     * Creates copies of the asset with the same CIA values and the same links
+     * as the asset.
+     */
+    private List<String> createCopies(Asset asset, int number) throws CommandException {
+        @SuppressWarnings("unchecked")
+        Group<CnATreeElement> group = (Group<CnATreeElement>) asset.getParent();
+        List<String> uuids = new ArrayList<>(number);
+        for (int i = 0; i < number; i++) {
+            CnATreeElement copy = createNewElement(group, Asset.class, i);
+            copy.setNumericProperty(Asset.ASSET_VALUE_CONFIDENTIALITY,
+                    asset.getNumericProperty(Asset.ASSET_VALUE_CONFIDENTIALITY));
+            copy.setNumericProperty(Asset.ASSET_VALUE_INTEGRITY,
+                    asset.getNumericProperty(Asset.ASSET_VALUE_INTEGRITY));
+            copy.setNumericProperty(Asset.ASSET_VALUE_AVAILABILITY,
+                    asset.getNumericProperty(Asset.ASSET_VALUE_AVAILABILITY));
+            copy = updateElement(copy);
+            for (CnALink link : asset.getLinksUp()) {
+                createLink(link.getDependant(), copy, link.getRelationId());
+            }
+            for (CnALink link : asset.getLinksDown()) {
+                createLink(copy, link.getDependency(), link.getRelationId());
+            }
+            uuids.add(copy.getUuid());
+        }
+        return uuids;
+    }
+
     public void checkRiskValues(Asset asset) {
         assertEquals(1, asset.getNumericProperty(Asset.ASSET_CONFIDENTIALITY_WITH_CONTROLS));
         assertEquals(2,
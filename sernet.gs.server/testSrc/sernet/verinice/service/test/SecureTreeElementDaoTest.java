@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sernet.gs.service.SecurityException;
+import sernet.verinice.interfaces.ActionRightIDs;
+import sernet.verinice.interfaces.ApplicationRoles;
+import sernet.verinice.interfaces.CommandException;
+import sernet.verinice.interfaces.IAuthService;
+import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.interfaces.IConfigurationService;
+import sernet.verinice.interfaces.IRightsService;
+import sernet.verinice.model.auth.Action;
+import sernet.verinice.model.auth.Auth;
+import sernet.verinice.model.auth.OriginType;
+import sernet.verinice.model.auth.Profile;
+import sernet.verinice.model.auth.ProfileRef;
+import sernet.verinice.model.auth.Userprofile;
+import sernet.verinice.model.common.CnATreeElement;
+import sernet.verinice.model.common.Permission;
+import sernet.verinice.model.common.configuration.Configuration;
+import sernet.verinice.model.iso27k.Asset;
+import sernet.verinice.model.iso27k.Group;
+import sernet.verinice.model.iso27k.Organization;
+import sernet.verinice.model.iso27k.PersonIso;
+import sernet.verinice.service.commands.CreateConfiguration;
+import sernet.verinice.service.commands.LoadElementByUuid;
+import sernet.verinice.service.commands.RemoveElement;
+import sernet.verinice.service.commands.SaveConfiguration;
+import sernet.verinice.service.commands.UpdatePermissions;
+
+/**
+ * Tests the write permission checks of the SecureTreeElementDao for a user
+ * without the admin role. The name of the user is the role which gets the
+ * permissions.
+ */
+public class SecureTreeElementDaoTest extends CommandServiceProvider {
+
+    private static final String USER = "secure-dao-test-user";
+    private static final String PROFILE = "secure-dao-test-profile";
+
+    /**
+     * More elements than the number of ids the dao checks with one query.
+     */
+    private static final int NUMBER_OF_ELEMENTS = 1100;
+
+    @Resource(name = "cnaTreeElementDao")
+    private IBaseDao<CnATreeElement, Integer> elementDao;
+
+    @Resource(name = "authService")
+    private IAuthService authService;
+
+    @Resource(name = "configurationService")
+    private IConfigurationService configurationService;
+
+    @Resource(name = "rightsService")
+    private IRightsService rightsService;
+
+    private Organization organization;
+
+    private Group<CnATreeElement> subGroup;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void createElements() throws CommandException {
+        organization = createOrganization();
+        Group<CnATreeElement> assetGroup = getGroupForClass(organization, Asset.class);
+        subGroup = (Group<CnATreeElement>) createNewNamedGroup(assetGroup, "sub group");
+        createUser();
+    }
+
+    @After
+    public void removeElements() throws CommandException {
+        loginAsAdmin();
+        removeProfile();
+        removeOrganization(organization);
+    }
+
+    @Test
+    public void testCheckRightsOfLargeIdList() throws CommandException {
+        List<CnATreeElement> elements = new ArrayList<>(NUMBER_OF_ELEMENTS);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            elements.add(createNewElement(subGroup, Asset.class, i));
+        }
+        updatePermission(subGroup, true);
+        List<Integer> dbIds = new ArrayList<>(NUMBER_OF_ELEMENTS + 1);
+        dbIds.add(subGroup.getDbId());
+        for (CnATreeElement element : elements) {
+            dbIds.add(element.getDbId());
+        }
+
+        loginAsUser();
+        elementDao.checkRightsOfElements(dbIds, subGroup.getScopeId());
+
+        // an element which is checked with the second query
+        CnATreeElement readOnlyElement = elements.get(NUMBER_OF_ELEMENTS - 10);
+        loginAsAdmin();
+        updatePermission(readOnlyElement, false);
+        loginAsUser();
+        try {
+            elementDao.checkRightsOfElements(dbIds, subGroup.getScopeId());
+            fail("No SecurityException for element without write permission");
+        } catch (SecurityException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("id: " + readOnlyElement.getDbId()));
+        }
+
+        configurationService.setRoles(USER, new String[] { USER, ApplicationRoles.ROLE_ADMIN });
+        elementDao.checkRightsOfElements(dbIds, subGroup.getScopeId());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRemoveElementChecksSubtree() throws CommandException {
+        Group<CnATreeElement> subSubGroup = (Group<CnATreeElement>) createNewNamedGroup(subGroup,
+                "sub sub group");
+        createNewElement(subGroup, Asset.class, 1);
+        createNewElement(subSubGroup, Asset.class, 2);
+        CnATreeElement readOnlyElement = createNewElement(subSubGroup, Asset.class, 3);
+        updatePermission(subGroup, true);
+        updatePermission(readOnlyElement, false);
+
+        loginAsUser();
+        try {
+            commandService.executeCommand(new RemoveElement<>(subGroup));
+            fail("Group with an element without write permission was removed");
+        } catch (CommandException e) {
+            assertTrue(isCausedBySecurityException(e));
+        }
+        loginAsAdmin();
+        assertNotNull(loadElement(subGroup));
+        assertNotNull(loadElement(readOnlyElement));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRemoveWritableSubtree() throws CommandException {
+        Group<CnATreeElement> subSubGroup = (Group<CnATreeElement>) createNewNamedGroup(subGroup,
+                "sub sub group");
+        createNewElement(subGroup, Asset.class, 1);
+        CnATreeElement element = createNewElement(subSubGroup, Asset.class, 2);
+        updatePermission(subGroup, true);
+
+        loginAsUser();
+        commandService.executeCommand(new RemoveElement<>(subGroup));
+        loginAsAdmin();
+        assertNull(loadElement(subGroup));
+        assertNull(loadElement(element));
+    }
+
+    /**
+     * Sets the permission of the user for the element and all its children.
+     */
+    private void updatePermission(CnATreeElement element, boolean write)
+            throws CommandException {
+        Permission permission = Permission.createPermission(element, USER, true, write);
+        commandService.executeCommand(new UpdatePermissions(element,
+                Collections.singleton(permission), true));
+    }
+
+    /**
+     * Creates the configuration of the user and a rights profile which
+     * allows to delete elements.
+     */
+    private void createUser() throws CommandException {
+        PersonIso person = (PersonIso) createNewElement(
+                getGroupForClass(organization, PersonIso.class), PersonIso.class, 1);
+        CreateConfiguration createConfiguration = new CreateConfiguration(person);
+        Configuration configuration = commandService.executeCommand(createConfiguration)
+                .getConfiguration();
+        configuration.setUser(USER);
+        commandService.executeCommand(new SaveConfiguration<>(configuration, false));
+
+        Auth auth = rightsService.getConfiguration();
+        Profile profile = new Profile();
+        profile.setName(PROFILE);
+        profile.setOrigin(OriginType.MODIFICATION);
+        Action action = new Action();
+        action.setId(ActionRightIDs.DELETEITEM);
+        profile.getAction().add(action);
+        auth.getProfiles().getProfile().add(profile);
+        Userprofile userprofile = new Userprofile();
+        userprofile.setLogin(USER);
+        userprofile.setOrigin(OriginType.MODIFICATION);
+        ProfileRef profileRef = new ProfileRef();
+        profileRef.setName(PROFILE);
+        userprofile.getProfileRef().add(profileRef);
+        auth.getUserprofiles().getUserprofile().add(userprofile);
+        rightsService.updateConfiguration(auth);
+    }
+
+    private void removeProfile() {
+        Auth auth = rightsService.getConfiguration();
+        for (Iterator<Profile> iterator = auth.getProfiles().getProfile().iterator(); iterator
+                .hasNext();) {
+            if (PROFILE.equals(iterator.next().getName())) {
+                iterator.remove();
+            }
+        }
+        for (Iterator<Userprofile> iterator = auth.getUserprofiles().getUserprofile()
+                .iterator(); iterator.hasNext();) {
+            if (USER.equals(iterator.next().getLogin())) {
+                iterator.remove();
+            }
+        }
+        rightsService.updateConfiguration(auth);
+    }
+
+    private void loginAsUser() {
+        configurationService.setRoles(USER, new String[] { USER });
+        configurationService.setScopeOnly(USER, false);
+        getTestAuthService().setUsername(USER);
+        getTestAuthService().setPermissionHandlingNeeded(true);
+    }
+
+    private void loginAsAdmin() {
+        getTestAuthService().setPermissionHandlingNeeded(false);
+        getTestAuthService().setUsername(TestAuthenticationService.INTERNAL_ADMIN);
+        configurationService.discardUserData();
+    }
+
+    private TestAuthenticationService getTestAuthService() {
+        return (TestAuthenticationService) authService;
+    }
+
+    private CnATreeElement loadElement(CnATreeElement element) throws CommandException {
+        return commandService.executeCommand(new LoadElementByUuid<>(element.getUuid()))
+                .getElement();
+    }
+
+    private static boolean isCausedBySecurityException(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SecurityException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -29,9 +29,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Properties;
 import java.util.Queue;
 import java.util.Set;
 
+import javax.annotation.Resource;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
@@ -40,6 +43,7 @@ import sernet.gs.service.RetrieveInfo;
 import sernet.gs.service.Retriever;
 import sernet.gs.service.RuntimeCommandException;
 import sernet.verinice.interfaces.CommandException;
+import sernet.verinice.interfaces.IBaseDao;
 import sernet.verinice.model.bsi.Anwendung;
 import sernet.verinice.model.bsi.AnwendungenKategorie;
 import sernet.verinice.model.bsi.Client;
@@ -49,8 +53,10 @@ import sernet.verinice.model.common.CnALink;
 import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.model.iso27k.ControlGroup;
 import sernet.verinice.model.iso27k.Organization;
+import sernet.verinice.service.HibernateCommandService;
 import sernet.verinice.service.commands.LoadElementByUuid;
 import sernet.verinice.service.commands.SyncCommand;
+import sernet.verinice.service.commands.SyncInsertUpdateCommand;
 import sernet.verinice.service.commands.SyncParameter;
 import sernet.verinice.service.commands.SyncParameterException;
 import sernet.verinice.service.commands.UpdateElement;
@@ -98,6 +104,12 @@ public class SyncInsertUpdateTest extends BeforeEachVNAImportHelper {
 
     private static final CnATreeTraverser cnATreeTraverser = new BFSTravers();
 
+    @Resource(name = "hibernateCommandService")
+    private HibernateCommandService hibernateCommandService;
+
+    @Resource(name = "changeLogEntryDAO")
+    private IBaseDao<ChangeLogEntry, Integer> changeLogEntryDao;
+
     @Test
     public void insertTest() throws IOException, CommandException, SyncParameterException {
 
@@ -267,6 +279,82 @@ public class SyncInsertUpdateTest extends BeforeEachVNAImportHelper {
         assertEquals(client.getDbId(), clientWithLink.getDbId());
     }
 
+    @Test
+    public void streamingImportInChunks()
+            throws SyncParameterException, IOException, CommandException {
+        Anwendung anwendungBeforeImport = (Anwendung) loadElement(SOURCE_ID, ANWENDUNG_1_EXT_ID);
+
+        SyncParameter syncParameter = new SyncParameter(true, true, false, false,
+                SyncParameter.EXPORT_FORMAT_VERINICE_ARCHIV);
+        SyncCommand syncCommand = importFileInChunks(VNA_FILE_UPDATE_INSERT, syncParameter);
+
+        Anwendung anwendung1 = (Anwendung) loadElement(SOURCE_ID, ANWENDUNG_1_EXT_ID);
+        Anwendung anwendung2 = (Anwendung) loadElement(SOURCE_ID, ANWENDUNG_2_EXT_ID);
+        validateImportExtId(anwendung1);
+        validateImportExtId(anwendung2);
+        assertEquals(anwendungBeforeImport.getDbId(), anwendung1.getDbId());
+        assertEquals(anwendung1.getParent().getDbId(), anwendung2.getParent().getDbId());
+
+        Set<String> importedUuids = syncCommand.getImportedElementUUIDs();
+        assertTrue(importedUuids.contains(anwendung1.getUuid()));
+        assertTrue(importedUuids.contains(anwendung2.getUuid()));
+        // imported elements are logged by the insert command while importing
+        assertFalse(changeLogEntryDao.findByQuery("from ChangeLogEntry where uuid = ?",
+                new Object[] { anwendung2.getUuid() }).isEmpty());
+        // only the scopes and containers are passed to the change log of the
+        // sync command
+        for (CnATreeElement element : syncCommand.getChangedElements()) {
+            assertFalse(element instanceof Anwendung);
+        }
+    }
+
+    @Test
+    public void streamingImportLinksInBatches()
+            throws SyncParameterException, IOException, CommandException {
+        SyncParameter syncParameter = new SyncParameter(true, true, false, false,
+                SyncParameter.EXPORT_FORMAT_VERINICE_ARCHIV);
+        importFileInChunks(VNA_FILE_RELATION, syncParameter);
+
+        Anwendung anwendungWithLink = (Anwendung) loadElement(SOURCE_ID, ANWENDUNG_1_EXT_ID);
+        Client clientWithLink = (Client) loadElement(SOURCE_ID, CLIENT_EXT_ID);
+        anwendungWithLink = (Anwendung) Retriever.retrieveElement(anwendungWithLink,
+                new RetrieveInfo().setLinksDown(true));
+        Set<CnALink> links = anwendungWithLink.getLinksDown();
+        assertEquals(1, links.size());
+        assertEquals(clientWithLink.getDbId(), links.iterator().next().getDependency().getDbId());
+
+        // importing the same file again must not duplicate the link
+        importFileInChunks(VNA_FILE_RELATION, syncParameter);
+        anwendungWithLink = (Anwendung) Retriever.retrieveElement(anwendungWithLink,
+                new RetrieveInfo().setLinksDown(true));
+        assertEquals(1, anwendungWithLink.getLinksDown().size());
+    }
+
+    /**
+     * Imports a file by path, so the sync request is read by a
+     * SyncRequestReader. The session is flushed after every element and every
+     * link is imported in its own batch.
+     */
+    private SyncCommand importFileInChunks(String file, SyncParameter syncParameter)
+            throws CommandException {
+        Properties properties = hibernateCommandService.getProperties();
+        try {
+            Properties chunkProperties = new Properties();
+            if (properties != null) {
+                chunkProperties.putAll(properties);
+            }
+            String prefix = SyncInsertUpdateCommand.class.getName() + ".";
+            chunkProperties.setProperty(prefix + SyncInsertUpdateCommand.PROP_FLUSH_LEVEL, "1");
+            chunkProperties.setProperty(prefix + SyncInsertUpdateCommand.PROP_LINK_BATCH_SIZE,
+                    "1");
+            hibernateCommandService.setProperties(chunkProperties);
+            return commandService
+                    .executeCommand(new SyncCommand(syncParameter, getAbsoluteFilePath(file)));
+        } finally {
+            hibernateCommandService.setProperties(properties);
+        }
+    }
+
     @Test
     public void delete() throws SyncParameterException, IOException, CommandException {
 
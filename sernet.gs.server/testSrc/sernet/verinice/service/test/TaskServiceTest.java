@@ -213,6 +213,33 @@ public class TaskServiceTest extends CommandServiceProvider {
         assertEquals("Size of task list is not 2", 2, taskListCheck.size());
     }
 
+    @Test
+    public void testPagingAndSorting() {
+        ITaskParameter searchParameter = new TaskParameter();
+        searchParameter.setProcessKey(IIndividualProcess.KEY);
+        searchParameter.setAllUser(true);
+        searchParameter.setSortBy(ITaskParameter.SORT_BY_CREATE_DATE);
+        List<ITask> allTasks = taskService.getTaskList(searchParameter);
+        assertEquals("Size of task list is not " + NUMBER_OF_ASSETS, NUMBER_OF_ASSETS, allTasks.size());
+
+        int pageSize = NUMBER_OF_ASSETS / 2;
+        searchParameter.setMaxResults(pageSize);
+        searchParameter.setFirstResult(0);
+        List<ITask> firstPage = taskService.getTaskList(searchParameter);
+        searchParameter.setFirstResult(pageSize);
+        List<ITask> secondPage = taskService.getTaskList(searchParameter);
+        assertEquals("Size of first page is not " + pageSize, pageSize, firstPage.size());
+        assertEquals("Size of second page is not " + pageSize, pageSize, secondPage.size());
+        for (int i = 0; i < pageSize; i++) {
+            assertEquals("Wrong task on first page", allTasks.get(i).getId(), firstPage.get(i).getId());
+            assertEquals("Wrong task on second page", allTasks.get(pageSize + i).getId(), secondPage.get(i).getId());
+        }
+        for (int i = 1; i < allTasks.size(); i++) {
+            assertTrue("Tasks are not sorted by create date",
+                    !allTasks.get(i).getCreateDate().before(allTasks.get(i - 1).getCreateDate()));
+        }
+    }
+
     private List<ITask> getTaskListForPerson(String login) {
         ITaskParameter searchParameter = new TaskParameter();
         searchParameter.setUsername(login);
@@ -37,6 +37,7 @@ public class TestAuthenticationService implements IAuthService {
     private static final String[] NO_ROLES = new String[0];
     private String[] roles;
     private String username;
+    private boolean permissionHandlingNeeded = false;
 
     @Override
     public String[] getRoles() {
@@ -74,7 +75,7 @@ public class TestAuthenticationService implements IAuthService {
 
     @Override
     public boolean isPermissionHandlingNeeded() {
-        return false;
+        return permissionHandlingNeeded;
     }
 
     @Override
@@ -96,6 +97,10 @@ public class TestAuthenticationService implements IAuthService {
         this.username = username;
     }
 
+    public void setPermissionHandlingNeeded(boolean permissionHandlingNeeded) {
+        this.permissionHandlingNeeded = permissionHandlingNeeded;
+    }
+
     public void setRoles(String[] roles) {
         this.roles = roles;
     }
@@ -21,9 +21,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import javax.annotation.Resource;
 
@@ -53,6 +56,7 @@ import sernet.verinice.service.commands.RemoveElement;
 import sernet.verinice.service.commands.RetrieveCnATreeElement;
 import sernet.verinice.service.commands.UpdateElementEntity;
 import sernet.verinice.service.commands.crud.LoadElementForEditor;
+import sernet.verinice.service.commands.crud.LoadScopeElementPage;
 
 /**
  *
@@ -85,6 +89,39 @@ public class ValidationServiceTest extends AbstractModernizedBaseProtection {
         assertEquals(Integer.valueOf(0), Integer.valueOf(validationService.getValidations(root.getDbId()).size()));
     }
     
+    @Test
+    public void createScopeValidations() throws CommandException {
+        Organization root = createOrganization();
+        createElementsInGroups(root, 10);
+        validationService.createValidationsForScope(root.getDbId());
+        assertNotSame(0, validationService.getValidations(root.getDbId()).size());
+        deleteElement(root);
+    }
+
+    @Test
+    public void loadScopeElementsInPages() throws CommandException {
+        Organization root = createOrganization();
+        createElementsInGroups(root, 10);
+        int numberOfElements = elementDao
+                .findByQuery("from CnATreeElement e where e.scopeId = ?",
+                        new Object[] { root.getDbId() })
+                .size();
+        Set<Integer> loadedIds = new HashSet<>();
+        int lastDbId = -1;
+        LoadScopeElementPage page;
+        do {
+            page = commandService.executeCommand(new LoadScopeElementPage(root.getDbId(), lastDbId, 3));
+            assertTrue(page.getElements().size() <= 3);
+            for (CnATreeElement element : page.getElements()) {
+                assertTrue(loadedIds.add(element.getDbId()));
+                assertEquals(root.getDbId(), element.getScopeId());
+            }
+            lastDbId = page.getLastDbId();
+        } while (!page.isLastPage());
+        assertEquals(numberOfElements, loadedIds.size());
+        deleteElement(root);
+    }
+
     @Test
     public void createSamtTopicValidation() throws Exception{
         Organization org = createOrganization();
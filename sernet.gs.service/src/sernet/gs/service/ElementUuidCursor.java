@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.gs.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.hibernate.Query;
+
+import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.model.common.CnATreeElement;
+
+/**
+ * Iterates over the UUIDs of all elements in pages of a fixed size. The pages
+ * are loaded one after another ordered by the database id. Every query starts
+ * after the last database id of the previous page (keyset pagination), so only
+ * one page is held in memory at a time and no query has to skip rows.
+ * 
+ * Elements which are created while iterating may or may not be returned.
+ * 
+ * The cursor queries the DAO directly, the access and scope filters of a user
+ * are not applied. Use it for server tasks which process all elements, e.g.
+ * indexing. Load elements on behalf of a user with a command.
+ */
+public class ElementUuidCursor implements Iterator<List<String>> {
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private static final String HQL_LOAD_PAGE = "select e.dbId, e.uuid from CnATreeElement e "
+            + "where e.dbId > :lastDbId";
+
+    private static final String HQL_SCOPE_RESTRICTION = " and e.scopeId = :scopeId";
+
+    private static final String HQL_ORDER = " order by e.dbId";
+
+    private final IBaseDao<? extends CnATreeElement, ? extends Serializable> dao;
+
+    private final int pageSize;
+
+    private Integer scopeId;
+
+    private int lastDbId = -1;
+
+    private List<String> nextPage;
+
+    private boolean lastPageLoaded = false;
+
+    public ElementUuidCursor(IBaseDao<? extends CnATreeElement, ? extends Serializable> dao) {
+        this(dao, DEFAULT_PAGE_SIZE);
+    }
+
+    public ElementUuidCursor(IBaseDao<? extends CnATreeElement, ? extends Serializable> dao,
+            int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.dao = dao;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Restricts the cursor to the elements of one scope.
+     * 
+     * @param scopeId
+     *            Scope-id / organization db-id
+     * @return this cursor
+     */
+    public ElementUuidCursor setScopeId(Integer scopeId) {
+        this.scopeId = scopeId;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPage == null && !lastPageLoaded) {
+            nextPage = loadNextPage();
+        }
+        return nextPage != null;
+    }
+
+    /**
+     * @return The UUIDs of the next page, the list is never empty
+     */
+    @Override
+    public List<String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<String> page = nextPage;
+        nextPage = null;
+        return page;
+    }
+
+    private List<String> loadNextPage() {
+        List<Object[]> rows = loadRows();
+        if (rows.size() < pageSize) {
+            lastPageLoaded = true;
+        }
+        if (rows.isEmpty()) {
+            return null;
+        }
+        List<String> uuids = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            uuids.add((String) row[1]);
+        }
+        lastDbId = (Integer) rows.get(rows.size() - 1)[0];
+        return uuids;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> loadRows() {
+        return dao.findByCallback(session -> {
+            StringBuilder hql = new StringBuilder(HQL_LOAD_PAGE);
+            if (scopeId != null) {
+                hql.append(HQL_SCOPE_RESTRICTION);
+            }
+            hql.append(HQL_ORDER);
+            Query query = session.createQuery(hql.toString());
+            query.setInteger("lastDbId", lastDbId);
+            if (scopeId != null) {
+                query.setInteger("scopeId", scopeId);
+            }
+            query.setMaxResults(pageSize);
+            return query.list();
+        });
+    }
+}
@@ -45,6 +45,8 @@ public class GraphCommand extends GenericCommand implements IGraphCommand {
     private List<IGraphElementLoader> elementLoaderList;
     private List<String> relationIdList;
 
+    private boolean readOnly = false;
+
     private transient IGraphService graphService;
 
     /**
@@ -73,7 +75,11 @@ public class GraphCommand extends GenericCommand implements IGraphCommand {
         if (relationIdList != null && !relationIdList.isEmpty()) {
             relationIds = relationIdList.toArray(new String[relationIdList.size()]);
         }
-        this.graph = getGraphService().create(getLoader(), relationIds);
+        if (isReadOnly()) {
+            this.graph = getGraphService().createSnapshot(getLoader(), relationIds);
+        } else {
+            this.graph = getGraphService().create(getLoader(), relationIds);
+        }
     }
 
     @Override
@@ -112,6 +118,21 @@ public class GraphCommand extends GenericCommand implements IGraphCommand {
         getRelationIds().add(id);
     }
 
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @param readOnly
+     *            If true, the graph is not changed by this command or by the
+     *            caller. A graph which is shared with other callers may be
+     *            used then, see
+     *            {@link IGraphService#createSnapshot(List, String[])}.
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
     public VeriniceGraph getGraph() {
         return graph;
     }
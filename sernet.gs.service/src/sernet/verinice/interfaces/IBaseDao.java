@@ -18,6 +18,7 @@
 package sernet.verinice.interfaces;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.orm.hibernate3.HibernateCallback;
@@ -60,6 +61,20 @@ public interface IBaseDao<T, ID extends Serializable> extends IDao<T, ID> {
     default void checkRights(ID id, ID scopeId) {
     }
 
+    /**
+     * Checks if the user calling the function has write permissions for all
+     * elements with the given IDs and scopeId. Implementations should check
+     * the permissions with as few queries as possible.
+     * 
+     * Throws a sernet.gs.service.SecurityException if no write permissions are
+     * granted for at least one of the elements.
+     */
+    default void checkRightsOfElements(Collection<ID> ids, ID scopeId) {
+        for (ID id : ids) {
+            checkRights(id, scopeId);
+        }
+    }
+
     /**
      * Checks if the user calling the function has write permissions for the
      * given entity.
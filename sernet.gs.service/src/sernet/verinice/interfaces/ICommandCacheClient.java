@@ -39,4 +39,24 @@ public interface ICommandCacheClient extends ICommandService {
     
     public void setUseCache(boolean useCache);
 
+    /**
+     * Starts a report run in the current thread. Results of cachable commands
+     * are cached until the owner calls {@link #endReportRun(Object)}. If the
+     * thread is already in a report run, the owner joins this run. The run
+     * ends when all of its owners ended it.
+     * 
+     * @param owner
+     *            the object which ends the run, e.g. a connection of a report
+     */
+    public void startReportRun(Object owner);
+
+    /**
+     * Ends the report run of the owner, see {@link #startReportRun(Object)}.
+     * The run can be ended in any thread.
+     * 
+     * @param owner
+     *            the object which started the run
+     */
+    public void endReportRun(Object owner);
+
 }
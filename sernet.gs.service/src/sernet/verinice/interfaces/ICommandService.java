@@ -17,6 +17,7 @@
  ******************************************************************************/
 package sernet.verinice.interfaces;
 
+import java.util.List;
 import java.util.Properties;
 
 import sernet.verinice.service.sync.VnaSchemaVersion;
@@ -44,6 +45,20 @@ public interface ICommandService {
     
 	public  <T extends ICommand> T executeCommand(T command) throws CommandException;
 
+	/**
+	 * Executes a list of commands in the given order. When called remotely all
+	 * commands are sent to the server in one request and executed in a single
+	 * transaction. If one command fails, the execution stops and the exception
+	 * is thrown.
+	 * 
+	 * As with {@link #executeCommand(ICommand)} the returned commands must be
+	 * used for further processing.
+	 * 
+	 * @param commands the commands to execute
+	 * @return the executed commands in the same order
+	 */
+	public <T extends ICommand> List<T> executeCommands(List<T> commands) throws CommandException;
+
 	public void configureFilter(IBaseDao dao);
 	
 	public void disableFilter(IBaseDao dao);
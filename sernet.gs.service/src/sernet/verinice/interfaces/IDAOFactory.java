@@ -530,6 +530,15 @@ public interface IDAOFactory {
 
     void setElementEntityDao(IElementEntityDao elementEntityDao);
 
+    /**
+     * Returns a special Dao to maintain and query the tree path of elements
+     * 
+     * @return a IElementHierarchyDao
+     */
+    IElementHierarchyDao getElementHierarchyDao();
+
+    void setElementHierarchyDao(IElementHierarchyDao elementHierarchyDao);
+
     /**
      * @return
      */
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.interfaces;
+
+import java.util.List;
+
+import sernet.verinice.model.common.CnATreeElement;
+
+/**
+ * Maintains and queries the tree path of elements. The tree path of an
+ * element contains the database IDs of all its ancestors, see
+ * {@link CnATreeElement#getTreePath()}. It allows to load all descendants or
+ * all ancestors of an element with a single indexed query.
+ */
+public interface IElementHierarchyDao {
+
+    /**
+     * Sets the tree path of an element after it was moved to another parent
+     * and updates the paths of all its descendants in the database and in the
+     * current session. Call this after a detached element was merged,
+     * otherwise the merge copies the old paths of its descendants back. The
+     * tree path of new elements is set when they are inserted.
+     * 
+     * @param element
+     *            an element with its new parent set
+     */
+    void updateTreePath(CnATreeElement element);
+
+    /**
+     * @param element
+     *            the root of the subtree
+     * @param typeId
+     *            the type of the descendants, null for all types
+     * @return the database IDs of all descendants of the element, the
+     *         element itself is not included
+     */
+    List<Integer> findDescendantIds(CnATreeElement element, String typeId);
+
+    /**
+     * @param element
+     *            the root of the subtree
+     * @param typeId
+     *            the type of the descendants, null for all types
+     * @param ri
+     *            defines which associations are loaded
+     * @return all descendants of the element, the element itself is not
+     *         included
+     */
+    List<CnATreeElement> findDescendants(CnATreeElement element, String typeId,
+            IRetrieveInfo ri);
+
+    /**
+     * @param element
+     *            an element
+     * @param ri
+     *            defines which associations are loaded
+     * @return all ancestors of the element, the root element comes first
+     */
+    List<CnATreeElement> findAncestors(CnATreeElement element, IRetrieveInfo ri);
+
+    /**
+     * Sets the tree paths of all elements in the database based on their
+     * parents.
+     * 
+     * @return the number of updated elements
+     */
+    int createTreePaths();
+}
@@ -27,7 +27,7 @@ public interface IInternalServer {
 	
 	void configureDatabase(String url, String user, String pass, String driver, String dialect);
 	
-	void configureSearch(boolean disable, boolean indexOnStartup);
+	void configureSearch(boolean disable, boolean embeddedLucene, boolean indexOnStartup);
 
 	void start() throws IllegalStateException;
 	
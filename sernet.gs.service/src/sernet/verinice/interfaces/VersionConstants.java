@@ -28,7 +28,7 @@ public final class VersionConstants {
     /**
      * Version number of DB that can be used:
      */
-    public static final double COMPATIBLE_DB_VERSION = 1.06D;
+    public static final double COMPATIBLE_DB_VERSION = 1.07D;
 
     /**
      * Version number of client that can be used. (Must be the same in client /
@@ -29,6 +29,11 @@ import java.util.Set;
  *
  */
 public interface ITaskParameter extends Serializable {
+
+    String SORT_BY_CREATE_DATE = "createDate";
+    String SORT_BY_DUE_DATE = "dueDate";
+    String SORT_BY_TYPE = "type";
+    String SORT_BY_ASSIGNEE = "assignee";
     
     String getUsername();
     
@@ -77,4 +82,30 @@ public interface ITaskParameter extends Serializable {
     public void setBlacklist(Set<String> blacklist);
     
     public Set<String> getBlacklist();
+
+    /**
+     * @return Index of the first task to return or null to start with the
+     *         first task
+     */
+    Integer getFirstResult();
+
+    void setFirstResult(Integer firstResult);
+
+    /**
+     * @return Maximum number of tasks to return or null to return all tasks
+     */
+    Integer getMaxResults();
+
+    void setMaxResults(Integer maxResults);
+
+    /**
+     * @return One of the SORT_BY_ constants or null if tasks are not sorted
+     */
+    String getSortBy();
+
+    void setSortBy(String sortBy);
+
+    boolean isSortAscending();
+
+    void setSortAscending(boolean sortAscending);
 }
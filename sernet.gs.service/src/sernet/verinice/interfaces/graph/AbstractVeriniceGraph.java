@@ -19,17 +19,26 @@
  ******************************************************************************/
 package sernet.verinice.interfaces.graph;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
 
+import sernet.hui.common.connect.Entity;
 import sernet.verinice.model.common.CnATreeElement;
 
 /**
  * Implements common verinice graph helper methods based on JGraphT graph
  * implementation.
  *
+ * Lookups by UUID, database id, type id and class are answered from secondary
+ * indexes instead of scanning the vertex set. Subclasses must call
+ * {@link #addToIndex(CnATreeElement)} and
+ * {@link #removeFromIndex(CnATreeElement)} whenever they add or remove a
+ * vertex.
+ *
  * @author Benjamin Weißenfels <bw[at]sernet[dot]de>
  *
  */
@@ -37,6 +46,11 @@ public abstract  class AbstractVeriniceGraph implements VeriniceGraph {
 
     protected final Logger log = Logger.getLogger(getClass());
 
+    private Map<String, CnATreeElement> elementsByUuid = new HashMap<>();
+    private Map<Integer, CnATreeElement> elementsByDbId = new HashMap<>();
+    private Map<String, Set<CnATreeElement>> elementsByTypeId = new HashMap<>();
+    private Map<Class<?>, Set<CnATreeElement>> elementsByClass = new HashMap<>();
+
     @Override
     public void addEdge(Edge edge) {
         getGraph().addEdge(edge.getSource(), edge.getTarget(), edge);
@@ -49,71 +63,122 @@ public abstract  class AbstractVeriniceGraph implements VeriniceGraph {
 
     @Override
     public Set<CnATreeElement> getElements(String typeId) {
-        Set<CnATreeElement> elements = new HashSet<CnATreeElement>();
-        Set<CnATreeElement> allElements = getElements();
-
-        if (typeId == null || allElements == null) {
-            return elements;
-        }
-
-        for (CnATreeElement element : allElements) {
-            if (typeId.equals(element.getTypeId())) {
-                elements.add(element);
-            }
+        if (typeId == null) {
+            return new HashSet<>();
         }
-        return elements;
+        return copyOf(elementsByTypeId.get(typeId));
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T> Set<T> getElements(Class<T> clazz) {
-        Set<T> elements = new HashSet<T>();
-        Set<CnATreeElement> allElements = getElements();
+        return (Set<T>) copyOf(elementsByClass.get(clazz));
+    }
 
-        for (CnATreeElement element : allElements) {
-            if (element.getClass().equals(clazz)) {
+    @Override
+    public CnATreeElement getElement(String uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        return elementsByUuid.get(uuid);
+    }
 
-                elements.add((T) element);
-            }
+    @Override
+    public CnATreeElement getElement(Integer dbId) {
+        if (dbId == null) {
+            return null;
         }
+        return elementsByDbId.get(dbId);
+    }
 
-        return elements;
+    /**
+     * Adds an element to the lookup indexes. Call this after the element was
+     * added as a vertex to the underlying JGraphT graph.
+     */
+    protected void addToIndex(CnATreeElement element) {
+        if (element.getUuid() != null) {
+            elementsByUuid.put(element.getUuid(), element);
+        }
+        if (element.getDbId() != null) {
+            elementsByDbId.put(element.getDbId(), element);
+        }
+        if (element.getTypeId() != null) {
+            elementsByTypeId.computeIfAbsent(element.getTypeId(), k -> new HashSet<>())
+                    .add(element);
+        }
+        elementsByClass.computeIfAbsent(element.getClass(), k -> new HashSet<>()).add(element);
     }
 
-    @Override
-    public CnATreeElement getElement(String uuid) {
-        CnATreeElement result = null;
-        Set<CnATreeElement> allElements = getElements();
-        if (uuid == null || allElements == null) {
-            return result;
+    /**
+     * Removes an element from the lookup indexes. Call this after the element
+     * was removed from the underlying JGraphT graph.
+     */
+    protected void removeFromIndex(CnATreeElement element) {
+        if (element.getUuid() != null) {
+            elementsByUuid.remove(element.getUuid());
+        }
+        if (element.getDbId() != null) {
+            elementsByDbId.remove(element.getDbId());
         }
+        removeFromSetIndex(elementsByTypeId, element.getTypeId(), element);
+        removeFromSetIndex(elementsByClass, element.getClass(), element);
+    }
 
-        for (CnATreeElement element : allElements) {
-            if (uuid.equals(element.getUuid())) {
-                result = element;
-                break;
+    /**
+     * Discards the lookup indexes and rebuilds them from the vertex set of the
+     * underlying JGraphT graph, e.g. after deserialization.
+     */
+    protected void rebuildIndex() {
+        elementsByUuid = new HashMap<>();
+        elementsByDbId = new HashMap<>();
+        elementsByTypeId = new HashMap<>();
+        elementsByClass = new HashMap<>();
+        if (getGraph() != null) {
+            for (CnATreeElement element : getGraph().vertexSet()) {
+                addToIndex(element);
             }
         }
-
-        return result;
     }
 
-    @Override
-    public CnATreeElement getElement(Integer dbId) {
-        CnATreeElement result = null;
-        Set<CnATreeElement> allElements = getElements();
-        if (dbId == null || allElements == null) {
-            return result;
+    /**
+     * Replaces the property lists of all elements by a compact, read-only
+     * representation, see {@link Entity#compact()}. Only call this for graphs
+     * with detached elements, e.g. after deserialization.
+     */
+    protected void compactElements() {
+        if (getGraph() == null) {
+            return;
         }
+        int compacted = 0;
+        for (CnATreeElement element : getGraph().vertexSet()) {
+            if (element.getEntity() != null && element.getEntity().compact()) {
+                compacted++;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Number of compacted elements: " + compacted);
+        }
+    }
 
-        for (CnATreeElement element : allElements) {
-            if (dbId.equals(element.getDbId())) {
-                result = element;
-                break;
+    private static <K> void removeFromSetIndex(Map<K, Set<CnATreeElement>> index, K key,
+            CnATreeElement element) {
+        if (key == null) {
+            return;
+        }
+        Set<CnATreeElement> elements = index.get(key);
+        if (elements != null) {
+            elements.remove(element);
+            if (elements.isEmpty()) {
+                index.remove(key);
             }
         }
+    }
 
-        return result;
+    private static Set<CnATreeElement> copyOf(Set<CnATreeElement> elements) {
+        if (elements == null) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(elements);
     }
 
     @Override
@@ -96,7 +96,9 @@ public final class DepthFirstConditionalSearchPathes {
 
             for (Edge e : g.edgesOf(node)) {
 
-                LOG.debug("found edge: " + e);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("found edge: " + e);
+                }
 
                 // determine the next target node
                 CnATreeElement target = e.getSource() == node? e.getTarget() : e.getSource();
@@ -19,6 +19,9 @@
  ******************************************************************************/
 package sernet.verinice.interfaces.graph;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -35,7 +38,9 @@ import sernet.verinice.model.common.CnATreeElement;
  * @author Benjamin Weißenfels <bw[at]sernet[dot]de>
  *
  */
-public class DirectedVeriniceGraph extends AbstractVeriniceGraph {
+public class DirectedVeriniceGraph extends AbstractVeriniceGraph implements Serializable {
+
+    private static final long serialVersionUID = -2271408353564957163L;
 
     Graph<CnATreeElement, Edge>  directedGraph;
 
@@ -45,7 +50,16 @@ public class DirectedVeriniceGraph extends AbstractVeriniceGraph {
 
     @Override
     public void addVertex(CnATreeElement element) {
-        directedGraph.addVertex(element);
+        if (directedGraph.addVertex(element)) {
+            addToIndex(element);
+        }
+    }
+
+    @Override
+    public void removeVertex(CnATreeElement element) {
+        if (directedGraph.removeVertex(element)) {
+            removeFromIndex(element);
+        }
     }
 
     @Override
@@ -53,6 +67,14 @@ public class DirectedVeriniceGraph extends AbstractVeriniceGraph {
         return directedGraph;
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // the indexes are declared in the non serializable super class
+        rebuildIndex();
+        // the elements of a deserialized graph are detached
+        compactElements();
+    }
+
     @Override
     public Set<CnATreeElement> getLinkTargets(CnATreeElement source, String linkTypeId) {
 
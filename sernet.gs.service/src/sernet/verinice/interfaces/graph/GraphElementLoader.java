@@ -21,15 +21,24 @@ package sernet.verinice.interfaces.graph;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Query;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Restrictions;
 
+import sernet.gs.service.CollectionUtil;
+import sernet.hui.common.connect.Entity;
+import sernet.hui.common.connect.Property;
+import sernet.hui.common.connect.PropertyList;
 import sernet.verinice.interfaces.GraphCommand;
 import sernet.verinice.interfaces.IBaseDao;
 import sernet.verinice.model.bsi.MassnahmenUmsetzung;
@@ -47,10 +56,20 @@ public class GraphElementLoader implements IGraphElementLoader, Serializable {
     private static final long serialVersionUID = -6099406083025720444L;
 
     private static final Logger LOG = Logger.getLogger(GraphElementLoader.class);
+
+    private static final int MAX_ENTITY_IDS_PER_QUERY = 1000;
+
+    private static final String HQL_LOAD_PROPERTIES = "select pl.entityId, p.propertyType, p.propertyValue, "
+            + "p.licenseContentId, p.limitedLicense "
+            + "from PropertyList pl join pl.properties p "
+            + "where pl.entityId in (:entityIds) and p.propertyType in (:propertyTypeIds) "
+            + "order by pl.entityId, p.propertyType, index(p)";
     
     private Integer[] scopeIds;
     
     private String[] hibernateTypeIds;
+
+    private String[] propertyTypeIds;
     
     private IElementFilter elementFilter;
     
@@ -61,7 +80,8 @@ public class GraphElementLoader implements IGraphElementLoader, Serializable {
      */
     @Override
     public List<CnATreeElement> loadElements() {
-        DetachedCriteria crit = createDefaultCriteria();
+        DetachedCriteria crit = isLoadSelectedProperties() ? createElementCriteria()
+                : createDefaultCriteria();
         if (getScopeIds() != null && getScopeIds().length > 0) {
             crit.add(Restrictions.in("scopeId", getScopeIds()));
         }
@@ -70,6 +90,9 @@ public class GraphElementLoader implements IGraphElementLoader, Serializable {
         }
         @SuppressWarnings("unchecked") // daos does not use generics
         List<CnATreeElement> elementList = getCnaTreeElementDao().findByCriteria(crit);
+        if (isLoadSelectedProperties()) {
+            loadSelectedProperties(elementList);
+        }
         elementList = filterElements(elementList);
         if (LOG.isInfoEnabled()) {
             LOG.info(elementList.size() + " relevant objects found");
@@ -97,6 +120,94 @@ public class GraphElementLoader implements IGraphElementLoader, Serializable {
         crit.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
         return crit;
     }
+
+    /**
+     * Creates a criteria which loads the elements and their entities only,
+     * one row per element.
+     */
+    private DetachedCriteria createElementCriteria() {
+        DetachedCriteria crit = DetachedCriteria.forClass(CnATreeElement.class);
+        crit.setFetchMode("children", FetchMode.SELECT);
+        return crit;
+    }
+
+    private boolean isLoadSelectedProperties() {
+        return propertyTypeIds != null && propertyTypeIds.length > 0;
+    }
+
+    /**
+     * Detaches the elements from the session and replaces the property lists
+     * of their entities by the properties with the selected type ids. The
+     * entities are compacted afterwards.
+     * 
+     * Elements which were loaded with all properties before in the same
+     * session are left untouched.
+     */
+    private void loadSelectedProperties(List<CnATreeElement> elementList) {
+        List<CnATreeElement> detachedElements = new ArrayList<>(elementList.size());
+        Map<Integer, Entity> entitiesByDbId = new HashMap<>(elementList.size());
+        for (CnATreeElement element : elementList) {
+            Entity entity = element.getEntity();
+            if (entity != null && !entity.isCompact()
+                    && !Hibernate.isInitialized(entity.getTypedPropertyLists())) {
+                detachedElements.add(element);
+                entitiesByDbId.put(entity.getDbId(), entity);
+            }
+        }
+        evict(detachedElements);
+        for (Entity entity : entitiesByDbId.values()) {
+            entity.setTypedPropertyLists(new HashMap<String, PropertyList>());
+        }
+        Collection<List<Integer>> partitions = CollectionUtil
+                .partition(new ArrayList<>(entitiesByDbId.keySet()), MAX_ENTITY_IDS_PER_QUERY);
+        for (List<Integer> entityIds : partitions) {
+            for (Object[] row : loadPropertyRows(entityIds)) {
+                addProperty(entitiesByDbId.get(row[0]), row);
+            }
+        }
+        for (Entity entity : entitiesByDbId.values()) {
+            entity.compact();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Properties loaded for " + entitiesByDbId.size() + " entities");
+        }
+    }
+
+    private void evict(List<CnATreeElement> elementList) {
+        getCnaTreeElementDao().executeCallback(session -> {
+            for (CnATreeElement element : elementList) {
+                session.evict(element);
+            }
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> loadPropertyRows(List<Integer> entityIds) {
+        return getCnaTreeElementDao().findByCallback(session -> {
+            Query query = session.createQuery(HQL_LOAD_PROPERTIES);
+            query.setParameterList("entityIds", entityIds);
+            query.setParameterList("propertyTypeIds", propertyTypeIds);
+            return query.list();
+        });
+    }
+
+    private static void addProperty(Entity entity, Object[] row) {
+        String propertyTypeId = (String) row[1];
+        Map<String, PropertyList> propertyLists = entity.getTypedPropertyLists();
+        PropertyList propertyList = propertyLists.get(propertyTypeId);
+        if (propertyList == null) {
+            propertyList = new PropertyList();
+            propertyList.setEntityId(entity.getDbId());
+            propertyLists.put(propertyTypeId, propertyList);
+        }
+        Property property = new Property(entity);
+        property.setPropertyType(propertyTypeId);
+        property.setPropertyValue((String) row[2], false);
+        property.setLicenseContentId((String) row[3]);
+        property.setLimitedLicense(Boolean.TRUE.equals(row[4]));
+        propertyList.add(property);
+    }
     
     public Integer[] getScopeIds() {
         return scopeIds;
@@ -141,6 +252,15 @@ public class GraphElementLoader implements IGraphElementLoader, Serializable {
         this.hibernateTypeIds = hibernateTypeIdList.toArray(new String[hibernateTypeIdList.size()]);
     }
     
+    public String[] getPropertyTypeIds() {
+        return (propertyTypeIds != null) ? propertyTypeIds.clone() : null;
+    }
+
+    @Override
+    public void setPropertyTypeIds(String[] propertyTypeIds) {
+        this.propertyTypeIds = (propertyTypeIds != null) ? propertyTypeIds.clone() : null;
+    }
+
     public IElementFilter getElementFilter() {
         return elementFilter;
     }
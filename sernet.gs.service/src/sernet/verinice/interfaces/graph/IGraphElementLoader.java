@@ -58,6 +58,22 @@ public interface IGraphElementLoader extends Serializable {
      * @param typeIds Type-ids such as Asset.TYPE_ID or Control.TYPE_ID
      */
     void setTypeIds(String[] typeIds);
+
+    /**
+     * If this parameter is set only the properties with the specified
+     * property type ids are loaded. The elements and their properties are
+     * loaded in flat queries instead of fetching all properties of every
+     * element.
+     * 
+     * The loaded elements are detached and read-only, they must not be
+     * saved. Properties which are not loaded are empty, this applies to the
+     * title of an element as well. Elements which were loaded before in the
+     * same session keep all their properties.
+     * 
+     * @param propertyTypeIds
+     *            Property type ids such as Control.PROP_IMPL
+     */
+    void setPropertyTypeIds(String[] propertyTypeIds);
     
     /**
      * If this parameter is set. Elements are filtered 
@@ -105,4 +105,20 @@ public interface IGraphService {
     VeriniceGraph createDirectedGraph(List<? extends IGraphElementLoader> loaderList,
             String[] relationIds, boolean loadLinks);
 
+    /**
+     * Returns a verinice graph which may be shared with other callers that load
+     * a graph with the same loaders and relation ids. The graph and its
+     * elements must not be changed. Use this method only to read the graph,
+     * e.g. to create a report.
+     * 
+     * @param loaderList
+     *            One or more IGraphElementLoader that loads elements which are
+     *            part of the graph
+     * @param relationIds
+     *            The relation ids of the links in the graph, all links are
+     *            loaded if null
+     */
+    VeriniceGraph createSnapshot(List<? extends IGraphElementLoader> loaderList,
+            String[] relationIds);
+
 }
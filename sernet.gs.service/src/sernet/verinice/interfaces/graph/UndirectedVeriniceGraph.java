@@ -19,6 +19,8 @@
  ******************************************************************************/
 package sernet.verinice.interfaces.graph;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
@@ -53,10 +55,25 @@ public class UndirectedVeriniceGraph extends AbstractVeriniceGraph implements Se
 
     @Override
     public void addVertex(CnATreeElement element) {
-        getGraph().addVertex(element);
+        if (getGraph().addVertex(element)) {
+            addToIndex(element);
+        }
     }
 
+    @Override
+    public void removeVertex(CnATreeElement element) {
+        if (getGraph().removeVertex(element)) {
+            removeFromIndex(element);
+        }
+    }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // the indexes are declared in the non serializable super class
+        rebuildIndex();
+        // the elements of a deserialized graph are detached
+        compactElements();
+    }
 
     @Override
     public Set<CnATreeElement> getLinkTargets(CnATreeElement source, String linkTypeId) {
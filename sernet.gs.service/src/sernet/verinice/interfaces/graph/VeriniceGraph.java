@@ -31,8 +31,24 @@ import sernet.verinice.model.common.CnATreeElement;
  */
 public interface VeriniceGraph {
 
+    /**
+     * Adds an element to the graph. Always use this method instead of adding
+     * vertices to {@link #getGraph()} directly, otherwise the element is
+     * missing in the lookup indexes of the graph.
+     *
+     * @param element
+     *            A verinice element
+     */
     void addVertex(CnATreeElement element);
 
+    /**
+     * Removes an element and all its edges from the graph.
+     *
+     * @param element
+     *            A verinice element
+     */
+    void removeVertex(CnATreeElement element);
+
     void addEdge(Edge edge);
 
     /**
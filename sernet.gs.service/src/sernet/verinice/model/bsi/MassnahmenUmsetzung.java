@@ -26,7 +26,6 @@ import java.util.regex.Pattern;
 import org.apache.log4j.Logger;
 
 import sernet.hui.common.connect.Entity;
-import sernet.hui.common.connect.Property;
 import sernet.hui.common.connect.PropertyList;
 import sernet.hui.common.connect.PropertyType;
 import sernet.verinice.model.common.CnATreeElement;
@@ -259,19 +258,11 @@ public class MassnahmenUmsetzung extends CnATreeElement implements IMassnahmeUms
 
 	@Override
     public String getUmsetzung() {
-	    String umsetzung = P_UMSETZUNG_UNBEARBEITET;
-	    PropertyList properties = null;
-        Map<String,PropertyList> map = getEntity().getTypedPropertyLists();
-        if(map!=null) {
-            properties = map.get(MassnahmenUmsetzung.P_UMSETZUNG);
-        }       
-		if (properties != null && properties.getProperties() != null && properties.getProperties().size() > 0) {
-    		Property property = properties.getProperty(0);
-    		if (property != null && property.getPropertyValue()!=null && !property.getPropertyValue().equals("")){ //$NON-NLS-1$
-    		    umsetzung = property.getPropertyValue();
-    		}
-		}
-		return umsetzung;
+        String umsetzung = getEntity().getOptionValue(P_UMSETZUNG);
+        if (umsetzung == null || umsetzung.isEmpty()) {
+            return P_UMSETZUNG_UNBEARBEITET;
+        }
+        return umsetzung;
 	}
 
 	@Override
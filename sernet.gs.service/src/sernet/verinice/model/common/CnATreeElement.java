@@ -17,6 +17,9 @@
  ******************************************************************************/
 package sernet.verinice.model.common;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.text.MessageFormat;
 import java.util.Arrays;
@@ -36,6 +39,8 @@ import sernet.hui.common.connect.EntityType;
 import sernet.hui.common.connect.HUITypeFactory;
 import sernet.hui.common.connect.ITypedElement;
 import sernet.hui.common.connect.PropertyList;
+import sernet.hui.common.io.CompactObjectInputStream;
+import sernet.hui.common.io.CompactObjectOutputStream;
 import sernet.verinice.interfaces.IReevaluator;
 import sernet.verinice.model.bp.elements.BpPerson;
 import sernet.verinice.model.bp.elements.ItNetwork;
@@ -81,6 +86,8 @@ public abstract class CnATreeElement implements Serializable, IBSIModelListener,
     public static final String EXT_ID = "ext-id";
     public static final String SOURCE_ID = "source-id";
 
+    public static final String TREE_PATH_SEPARATOR = "/";
+
     private static final Set<String> staticProperties;
 
     static {
@@ -104,13 +111,15 @@ public abstract class CnATreeElement implements Serializable, IBSIModelListener,
 
     private String iconPath;
 
+    /**
+     * The database IDs of all ancestors of this element, root first, e.g.
+     * "/1/5/" for an element whose parent has the ID 5. The path of a root
+     * element is "/".
+     */
+    private String treePath;
+
     public int getNumericProperty(String propertyTypeId) {
-        PropertyList properties = getEntity().getProperties(propertyTypeId);
-        if (properties == null || properties.getProperties().size() == 0) {
-            return 0;
-        } else {
-            return properties.getProperty(0).getNumericPropertyValue();
-        }
+        return getEntity().getFirstIntValue(propertyTypeId);
     }
 
     public void setNumericProperty(String propTypeId, int value) {
@@ -328,6 +337,37 @@ public abstract class CnATreeElement implements Serializable, IBSIModelListener,
         this.parentId = parentId;
     }
 
+    public String getTreePath() {
+        return treePath;
+    }
+
+    public void setTreePath(String treePath) {
+        this.treePath = treePath;
+    }
+
+    /**
+     * @return the tree path of the children of this element or null if the
+     *         path of this element is not known yet
+     */
+    public String getSubtreePath() {
+        if (treePath == null || dbId == null) {
+            return null;
+        }
+        return treePath + dbId + TREE_PATH_SEPARATOR;
+    }
+
+    /**
+     * @return the tree path of this element computed from its parent or null
+     *         if the path of the parent is not known yet
+     */
+    public String createTreePath() {
+        CnATreeElement parentElement = getParent();
+        if (parentElement == null) {
+            return TREE_PATH_SEPARATOR;
+        }
+        return parentElement.getSubtreePath();
+    }
+
     public String getTitle() {
         return getTypeFactory().getMessage(getTypeId());
     }
@@ -929,6 +969,61 @@ public abstract class CnATreeElement implements Serializable, IBSIModelListener,
         return getTypeId() + "_" + propertyType;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (!(out instanceof CompactObjectOutputStream)) {
+            out.defaultWriteObject();
+            return;
+        }
+        CompactObjectOutputStream compactOut = (CompactObjectOutputStream) out;
+        compactOut.writeUuid(uuid);
+        compactOut.writeInteger(dbId);
+        compactOut.writeInteger(scopeId);
+        compactOut.writeInteger(parentId);
+        compactOut.writeSymbol(objectType);
+        compactOut.writeSymbol(iconPath);
+        compactOut.writeSymbol(sourceId);
+        out.writeObject(extId);
+        out.writeObject(treePath);
+        out.writeBoolean(childrenLoaded);
+        out.writeObject(parent);
+        out.writeObject(entity);
+        out.writeObject(linksDown);
+        out.writeObject(linksUp);
+        out.writeObject(links);
+        out.writeObject(children);
+        out.writeObject(permissions);
+        out.writeObject(files);
+        out.writeObject(notes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        if (!(in instanceof CompactObjectInputStream)) {
+            in.defaultReadObject();
+            return;
+        }
+        CompactObjectInputStream compactIn = (CompactObjectInputStream) in;
+        uuid = compactIn.readUuid();
+        dbId = compactIn.readInteger();
+        scopeId = compactIn.readInteger();
+        parentId = compactIn.readInteger();
+        objectType = compactIn.readSymbol();
+        iconPath = compactIn.readSymbol();
+        sourceId = compactIn.readSymbol();
+        extId = (String) in.readObject();
+        treePath = (String) in.readObject();
+        childrenLoaded = in.readBoolean();
+        parent = (CnATreeElement) in.readObject();
+        entity = (Entity) in.readObject();
+        linksDown = (Set<CnALink>) in.readObject();
+        linksUp = (Set<CnALink>) in.readObject();
+        links = (LinkKategorie) in.readObject();
+        children = (Set<CnATreeElement>) in.readObject();
+        permissions = (Set<Permission>) in.readObject();
+        files = (Set<Attachment>) in.readObject();
+        notes = (Set<Note>) in.readObject();
+    }
+
     /**
      * Joins a prefix and a title. If either is null or empty, it returns the
      * other one, if both are null or empty, it returns the empty string
@@ -25,8 +25,6 @@ import java.util.Date;
 import sernet.hui.common.connect.Entity;
 import sernet.hui.common.connect.IAbbreviatedElement;
 import sernet.hui.common.connect.ITaggableElement;
-import sernet.hui.common.connect.Property;
-import sernet.hui.common.connect.PropertyList;
 import sernet.verinice.model.bsi.TagHelper;
 import sernet.verinice.model.common.CnATreeElement;
 
@@ -180,16 +178,13 @@ public class Control extends CnATreeElement
     }
 
 	public static String getImplementation(Entity entity) {
-	    PropertyList properties = entity.getProperties(PROP_IMPL);
-	    if (properties == null || properties.getProperties() == null
-	            || properties.getProperties().size() < 1){
+	    // the option value is read without creating the property lists of
+	    // a compacted entity
+	    String implementation = entity.getOptionValue(PROP_IMPL);
+	    if (implementation == null || implementation.isEmpty()) {
 	        return IMPLEMENTED_NOTEDITED;
 	    }
-	    Property property = properties.getProperty(0);
-	    if (property != null && property.getPropertyValue()!=null && !property.getPropertyValue().equals("")){ //$NON-NLS-1$
-	        return property.getPropertyValue();
-	    }
-	    return IMPLEMENTED_NOTEDITED;
+	    return implementation;
 	}
 
 	public String getImplementation() {
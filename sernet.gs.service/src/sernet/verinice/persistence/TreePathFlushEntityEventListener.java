@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.persistence;
+
+import org.hibernate.engine.EntityEntry;
+import org.hibernate.engine.Status;
+import org.hibernate.event.FlushEntityEvent;
+import org.hibernate.event.def.DefaultFlushEntityEventListener;
+
+import sernet.verinice.model.common.CnATreeElement;
+
+/**
+ * Sets the tree path of new elements before the dirty check of a flush, see
+ * {@link CnATreeElement#getTreePath()}.
+ * 
+ * Hibernate checks all entities for changes before the scheduled inserts are
+ * executed. If the path was set in {@link TreePathInsertEventListener} only,
+ * an update of a new element scheduled in the same flush would reset the path
+ * to null. The path is therefore set here and in the state which is used for
+ * the insert.
+ */
+@SuppressWarnings("serial")
+public class TreePathFlushEntityEventListener extends DefaultFlushEntityEventListener {
+
+    @Override
+    public void onFlushEntity(FlushEntityEvent event) {
+        if (event.getEntity() instanceof CnATreeElement) {
+            setTreePath((CnATreeElement) event.getEntity(), event.getEntityEntry());
+        }
+        super.onFlushEntity(event);
+    }
+
+    private static void setTreePath(CnATreeElement element, EntityEntry entry) {
+        if (element.getTreePath() != null || entry.getStatus() != Status.MANAGED) {
+            return;
+        }
+        String treePath = element.createTreePath();
+        if (treePath == null) {
+            return;
+        }
+        element.setTreePath(treePath);
+        if (!entry.isExistsInDatabase()) {
+            TreePathInsertEventListener.setTreePath(entry.getPersister().getPropertyNames(),
+                    entry.getLoadedState(), treePath);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.persistence;
+
+import org.hibernate.event.PreInsertEvent;
+import org.hibernate.event.PreInsertEventListener;
+
+import sernet.verinice.model.common.CnATreeElement;
+
+/**
+ * Sets the tree path of new elements before they are inserted, see
+ * {@link CnATreeElement#getTreePath()}. This covers all elements regardless of
+ * the command which creates them, including children saved by cascade.
+ * Usually the path is already set by {@link TreePathFlushEntityEventListener}.
+ * Elements which are moved to another parent are handled by
+ * {@link sernet.verinice.interfaces.IElementHierarchyDao}.
+ */
+@SuppressWarnings("serial")
+public class TreePathInsertEventListener implements PreInsertEventListener {
+
+    private static final String PROPERTY_TREE_PATH = "treePath";
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        if (event.getEntity() instanceof CnATreeElement) {
+            CnATreeElement element = (CnATreeElement) event.getEntity();
+            String treePath = element.getTreePath();
+            if (treePath == null) {
+                treePath = element.createTreePath();
+                element.setTreePath(treePath);
+            }
+            setTreePath(event.getPersister().getPropertyNames(), event.getState(), treePath);
+        }
+        // false: do not veto the insert
+        return false;
+    }
+
+    static void setTreePath(String[] propertyNames, Object[] state, String treePath) {
+        for (int i = 0; i < propertyNames.length; i++) {
+            if (PROPERTY_TREE_PATH.equals(propertyNames[i])) {
+                state[i] = treePath;
+            }
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
+import org.hibernate.Hibernate;
 
 import sernet.gs.service.PermissionException;
 import sernet.gs.service.RetrieveInfo;
@@ -189,7 +190,12 @@ public class CutCommand extends ChangeLoggingCommand {
         }
 
         // save element (switch to dao from command call because of Bug 918)
-        getDao().merge(element, false);
+        CnATreeElement mergedElement = getDao().merge(element, false);
+        getDao().flush();
+        // The tree paths are rewritten after the merge, otherwise the merge
+        // would copy the old paths of the descendants back
+        getDaoFactory().getElementHierarchyDao().updateTreePath(mergedElement);
+        setTreePathOfSubtree(element, mergedElement.getTreePath());
         getDao().flush();
         getDao().clear();
 
@@ -205,6 +211,20 @@ public class CutCommand extends ChangeLoggingCommand {
         return element;
     }
 
+    /**
+     * Sets the tree paths of the detached element and its loaded descendants.
+     * The old parent of the next moved element is merged with cascade, which
+     * would write the old paths of this subtree back otherwise.
+     */
+    private static void setTreePathOfSubtree(CnATreeElement element, String treePath) {
+        element.setTreePath(treePath);
+        if (Hibernate.isInitialized(element.getChildren())) {
+            for (CnATreeElement child : element.getChildren()) {
+                setTreePathOfSubtree(child, element.getSubtreePath());
+            }
+        }
+    }
+
     /**
      * Creates a list of elements. First all elements are loaded by UUID. A
      * child will be removed from the list if it's parent is already a member.
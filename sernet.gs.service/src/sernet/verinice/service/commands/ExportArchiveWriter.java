@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.commands;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import de.sernet.sync.data.SyncAttribute;
+import de.sernet.sync.data.SyncFile;
+import de.sernet.sync.data.SyncLink;
+import de.sernet.sync.data.SyncObject;
+import de.sernet.sync.mapping.SyncMapping;
+import de.sernet.sync.sync.SyncRequest;
+import de.sernet.sync.sync.SyncRequest.SyncVnaSchemaVersion;
+import sernet.gs.service.VeriniceCharset;
+import sernet.verinice.service.sync.VeriniceArchive;
+
+/**
+ * Writes a verinice archive (VNA) directly to a file. The sync request in
+ * {@link VeriniceArchive#VERINICE_XML} is written with StAX, every
+ * {@link SyncObject} and {@link SyncLink} is marshalled as a JAXB fragment as
+ * soon as it is passed to this writer. Nothing but the current fragment is
+ * kept in memory.
+ * 
+ * Call the methods in document order: {@link #startSyncRequest(String)},
+ * {@link #startSyncObject(SyncObject)} and {@link #endSyncObject(SyncObject)}
+ * for every element (nested for children), {@link #writeSyncLink(SyncLink)},
+ * {@link #endSyncRequest(SyncMapping, SyncVnaSchemaVersion)} and finally the
+ * other archive entries.
+ */
+public class ExportArchiveWriter implements Closeable {
+
+    private static final String NS_SYNC = "http://www.sernet.de/sync/sync";
+    private static final String NS_DATA = "http://www.sernet.de/sync/data";
+    private static final String NS_MAPPING = "http://www.sernet.de/sync/mapping";
+    private static final String PREFIX_SYNC = "sync";
+    private static final String PREFIX_DATA = "data";
+    private static final String PREFIX_MAPPING = "map";
+
+    private static final QName SYNC_ATTRIBUTE = new QName(NS_DATA, "syncAttribute");
+    private static final QName FILE = new QName(NS_DATA, "file");
+    private static final QName SYNC_LINK = new QName(NS_DATA, "syncLink");
+    private static final QName SYNC_VNA_SCHEMA_VERSION = new QName(NS_SYNC,
+            "syncVnaSchemaVersion");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipOutputStream zipOut;
+    private final Marshaller marshaller;
+    private XMLStreamWriter xmlWriter;
+    private int depth = 0;
+
+    public ExportArchiveWriter(File file) throws IOException {
+        this.zipOut = new ZipOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        try {
+            JAXBContext context = JAXBContext.newInstance(SyncRequest.class);
+            this.marshaller = context.createMarshaller();
+            this.marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        } catch (JAXBException e) {
+            zipOut.close();
+            throw new IOException("Error while creating JAXB marshaller", e);
+        }
+    }
+
+    /**
+     * Opens the entry {@link VeriniceArchive#VERINICE_XML} and writes the
+     * start tags of the sync request and the sync data.
+     */
+    public void startSyncRequest(String sourceId) throws IOException {
+        zipOut.putNextEntry(new ZipEntry(VeriniceArchive.VERINICE_XML));
+        try {
+            xmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(zipOut,
+                    VeriniceCharset.CHARSET_UTF_8.name());
+            xmlWriter.writeStartDocument(VeriniceCharset.CHARSET_UTF_8.name(), "1.0");
+            xmlWriter.setPrefix(PREFIX_SYNC, NS_SYNC);
+            xmlWriter.setPrefix(PREFIX_DATA, NS_DATA);
+            xmlWriter.setPrefix(PREFIX_MAPPING, NS_MAPPING);
+            xmlWriter.writeStartElement(PREFIX_SYNC, "syncRequest", NS_SYNC);
+            xmlWriter.writeNamespace(PREFIX_SYNC, NS_SYNC);
+            xmlWriter.writeNamespace(PREFIX_DATA, NS_DATA);
+            xmlWriter.writeNamespace(PREFIX_MAPPING, NS_MAPPING);
+            xmlWriter.writeAttribute("sourceId", sourceId);
+            xmlWriter.writeStartElement(PREFIX_DATA, "syncData", NS_DATA);
+        } catch (XMLStreamException e) {
+            throw new IOException("Error while writing start of sync request", e);
+        }
+    }
+
+    /**
+     * Writes the start tag and all fields of the object which precede the
+     * children in the schema. The children of the object are ignored, write
+     * them by calling this method again before
+     * {@link #endSyncObject(SyncObject)} is called. Objects which are started
+     * inside another object are written as its children.
+     */
+    public void startSyncObject(SyncObject syncObject) throws IOException {
+        try {
+            String localName = (depth == 0) ? "syncObject" : "children";
+            xmlWriter.writeStartElement(PREFIX_DATA, localName, NS_DATA);
+            depth++;
+            for (SyncAttribute attribute : syncObject.getSyncAttribute()) {
+                marshaller.marshal(new JAXBElement<>(SYNC_ATTRIBUTE, SyncAttribute.class,
+                        attribute), xmlWriter);
+            }
+            writeTextElement("extId", syncObject.getExtId());
+            writeTextElement("extObjectType", syncObject.getExtObjectType());
+            if (syncObject.getIcon() != null) {
+                writeTextElement("icon", syncObject.getIcon());
+            }
+        } catch (XMLStreamException | JAXBException e) {
+            throw new IOException("Error while writing sync object " + syncObject.getExtId(), e);
+        }
+    }
+
+    /**
+     * Writes the files of the object which follow the children in the schema
+     * and the end tag.
+     */
+    public void endSyncObject(SyncObject syncObject) throws IOException {
+        try {
+            for (SyncFile file : syncObject.getFile()) {
+                marshaller.marshal(new JAXBElement<>(FILE, SyncFile.class, file), xmlWriter);
+            }
+            xmlWriter.writeEndElement();
+            depth--;
+        } catch (XMLStreamException | JAXBException e) {
+            throw new IOException("Error while writing sync object " + syncObject.getExtId(), e);
+        }
+    }
+
+    public void writeSyncLink(SyncLink syncLink) throws IOException {
+        try {
+            marshaller.marshal(new JAXBElement<>(SYNC_LINK, SyncLink.class, syncLink), xmlWriter);
+        } catch (JAXBException e) {
+            throw new IOException("Error while writing sync link", e);
+        }
+    }
+
+    /**
+     * Closes the sync data, writes the mapping and the schema version and
+     * closes the entry {@link VeriniceArchive#VERINICE_XML}.
+     */
+    public void endSyncRequest(SyncMapping syncMapping, SyncVnaSchemaVersion schemaVersion)
+            throws IOException {
+        try {
+            xmlWriter.writeEndElement();
+            marshaller.marshal(syncMapping, xmlWriter);
+            marshaller.marshal(new JAXBElement<>(SYNC_VNA_SCHEMA_VERSION,
+                    SyncVnaSchemaVersion.class, schemaVersion), xmlWriter);
+            xmlWriter.writeEndElement();
+            xmlWriter.writeEndDocument();
+            xmlWriter.flush();
+            xmlWriter.close();
+            xmlWriter = null;
+        } catch (XMLStreamException | JAXBException e) {
+            throw new IOException("Error while writing end of sync request", e);
+        }
+        zipOut.closeEntry();
+    }
+
+    /**
+     * Marshals a JAXB root element into a new entry of the archive.
+     */
+    public void writeEntry(String entryName, Object jaxbObject) throws IOException {
+        zipOut.putNextEntry(new ZipEntry(entryName));
+        ExportFactory.marshal(jaxbObject, zipOut);
+        zipOut.closeEntry();
+    }
+
+    /**
+     * Copies the stream into a new entry of the archive and closes the stream.
+     */
+    public void writeEntry(String entryName, InputStream in) throws IOException {
+        ExportFactory.createZipEntry(zipOut, entryName, in);
+        zipOut.closeEntry();
+    }
+
+    private void writeTextElement(String localName, String text) throws XMLStreamException {
+        xmlWriter.writeStartElement(PREFIX_DATA, localName, NS_DATA);
+        if (text != null) {
+            xmlWriter.writeCharacters(text);
+        }
+        xmlWriter.writeEndElement();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (xmlWriter != null) {
+                xmlWriter.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Error while closing XML writer", e);
+        } finally {
+            zipOut.close();
+        }
+    }
+
+}
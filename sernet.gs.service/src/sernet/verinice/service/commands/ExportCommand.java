@@ -22,36 +22,37 @@ package sernet.verinice.service.commands;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
 import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
 import de.sernet.sync.data.SyncData;
+import de.sernet.sync.data.SyncLink;
+import de.sernet.sync.data.SyncObject;
 import de.sernet.sync.mapping.SyncMapping;
 import de.sernet.sync.mapping.SyncMapping.MapObjectType;
 import de.sernet.sync.mapping.SyncMapping.MapObjectType.MapAttributeType;
+import de.sernet.sync.risk.Risk;
 import de.sernet.sync.sync.SyncRequest;
 import de.sernet.sync.sync.SyncRequest.SyncVnaSchemaVersion;
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.CacheManager;
-import net.sf.ehcache.Element;
-import net.sf.ehcache.Statistics;
-import net.sf.ehcache.Status;
-import sernet.gs.service.IThreadCompleteListener;
 import sernet.gs.service.RetrieveInfo;
 import sernet.gs.service.RuntimeCommandException;
 import sernet.hui.common.VeriniceContext;
@@ -76,8 +77,12 @@ import sernet.verinice.service.sync.VnaSchemaVersion;
 /**
  * Creates an VNA or XML representation for the given list of CnATreeElements.
  * 
- * ExportCommand uses multiple threads to load data. Default number of threads
- * is 3. You can configure maximum number of threads in
+ * ExportCommand uses multiple threads to load data. Every element is exported
+ * by an {@link ExportThread} running in a fork/join pool, the subtree of an
+ * element is split into one task per child. Links, attachments and exported
+ * types are collected in concurrent sets shared by all threads, the children
+ * of an element are exported in the order of their database ids. Default
+ * number of threads is 3. You can configure maximum number of threads in
  * veriniceserver-common.xml:
  * 
  * <bean id="hibernateCommandService" class="sernet.verinice.service.HibernateCommandService"> 
@@ -89,6 +94,13 @@ import sernet.verinice.service.sync.VnaSchemaVersion;
  * </props> 
  * </property> </bean>
  * 
+ * If a file path is set and the export format is a verinice archive, the
+ * archive is streamed to the file: every element is written to the archive
+ * as soon as it and its siblings are loaded and attachment files are copied from the database
+ * into the archive without loading them into memory. Use
+ * {@link #setStreamingExport(boolean)} to create the archive in memory
+ * instead.
+ * 
  * @author <andreas[at]becker[dot]name>
  * @author Daniel Murygin <dm[at]sernet[dot]de>
  */
@@ -96,16 +108,17 @@ import sernet.verinice.service.sync.VnaSchemaVersion;
 public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggingCommand {
     private static final Logger log = Logger.getLogger(ExportCommand.class);
 
-    private static final Object LOCK = new Object();
-
     public static final String PROP_MAX_NUMBER_OF_THREADS = "maxNumberOfThreads";
     public static final int DEFAULT_NUMBER_OF_THREADS = 3;
 
+    private static final String SQL_SELECT_FILE_DATA = "select fileData from note where dbId = ?";
+
     // Configuration fields set by client
     private final List<CnATreeElement> elements;
     private final String sourceId;
     private boolean reImport = false;
     private boolean exportRiskAnalysis = true;
+    private boolean streamingExport = true;
     private Integer exportFormat;
     private Map<String, String> entityTypesBlackList;
     private Map<Class, Class> entityClassBlackList;
@@ -120,15 +133,13 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
     private transient byte[] xmlData;
     private transient byte[] xmlDataRiskAnalysis;
     private transient Set<CnALink> linkSet;
+    private transient Map<String, String> exportedExtIds;
     private transient Set<Attachment> attachmentSet;
     private transient Set<Integer> riskAnalysisIdSet;
     private transient Set<EntityType> exportedEntityTypes;
     private transient Set<String> exportedTypes;
-    private transient CacheManager manager = null;
-    private transient String cacheId = null;
-    private transient Cache cache = null;
     private transient IBaseDao<CnATreeElement, Serializable> dao;
-    private transient ExecutorService taskExecutor;
+    private transient ForkJoinPool taskExecutor;
 
     public ExportCommand(final List<CnATreeElement> elements, final String sourceId,
             final boolean reImport) {
@@ -157,11 +168,12 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
 
     private void createFields() {
         this.changedElements = Collections.synchronizedList(new LinkedList<>());
-        this.linkSet = Collections.synchronizedSet(new HashSet<>());
-        this.attachmentSet = Collections.synchronizedSet(new HashSet<>());
-        this.riskAnalysisIdSet = Collections.synchronizedSet(new HashSet<>());
-        this.exportedTypes = Collections.synchronizedSet(new HashSet<>());
-        this.exportedEntityTypes = Collections.synchronizedSet(new HashSet<>());
+        this.linkSet = ConcurrentHashMap.newKeySet();
+        this.exportedExtIds = new ConcurrentHashMap<>();
+        this.attachmentSet = ConcurrentHashMap.newKeySet();
+        this.riskAnalysisIdSet = ConcurrentHashMap.newKeySet();
+        this.exportedTypes = ConcurrentHashMap.newKeySet();
+        this.exportedEntityTypes = ConcurrentHashMap.newKeySet();
     }
 
     /*
@@ -173,6 +185,11 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
     public void execute() {
         try {
             createFields();
+            taskExecutor = new ForkJoinPool(getMaxNumberOfThreads());
+            if (isStreamingExport()) {
+                exportToFile();
+                return;
+            }
             xmlData = export();
             xmlDataRiskAnalysis = exportRiskAnalyses();
             if (isReImport()) {
@@ -199,8 +216,11 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
             log.error("Exception while exporting", e);
             throw new RuntimeCommandException("Exception while exporting", e);
         } finally {
-            getCache().removeAll();
-            manager.shutdown();
+            if (taskExecutor != null) {
+                taskExecutor.shutdownNow();
+                taskExecutor = null;
+            }
+            exportedExtIds = null;
         }
 
     }
@@ -215,37 +235,35 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
      * @return XML representation of elements
      * @throws CommandException
      */
-    private byte[] export() throws CommandException {
+    private byte[] export() throws CommandException, IOException {
         if (log.isInfoEnabled()) {
             log.info("Max number of threads is: " + getMaxNumberOfThreads());
         }
 
-        getCache().removeAll();
-
         final SyncVnaSchemaVersion formatVersion = createVersionData();
 
         final SyncData syncData = new SyncData();
-        final ExportTransaction exportTransaction = new ExportTransaction();
 
         if (log.isInfoEnabled()) {
             log.info("Exporting elements...");
         }
 
-        for (final CnATreeElement element : elements) {
-            exportTransaction.setElement(element);
-            exportElement(exportTransaction);
-            syncData.getSyncObject().add(exportTransaction.getTarget());
+        final List<ExportTransaction> transactions = createTransactions(elements);
+        exportTransactions(transactions, true);
+        for (final ExportTransaction transaction : transactions) {
+            if (transaction.getTarget() != null) {
+                syncData.getSyncObject().add(transaction.getTarget());
+            }
         }
 
         if (log.isInfoEnabled()) {
             log.info("Exporting links...");
         }
 
-        exportLinks(syncData);
+        exportLinks(syncData.getSyncLink(), null);
 
         if (log.isDebugEnabled()) {
-            final Statistics s = getCache().getStatistics();
-            log.debug("Cache size: " + s.getObjectCount() + ", hits: " + s.getCacheHits());
+            log.debug("Exported elements: " + exportedExtIds.size());
         }
 
         final SyncMapping syncMapping = new SyncMapping();
@@ -262,6 +280,84 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
         return bos.toByteArray();
     }
 
+    /**
+     * Exports the elements and writes the verinice archive directly to
+     * {@link #filePath}. Every element is written to the archive as soon as
+     * it and its siblings are loaded, attachment files are streamed from the
+     * database into the archive.
+     */
+    private void exportToFile() throws CommandException, IOException {
+        if (log.isInfoEnabled()) {
+            log.info("Max number of threads is: " + getMaxNumberOfThreads());
+            log.info("Streaming export to file: " + filePath);
+        }
+
+        try (ExportArchiveWriter writer = new ExportArchiveWriter(new File(filePath))) {
+            writer.startSyncRequest(sourceId);
+
+            if (log.isInfoEnabled()) {
+                log.info("Exporting elements...");
+            }
+            writeElements(createTransactions(elements), writer);
+
+            if (log.isInfoEnabled()) {
+                log.info("Exporting links...");
+            }
+            exportLinks(new ArrayList<>(1), writer);
+
+            final SyncMapping syncMapping = new SyncMapping();
+            createMapping(syncMapping.getMapObjectType());
+            writer.endSyncRequest(syncMapping, createVersionData());
+
+            if (isRiskAnalysis()) {
+                writer.writeEntry(VeriniceArchive.RISK_XML, createRisk());
+            }
+            if (isReImport()) {
+                if (log.isInfoEnabled()) {
+                    log.info("Prepare reimport is enabled. Saving the IDS of "
+                            + changedElements.size() + " elements ...");
+                }
+                saveChangedElements();
+            }
+            writer.writeEntry(VeriniceArchive.DATA_XSD, StreamFactory.getDataXsdAsStream());
+            writer.writeEntry(VeriniceArchive.MAPPING_XSD, StreamFactory.getMappingXsdAsStream());
+            writer.writeEntry(VeriniceArchive.SYNC_XSD, StreamFactory.getSyncXsdAsStream());
+            writer.writeEntry(VeriniceArchive.RISK_XSD, StreamFactory.getRiskXsdAsStream());
+            writer.writeEntry(VeriniceArchive.README_TXT, StreamFactory.getReadmeAsStream());
+
+            for (final Attachment attachment : getSortedAttachments()) {
+                writeAttachmentFile(attachment, writer);
+            }
+        }
+    }
+
+    /**
+     * Copies the file data of an attachment with a JDBC stream into the
+     * archive, the Hibernate mapping of the file data would load the whole
+     * file into memory.
+     */
+    private void writeAttachmentFile(final Attachment attachment,
+            final ExportArchiveWriter writer) {
+        getDao().executeCallback(session -> {
+            try (PreparedStatement statement = session.connection()
+                    .prepareStatement(SQL_SELECT_FILE_DATA)) {
+                statement.setInt(1, attachment.getDbId());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        final InputStream in = resultSet.getBinaryStream(1);
+                        if (in != null) {
+                            writer.writeEntry(ExportFactory.createZipFileName(attachment), in);
+                        }
+                    }
+                }
+            } catch (final IOException e) {
+                throw new RuntimeCommandException(
+                        "Error while writing file of attachment " + attachment.getDbId(), e);
+            }
+            return null;
+        });
+    }
+
     private SyncVnaSchemaVersion createVersionData() {
 
         final VnaSchemaVersion vnaSchemaVersion = getCommandService().getVnaSchemaVersion();
@@ -279,19 +375,35 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
         if (!isRiskAnalysis()) {
             return null;
         }
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ExportFactory.marshal(createRisk(), bos);
+        return bos.toByteArray();
+    }
+
+    private Risk createRisk() {
         final RiskAnalysisExporter exporter = new RiskAnalysisExporter();
         exporter.setCommandService(getCommandService());
         exporter.setRiskAnalysisIdSet(riskAnalysisIdSet);
         exporter.run();
-        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ExportFactory.marshal(exporter.getRisk(), bos);
-        return bos.toByteArray();
+        return exporter.getRisk();
     }
 
     private boolean isRiskAnalysis() {
         return isExportRiskAnalysis() && !riskAnalysisIdSet.isEmpty();
     }
 
+    /**
+     * @return true if the verinice archive is streamed to the file path,
+     *         false if the export is created in memory
+     */
+    public boolean isStreamingExport() {
+        return streamingExport && filePath != null && isVeriniceArchive();
+    }
+
+    public void setStreamingExport(final boolean streamingExport) {
+        this.streamingExport = streamingExport;
+    }
+
     public boolean isExportRiskAnalysis() {
         return exportRiskAnalysis;
     }
@@ -300,86 +412,101 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
         this.exportRiskAnalysis = exportRiskAnalysis;
     }
 
-    private void exportElement(final ExportTransaction exportTransaction) throws CommandException {
-        final ExportThread jobThread = new ExportThread(exportTransaction);
-        configureThread(jobThread);
-        synchronized(LOCK) {
-            jobThread.export();
-            getValuesFromThread(jobThread);
+    /**
+     * Exports the elements of the transactions in the threads of the pool and
+     * waits until all elements are exported. If recursive is true the
+     * children of the elements are exported, too.
+     */
+    private void exportTransactions(final List<ExportTransaction> transactions,
+            final boolean recursive) {
+        final List<ExportTask> tasks = transactions.stream()
+                .map(transaction -> new ExportTask(transaction, recursive))
+                .collect(Collectors.toList());
+        tasks.forEach(taskExecutor::execute);
+        tasks.forEach(ExportTask::join);
+    }
+
+    /**
+     * Exports the elements of the transactions in parallel and writes them to
+     * the archive in the order of the list. The children of an element are
+     * exported and written after the element was started.
+     */
+    private void writeElements(final List<ExportTransaction> transactions,
+            final ExportArchiveWriter writer) throws CommandException, IOException {
+        exportTransactions(transactions, false);
+        for (final ExportTransaction transaction : transactions) {
+            writeElement(transaction, writer);
         }
-        exportChildren(exportTransaction);
     }
 
-    private void exportLinks(final SyncData syncData) {
-        for (final CnALink link : linkSet) {
-            CnATreeElement dependant = link.getDependant();
-            dependant = getFromCache(dependant);
-            if (dependant == null) {
+    /**
+     * Writes the target of the transaction to the archive, exports and writes
+     * its children and releases the target afterwards.
+     */
+    private void writeElement(final ExportTransaction transaction,
+            final ExportArchiveWriter writer) throws CommandException, IOException {
+        final SyncObject target = transaction.getTarget();
+        if (target == null) {
+            return;
+        }
+        writer.startSyncObject(target);
+        if (checkElement(transaction.getElement())) {
+            writeElements(createChildTransactions(transaction.getElement()), writer);
+        }
+        writer.endSyncObject(target);
+        transaction.setTarget(null);
+    }
+
+    private void exportLinks(final List<SyncLink> syncLinkList, final ExportArchiveWriter writer)
+            throws IOException {
+        final List<CnALink> links = new ArrayList<>(linkSet);
+        links.sort(Comparator.comparing((CnALink link) -> link.getId().getDependantId())
+                .thenComparing(link -> link.getId().getDependencyId())
+                .thenComparing(link -> link.getId().getTypeId()));
+        for (final CnALink link : links) {
+            final String dependantExtId = getExtId(link.getDependant());
+            if (dependantExtId == null) {
                 log.warn("Dependant of link not found. Check access rights. " + link.getId());
                 continue;
             }
-            link.setDependant(dependant);
-            CnATreeElement dependency = link.getDependency();
-            dependency = getFromCache(dependency);
-            if (dependency == null) {
+            final String dependencyExtId = getExtId(link.getDependency());
+            if (dependencyExtId == null) {
                 log.warn("Dependency of link not found. Check access rights. " + link.getId());
                 continue;
             }
-            link.setDependency(dependency);
-            ExportFactory.transform(link, syncData.getSyncLink());
+            final SyncLink syncLink = ExportFactory.createSyncLink(link, dependantExtId,
+                    dependencyExtId);
+            if (writer != null) {
+                writer.writeSyncLink(syncLink);
+            } else {
+                syncLinkList.add(syncLink);
+            }
         }
     }
 
-    private void exportChildren(final ExportTransaction transaction) throws CommandException {
-        log.debug("Call exportChildren in ExportCommand hashcode " + this.hashCode() + "for object " + transaction.getElement().getTitle());
-        final int timeOutFactor = 40;
-        final CnATreeElement element = transaction.getElement();
-        final Set<CnATreeElement> children = element.getChildren();
+    /**
+     * Returns transactions for the children of an element sorted by database
+     * id.
+     */
+    private List<ExportTransaction> createChildTransactions(final CnATreeElement element)
+            throws CommandException {
+        log.debug("Create export transactions for children of " + element.getTitle());
+        final Set<CnATreeElement> children = new HashSet<>(element.getChildren());
         if (FinishedRiskAnalysis.TYPE_ID.equals(element.getTypeId())) {
             children.addAll(getRiskAnalysisOrphanElements(element));
         }
+        final List<CnATreeElement> sortedChildren = new ArrayList<>(children);
+        sortedChildren.sort(Comparator.comparing(CnATreeElement::getDbId));
+        return createTransactions(sortedChildren);
+    }
 
-        final List<ExportTransaction> transactionList = Collections.synchronizedList(new ArrayList<>());
-
-        taskExecutor = Executors.newFixedThreadPool(getMaxNumberOfThreads());
-        if (!children.isEmpty()) {
-            for (final CnATreeElement child : children) {
-                log.debug("Create export job for child " + child.getDbId());
-                final ExportTransaction childTransaction = new ExportTransaction(child);
-                transactionList.add(childTransaction);
-                final ExportThread thread = new ExportThread(childTransaction);
-                configureThread(thread);
-
-                // Multi thread:
-                thread.addListener(new IThreadCompleteListener() {
-                    @Override
-                    public void notifyOfThreadComplete(final Thread thread) {
-                        final ExportThread exportThread = (ExportThread) thread;
-                        synchronized (LOCK) {
-                            if (exportThread.getTransaction().getTarget() != null) {
-                                transaction.getTarget().getChildren().add(
-                                        exportThread.getTransaction().getTarget()
-                                );
-                            }
-                            getValuesFromThread(exportThread);
-                        }
-                    }
-                });
-                taskExecutor.execute(thread);
-            }
-        }
-
-        awaitTermination(transactionList.size() * timeOutFactor);
-
-        if (log.isDebugEnabled() && !transactionList.isEmpty()) {
-            log.debug(transactionList.size() + " export threads finished.");
-        }
-
-        for (final ExportTransaction childTransaction : transactionList) {
-            if (checkElement(childTransaction.getElement())) {
-                exportChildren(childTransaction);
-            }
+    private static List<ExportTransaction> createTransactions(
+            final List<CnATreeElement> elementList) {
+        final List<ExportTransaction> transactions = new ArrayList<>(elementList.size());
+        for (final CnATreeElement element : elementList) {
+            transactions.add(new ExportTransaction(element));
         }
+        return transactions;
     }
 
     private boolean checkElement(final CnATreeElement element) {
@@ -426,7 +553,7 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
             ExportFactory.createZipEntry(zipOut, VeriniceArchive.README_TXT,
                     StreamFactory.getReadmeAsStream());
 
-            for (final Attachment attachment : getAttachmentSet()) {
+            for (final Attachment attachment : getSortedAttachments()) {
                 LoadAttachmentFile command = new LoadAttachmentFile(attachment.getDbId(), true);
                 command = getCommandService().executeCommand(command);
                 if (command.getAttachmentFile() != null
@@ -471,32 +598,6 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
         }
     }
 
-    /**
-     * @param timeout
-     *            in seconds
-     */
-    private void awaitTermination(final int timeout) {
-        final int secondsUntilTimeOut = 60;
-        taskExecutor.shutdown();
-        try {
-            // Wait a while for existing tasks to terminate
-            if (!taskExecutor.awaitTermination(timeout, TimeUnit.SECONDS)) {
-                log.error("Export executer timeout reached: " + timeout
-                        + "s. Terminating execution now.");
-                taskExecutor.shutdownNow(); // Cancel currently executing tasks
-                // Wait a while for tasks to respond to being cancelled
-                if (!taskExecutor.awaitTermination(secondsUntilTimeOut, TimeUnit.SECONDS)) {
-                    log.error("Export executer did not terminate.");
-                }
-            }
-        } catch (final InterruptedException ie) {
-            // (Re-)Cancel if current thread also interrupted
-            taskExecutor.shutdownNow();
-            // Preserve interrupt status
-            Thread.currentThread().interrupt();
-        }
-    }
-
     /**
      * Adds SyncMapping for all EntityTypes that have been exported. This is
      * going to be an identity mapping.
@@ -504,7 +605,10 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
      * @param mapObjectTypeList
      */
     private void createMapping(final List<MapObjectType> mapObjectTypeList) {
-        for (final EntityType entityType : exportedEntityTypes) {
+        final List<EntityType> entityTypes = exportedEntityTypes.stream()
+                .filter(entityType -> entityType != null)
+                .sorted(Comparator.comparing(EntityType::getId)).collect(Collectors.toList());
+        for (final EntityType entityType : entityTypes) {
             if (entityType != null) {
                 // Add <mapObjectType> element for this entity type to
                 // <syncMapping>:
@@ -532,7 +636,9 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
         // For all exported objects that had no entity type (e.g. category
         // objects)
         // we create a simple 1-to-1 mapping using their type id.
-        for (final String typeId : exportedTypes) {
+        final List<String> typeIds = new ArrayList<>(exportedTypes);
+        Collections.sort(typeIds);
+        for (final String typeId : typeIds) {
             final MapObjectType mapObjectType = new MapObjectType();
             mapObjectType.setIntId(typeId);
             mapObjectType.setExtId(typeId);
@@ -541,26 +647,28 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
         }
     }
 
-    private CnATreeElement getFromCache(CnATreeElement element) {
-        final Element cachedElement = getCache().get(element.getUuid());
-        if (cachedElement != null) {
-            element = (CnATreeElement) cachedElement.getValue();
-            if (log.isDebugEnabled()) {
-                log.debug("Element from cache: " + element.getTitle() + ", UUID: "
-                        + element.getUuid());
-            }
-        } else {
-            element = getDao().retrieve(element.getDbId(), RetrieveInfo.getPropertyInstance());
-            if (element != null) {
-                getCache().put(new Element(element.getUuid(), element));
-            }
+    /**
+     * Returns the ext-id of an exported element. If the element was not
+     * exported it is loaded to check if it exists and if it is readable.
+     * 
+     * @return the ext-id or null if the element does not exist
+     */
+    private String getExtId(final CnATreeElement element) {
+        final String extId = exportedExtIds.get(element.getUuid());
+        if (extId != null) {
+            return extId;
+        }
+        final CnATreeElement loadedElement = getDao().retrieve(element.getDbId(),
+                new RetrieveInfo());
+        if (loadedElement == null) {
+            return null;
         }
-        return element;
+        return exportedExtIds.computeIfAbsent(loadedElement.getUuid(),
+                uuid -> ExportFactory.createExtId(loadedElement));
     }
 
     private void configureThread(final ExportThread thread) {
         thread.setCommandService(getCommandService());
-        thread.setCache(getCache());
         thread.setDao(getDao());
         thread.setAttachmentDao(getDaoFactory().getDAO(Attachment.class));
         thread.setHuiTypeFactory(getHuiTypeFactory());
@@ -569,28 +677,12 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
         thread.setReImport(isReImport());
         thread.setEntityTypesBlackList(getEntityTypesBlackList());
         thread.setEntityClassBlackList(getEntityClassBlackList());
-    }
-
-    /**
-     * @param exportThread
-     */
-    private void getValuesFromThread(final ExportThread exportThread) {
-        linkSet.addAll(exportThread.getLinkSet());
-        attachmentSet.addAll(exportThread.getAttachmentSet());
-        exportedEntityTypes.addAll(exportThread.getExportedEntityTypes());
-        exportedTypes.addAll(exportThread.getExportedTypes());
-        changedElements.addAll(exportThread.getChangedElementList());
-        final CnATreeElement element = getElementFromThread(exportThread);
-        if (element != null && FinishedRiskAnalysis.TYPE_ID.equals(element.getTypeId())) {
-            riskAnalysisIdSet.add(element.getDbId());
-        }
-    }
-
-    private CnATreeElement getElementFromThread(final ExportThread exportThread) {
-        if (exportThread == null || exportThread.getTransaction() == null) {
-            return null;
-        }
-        return exportThread.getTransaction().getElement();
+        thread.setLinkSet(linkSet);
+        thread.setAttachmentSet(attachmentSet);
+        thread.setExportedEntityTypes(exportedEntityTypes);
+        thread.setExportedTypes(exportedTypes);
+        thread.setChangedElementList(changedElements);
+        thread.setExportedExtIds(exportedExtIds);
     }
 
     private boolean isVeriniceArchive() {
@@ -654,34 +746,6 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
         this.filePath = filePath;
     }
 
-    private synchronized Cache getCache() {
-        if (manager == null || Status.STATUS_SHUTDOWN.equals(manager.getStatus()) || cache == null
-                || !Status.STATUS_ALIVE.equals(cache.getStatus())) {
-            cache = createCache();
-        } else {
-            cache = getManager().getCache(cacheId);
-        }
-        return cache;
-    }
-
-    private Cache createCache() {
-        final int maxElementsInMemory = 20000;
-        final int timeToLiveSeconds = 1800;
-        final int timeToIdleSeconds = timeToLiveSeconds;
-        cacheId = UUID.randomUUID().toString();
-        cache = new Cache(cacheId, maxElementsInMemory, false, false, timeToLiveSeconds,
-                timeToIdleSeconds);
-        getManager().addCache(cache);
-        return cache;
-    }
-
-    public synchronized CacheManager getManager() {
-        if (manager == null || Status.STATUS_SHUTDOWN.equals(manager.getStatus())) {
-            manager = CacheManager.create();
-        }
-        return manager;
-    }
-
     protected HUITypeFactory getHuiTypeFactory() {
         return (HUITypeFactory) VeriniceContext.get(VeriniceContext.HUI_TYPE_FACTORY);
     }
@@ -735,6 +799,12 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
         return attachmentSet;
     }
 
+    private List<Attachment> getSortedAttachments() {
+        final List<Attachment> attachments = new ArrayList<>(getAttachmentSet());
+        attachments.sort(Comparator.comparing(Attachment::getDbId));
+        return attachments;
+    }
+
     /**
      * You can configure maximum number of threads in veriniceserver-common.xml:
      * 
@@ -763,4 +833,55 @@ public class ExportCommand extends ChangeLoggingCommand implements IChangeLoggin
         return number;
     }
 
+
+    /**
+     * Exports one element with an {@link ExportThread}. If the task is
+     * recursive, the children of the element are exported by sub tasks and
+     * added to the target in the order of their database ids.
+     */
+    private final class ExportTask extends RecursiveAction {
+
+        private final ExportTransaction transaction;
+
+        private final boolean recursive;
+
+        ExportTask(final ExportTransaction transaction, final boolean recursive) {
+            this.transaction = transaction;
+            this.recursive = recursive;
+        }
+
+        @Override
+        protected void compute() {
+            final ExportThread thread = new ExportThread(transaction);
+            configureThread(thread);
+            thread.run();
+            final CnATreeElement element = transaction.getElement();
+            final SyncObject target = transaction.getTarget();
+            if (target == null) {
+                return;
+            }
+            if (FinishedRiskAnalysis.TYPE_ID.equals(element.getTypeId())) {
+                riskAnalysisIdSet.add(element.getDbId());
+            }
+            if (recursive && checkElement(element)) {
+                final List<ExportTask> childTasks;
+                try {
+                    childTasks = createChildTransactions(element).stream()
+                            .map(childTransaction -> new ExportTask(childTransaction, true))
+                            .collect(Collectors.toList());
+                } catch (final CommandException e) {
+                    throw new RuntimeCommandException(
+                            "Error while loading children of element " + element.getUuid(), e);
+                }
+                invokeAll(childTasks);
+                for (final ExportTask childTask : childTasks) {
+                    final SyncObject childTarget = childTask.transaction.getTarget();
+                    if (childTarget != null) {
+                        target.getChildren().add(childTarget);
+                    }
+                }
+            }
+        }
+    }
+
 }
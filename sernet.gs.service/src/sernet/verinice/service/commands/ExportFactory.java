@@ -70,14 +70,28 @@ public final class ExportFactory {
      * @param link
      */
     public static void transform(CnALink link, List<SyncLink> syncLinkXmlList) {
+        syncLinkXmlList.add(createSyncLink(link, ExportFactory.createExtId(link.getDependant()),
+                ExportFactory.createExtId(link.getDependency())));
+    }
+
+    /**
+     * Creates a SyncLink instance out of a {@link CnALink} instance with the
+     * given ext-ids of the dependant and the dependency.
+     * 
+     * @param link
+     * @param dependantExtId
+     * @param dependencyExtId
+     */
+    public static SyncLink createSyncLink(CnALink link, String dependantExtId,
+            String dependencyExtId) {
         SyncLink syncLink = new SyncLink();
-        syncLink.setDependant(ExportFactory.createExtId(link.getDependant()));
-        syncLink.setDependency(ExportFactory.createExtId(link.getDependency()));
+        syncLink.setDependant(dependantExtId);
+        syncLink.setDependency(dependencyExtId);
         syncLink.setRelationId(link.getRelationId());
         if (link.getComment() != null && !link.getComment().isEmpty()) {
             syncLink.setComment(link.getComment());
         }
-        syncLinkXmlList.add(syncLink);
+        return syncLink;
     }
 
     /**
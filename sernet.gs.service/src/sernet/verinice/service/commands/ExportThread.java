@@ -20,6 +20,7 @@
 package sernet.verinice.service.commands;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -30,9 +31,6 @@ import org.apache.log4j.Logger;
 
 import de.sernet.sync.data.SyncFile;
 import de.sernet.sync.data.SyncObject;
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.Element;
-import net.sf.ehcache.Status;
 import sernet.gs.service.NotifyingThread;
 import sernet.gs.service.RetrieveInfo;
 import sernet.gs.service.ServerInitializer;
@@ -47,6 +45,11 @@ import sernet.verinice.model.common.CnALink;
 import sernet.verinice.model.common.CnATreeElement;
 
 /**
+ * Exports a single element. The links, attachments and types of the element
+ * are added to the sets of the thread which can be shared by all threads of an
+ * export. The ext-id of the element is stored in the map of exported ext-ids
+ * by the uuid of the element.
+ * 
  * @author Daniel Murygin <dm[at]sernet[dot]de>
  *
  */
@@ -54,10 +57,6 @@ public class ExportThread extends NotifyingThread {
 
     private static final Logger LOG = Logger.getLogger(ExportThread.class);
 
-    private static final Object LOCK = new Object();
-
-    private Cache cache = null;
-
     private IBaseDao<CnATreeElement, Serializable> dao;
 
     private IBaseDao<Attachment, Serializable> attachmentDao;
@@ -92,6 +91,8 @@ public class ExportThread extends NotifyingThread {
 
     private ExportReferenceTypes exportReferenceTypes;
 
+    private Map<String, String> exportedExtIds;
+
     public ExportThread(ExportTransaction transaction) {
         super();
         this.transaction = ThreadLocal.withInitial(() -> transaction);
@@ -155,6 +156,7 @@ public class ExportThread extends NotifyingThread {
             String extId = ExportFactory.createExtId(element);
 
             exportReferenceTypes.addReference2ExtId(element.getDbId(), extId);
+            getExportedExtIds().put(element.getUuid(), extId);
 
             SyncObject syncObject = new SyncObject();
             syncObject.setExtId(extId);
@@ -219,11 +221,6 @@ public class ExportThread extends NotifyingThread {
         if (element == null) {
             return null;
         }
-        CnATreeElement elementFromCache = getElementFromCache(element);
-        if (elementFromCache != null) {
-            return elementFromCache;
-        }
-        
         // Loading links that point back to parents may cause endless loops in Hibernate's CriteriaLoader, depending on
         // the structure of the exported data (see issue VN-2648).
         // Split loading of children and links to prevent this from happening:
@@ -238,9 +235,7 @@ public class ExportThread extends NotifyingThread {
         CnATreeElement elementWithLinks = getDao().retrieve(element.getDbId(), ri);
         element.setLinksDown(elementWithLinks.getLinksDown());
         element.setLinksUp(elementWithLinks.getLinksUp());
-        
-        cacheElement(element);
-        
+
         if (LOG.isDebugEnabled()) {
             LOG.debug("Element: " + element.getTitle() + " hydrated, UUID: " + element.getUuid());
         }
@@ -248,40 +243,6 @@ public class ExportThread extends NotifyingThread {
         return element;
     }
 
-    
-    private CnATreeElement getElementFromCache(CnATreeElement element) {
-        CnATreeElement fromCache = null;
-        synchronized (LOCK) {
-            if (Status.STATUS_ALIVE.equals(cache.getStatus())) {
-                Element cachedElement = getCache().get(element.getUuid());
-                if (cachedElement != null) {
-                    fromCache = (CnATreeElement) cachedElement.getValue();
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Element from cache: " + element.getTitle() + ", UUID: "
-                                + element.getUuid());
-                    }
-                }
-            } else {
-                LOG.warn("Cache is not alive. Can't put element to cache, uuid: "
-                        + element.getUuid());
-            }
-        }
-        return fromCache;
-    }
-
-    private void cacheElement(CnATreeElement element) {
-        synchronized(LOCK) {
-            if (Status.STATUS_ALIVE.equals(cache.getStatus())
-                    && getElementFromCache(element) == null
-            ) {
-                LOG.debug("Put element into cache: " + element.getTitle() + " : " + element.getDbId());
-                getCache().put(new Element(element.getUuid(), element));
-            } else {
-                LOG.warn("Cache is not alive. Can't put element to cache, uuid: "
-                        + element.getUuid());
-            }
-        }
-    }
 
     private void exportAttachments(CnATreeElement element, SyncObject syncObject)
             throws CommandException {
@@ -335,6 +296,10 @@ public class ExportThread extends NotifyingThread {
         return linkSet;
     }
 
+    public void setLinkSet(Set<CnALink> linkSet) {
+        this.linkSet = linkSet;
+    }
+
     public synchronized Set<Attachment> getAttachmentSet() {
         if (attachmentSet == null) {
             attachmentSet = new HashSet<>();
@@ -469,11 +434,18 @@ public class ExportThread extends NotifyingThread {
         this.attachmentDao = attachmentDao;
     }
 
-    public Cache getCache() {
-        return cache;
+    public synchronized Map<String, String> getExportedExtIds() {
+        if (exportedExtIds == null) {
+            exportedExtIds = new HashMap<>();
+        }
+        return exportedExtIds;
     }
 
-    public void setCache(Cache cache) {
-        this.cache = cache;
+    /**
+     * @param exportedExtIds
+     *            the ext-ids of all exported elements by uuid
+     */
+    public void setExportedExtIds(Map<String, String> exportedExtIds) {
+        this.exportedExtIds = exportedExtIds;
     }
 }
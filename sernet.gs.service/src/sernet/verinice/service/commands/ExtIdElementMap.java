@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.commands;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.model.common.CnATreeElement;
+
+/**
+ * Maps the ext-ids of imported elements to the elements. Only the database
+ * ids of the elements are kept in memory, an element is loaded from the
+ * database when it is requested. The map is used by the import to resolve
+ * parents, links, references and risk analyses without keeping all imported
+ * elements in the Hibernate session.
+ * 
+ * Elements which are put into the map or loaded by {@link #get(Object)} are
+ * cached until {@link #sessionCleared()} is called, so an element is loaded
+ * at most once per session.
+ * 
+ * {@link #put(String, CnATreeElement)} always returns null to avoid loading
+ * the previous element.
+ */
+class ExtIdElementMap extends AbstractMap<String, CnATreeElement> {
+
+    private final Map<String, Integer> dbIdMap = new HashMap<>();
+
+    // elements of the current Hibernate session by db-id
+    private final Map<Integer, CnATreeElement> sessionCache = new HashMap<>();
+
+    private final IBaseDao<CnATreeElement, Serializable> dao;
+
+    ExtIdElementMap(IBaseDao<CnATreeElement, Serializable> dao) {
+        this.dao = dao;
+    }
+
+    @Override
+    public CnATreeElement put(String extId, CnATreeElement element) {
+        dbIdMap.put(extId, element.getDbId());
+        sessionCache.put(element.getDbId(), element);
+        return null;
+    }
+
+    @Override
+    public CnATreeElement get(Object extId) {
+        Integer dbId = dbIdMap.get(extId);
+        return (dbId != null) ? load(dbId) : null;
+    }
+
+    private CnATreeElement load(Integer dbId) {
+        CnATreeElement element = sessionCache.get(dbId);
+        if (element == null) {
+            element = dao.findById(dbId);
+            if (element != null) {
+                sessionCache.put(dbId, element);
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Removes all cached elements. Call this method after the Hibernate
+     * session was cleared, the cached elements are detached then.
+     */
+    public void sessionCleared() {
+        sessionCache.clear();
+    }
+
+    /**
+     * @return the database id of the element with the ext-id or null if no
+     *         element with this ext-id was imported
+     */
+    public Integer getDbId(String extId) {
+        return dbIdMap.get(extId);
+    }
+
+    @Override
+    public boolean containsKey(Object extId) {
+        return dbIdMap.containsKey(extId);
+    }
+
+    @Override
+    public CnATreeElement remove(Object extId) {
+        Integer dbId = dbIdMap.remove(extId);
+        if (dbId != null) {
+            sessionCache.remove(dbId);
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        dbIdMap.clear();
+        sessionCache.clear();
+    }
+
+    @Override
+    public int size() {
+        return dbIdMap.size();
+    }
+
+    @Override
+    public Set<Entry<String, CnATreeElement>> entrySet() {
+        return new AbstractSet<Entry<String, CnATreeElement>>() {
+
+            @Override
+            public Iterator<Entry<String, CnATreeElement>> iterator() {
+                Iterator<Entry<String, Integer>> dbIdIterator = dbIdMap.entrySet().iterator();
+                return new Iterator<Entry<String, CnATreeElement>>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return dbIdIterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, CnATreeElement> next() {
+                        Entry<String, Integer> entry = dbIdIterator.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(),
+                                load(entry.getValue()));
+                    }
+
+                    @Override
+                    public void remove() {
+                        dbIdIterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return dbIdMap.size();
+            }
+        };
+    }
+
+}
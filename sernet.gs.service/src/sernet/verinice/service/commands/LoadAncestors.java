@@ -19,10 +19,9 @@
  ******************************************************************************/
 package sernet.verinice.service.commands;
 
-import java.io.Serializable;
+import java.util.List;
 
 import sernet.gs.service.RetrieveInfo;
-import sernet.verinice.interfaces.IBaseDao;
 import sernet.verinice.model.common.CnATreeElement;
 
 /**
@@ -31,8 +30,6 @@ import sernet.verinice.model.common.CnATreeElement;
  */
 public class LoadAncestors extends LoadElementByUuid {
 
-    private transient IBaseDao<CnATreeElement, Serializable> elementDao;
-
     /**
      * @param typeId
      * @param uuid
@@ -61,34 +58,30 @@ public class LoadAncestors extends LoadElementByUuid {
     public void execute() {
         super.execute();
         if (getElement() != null) {
-            loadParent(getElement());
+            List<CnATreeElement> ancestors = getDaoFactory().getElementHierarchyDao()
+                    .findAncestors(getElement(), ri);
+            setParents(getElement(), ancestors);
         }
     }
 
     /**
-     * @param parent
+     * Sets the parents of the element and its ancestors bottom up. Stops at
+     * the first ancestor which was not loaded, e.g. due to missing read
+     * permissions.
+     * 
+     * @param ancestors
+     *            the ancestors of the element, the root element comes first
      */
-    private CnATreeElement loadParent(CnATreeElement child) {
-        Integer parentId = child.getParentId();
-        if (parentId != null) {
-
-            CnATreeElement parent = (CnATreeElement) getElementDao().retrieve(parentId, ri);
-            if (parent != null) {
-                parent = loadParent(parent);
-                child.setParent(parent);
+    private static void setParents(CnATreeElement element, List<CnATreeElement> ancestors) {
+        CnATreeElement child = element;
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            CnATreeElement parent = ancestors.get(i);
+            if (!parent.getDbId().equals(child.getParentId())) {
+                break;
             }
+            child.setParent(parent);
+            child = parent;
         }
-        return child;
-    }
-
-    /**
-     * @return the elementDao
-     */
-    public IBaseDao<CnATreeElement, Serializable> getElementDao() {
-        if (elementDao == null) {
-            elementDao = (IBaseDao<CnATreeElement, Serializable>) getDaoFactory().getDAO(CnATreeElement.class);
-        }
-        return elementDao;
     }
 
 }
@@ -17,28 +17,18 @@
  ******************************************************************************/
 package sernet.verinice.service.commands;
 
-import java.io.Serializable;
-import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-
-import org.hibernate.Criteria;
-import org.hibernate.criterion.ProjectionList;
-import org.hibernate.criterion.Projections;
-import org.hibernate.criterion.Restrictions;
 
 import sernet.verinice.interfaces.GenericCommand;
-import sernet.verinice.interfaces.IBaseDao;
 import sernet.verinice.model.common.CnATreeElement;
 
 /**
  * Loads the database IDs of the subtree with the given element as root.
  * 
  * The command does not use recursion to load the IDs. The IDs are loaded with
- * only one SQL statement.
+ * only one SQL statement using the tree path of the element, see
+ * {@link sernet.verinice.interfaces.IElementHierarchyDao}.
  */
 public class LoadSubtreeIds extends GenericCommand {
 
@@ -59,44 +49,9 @@ public class LoadSubtreeIds extends GenericCommand {
     @Override
     public void execute() {
         validateElement(this.element);
-
-        List<Object[]> parentChildRelationships = loadDbAndParentIdsOfScope(element.getScopeId());
-        Map<Integer, Set<Integer>> childIdsByParentId = parentChildRelationships.stream()
-                .collect(Collectors.groupingBy(item -> (Integer) item[1],
-                        Collectors.mapping(item -> (Integer) item[0], Collectors.toSet())));
-
-        Set<Integer> childrenOnCurrentLevel = Collections.singleton(element.getDbId());
-        while (!childrenOnCurrentLevel.isEmpty()) {
-            Set<Integer> childrenOnNextLevel = new HashSet<>();
-            for (Integer elementId : childrenOnCurrentLevel) {
-                dbIdsOfSubtree.add(elementId);
-                Set<Integer> children = childIdsByParentId.get(elementId);
-                if (children != null) {
-                    childrenOnNextLevel.addAll(children);
-                }
-            }
-            childrenOnCurrentLevel = childrenOnNextLevel;
-        }
-    }
-
-    private List<Object[]> loadDbAndParentIdsOfScope(Integer scopeId) {
-        @SuppressWarnings("unchecked")
-        List<Object[]> parentChildRelationships = (List<Object[]>) getElementDAO()
-                .executeCallback(session -> {
-                    Criteria criteria = session.createCriteria(CnATreeElement.class);
-                    criteria.add(Restrictions.isNotNull("parentId"));
-                    if (scopeId != null) {
-                        criteria.add(Restrictions.eq("scopeId", scopeId));
-                    }
-
-                    ProjectionList projectionList = Projections.projectionList();
-                    projectionList.add(Projections.property("dbId"));
-                    projectionList.add(Projections.property("parentId"));
-
-                    criteria.setProjection(projectionList);
-                    return criteria.list();
-                });
-        return parentChildRelationships;
+        dbIdsOfSubtree.add(element.getDbId());
+        dbIdsOfSubtree.addAll(
+                getDaoFactory().getElementHierarchyDao().findDescendantIds(element, null));
     }
 
     private void validateElement(CnATreeElement element) {
@@ -109,8 +64,4 @@ public class LoadSubtreeIds extends GenericCommand {
         return dbIdsOfSubtree;
     }
 
-    private IBaseDao<CnATreeElement, Serializable> getElementDAO() {
-        return getDaoFactory().getDAO(CnATreeElement.class);
-    }
-
 }
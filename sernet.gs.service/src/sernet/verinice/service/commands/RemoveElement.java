@@ -20,6 +20,7 @@
 package sernet.verinice.service.commands;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -209,9 +210,8 @@ public class RemoveElement<T extends CnATreeElement> extends ChangeLoggingComman
         @SuppressWarnings("unchecked")
         IBaseDao<? super CnATreeElement, Serializable> dao = getDaoFactory()
                 .getDAOforTypedElement(element);
-        for (Integer dbId : dbIdsOfSubtree) {
-            dao.checkRights(dbId, element.getScopeId());
-        }
+        dao.checkRightsOfElements(new ArrayList<Serializable>(dbIdsOfSubtree),
+                element.getScopeId());
     }
 
     /**
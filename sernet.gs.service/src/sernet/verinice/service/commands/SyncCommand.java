@@ -23,6 +23,7 @@ package sernet.verinice.service.commands;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -36,6 +37,7 @@ import javax.xml.bind.JAXB;
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
+import de.sernet.sync.data.SyncData;
 import de.sernet.sync.sync.SyncRequest;
 import sernet.gs.service.RuntimeCommandException;
 import sernet.gs.service.TimeFormatter;
@@ -49,6 +51,7 @@ import sernet.verinice.model.common.ChangeLogEntry;
 import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.service.sync.IVeriniceArchive;
 import sernet.verinice.service.sync.PureXml;
+import sernet.verinice.service.sync.SyncRequestReader;
 import sernet.verinice.service.sync.VeriniceArchive;
 import sernet.verinice.service.sync.VnaSchemaVersion;
 
@@ -75,7 +78,7 @@ public class SyncCommand extends ChangeLoggingCommand
 
     private transient Set<CnATreeElement> importRootObjects;
 
-    private transient Set<CnATreeElement> elementSet = null;
+    private transient Set<CnATreeElement> importedScopes = null;
 
     private Set<String> importedElementUUIDs;
 
@@ -83,6 +86,12 @@ public class SyncCommand extends ChangeLoggingCommand
 
     private transient IVeriniceArchive veriniceArchive = null;
 
+    private transient SyncRequestReader syncRequestReader = null;
+
+    private transient Set<String> syncObjectExtIds = null;
+
+    private boolean streamingImport = true;
+
     private Status status = Status.OK;
 
     private Exception errorCause;
@@ -151,7 +160,11 @@ public class SyncCommand extends ChangeLoggingCommand
         try {
             long start = getStartTimestamp();
 
-            if (path != null && fileData == null) {
+            if (isStreamingImport()) {
+                loadVeriniceArchive(new File(path));
+            }
+
+            if (path != null && fileData == null && veriniceArchive == null) {
                 fileData = FileUtils.readFileToByteArray(new File(path));
             }
 
@@ -201,25 +214,34 @@ public class SyncCommand extends ChangeLoggingCommand
                 errors);
         cmdInsertUpdate.setRisk(veriniceArchive.getSyncRiskAnalysis());
         cmdInsertUpdate.setTempDirName(veriniceArchive.getTempDirName());
+        cmdInsertUpdate.setSyncRequestReader(syncRequestReader);
+        cmdInsertUpdate.setStationId(stationId);
         cmdInsertUpdate = getCommandService().executeCommand(cmdInsertUpdate);
         if (isVeriniceArchive()) {
             cmdInsertUpdate.importFileData(veriniceArchive);
         }
 
         importRootObjects = new HashSet<>(cmdInsertUpdate.getContainerMap().values());
-        elementSet = cmdInsertUpdate.getElementSet();
-        importedElementUUIDs = Collections.unmodifiableSet(
-                elementSet.stream().map(CnATreeElement::getUuid).collect(Collectors.toSet()));
+        importedScopes = cmdInsertUpdate.getImportedScopes();
+        importedElementUUIDs = Collections
+                .unmodifiableSet(cmdInsertUpdate.getImportedElementUuids());
         importRootObjectUUIDs = Collections.unmodifiableSet(importRootObjects.stream()
                 .map(CnATreeElement::getUuid).collect(Collectors.toSet()));
         inserted += cmdInsertUpdate.getInserted();
         potentiallyUpdated += cmdInsertUpdate.getUpdated();
+        syncObjectExtIds = cmdInsertUpdate.getSyncObjectExtIds();
     }
 
     private void doDelete() throws CommandException {
         if (parameter.isDelete()) {
-            SyncDeleteCommand cmdDelete = new SyncDeleteCommand(veriniceArchive.getSourceId(),
-                    veriniceArchive.getSyncData(), errors);
+            SyncDeleteCommand cmdDelete;
+            if (syncObjectExtIds != null) {
+                cmdDelete = new SyncDeleteCommand(veriniceArchive.getSourceId(), syncObjectExtIds,
+                        errors);
+            } else {
+                cmdDelete = new SyncDeleteCommand(veriniceArchive.getSourceId(),
+                        veriniceArchive.getSyncData(), errors);
+            }
             cmdDelete = getCommandService().executeCommand(cmdDelete);
             deleted += cmdDelete.getDeleted();
         }
@@ -235,8 +257,10 @@ public class SyncCommand extends ChangeLoggingCommand
             veriniceArchive.clear();
         }
         fileData = null;
-        elementSet = null;
+        importedScopes = null;
         importRootObjects = null;
+        syncRequestReader = null;
+        syncObjectExtIds = null;
     }
 
     private long getStartTimestamp() {
@@ -258,6 +282,45 @@ public class SyncCommand extends ChangeLoggingCommand
         logXml();
     }
 
+    /**
+     * Extracts the archive from the file but reads only the header of the sync
+     * request. The sync data is read by the {@link SyncInsertUpdateCommand}
+     * with a {@link SyncRequestReader}.
+     */
+    private void loadVeriniceArchive(File file) throws IOException {
+        File xmlFile;
+        PureXml archive;
+        if (isVeriniceArchive()) {
+            VeriniceArchive vna = new VeriniceArchive(file);
+            xmlFile = vna.getVeriniceXmlFile();
+            archive = vna;
+        } else {
+            xmlFile = file;
+            archive = new PureXml();
+        }
+        syncRequestReader = new SyncRequestReader(xmlFile);
+        SyncRequest header = syncRequestReader.readHeader();
+        archive.setSyncRequest(header);
+        archive.setSourceId(header.getSourceId());
+        archive.setSyncMapping(header.getSyncMapping());
+        archive.setSyncData(new SyncData());
+        veriniceArchive = archive;
+    }
+
+    /**
+     * Returns true if the sync request is read from a file one element after
+     * the other instead of loading it into memory at once.
+     */
+    private boolean isStreamingImport() {
+        return streamingImport && path != null && fileData == null && veriniceArchive == null
+                && (isVeriniceArchive()
+                        || SyncParameter.EXPORT_FORMAT_XML_PURE.equals(parameter.getFormat()));
+    }
+
+    public void setStreamingImport(boolean streamingImport) {
+        this.streamingImport = streamingImport;
+    }
+
     public int getInserted() {
         return inserted;
     }
@@ -300,8 +363,10 @@ public class SyncCommand extends ChangeLoggingCommand
         if (importRootObjects != null) {
             changedElements.addAll(importRootObjects);
         }
-        if (elementSet != null) {
-            changedElements.addAll(elementSet);
+        // the other imported elements are logged by the
+        // SyncInsertUpdateCommand while importing
+        if (importedScopes != null) {
+            changedElements.addAll(importedScopes);
         }
         return changedElements;
     }
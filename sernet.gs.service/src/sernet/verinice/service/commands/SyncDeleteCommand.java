@@ -23,6 +23,7 @@ package sernet.verinice.service.commands;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
@@ -52,6 +53,7 @@ public class SyncDeleteCommand extends GenericCommand {
 
     private String sourceId;
     private SyncData syncData;
+    private Set<String> extIds;
 
     private List<String> errors;
 
@@ -67,6 +69,16 @@ public class SyncDeleteCommand extends GenericCommand {
         this.errors = errorList;
     }
 
+    /**
+     * @param extIds
+     *            the ext-ids of all objects in the sync data
+     */
+    public SyncDeleteCommand(String sourceId, Set<String> extIds, List<String> errorList) {
+        this.sourceId = sourceId;
+        this.extIds = extIds;
+        this.errors = errorList;
+    }
+
     /* Search for objects within database, which have previously been synced
      * from the given sourceId, but not listed any more. Delete those objects
      * from the database.
@@ -87,9 +99,11 @@ public class SyncDeleteCommand extends GenericCommand {
 
         // create a hash map, which contains a token for all
         // extId's which are present in the sync Data:
-        HashSet<String> currentExtIds = new HashSet<String>();
-
-        collectExtIds(syncData.getSyncObject(), currentExtIds);
+        Set<String> currentExtIds = extIds;
+        if (currentExtIds == null) {
+            currentExtIds = new HashSet<String>();
+            collectExtIds(syncData.getSyncObject(), currentExtIds);
+        }
 
         // find objects in the db, which have been synched from
         // this sourceId in the past, but are missing in the current list:
@@ -115,7 +129,7 @@ public class SyncDeleteCommand extends GenericCommand {
         }
     }
 
-    private void collectExtIds(List<SyncObject> syncObjectList, HashSet<String> currentExtIds) {
+    private void collectExtIds(List<SyncObject> syncObjectList, Set<String> currentExtIds) {
         for (SyncObject so : syncObjectList) {
             // store a token for the extId of every <syncObject> in the sync
             // data:
@@ -23,8 +23,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -70,6 +74,7 @@ import sernet.verinice.model.bsi.risikoanalyse.GefaehrdungsUmsetzung;
 import sernet.verinice.model.bsi.risikoanalyse.OwnGefaehrdung;
 import sernet.verinice.model.bsi.risikoanalyse.RisikoMassnahme;
 import sernet.verinice.model.catalog.CatalogModel;
+import sernet.verinice.model.common.ChangeLogEntry;
 import sernet.verinice.model.common.CnALink;
 import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.model.common.Permission;
@@ -80,6 +85,7 @@ import sernet.verinice.service.bp.LoadBpModel;
 import sernet.verinice.service.iso27k.LoadImportObjectsHolder;
 import sernet.verinice.service.model.LoadModel;
 import sernet.verinice.service.sync.IVeriniceArchive;
+import sernet.verinice.service.sync.SyncRequestReader;
 
 /**
  * This command is used as a sub-command of {@link SyncCommand} to insert and
@@ -87,6 +93,16 @@ import sernet.verinice.service.sync.IVeriniceArchive;
  * 
  * It's not a standalone-command.
  * 
+ * If a {@link SyncRequestReader} is set, the sync objects and links are read
+ * one by one from the reader instead of the sync data. The Hibernate session
+ * is flushed and cleared every {@value #DEFAULT_FLUSH_LEVEL} elements (see
+ * {@link #PROP_FLUSH_LEVEL}). The change log entries of the elements are
+ * written before the session is cleared, only the UUIDs of the imported
+ * elements are kept. Imported elements are resolved by ext-id and database id
+ * only, links are inserted in batches of at most
+ * {@value #MAX_LINK_BATCH_SIZE} (see {@link #PROP_LINK_BATCH_SIZE}) after all
+ * elements are imported.
+ * 
  * @author Daniel Murygin <dm[at]sernet[dot]de>
  */
 @SuppressWarnings({ "serial" })
@@ -97,12 +113,18 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
     private static final Logger logrt = Logger
             .getLogger(SyncInsertUpdateCommand.class.getName() + ".rt");
 
-    private static final int FLUSH_LEVEL = 50;
+    public static final String PROP_FLUSH_LEVEL = "flushLevel";
+    public static final int DEFAULT_FLUSH_LEVEL = 50;
+
+    public static final String PROP_LINK_BATCH_SIZE = "linkBatchSize";
+    // two ext-ids per link, stays below the limit of IN clauses in Oracle
+    public static final int MAX_LINK_BATCH_SIZE = 500;
 
     private String sourceId;
     private boolean sourceIdExists;
     private transient SyncMapping syncMapping;
     private transient SyncData syncData;
+    private transient SyncRequestReader syncRequestReader;
     private transient Risk risk;
     private String userName;
     private String tempDirName;
@@ -117,9 +139,24 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
 
     private Map<Class<?>, CnATreeElement> containerMap = new HashMap<>(3);
 
-    private Set<CnATreeElement> elementSet = new HashSet<>();
+    // only the UUIDs of the imported elements are kept, the elements are
+    // released when the session is cleared
+    private Set<String> importedElementUuids = new HashSet<>();
+
+    private Set<CnATreeElement> importedScopes = new HashSet<>();
+
+    // imported elements which are not written to the change log yet
+    private transient List<CnATreeElement> unloggedElements = new ArrayList<>();
+
+    private String stationId = ChangeLogEntry.STATION_ID;
+
+    private transient ExtIdElementMap idElementMap;
 
-    private transient Map<String, CnATreeElement> idElementMap = new HashMap<>();
+    private Set<String> syncObjectExtIds;
+
+    private int flushLevel = DEFAULT_FLUSH_LEVEL;
+
+    private int linkBatchSize = MAX_LINK_BATCH_SIZE;
 
     private transient Map<String, Attachment> attachmentMap;
 
@@ -160,6 +197,9 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
     public void execute() {
 
         IBaseDao<CnATreeElement, Serializable> iBaseDao = getDao(CnATreeElement.class);
+        idElementMap = new ExtIdElementMap(iBaseDao);
+        flushLevel = getFlushLevel();
+        linkBatchSize = getLinkBatchSize();
         importReferenceTypes = new ImportReferenceTypes(iBaseDao, getCommandService(),
                 idElementMap);
 
@@ -187,20 +227,18 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
                             .add(link.getRelationId()));
                 }
             }
-            List<SyncObject> soList = syncData.getSyncObject();
-
-            for (SyncObject so : soList) {
-                importObject(null, so);
-            } // for <syncObject>
+            if (syncRequestReader != null) {
+                importSyncData(syncRequestReader);
+            } else {
+                List<SyncObject> soList = syncData.getSyncObject();
 
-            importReferenceTypes.replaceExternalIdsWithDbIds();
+                for (SyncObject so : soList) {
+                    importObject(null, so);
+                } // for <syncObject>
 
-            if (logrt.isDebugEnabled()) {
-                logrt.debug("Elements: " + merged);
-            }
+                finishObjectImport();
 
-            for (SyncLink syncLink : syncData.getSyncLink()) {
-                importLink(syncLink);
+                importLinks(syncData.getSyncLink());
             }
 
             importRiskAnalysis();
@@ -215,6 +253,27 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
         }
     }
 
+    /**
+     * Imports the sync objects and links one by one from the reader.
+     */
+    private void importSyncData(SyncRequestReader reader) throws IOException, CommandException {
+        if (parameter.isDelete()) {
+            syncObjectExtIds = new HashSet<>();
+        }
+        StreamingImportHandler handler = new StreamingImportHandler();
+        reader.readSyncData(handler);
+        handler.finish();
+    }
+
+    private void finishObjectImport() {
+        logImportedElements();
+        importReferenceTypes.replaceExternalIdsWithDbIds();
+
+        if (logrt.isDebugEnabled()) {
+            logrt.debug("Elements: " + merged);
+        }
+    }
+
     private boolean isSourceIdInDatabase(String id) throws CommandException {
         CheckSourceId checkSourceIdCommand = new CheckSourceId(id);
         checkSourceIdCommand = getCommandService().executeCommand(checkSourceIdCommand);
@@ -226,6 +285,49 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
     }
 
     private void importObject(CnATreeElement parent, SyncObject so) throws CommandException {
+        MapObjectType mot = getMapObjectType(so);
+        if (mot == null) {
+            return;
+        }
+        CnATreeElement elementInDB = importElement(parent, so, mot);
+
+        if (isVeriniceArchive()) {
+            importFileList(elementInDB, so.getFile());
+        }
+
+        // Handle all the child objects.
+        for (SyncObject child : so.getChildren()) {
+            // The object that was created or modified during the course of
+            // this method call is the parent for the import of the
+            // child elements.
+            if (log.isDebugEnabled() && child != null) {
+                log.debug("Child found, type: " + child.getExtObjectType() + ", extId: "
+                        + child.getExtId());
+            }
+            importObject(elementInDB, child);
+        }
+    }
+
+    private MapObjectType getMapObjectType(SyncObject so) {
+        MapObjectType mot = getMap(so.getExtObjectType());
+        if (mot == null) {
+            final String message = "Could not find mapObjectType-Element" + " for XML type: "
+                    + so.getExtObjectType();
+            log.error(message);
+            errorList.add(message);
+        }
+        return mot;
+    }
+
+    /**
+     * Inserts or updates the element of a sync object without its children
+     * and files.
+     * 
+     * @return the inserted or updated element or null if no element was
+     *         inserted
+     */
+    private CnATreeElement importElement(CnATreeElement parent, SyncObject so,
+            MapObjectType mot) throws CommandException {
         String extId = so.getExtId();
         String extObjectType = so.getExtObjectType();
         long start = 0;
@@ -239,16 +341,6 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
 
         boolean setAttributes = false;
 
-        MapObjectType mot = getMap(extObjectType);
-
-        if (mot == null) {
-            final String message = "Could not find mapObjectType-Element" + " for XML type: "
-                    + extObjectType;
-            log.error(message);
-            errorList.add(message);
-            return;
-        }
-
         // this element "knows", which huientitytype is applicable and
         // how the associated properties have to be mapped!
         String veriniceObjectType = mot.getIntId();
@@ -303,10 +395,6 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
                     elementInDB.setExtId(extId);
                 }
 
-                if (elementInDB.isScope()) {
-                    addElement(elementInDB);
-                }
-
                 setAttributes = true;
                 inserted++;
                 if (log.isDebugEnabled()) {
@@ -359,7 +447,6 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
                 } catch (IndexOutOfBoundsException e) {
                     log.error("wrong number of arguments while importing", e);
                 }
-                addElement(elementInDB);
             } // for <syncAttribute>
             if (updatingExistingElement && propertyValueChanged) {
                 Optional.ofNullable(elementInDB.getEntity())
@@ -368,22 +455,20 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
             elementInDB = dao.merge(elementInDB);
             parent.addChild(elementInDB);
             elementInDB.setParentAndScope(parent);
+            getDaoFactory().getElementHierarchyDao().updateTreePath(elementInDB);
 
             // set the scope id of scopes
             if (elementInDB.isScope()) {
                 elementInDB.setScopeId(elementInDB.getDbId());
             }
+            addElement(elementInDB);
 
             merged++;
-            if (merged % FLUSH_LEVEL == 0) {
+            if (merged % flushLevel == 0) {
                 flushAndClearDao(dao);
             }
         }
 
-        if (isVeriniceArchive()) {
-            importFileList(elementInDB, so.getFile());
-        }
-
         if (elementInDB != null) {
             idElementMap.put(extId, elementInDB);
         }
@@ -391,17 +476,7 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
         if (logrt.isDebugEnabled()) {
             logRuntime(start);
         }
-        // Handle all the child objects.
-        for (SyncObject child : so.getChildren()) {
-            // The object that was created or modified during the course of
-            // this method call is the parent for the import of the
-            // child elements.
-            if (log.isDebugEnabled() && child != null) {
-                log.debug("Child found, type: " + child.getExtObjectType() + ", extId: "
-                        + child.getExtId());
-            }
-            importObject(elementInDB, child);
-        }
+        return elementInDB;
     }
 
     /**
@@ -608,37 +683,103 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
         }
     }
 
+    private void importLinks(List<SyncLink> syncLinks) {
+        for (int i = 0; i < syncLinks.size(); i += linkBatchSize) {
+            importLinkBatch(
+                    syncLinks.subList(i, Math.min(i + linkBatchSize, syncLinks.size())));
+        }
+    }
+
+    /**
+     * Loads the linked elements of all links of the batch with two queries
+     * and creates the links. The session is flushed and cleared afterwards.
+     */
+    private void importLinkBatch(List<SyncLink> syncLinks) {
+        Set<String> extIds = new HashSet<>(syncLinks.size() * 2);
+        for (SyncLink syncLink : syncLinks) {
+            extIds.add(syncLink.getDependant());
+            extIds.add(syncLink.getDependency());
+        }
+        Map<String, CnATreeElement> elements = loadLinkedElements(extIds);
+        for (SyncLink syncLink : syncLinks) {
+            importLink(syncLink, elements);
+        }
+        flushAndClearDao(getDao(CnALink.class));
+    }
+
+    /**
+     * Loads the elements with the given ext-ids. Elements imported before are
+     * loaded by db-id, all others by source-id and ext-id.
+     * 
+     * @return a map with the ext-ids as keys
+     * @throws RuntimeCommandException
+     *             if more than one element is found for an ext-id
+     */
+    private Map<String, CnATreeElement> loadLinkedElements(Set<String> extIds) {
+        Map<String, CnATreeElement> elements = new HashMap<>(extIds.size());
+        Map<Integer, String> extIdsByDbId = new HashMap<>(extIds.size());
+        Set<String> unknownExtIds = new HashSet<>();
+        for (String extId : extIds) {
+            Integer dbId = idElementMap.getDbId(extId);
+            if (dbId != null) {
+                extIdsByDbId.put(dbId, extId);
+            } else {
+                unknownExtIds.add(extId);
+            }
+        }
+        IBaseDao<CnATreeElement, Serializable> dao = getDao(CnATreeElement.class);
+        if (!extIdsByDbId.isEmpty()) {
+            DetachedCriteria criteria = DetachedCriteria.forClass(CnATreeElement.class)
+                    .add(Restrictions.in("dbId", extIdsByDbId.keySet()));
+            @SuppressWarnings("unchecked")
+            List<CnATreeElement> result = dao.findByCriteria(criteria);
+            for (CnATreeElement element : result) {
+                elements.put(extIdsByDbId.get(element.getDbId()), element);
+            }
+        }
+        if (!unknownExtIds.isEmpty()) {
+            DetachedCriteria criteria = DetachedCriteria.forClass(CnATreeElement.class)
+                    .add(Restrictions.eq("sourceId", sourceId))
+                    .add(Restrictions.in("extId", unknownExtIds));
+            @SuppressWarnings("unchecked")
+            List<CnATreeElement> result = dao.findByCriteria(criteria);
+            for (CnATreeElement element : result) {
+                if (elements.put(element.getExtId(), element) != null) {
+                    final String message = "Found more than one element with source-id: "
+                            + sourceId + " and external ID: " + element.getExtId();
+                    log.error(message);
+                    throw new RuntimeCommandException(message);
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Element not found in XML file but in db, ext-id: "
+                            + element.getExtId());
+                }
+            }
+        }
+        return elements;
+    }
+
     /**
      * @param syncLink
-     * @throws CommandException
+     * @param elements
+     *            the linked elements by ext-id
      */
-    private void importLink(SyncLink syncLink) {
+    private void importLink(SyncLink syncLink, Map<String, CnATreeElement> elements) {
         String dependantId = syncLink.getDependant();
         String dependencyId = syncLink.getDependency();
-        CnATreeElement dependant = idElementMap.get(dependantId);
+        CnATreeElement dependant = elements.get(dependantId);
         if (dependant == null) {
-            dependant = findDbElement(this.sourceId, dependantId, true, true);
-            if (dependant == null) {
-                log.warn("Can not import link. dependant not found in "
-                        + "xml file and db, dependant ext-id: " + dependantId
-                        + " dependency ext-id: " + dependencyId);
-                return;
-            } else if (log.isDebugEnabled()) {
-                log.debug("dependant not found in XML file but in db, " + "ext-id: " + dependantId);
-            }
+            log.warn("Can not import link. dependant not found in "
+                    + "xml file and db, dependant ext-id: " + dependantId
+                    + " dependency ext-id: " + dependencyId);
+            return;
         }
-        CnATreeElement dependency = idElementMap.get(dependencyId);
+        CnATreeElement dependency = elements.get(dependencyId);
         if (dependency == null) {
-            dependency = findDbElement(this.sourceId, dependencyId, true, true);
-            if (dependency == null) {
-                log.warn("Can not import link. dependency not found in "
-                        + "xml file and db, dependency ext-id: " + dependencyId
-                        + " dependant ext-id: " + dependantId);
-                return;
-            } else if (log.isDebugEnabled()) {
-                log.debug(
-                        "dependency not found in XML file but in db, " + "ext-id: " + dependencyId);
-            }
+            log.warn("Can not import link. dependency not found in "
+                    + "xml file and db, dependency ext-id: " + dependencyId
+                    + " dependant ext-id: " + dependantId);
+            return;
         }
 
         CnALink link = new CnALink(dependant, dependency, syncLink.getRelationId(),
@@ -971,10 +1112,32 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
     }
 
     protected void addElement(CnATreeElement element) {
-        if (elementSet == null) {
-            elementSet = new HashSet<>();
+        if (!importedElementUuids.add(element.getUuid())) {
+            return;
+        }
+        if (element.isScope()) {
+            // scopes are logged by the calling command
+            importedScopes.add(element);
+        } else {
+            unloggedElements.add(element);
         }
-        elementSet.add(element);
+    }
+
+    /**
+     * Writes the change log entries of the elements imported since the last
+     * call. Call this method before the session is cleared.
+     */
+    private void logImportedElements() {
+        if (unloggedElements.isEmpty()) {
+            return;
+        }
+        IBaseDao<ChangeLogEntry, Serializable> dao = getDao(ChangeLogEntry.class);
+        Date now = new Date();
+        for (CnATreeElement element : unloggedElements) {
+            dao.saveOrUpdate(new ChangeLogEntry(element, ChangeLogEntry.TYPE_INSERT,
+                    authService.getUsername(), stationId, now));
+        }
+        unloggedElements.clear();
     }
 
     public Risk getSyncRisk() {
@@ -1001,8 +1164,23 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
         return containerMap;
     }
 
-    public Set<CnATreeElement> getElementSet() {
-        return elementSet;
+    /**
+     * @return the UUIDs of all imported elements
+     */
+    public Set<String> getImportedElementUuids() {
+        return importedElementUuids;
+    }
+
+    /**
+     * @return the imported scopes, the change log entries of these elements
+     *         are not written by this command
+     */
+    public Set<CnATreeElement> getImportedScopes() {
+        return importedScopes;
+    }
+
+    public void setStationId(String stationId) {
+        this.stationId = stationId;
     }
 
     protected String getUserName() {
@@ -1013,6 +1191,19 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
         this.userName = userName;
     }
 
+    public void setSyncRequestReader(SyncRequestReader syncRequestReader) {
+        this.syncRequestReader = syncRequestReader;
+    }
+
+    /**
+     * @return the ext-ids of all sync objects read by the
+     *         {@link SyncRequestReader} or null if no reader was used or the
+     *         parameter delete is not set
+     */
+    public Set<String> getSyncObjectExtIds() {
+        return syncObjectExtIds;
+    }
+
     public String getTempDirName() {
         return tempDirName;
     }
@@ -1021,6 +1212,34 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
         this.tempDirName = tempFileName;
     }
 
+    private int getFlushLevel() {
+        int level = DEFAULT_FLUSH_LEVEL;
+        final Object prop = getProperties().get(PROP_FLUSH_LEVEL);
+        if (prop != null) {
+            try {
+                level = Integer.valueOf((String) prop);
+            } catch (final Exception e) {
+                log.error("Error while reading flush level from property: " + PROP_FLUSH_LEVEL
+                        + ", value is: " + prop, e);
+            }
+        }
+        return level > 0 ? level : DEFAULT_FLUSH_LEVEL;
+    }
+
+    private int getLinkBatchSize() {
+        int size = MAX_LINK_BATCH_SIZE;
+        final Object prop = getProperties().get(PROP_LINK_BATCH_SIZE);
+        if (prop != null) {
+            try {
+                size = Integer.valueOf((String) prop);
+            } catch (final Exception e) {
+                log.error("Error while reading link batch size from property: "
+                        + PROP_LINK_BATCH_SIZE + ", value is: " + prop, e);
+            }
+        }
+        return (size > 0 && size < MAX_LINK_BATCH_SIZE) ? size : MAX_LINK_BATCH_SIZE;
+    }
+
     private boolean isVeriniceArchive() {
         return SyncParameter.EXPORT_FORMAT_VERINICE_ARCHIV.equals(parameter.getFormat());
     }
@@ -1034,8 +1253,10 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
         if (logrt.isDebugEnabled()) {
             flushstart = System.currentTimeMillis();
         }
+        logImportedElements();
         dao.flush();
         dao.clear();
+        idElementMap.sessionCleared();
         if (logrt.isDebugEnabled()) {
             long time = System.currentTimeMillis() - flushstart;
             logrt.debug("Flushed, runtime: " + time + " ms");
@@ -1077,4 +1298,71 @@ public class SyncInsertUpdateCommand extends GenericCommand implements IAuthAwar
         existingLinksForScope = null;
     }
 
+    /**
+     * Imports the sync objects in document order, the parents of the current
+     * object are kept on a stack. Links are collected and imported in batches.
+     */
+    private final class StreamingImportHandler implements SyncRequestReader.Handler {
+
+        private final Deque<CnATreeElement> parents = new LinkedList<>();
+        private final List<SyncLink> linkBatch = new ArrayList<>(linkBatchSize);
+        private boolean objectsImported = false;
+        // depth in the subtree of an object without mapping
+        private int skippedDepth = 0;
+
+        @Override
+        public void startSyncObject(SyncObject syncObject) throws CommandException {
+            if (syncObjectExtIds != null) {
+                syncObjectExtIds.add(syncObject.getExtId());
+            }
+            if (skippedDepth > 0) {
+                skippedDepth++;
+                return;
+            }
+            MapObjectType mot = getMapObjectType(syncObject);
+            if (mot == null) {
+                skippedDepth = 1;
+                return;
+            }
+            parents.push(importElement(parents.peek(), syncObject, mot));
+        }
+
+        @Override
+        public void endSyncObject(SyncObject syncObject) throws CommandException {
+            if (skippedDepth > 0) {
+                skippedDepth--;
+                return;
+            }
+            CnATreeElement element = parents.pop();
+            if (isVeriniceArchive()) {
+                importFileList(element, syncObject.getFile());
+            }
+        }
+
+        @Override
+        public void syncLink(SyncLink syncLink) {
+            finishObjects();
+            linkBatch.add(syncLink);
+            if (linkBatch.size() == linkBatchSize) {
+                importLinkBatch(linkBatch);
+                linkBatch.clear();
+            }
+        }
+
+        void finish() {
+            finishObjects();
+            if (!linkBatch.isEmpty()) {
+                importLinkBatch(linkBatch);
+                linkBatch.clear();
+            }
+        }
+
+        private void finishObjects() {
+            if (!objectsImported) {
+                finishObjectImport();
+                objectsImported = true;
+            }
+        }
+    }
+
 }
@@ -17,6 +17,7 @@
  ******************************************************************************/
 package sernet.verinice.service.commands.crud;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import org.apache.log4j.Logger;
@@ -111,11 +112,12 @@ public class ExecuteHQLInReportCommand extends GenericCommand implements ICached
     public String getCacheID() {
         StringBuilder sb = new StringBuilder();
         sb.append(this.getClass().getCanonicalName());
-        sb.append(hql);
+        sb.append(':').append(hql);
         for (Object param : this.hqlParams) {
-            sb.append(String.valueOf(param));
+            sb.append(':').append(param instanceof Object[] ? Arrays.deepToString((Object[]) param)
+                    : String.valueOf(param));
         }
-        sb.append(typeClass.getName());
+        sb.append(':').append(typeClass.getName());
         return sb.toString();
     }
 
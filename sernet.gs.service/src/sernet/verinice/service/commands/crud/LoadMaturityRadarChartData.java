@@ -170,11 +170,11 @@ public class LoadMaturityRadarChartData extends GenericCommand implements ICache
     public String getCacheID() {
         StringBuilder cacheID = new StringBuilder();
         cacheID.append(this.getClass().getSimpleName());
-        cacheID.append(String.valueOf(rootElmt));
+        cacheID.append(':').append(String.valueOf(rootElmt));
         if(sgdbid != null){
-            cacheID.append(String.valueOf(sgdbid));
+            cacheID.append(':').append(String.valueOf(sgdbid));
         } else {
-            cacheID.append("null");
+            cacheID.append(':').append("null");
         }
         return cacheID.toString();
     }
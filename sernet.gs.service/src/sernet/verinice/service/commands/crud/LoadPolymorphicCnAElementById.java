@@ -90,7 +90,7 @@ public class LoadPolymorphicCnAElementById extends GenericCommand implements ICa
         StringBuilder cacheID = new StringBuilder();
         cacheID.append(this.getClass().getSimpleName());
         for(Integer i : ids){
-            cacheID.append(String.valueOf(i));
+            cacheID.append(':').append(String.valueOf(i));
         }
         return cacheID.toString();
     }
@@ -178,9 +178,9 @@ public class LoadReportCountRisksBySeverity extends GenericCommand implements IC
     public String getCacheID() {
         StringBuilder cacheID = new StringBuilder();
         cacheID.append(this.getClass().getSimpleName());
-        cacheID.append(String.valueOf(rootElmt));
-        cacheID.append(String.valueOf(riskType));
-        cacheID.append(String.valueOf(numYellowFields));
+        cacheID.append(':').append(String.valueOf(rootElmt));
+        cacheID.append(':').append(String.valueOf(riskType));
+        cacheID.append(':').append(String.valueOf(numYellowFields));
         return cacheID.toString();
     }
 
@@ -1,17 +1,27 @@
 package sernet.verinice.service.commands.crud;
 
+import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Restrictions;
 
+import sernet.gs.service.CollectionUtil;
 import sernet.gs.service.NumericStringComparator;
+import sernet.gs.service.RetrieveInfo;
 import sernet.gs.service.RuntimeCommandException;
 import sernet.verinice.interfaces.CommandException;
 import sernet.verinice.interfaces.GenericCommand;
+import sernet.verinice.interfaces.IBaseDao;
 import sernet.verinice.interfaces.ICachedCommand;
 import sernet.verinice.model.bsi.Anwendung;
 import sernet.verinice.model.bsi.AnwendungenKategorie;
@@ -54,6 +64,8 @@ public class LoadReportElements extends GenericCommand implements ICachedCommand
 
     private static final Logger log = Logger.getLogger(LoadReportElements.class);
 
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
     private boolean resultInjectedFromCache = false;
 
     private String typeId;
@@ -153,39 +165,106 @@ public class LoadReportElements extends GenericCommand implements ICachedCommand
         return elements;
     }
 
+    /**
+     * Returns the descendants of an element which have the given type or all
+     * descendants if no type is given. Only descendants which can be reached
+     * through groups and categories which can contain the type are returned,
+     * see {@link #isTraversable(CnATreeElement, String)}.
+     * 
+     * The descendants are loaded with one query by their tree path. The
+     * groups between the element and the descendants are loaded with their
+     * properties with one query per {@value #MAX_IDS_PER_QUERY} groups, the
+     * parents of the descendants are initialized with them.
+     */
     public List<CnATreeElement> getElements(String typeFilter, CnATreeElement parent) {
-        ArrayList<CnATreeElement> children = new ArrayList<>(0);
-        for (CnATreeElement child : parent.getChildren()) {
-            if (typeFilter != null && typeFilter.length() > 0) {
-                if (child.getTypeId().equals(typeFilter)) {
-                    children.add(child);
-                    child.getParent().getTitle();
-                }
+        boolean filterByType = typeFilter != null && typeFilter.length() > 0;
+        List<CnATreeElement> descendants = getDaoFactory().getElementHierarchyDao()
+                .findDescendants(parent, filterByType ? typeFilter : null,
+                        RetrieveInfo.getPropertyInstance().setParent(true));
+        Map<CnATreeElement, List<Integer>> groupIdsByDescendant = new HashMap<>(
+                descendants.size());
+        Set<Integer> groupIds = new HashSet<>();
+        for (CnATreeElement descendant : descendants) {
+            List<Integer> ids = getGroupIds(parent, descendant);
+            groupIdsByDescendant.put(descendant, ids);
+            groupIds.addAll(ids);
+        }
+        Set<Integer> traversableGroupIds = findTraversableGroupIds(groupIds, typeFilter);
+        ArrayList<CnATreeElement> children = new ArrayList<>(descendants.size());
+        for (CnATreeElement descendant : descendants) {
+            if (traversableGroupIds.containsAll(groupIdsByDescendant.get(descendant))) {
+                children.add(descendant);
+                descendant.getParent().getTitle();
+            }
+        }
+        return children;
+    }
+
+    /**
+     * @return the database IDs of the elements between the parent and the
+     *         descendant
+     */
+    private static List<Integer> getGroupIds(CnATreeElement parent,
+            CnATreeElement descendant) {
+        String[] ancestorIds = descendant.getTreePath().split(CnATreeElement.TREE_PATH_SEPARATOR);
+        String parentId = String.valueOf(parent.getDbId());
+        List<Integer> groupIds = new ArrayList<>();
+        boolean belowParent = false;
+        for (String id : ancestorIds) {
+            if (belowParent) {
+                groupIds.add(Integer.valueOf(id));
             } else {
-                children.add(child);
-                child.getParent().getTitle();
+                belowParent = id.equals(parentId);
             }
-            if (child instanceof IISO27kGroup) { // ism element that can contain
-                                                 // children
-                IISO27kGroup g = (IISO27kGroup) child;
-                if ((Arrays.asList(g.getChildTypes()).contains(typeFilter)
-                        || g.getTypeId().equals(typeFilter) || g instanceof AuditGroup
-                        || g instanceof Audit) && child != null) {
-                    children.addAll(getElements(typeFilter, child));
-                }
-                // gs elements that can contain children
-            } else if (child instanceof IBSIStrukturKategorie) {
-                if (isGSKategorieAndCanContain((IBSIStrukturKategorie) child, typeFilter)
-                        || Arrays.asList(specialGSClasses).contains(typeFilter)) {
-                    children.addAll(getElements(typeFilter, child));
+        }
+        return groupIds;
+    }
+
+    private Set<Integer> findTraversableGroupIds(Set<Integer> groupIds, String typeFilter) {
+        Set<Integer> traversableGroupIds = new HashSet<>(groupIds.size());
+        if (groupIds.isEmpty()) {
+            return traversableGroupIds;
+        }
+        IBaseDao<CnATreeElement, Serializable> dao = getDaoFactory()
+                .getDAO(CnATreeElement.class);
+        // the result depends only on the class of a group
+        Map<Class<?>, Boolean> traversableByClass = new HashMap<>();
+        for (List<Integer> partition : CollectionUtil.partition(new ArrayList<>(groupIds),
+                MAX_IDS_PER_QUERY)) {
+            DetachedCriteria criteria = DetachedCriteria.forClass(CnATreeElement.class)
+                    .add(Restrictions.in("dbId", partition));
+            RetrieveInfo.getPropertyInstance().configureCriteria(criteria);
+            for (Object element : dao.findByCriteria(criteria)) {
+                CnATreeElement group = dao.initializeAndUnproxy((CnATreeElement) element);
+                if (traversableByClass.computeIfAbsent(group.getClass(),
+                        groupClass -> isTraversable(group, typeFilter))) {
+                    traversableGroupIds.add(group.getDbId());
                 }
-            } else if (child instanceof IBSIStrukturElement
-                    && (isGSElementAndCanContain((IBSIStrukturElement) child, typeFilter)
-                            || Arrays.asList(specialGSClasses).contains(typeFilter))) {
-                children.addAll(getElements(typeFilter, child));
             }
         }
-        return children;
+        return traversableGroupIds;
+    }
+
+    /**
+     * @return true if the children of the element are searched for elements
+     *         of the given type
+     */
+    private boolean isTraversable(CnATreeElement element, String typeFilter) {
+        if (element instanceof IISO27kGroup) { // ism element that can contain
+                                               // children
+            IISO27kGroup g = (IISO27kGroup) element;
+            return Arrays.asList(g.getChildTypes()).contains(typeFilter)
+                    || g.getTypeId().equals(typeFilter) || g instanceof AuditGroup
+                    || g instanceof Audit;
+        } else if (element instanceof IBSIStrukturKategorie) { // gs elements that
+                                                               // can contain children
+            return isGSKategorieAndCanContain((IBSIStrukturKategorie) element, typeFilter)
+                    || Arrays.asList(specialGSClasses).contains(typeFilter);
+        } else if (element instanceof IBSIStrukturElement) {
+            return isGSElementAndCanContain((IBSIStrukturElement) element, typeFilter)
+                    || Arrays.asList(specialGSClasses).contains(typeFilter);
+        }
+        return false;
     }
 
     /*
@@ -195,8 +195,8 @@ public class LoadReportHighRiskAssetScenarios extends GenericCommand implements
     public String getCacheID() {
         StringBuilder sb = new StringBuilder();
         sb.append(this.getClass().getCanonicalName());
-        sb.append(String.valueOf(root));
-        sb.append(String.valueOf(riskType));
+        sb.append(':').append(String.valueOf(root));
+        sb.append(':').append(String.valueOf(riskType));
         return sb.toString();
     }
 
@@ -221,8 +221,8 @@ public class LoadReportISAQuestionLvlDescriptions extends GenericCommand impleme
     public String getCacheID() {
         StringBuilder cacheID = new StringBuilder(); 
         cacheID.append(String.valueOf(this.getClass().getSimpleName().hashCode()));
-        cacheID.append(String.valueOf(rootElmt.hashCode()));
-        cacheID.append(String.valueOf(requestedLvl.hashCode()));
+        cacheID.append(':').append(String.valueOf(rootElmt.hashCode()));
+        cacheID.append(':').append(String.valueOf(requestedLvl.hashCode()));
         return cacheID.toString();
     }
 
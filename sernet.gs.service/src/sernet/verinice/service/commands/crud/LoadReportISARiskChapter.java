@@ -251,11 +251,11 @@ public class LoadReportISARiskChapter extends GenericCommand implements ICachedC
     public String getCacheID() {
         StringBuilder cacheID = new StringBuilder();
         cacheID.append(this.getClass().getSimpleName());
-        cacheID.append(String.valueOf(rootElmt));
+        cacheID.append(':').append(String.valueOf(rootElmt));
         if(rootSgGroup != null){
-            cacheID.append(String.valueOf(rootSgGroup));
+            cacheID.append(':').append(String.valueOf(rootSgGroup));
         } else {
-            cacheID.append("null");
+            cacheID.append(':').append("null");
         }
         return cacheID.toString();
     }
@@ -123,9 +123,9 @@ public class LoadReportNotGreenScenarios extends GenericCommand implements ICach
     public String getCacheID() {
         StringBuilder cacheID = new StringBuilder();
         cacheID.append(this.getClass().getSimpleName());
-        cacheID.append(String.valueOf(rootElmt));
+        cacheID.append(':').append(String.valueOf(rootElmt));
         for(int i : numOfYellowFields){
-            cacheID.append(String.valueOf(i));
+            cacheID.append(':').append(String.valueOf(i));
         }
         return cacheID.toString();
     }
@@ -304,9 +304,9 @@ public class LoadReportRedYellowScenarioGroups extends GenericCommand implements
     public String getCacheID() {
         StringBuilder cacheID = new StringBuilder();
         cacheID.append(this.getClass().getSimpleName());
-        cacheID.append(String.valueOf(rootElmt));
+        cacheID.append(':').append(String.valueOf(rootElmt));
         for (int i : numOfYellowFields) {
-            cacheID.append(String.valueOf(i));
+            cacheID.append(':').append(String.valueOf(i));
         }
         return cacheID.toString();
     }
@@ -192,10 +192,10 @@ public class LoadReportRemainingRiskWithImplControls extends GenericCommand impl
     public String getCacheID() {
         StringBuilder cacheID = new StringBuilder();
         cacheID.append(this.getClass().getSimpleName());
-        cacheID.append(String.valueOf(rootObject));
-        cacheID.append(String.valueOf(toleratedC));
-        cacheID.append(String.valueOf(toleratedI));
-        cacheID.append(String.valueOf(toleratedA));
+        cacheID.append(':').append(String.valueOf(rootObject));
+        cacheID.append(':').append(String.valueOf(toleratedC));
+        cacheID.append(':').append(String.valueOf(toleratedI));
+        cacheID.append(':').append(String.valueOf(toleratedA));
         return cacheID.toString();
     }
 
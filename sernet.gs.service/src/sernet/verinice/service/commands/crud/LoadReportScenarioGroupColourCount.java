@@ -112,11 +112,11 @@ public class LoadReportScenarioGroupColourCount extends GenericCommand implement
     public String getCacheID() {
         StringBuilder cacheID = new StringBuilder();
         cacheID.append(String.valueOf(this.getClass().getSimpleName().hashCode()));
-        cacheID.append(String.valueOf(rootElmt.hashCode()));
+        cacheID.append(':').append(String.valueOf(rootElmt.hashCode()));
         for (int i : numOfYellowFields) {
-            cacheID.append(String.valueOf(i));
+            cacheID.append(':').append(String.valueOf(i));
         }
-        cacheID.append(this.scenarioProbabilityType);
+        cacheID.append(':').append(this.scenarioProbabilityType);
         return cacheID.toString();
     }
 
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.commands.crud;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.Query;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Restrictions;
+
+import sernet.verinice.interfaces.GenericCommand;
+import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.model.common.CnATreeElement;
+
+/**
+ * Loads one page of the elements of a scope with their properties. The
+ * elements are ordered by database id, a page starts after the database id
+ * passed to the constructor. Pass {@link #getLastDbId()} of a page to load the
+ * next one.
+ * 
+ * The command is executed by the command service, so the access and scope
+ * filters of the current user are applied.
+ */
+public class LoadScopeElementPage extends GenericCommand {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String HQL_LOAD_IDS = "select e.dbId from CnATreeElement e "
+            + "where e.scopeId = :scopeId and e.dbId > :lastDbId order by e.dbId";
+
+    private final Integer scopeId;
+
+    private final int pageSize;
+
+    private int lastDbId;
+
+    private boolean lastPage;
+
+    private List<CnATreeElement> elements = Collections.emptyList();
+
+    /**
+     * @param scopeId
+     *            Scope-id / organization db-id
+     * @param lastDbId
+     *            Database id of the last element of the previous page, -1 for
+     *            the first page
+     * @param pageSize
+     *            Maximum number of elements of the page
+     */
+    public LoadScopeElementPage(Integer scopeId, int lastDbId, int pageSize) {
+        this.scopeId = scopeId;
+        this.lastDbId = lastDbId;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void execute() {
+        IBaseDao<CnATreeElement, Serializable> dao = getDaoFactory()
+                .getDAO(CnATreeElement.class);
+        List<Integer> dbIds = loadDbIds(dao);
+        lastPage = dbIds.size() < pageSize;
+        if (dbIds.isEmpty()) {
+            return;
+        }
+        lastDbId = dbIds.get(dbIds.size() - 1);
+        elements = loadElementsWithProperties(dao, dbIds);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Integer> loadDbIds(IBaseDao<CnATreeElement, Serializable> dao) {
+        return dao.findByCallback(session -> {
+            Query query = session.createQuery(HQL_LOAD_IDS);
+            query.setInteger("scopeId", scopeId);
+            query.setInteger("lastDbId", lastDbId);
+            query.setMaxResults(pageSize);
+            return query.list();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<CnATreeElement> loadElementsWithProperties(
+            IBaseDao<CnATreeElement, Serializable> dao, List<Integer> dbIds) {
+        DetachedCriteria criteria = DetachedCriteria.forClass(CnATreeElement.class)
+                .add(Restrictions.in("dbId", dbIds));
+        criteria.setFetchMode("entity", FetchMode.JOIN);
+        criteria.setFetchMode("entity.typedPropertyLists", FetchMode.JOIN);
+        criteria.setFetchMode("entity.typedPropertyLists.properties", FetchMode.JOIN);
+        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        return dao.findByCriteria(criteria);
+    }
+
+    /**
+     * @return The elements of the page with their properties
+     */
+    public List<CnATreeElement> getElements() {
+        return elements;
+    }
+
+    /**
+     * @return The database id of the last element of this page
+     */
+    public int getLastDbId() {
+        return lastDbId;
+    }
+
+    /**
+     * @return true if there is no page after this one
+     */
+    public boolean isLastPage() {
+        return lastPage;
+    }
+}
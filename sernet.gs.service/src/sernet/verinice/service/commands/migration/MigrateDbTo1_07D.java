@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.commands.migration;
+
+import java.io.Serializable;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jdt.annotation.NonNull;
+
+import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.model.common.CnATreeElement;
+
+/**
+ * Migration class to set the tree path of all existing elements, see
+ * {@link CnATreeElement#getTreePath()}. The column and its index are created
+ * by the Hibernate schema update.
+ * 
+ * PostgreSQL only uses an index for prefix searches with LIKE if it was
+ * created with the operator class varchar_pattern_ops or the database uses the
+ * C locale. Therefore an additional index is created for PostgreSQL.
+ */
+public class MigrateDbTo1_07D extends DbMigration {
+
+    private static final long serialVersionUID = 6349051857244513820L;
+
+    private static final String POSTGRES_INDEX_NAME = "cnatreeelement_tree_path_pattern_idx";
+
+    private static final String POSTGRES_PRODUCT_NAME = "PostgreSQL";
+
+    private static final Logger logger = Logger.getLogger(MigrateDbTo1_07D.class);
+
+    @Override
+    public void execute() {
+        int numberOfUpdatedElements = getDaoFactory().getElementHierarchyDao()
+                .createTreePaths();
+        logger.info("Tree path of " + numberOfUpdatedElements + " elements created");
+        if (isPostgres() && isPostgresDatabase()) {
+            createPostgresPatternIndex();
+        }
+        updateVersion();
+    }
+
+    /**
+     * The PostgreSQL dialect is also used with other databases, e.g. H2 in
+     * PostgreSQL mode, which do not know the operator class.
+     */
+    private boolean isPostgresDatabase() {
+        return POSTGRES_PRODUCT_NAME.equals(getDaoFactory().getDAO(CnATreeElement.class)
+                .executeCallback(
+                        session -> session.connection().getMetaData().getDatabaseProductName()));
+    }
+
+    private void createPostgresPatternIndex() {
+        IBaseDao<@NonNull CnATreeElement, Serializable> dao = getDaoFactory()
+                .getDAO(CnATreeElement.class);
+        Number numberOfIndexes = (Number) dao.executeCallback(session -> session
+                .createSQLQuery("select count(*) from pg_indexes where indexname = :indexName")
+                .setString("indexName", POSTGRES_INDEX_NAME).uniqueResult());
+        if (numberOfIndexes.intValue() == 0) {
+            dao.executeCallback(session -> session
+                    .createSQLQuery("create index " + POSTGRES_INDEX_NAME
+                            + " on cnatreeelement (tree_path varchar_pattern_ops)")
+                    .executeUpdate());
+            logger.info("Index " + POSTGRES_INDEX_NAME + " created");
+        }
+    }
+
+    @Override
+    public double getVersion() {
+        return 1.07D;
+    }
+
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.commands.task;
+
+import java.io.Serializable;
+import java.util.List;
+
+import sernet.verinice.interfaces.GenericCommand;
+import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.interfaces.INoAccessControl;
+import sernet.verinice.model.common.ChangeLogEntry;
+
+/**
+ * Loads the highest id of all entries in the transaction log. Every change of
+ * the data creates a new log entry, clients use the id as a watermark to
+ * detect whether cached data is still up to date.
+ */
+@SuppressWarnings("serial")
+public class LoadChangeLogWatermark extends GenericCommand implements INoAccessControl {
+
+    private static final String QUERY = "select max(entry.dbId) from ChangeLogEntry entry";
+
+    private int watermark;
+
+    @Override
+    public void execute() {
+        IBaseDao<ChangeLogEntry, Serializable> dao = getDaoFactory().getDAO(ChangeLogEntry.class);
+        List<?> result = dao.findByQuery(QUERY, new Object[] {});
+        Object max = result.isEmpty() ? null : result.get(0);
+        watermark = max == null ? 0 : ((Number) max).intValue();
+    }
+
+    /**
+     * @return the highest id of all log entries or 0 if the log is empty
+     */
+    public int getWatermark() {
+        return watermark;
+    }
+}
@@ -53,7 +53,20 @@ public class LinkTableService implements ILinkTableService {
     ICommandService commandService;
 
     /** Default implementation of link creator */
-    private LinkedTableCreator linkedTableCreator = new GraphLinkedTableCreator();
+    private LinkedTableCreator linkedTableCreator;
+
+    public LinkTableService() {
+        this(GraphLinkedTableCreator.getConfiguredNumberOfThreads());
+    }
+
+    /**
+     * @param numberOfThreads
+     *            Number of threads of the default link table creator, see
+     *            {@link GraphLinkedTableCreator#setNumberOfThreads(int)}
+     */
+    public LinkTableService(int numberOfThreads) {
+        this.linkedTableCreator = new GraphLinkedTableCreator(numberOfThreads);
+    }
 
     @Override
     public List<List<String>> createTable(ILinkTableConfiguration configuration) {
@@ -82,6 +95,8 @@ public class LinkTableService implements ILinkTableService {
 
     protected GraphCommand createCommand(ILinkTableConfiguration configuration) {
         GraphCommand command = new GraphCommand();
+        // link tables only read the graph
+        command.setReadOnly(true);
         GraphElementLoader loader = new GraphElementLoader();
         loader.setScopeIds(configuration.getScopeIdArray());
         Set<String> objectTypeIds = configuration.getObjectTypeIds();
@@ -25,22 +25,25 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 import sernet.verinice.interfaces.graph.DepthFirstConditionalSearchPathes;
 import sernet.verinice.interfaces.graph.VeriniceGraph;
-import sernet.verinice.interfaces.graph.VeriniceGraphFilter;
 import sernet.verinice.model.bp.risk.configuration.RiskConfigurationCache;
 import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.service.linktable.ColumnPathParser;
 import sernet.verinice.service.linktable.ILinkTableConfiguration;
+import sernet.verinice.service.linktable.LinkTableException;
 import sernet.verinice.service.linktable.LinkedTableCreator;
 import sernet.verinice.service.linktable.RowComparator;
 import sernet.verinice.service.linktable.generator.mergepath.VqlAst;
@@ -70,8 +73,8 @@ import sernet.verinice.service.linktable.generator.mergepath.VqlNode;
  *
  * <p>
  * Every {@link VqlAst} has a root, because it is a tree. This root node has an
- * specific type id. The verinice graph is filtered for all nodes which have
- * this type id.
+ * specific type id. All nodes which have this type id are looked up in the
+ * type index of the verinice graph.
  * </p>
  *
  * <h2>Traversal</h2>
@@ -80,7 +83,17 @@ import sernet.verinice.service.linktable.generator.mergepath.VqlNode;
  * After extracting paths and starting nodes we start a
  * {@link DepthFirstConditionalSearchPathes} traversal on the verinice graph.
  * The {@link VqlContext} is used to determine if edges and nodes in the
- * verinice graph are valid.
+ * verinice graph are valid. It only checks the edges of the {@link VqlAst}
+ * which lead to the type of the next node, see
+ * {@link VqlAst#getOutgoingEdges(VqlNode, String)}.
+ * </p>
+ *
+ * <p>
+ * Every traversal has its own {@link VqlContext}, so the traversals of the
+ * roots can run in parallel, see {@link #setNumberOfThreads(int)}. The
+ * verinice graph is only read during the traversals, reading the properties
+ * of its compacted entities does not change them. Parallel mode is off unless
+ * a number of threads is configured.
  * </p>
  *
  * 
@@ -95,8 +108,32 @@ public class GraphLinkedTableCreator implements LinkedTableCreator {
     private Map<String, Integer> columnPath2TablePosition;
 
     private static final Logger LOG = Logger.getLogger(GraphLinkedTableCreator.class);
-    private LtrPrintRowsTraversalListener traversalListener;
-    private LtrTraversalFilter filter;
+
+    private static final int MIN_PARTITION_SIZE = 20;
+
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    /**
+     * Name of the system property which sets the number of threads used by
+     * link table creators of the client, e.g. -Dverinice.linktable.threads=4
+     */
+    public static final String NUMBER_OF_THREADS_PROPERTY = "verinice.linktable.threads";
+
+    private int numberOfThreads = 1;
+
+    public GraphLinkedTableCreator() {
+        super();
+    }
+
+    /**
+     * @param numberOfThreads
+     *            If greater than 1 the traversals of the root elements are
+     *            run in a fork/join pool with this number of threads.
+     */
+    public GraphLinkedTableCreator(int numberOfThreads) {
+        super();
+        this.numberOfThreads = numberOfThreads;
+    }
 
     @Override
     public List<List<String>> createTable(VeriniceGraph veriniceGraph, ILinkTableConfiguration conf) {
@@ -116,21 +153,51 @@ public class GraphLinkedTableCreator implements LinkedTableCreator {
     }
 
     private Set<CnATreeElement> getRootNodes(final String typeId) {
-        return veriniceDataGraph.filter(new VeriniceGraphFilter() {
-            @Override
-            public boolean filter(CnATreeElement node) {
-                return typeId.equals(node.getTypeId());
-            }
-        });
+        return veriniceDataGraph.getElements(typeId);
     }
 
+    /**
+     * Traverses the graph from every root. If the number of threads is greater
+     * than 1, the roots are split into partitions which are traversed in a
+     * fork/join pool. The rows of the partitions are merged in the order of
+     * the roots, so the result is the same as in sequential mode.
+     */
     private List<Map<String, String>> doCreateTable(Set<CnATreeElement> roots) {
-        List<Map<String, String>> table = new ArrayList<>();
+        List<CnATreeElement> rootList = new ArrayList<>(roots);
         RiskConfigurationCache riskConfigurationCache = new RiskConfigurationCache();
+        if (getNumberOfThreads() <= 1 || rootList.size() <= MIN_PARTITION_SIZE) {
+            return scanVeriniceGraph(rootList, riskConfigurationCache);
+        }
+        ForkJoinPool pool = new ForkJoinPool(getNumberOfThreads());
+        try {
+            int partitionSize = Math.max(MIN_PARTITION_SIZE,
+                    rootList.size() / (pool.getParallelism() * PARTITIONS_PER_THREAD) + 1);
+            List<Callable<List<Map<String, String>>>> tasks = new ArrayList<>();
+            for (int i = 0; i < rootList.size(); i += partitionSize) {
+                List<CnATreeElement> partition = rootList.subList(i,
+                        Math.min(i + partitionSize, rootList.size()));
+                tasks.add(() -> scanVeriniceGraph(partition, riskConfigurationCache));
+            }
+            List<Map<String, String>> table = new ArrayList<>(rootList.size());
+            for (Future<List<Map<String, String>>> future : pool.invokeAll(tasks)) {
+                table.addAll(future.get());
+            }
+            return table;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LinkTableException("Creating link table was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new LinkTableException("Error while creating link table", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<Map<String, String>> scanVeriniceGraph(List<CnATreeElement> roots,
+            RiskConfigurationCache riskConfigurationCache) {
+        List<Map<String, String>> table = new ArrayList<>(roots.size());
         for (CnATreeElement potentialRoot : roots) {
-            VeriniceGraphResult scanVeriniceGraph = scanVeriniceGraph(potentialRoot,
-                    riskConfigurationCache);
-            table.addAll(scanVeriniceGraph.getResult());
+            table.addAll(scanVeriniceGraph(potentialRoot, riskConfigurationCache).getResult());
         }
         return table;
     }
@@ -139,27 +206,45 @@ public class GraphLinkedTableCreator implements LinkedTableCreator {
             RiskConfigurationCache riskConfigurationCache) {
 
         VqlContext vqlNavigator = new VqlContext(vqlAst);
-        filter = new LtrTraversalFilter(vqlNavigator);
+        LtrTraversalFilter filter = new LtrTraversalFilter(vqlNavigator);
         VeriniceGraphResult result = new VeriniceGraphResult(riskConfigurationCache);
-        traversalListener = new LtrPrintRowsTraversalListener(vqlNavigator, filter, veriniceDataGraph, result);
+        LtrPrintRowsTraversalListener traversalListener = new LtrPrintRowsTraversalListener(
+                vqlNavigator, filter, veriniceDataGraph, result);
 
         traverse(veriniceDataGraph, potentialRoot, filter, traversalListener);
         return traversalListener.getResult();
     }
 
     private List<List<String>> convertToTable(List<Map<String, String>> table) {
+        return convertToTable(table, columnPath2TablePosition, getAliasHeader());
+    }
+
+    /**
+     * Converts the rows found by the traversal to a table. The first row is
+     * the header, the other rows are sorted by {@link RowComparator}. Columns
+     * which are missing in a row are empty strings.
+     */
+    static List<List<String>> convertToTable(List<Map<String, String>> table,
+            Map<String, Integer> columnPath2TablePosition, List<String> header) {
+
+        // column paths by table position
+        String[] columnPaths = new String[columnPath2TablePosition.size()];
+        for (Entry<String, Integer> pos : columnPath2TablePosition.entrySet()) {
+            columnPaths[pos.getValue()] = pos.getKey();
+        }
 
-        List<List<String>> stringTable = new LinkedList<>();
+        List<List<String>> stringTable = new ArrayList<>(table.size() + 1);
+        stringTable.add(header);
 
         for (Map<String, String> map : table) {
 
-            String[] row = new String[columnPath2TablePosition.size()];
+            String[] row = new String[columnPaths.length];
 
-            for(Entry<String, Integer> pos : columnPath2TablePosition.entrySet()){
-                row[pos.getValue()] = map.containsKey(pos.getKey()) ? map.get(pos.getKey()) : "";
+            for (int i = 0; i < columnPaths.length; i++) {
+                String value = map.get(columnPaths[i]);
+                row[i] = value != null || map.containsKey(columnPaths[i]) ? value : "";
             }
 
-
             stringTable.add(Arrays.asList(row));
 
             if(LOG.isDebugEnabled()) {
@@ -167,8 +252,8 @@ public class GraphLinkedTableCreator implements LinkedTableCreator {
             }
         }
 
-        Collections.sort(stringTable, new RowComparator());
-        stringTable.add(0, getAliasHeader());
+        // sort all rows but the header
+        Collections.sort(stringTable.subList(1, stringTable.size()), new RowComparator());
         return stringTable;
     }
 
@@ -186,6 +271,28 @@ public class GraphLinkedTableCreator implements LinkedTableCreator {
         }
     }
 
+    /**
+     * @return The number of threads set by system property
+     *         {@link #NUMBER_OF_THREADS_PROPERTY}, 1 if the property is not
+     *         set
+     */
+    public static int getConfiguredNumberOfThreads() {
+        return Math.max(1, Integer.getInteger(NUMBER_OF_THREADS_PROPERTY, 1));
+    }
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    /**
+     * @param numberOfThreads
+     *            If greater than 1 the traversals of the root elements are
+     *            run in a fork/join pool with this number of threads.
+     */
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
     private List<String> getAliasHeader() {
 
         // replaces column pathes with aliases
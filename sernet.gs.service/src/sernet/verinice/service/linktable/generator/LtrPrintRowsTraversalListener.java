@@ -104,7 +104,9 @@ final class LtrPrintRowsTraversalListener implements sernet.verinice.interfaces.
     public void edgeTraversed(CnATreeElement source, CnATreeElement target, Edge edge, int depth) {
         VqlNode nextNode = vqlContext.getNextNode(source, edge, target);
         vqlContext.setCurrentNode(nextNode);
-        LOG.debug("traversed edge: " + edge + " depth: " + depth);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("traversed edge: " + edge + " depth: " + depth);
+        }
     }
 
     /**
@@ -21,6 +21,7 @@ package sernet.verinice.service.linktable.generator;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -84,24 +85,18 @@ final class VqlContext {
      */
     VqlNode getNextNode(CnATreeElement source, Edge edge, CnATreeElement target) {
 
-        Set<VqlEdge> outgoingEdges = vqlAst.getOutgoingEdges(currentNode);
+        // only the edges to nodes with the type id of the target are candidates
+        List<VqlEdge> outgoingEdges = vqlAst.getOutgoingEdges(currentNode, target.getTypeId());
 
         for (VqlEdge vqlEdge : outgoingEdges) {
 
             VqlNode edgeTarget = vqlAst.getVqlGraph().getEdgeTarget(vqlEdge);
 
-            // no more nodes available
-            if (edgeTarget == null) {
-                return null;
-            }
-
-            boolean isMappedTargetTyp = vqlNodeTypeIdEqualCnaTreeElementTypeId(target, edgeTarget);
-
             if (isRelative(edge)) {
-                if (isChildRelation(source, edge, vqlEdge, isMappedTargetTyp) || isParentRelation(source, edge, vqlEdge, isMappedTargetTyp)) {
+                if (isChildRelation(source, edge, vqlEdge) || isParentRelation(source, edge, vqlEdge)) {
                     return edgeTarget;
                 }
-            } else if (isMappedTargetTyp) {
+            } else {
                 return edgeTarget;
             }
         }
@@ -127,15 +122,12 @@ final class VqlContext {
      *            The edge we are traversing.
      * @param vqlEdge
      *            The edge from the {@link VqlAst}.
-     * @param isMappedTargetTyp
-     *            if the target type of {@link VqlNode} and
-     *            {@link CnATreeElement} matched.
      * @return True if this the {@link Edge} and the type id of the target
      *         {@link CnATreeElement} have an corresponding {@link VqlEdge} in
      *         {@link VqlAst}.
      */
-    private boolean isParentRelation(CnATreeElement source, Edge edge, VqlEdge vqlEdge, boolean isMappedTargetTyp) {
-        return EdgeType.PARENT == vqlEdge.getEdgeType() && edge.getTarget() == source && isMappedTargetTyp;
+    private boolean isParentRelation(CnATreeElement source, Edge edge, VqlEdge vqlEdge) {
+        return EdgeType.PARENT == vqlEdge.getEdgeType() && edge.getTarget() == source;
     }
 
     /**
@@ -156,15 +148,12 @@ final class VqlContext {
      *            The edge we are traversing.
      * @param vqlEdge
      *            The edge from the {@link VqlAst}.
-     * @param isMappedTargetTyp
-     *            if the target type of {@link VqlNode} and
-     *            {@link CnATreeElement} matched.
      * @return True if this the {@link Edge} and the type id of the target
      *         {@link CnATreeElement} have an corresponding {@link VqlEdge} in
      *         {@link VqlAst}.
      */
-    private boolean isChildRelation(CnATreeElement source, Edge edge, VqlEdge vqlEdge, boolean isMappedTargetTyp) {
-        return EdgeType.CHILD == vqlEdge.getEdgeType() && edge.getSource() == source && isMappedTargetTyp;
+    private boolean isChildRelation(CnATreeElement source, Edge edge, VqlEdge vqlEdge) {
+        return EdgeType.CHILD == vqlEdge.getEdgeType() && edge.getSource() == source;
     }
 
     /**
@@ -175,10 +164,6 @@ final class VqlContext {
         return Edge.RELATIVES.equals(edge.getType());
     }
 
-    private boolean vqlNodeTypeIdEqualCnaTreeElementTypeId(CnATreeElement target, VqlNode edgeTarget) {
-        return edgeTarget.getTypeId().equals(target.getTypeId());
-    }
-
     VqlNode getCurrentNode() {
         return currentNode;
     }
@@ -25,8 +25,11 @@ import static sernet.verinice.service.linktable.antlr.VqlParserTokenTypes.LT;
 import static sernet.verinice.service.linktable.antlr.VqlParserTokenTypes.PARENT;
 import static sernet.verinice.service.linktable.antlr.VqlParserTokenTypes.PROP;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -87,6 +90,9 @@ public class VqlAst {
     Map<VqlEdge, VqlEdge> edges = new HashMap<>();
     Map<VqlNode, VqlNode> nodes = new HashMap<>();
 
+    // outgoing edges of every node by the type id of their target node
+    private Map<VqlNode, Map<String, List<VqlEdge>>> outgoingEdgesByTargetType;
+
     /**
      * Creates a VQL-Ast.
      *
@@ -122,6 +128,21 @@ public class VqlAst {
 
             traverseColumnPathAst(ast.getNextSibling());
         }
+
+        indexOutgoingEdges();
+    }
+
+    private void indexOutgoingEdges() {
+        outgoingEdgesByTargetType = new HashMap<>();
+        for (VqlNode node : vqlGraph.vertexSet()) {
+            Map<String, List<VqlEdge>> edgesByTargetType = new HashMap<>();
+            for (VqlEdge edge : vqlGraph.outgoingEdgesOf(node)) {
+                String targetTypeId = vqlGraph.getEdgeTarget(edge).getTypeId();
+                edgesByTargetType.computeIfAbsent(targetTypeId, k -> new ArrayList<>(1))
+                        .add(edge);
+            }
+            outgoingEdgesByTargetType.put(node, edgesByTargetType);
+        }
     }
 
     /**
@@ -279,6 +300,20 @@ public class VqlAst {
         return vqlGraph.outgoingEdgesOf(node);
     }
 
+    /**
+     * Returns the outgoing edges of a node which lead to a node with the given
+     * type id. The edges are indexed once when the AST is created, so this is
+     * a map lookup.
+     */
+    public List<VqlEdge> getOutgoingEdges(VqlNode node, String targetTypeId) {
+        Map<String, List<VqlEdge>> edgesByTargetType = outgoingEdgesByTargetType.get(node);
+        if (edgesByTargetType == null) {
+            return Collections.emptyList();
+        }
+        List<VqlEdge> edges = edgesByTargetType.get(targetTypeId);
+        return edges == null ? Collections.<VqlEdge> emptyList() : edges;
+    }
+
     public Graph<VqlNode, VqlEdge> getVqlGraph() {
         return vqlGraph;
     }
@@ -20,10 +20,18 @@
 package sernet.verinice.service.risk;
 
 import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import sernet.verinice.model.common.CnALink;
+import sernet.verinice.model.common.CnATreeElement;
 
 /**
  * Simple class to hold all configuration details for the execution of
  * a risk analysis. 
+ * 
+ * If changed elements are added, only the scenarios and assets which are
+ * affected by these elements are analyzed.
  *
  * @author Daniel Murygin <dm{a}sernet{dot}de>
  */
@@ -33,6 +41,8 @@ public class RiskAnalysisConfiguration implements Serializable {
     
     private Integer[] organizationDbIds;
 
+    private Set<String> changedElementUuids;
+
     public RiskAnalysisConfiguration(Integer... organizationDbIds) {
         super();
         this.organizationDbIds = organizationDbIds;
@@ -50,5 +60,44 @@ public class RiskAnalysisConfiguration implements Serializable {
     public void setOrganizationDbIds(Integer[] organizationDbIds) {
         this.organizationDbIds = organizationDbIds;
     }
-    
+
+    /**
+     * Adds an element which changed since the last risk analysis.
+     */
+    public void addChangedElement(CnATreeElement element) {
+        addChangedElementUuid(element.getUuid());
+    }
+
+    /**
+     * Adds a link which was created, changed or deleted since the last risk
+     * analysis. Both elements of the link are added as changed elements.
+     */
+    public void addChangedLink(CnALink link) {
+        addChangedElement(link.getDependant());
+        addChangedElement(link.getDependency());
+    }
+
+    public void addChangedElementUuid(String uuid) {
+        if (changedElementUuids == null) {
+            changedElementUuids = new HashSet<>();
+        }
+        changedElementUuids.add(uuid);
+    }
+
+    /**
+     * @return The UUIDs of the changed elements or null if no changed
+     *         elements were added
+     */
+    public Set<String> getChangedElementUuids() {
+        return changedElementUuids;
+    }
+
+    /**
+     * @return true if only the elements affected by changed elements are
+     *         analyzed
+     */
+    public boolean isIncremental() {
+        return changedElementUuids != null;
+    }
+
 }
@@ -20,11 +20,24 @@
 package sernet.verinice.service.risk;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import org.apache.log4j.Logger;
 
-import sernet.verinice.interfaces.CommandException;
+import sernet.gs.service.RuntimeCommandException;
 import sernet.verinice.interfaces.IBaseDao;
 import sernet.verinice.interfaces.graph.Edge;
 import sernet.verinice.interfaces.graph.VeriniceGraph;
@@ -44,6 +57,17 @@ import sernet.verinice.model.iso27k.Vulnerability;
  * RiskAnalysisServiceImpl is configured as a singleton. In contrast to this a
  * new instance of RiskAnalysisJob is created for every execution of a risk
  * analysis.
+ * 
+ * An incremental risk analysis only recomputes the scenarios and assets which
+ * are affected by a set of changed elements, see
+ * {@link #runRiskAnalysis(Collection)}. Links are only saved if their risk
+ * values changed.
+ * 
+ * If the number of threads is greater than 1, the scenarios and afterwards
+ * the assets are split into partitions which are analysed in a fork/join
+ * pool. Each asset is analysed with all its scenario links by one thread.
+ * The threads do not change the elements of the graph, they return the
+ * computed values which are set and saved by the calling thread.
  *
  * @author Daniel Murygin <dm{a}sernet{dot}de>
  */
@@ -53,6 +77,24 @@ public class RiskAnalysisJob {
 
     private static final RiskCalculator RISK_CALCULATOR_DEFAULT = new RiskAdder();
 
+    private static final int MIN_PARTITION_SIZE = 50;
+
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    /**
+     * The maximum number of links which are updated by one statement, every
+     * link adds three parameters
+     */
+    private static final int MAX_LINKS_PER_UPDATE = 100;
+
+    private static final String HQL_UPDATE_LINK_RISKS = "update CnALink set "
+            + "riskConfidentiality = ?, riskIntegrity = ?, riskAvailability = ?, "
+            + "riskConfidentialityWithControls = ?, riskIntegrityWithControls = ?, "
+            + "riskAvailabilityWithControls = ? where ";
+
+    private static final String HQL_LINK_ID = "(id.dependantId = ? and id.dependencyId = ?"
+            + " and id.typeId = ?)";
+
     /**
      * A verinice graph with all elements which are analyzed
      */
@@ -62,6 +104,8 @@ public class RiskAnalysisJob {
 
     private IBaseDao<CnALink, Serializable> cnaLinkDao;
 
+    private int numberOfThreads = 1;
+
     public RiskAnalysisJob(VeriniceGraph graph, IBaseDao<CnALink, Serializable> cnaLinkDao) {
         super();
         this.graph = graph;
@@ -72,38 +116,179 @@ public class RiskAnalysisJob {
      * Runs a risk analysis by analyzing the risk of scenarios and assets.
      */
     public void runRiskAnalysis() {
-        resetRiskValuesOfAssets();
-        setProbabilityOfScenarios();
-        reduceRiskOfScenarios();
-        analyseRiskOfAssets();
+        Set<CnATreeElement> scenarios = graph.getElements(IncidentScenario.TYPE_ID);
+        Set<CnATreeElement> assets = graph.getElements(Asset.TYPE_ID);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Number of scenarios: " + scenarios.size() + ", number of assets: "
+                    + assets.size());
+        }
+        runRiskAnalysis(scenarios, assets);
     }
 
     /**
-     * Resets the risk values of all assets.
+     * Runs a risk analysis only for the scenarios and assets which are
+     * affected by the given changed elements.
+     * 
+     * A scenario is affected if it changed or if it is linked to a changed
+     * control, threat or vulnerability. An asset is affected if it changed or
+     * if it is linked to a changed control or an affected scenario. The risk
+     * values of all other scenarios and assets are not changed. Pass both
+     * elements of a changed link and the elements which were linked to a
+     * deleted element.
+     * 
+     * @param changedElementUuids
+     *            The UUIDs of the changed elements
      */
-    private void resetRiskValuesOfAssets() {
-        Set<CnATreeElement> assets = graph.getElements(Asset.TYPE_ID);
+    public void runRiskAnalysis(Collection<String> changedElementUuids) {
+        Set<CnATreeElement> scenarios = new HashSet<>();
+        Set<CnATreeElement> assets = new HashSet<>();
+        findAffectedElements(changedElementUuids, scenarios, assets);
         if (LOG.isInfoEnabled()) {
-            LOG.info("Number of assets: " + assets.size());
+            LOG.info("Changed elements: " + changedElementUuids.size()
+                    + ", affected scenarios: " + scenarios.size() + ", affected assets: "
+                    + assets.size());
+        }
+        runRiskAnalysis(scenarios, assets);
+    }
+
+    /**
+     * Analyses the scenarios first and the assets afterwards. The threads
+     * only compute the new values of the scenarios, assets and links. The
+     * values are set and the changed links are saved by the calling thread.
+     */
+    private void runRiskAnalysis(Collection<CnATreeElement> scenarios,
+            Collection<CnATreeElement> assets) {
+        ForkJoinPool pool = null;
+        if (getNumberOfThreads() > 1) {
+            pool = new ForkJoinPool(getNumberOfThreads());
+        }
+        try {
+            long time = RiskAnalysisServiceImpl.initRuntime();
+            for (ElementValues scenarioValues : runInPartitions(pool, scenarios,
+                    this::analyseScenarios)) {
+                scenarioValues.apply();
+            }
+            RiskAnalysisServiceImpl.logRuntime("Analysing scenarios runtime : ", time);
+
+            time = RiskAnalysisServiceImpl.initRuntime();
+            List<LinkRisk> changedLinks = new LinkedList<>();
+            for (ElementValues assetValues : runInPartitions(pool, assets,
+                    this::analyseAssets)) {
+                assetValues.apply();
+                changedLinks.addAll(assetValues.getChangedLinks());
+            }
+            RiskAnalysisServiceImpl.logRuntime("Analysing assets runtime : ", time);
+
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Number of changed links from scenarios to assets: "
+                        + changedLinks.size());
+            }
+            time = RiskAnalysisServiceImpl.initRuntime();
+            saveLinks(changedLinks);
+            RiskAnalysisServiceImpl.logRuntime("Updating links from scenarios to assets runtime : ",
+                    time);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Splits the elements into partitions and applies the function to every
+     * partition. If a pool is given, the partitions are processed by the
+     * threads of the pool.
+     * 
+     * @return the results of all partitions
+     */
+    private <T> List<T> runInPartitions(ForkJoinPool pool, Collection<CnATreeElement> elements,
+            Function<List<CnATreeElement>, List<T>> function) {
+        List<CnATreeElement> elementList = new ArrayList<>(elements);
+        if (pool == null || elementList.size() <= MIN_PARTITION_SIZE) {
+            return function.apply(elementList);
+        }
+        int partitionSize = Math.max(MIN_PARTITION_SIZE,
+                elementList.size() / (pool.getParallelism() * PARTITIONS_PER_THREAD) + 1);
+        List<Callable<List<T>>> tasks = new ArrayList<>();
+        for (int i = 0; i < elementList.size(); i += partitionSize) {
+            List<CnATreeElement> partition = elementList.subList(i,
+                    Math.min(i + partitionSize, elementList.size()));
+            tasks.add(() -> function.apply(partition));
+        }
+        List<T> result = new ArrayList<>();
+        try {
+            for (Future<List<T>> future : pool.invokeAll(tasks)) {
+                result.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeCommandException("Risk analysis was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeCommandException("Error while running risk analysis", e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * Analyses the given scenarios without changing them.
+     * 
+     * @return the new values of the scenarios
+     */
+    private List<ElementValues> analyseScenarios(List<CnATreeElement> scenarios) {
+        List<ElementValues> result = new ArrayList<>(scenarios.size());
+        for (CnATreeElement scenario : scenarios) {
+            ElementValues scenarioValues = new ElementValues(scenario);
+            setProbabilityOfScenario(scenarioValues);
+            reduceRiskOfSzenario(scenarioValues);
+            result.add(scenarioValues);
         }
+        return result;
+    }
+
+    /**
+     * Analyses the risk of the given assets without changing the assets and
+     * the links from the scenarios to the assets.
+     * 
+     * @return the new values of the assets with the changed links
+     */
+    private List<ElementValues> analyseAssets(List<CnATreeElement> assets) {
+        List<ElementValues> result = new ArrayList<>(assets.size());
         for (CnATreeElement asset : assets) {
             if (LOG.isDebugEnabled()) {
-                LOG.debug("Resetting Risk for Asset: " + asset.getTitle());
+                LOG.debug("Determine Risk for Asset: " + asset.getTitle());
             }
-            resetRisks((Asset) asset);
+            result.add(analyseRiskOfAsset(asset));
         }
+        return result;
     }
 
     /**
-     * Sets the probability of all incident scenarios.
+     * Adds the scenarios and assets which are affected by the changed
+     * elements to the given sets.
      */
-    private void setProbabilityOfScenarios() {
-        Set<CnATreeElement> scenarios = graph.getElements(IncidentScenario.TYPE_ID);
-        if (LOG.isInfoEnabled()) {
-            LOG.info("Number of scenarios: " + scenarios.size());
+    private void findAffectedElements(Collection<String> changedElementUuids,
+            Set<CnATreeElement> scenarios, Set<CnATreeElement> assets) {
+        for (String uuid : changedElementUuids) {
+            CnATreeElement element = graph.getElement(uuid);
+            if (element == null) {
+                continue;
+            }
+            String typeId = element.getTypeId();
+            if (IncidentScenario.TYPE_ID.equals(typeId)) {
+                scenarios.add(element);
+            } else if (Asset.TYPE_ID.equals(typeId)) {
+                assets.add(element);
+            } else if (Control.TYPE_ID.equals(typeId)) {
+                scenarios.addAll(
+                        graph.getLinkTargetsByElementType(element, IncidentScenario.TYPE_ID));
+                assets.addAll(graph.getLinkTargetsByElementType(element, Asset.TYPE_ID));
+            } else if (Threat.TYPE_ID.equals(typeId) || Vulnerability.TYPE_ID.equals(typeId)) {
+                scenarios.addAll(
+                        graph.getLinkTargetsByElementType(element, IncidentScenario.TYPE_ID));
+            }
         }
         for (CnATreeElement scenario : scenarios) {
-            setProbabilityOfScenario((IncidentScenario) scenario);
+            assets.addAll(graph.getLinkTargetsByElementType(scenario, Asset.TYPE_ID));
         }
     }
 
@@ -114,35 +299,22 @@ public class RiskAnalysisJob {
      * the threat and the vulnerability which are linked to the scenario.
      * 
      * @param scenario
-     *            A single incident scenario which is analyzed
+     *            The values of a single incident scenario which is analyzed
      */
-    private void setProbabilityOfScenario(IncidentScenario scenario) {
+    private void setProbabilityOfScenario(ElementValues scenario) {
         // get values from linked threat & vulnerabilities, only if automatic
         // mode is activated:
-        if (scenario.getNumericProperty(IncidentScenario.PROP_SCENARIO_METHOD) == 1) {
+        if (scenario.get(IncidentScenario.PROP_SCENARIO_METHOD) == 1) {
             getProbabilityFromThreatAndVulnerability(graph, scenario);
         }
 
         // calculate probability:
-        scenario.setNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY, 0);
-        int myThreat = scenario
-                .getNumericProperty(IncidentScenario.PROP_SCENARIO_THREAT_PROBABILITY);
-        int myVuln = scenario.getNumericProperty(IncidentScenario.PROP_SCENARIO_VULN_PROBABILITY);
-        scenario.setNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY, myThreat + myVuln);
+        int myThreat = scenario.get(IncidentScenario.PROP_SCENARIO_THREAT_PROBABILITY);
+        int myVuln = scenario.get(IncidentScenario.PROP_SCENARIO_VULN_PROBABILITY);
+        scenario.set(IncidentScenario.PROP_SCENARIO_PROBABILITY, myThreat + myVuln);
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Scenario: " + scenario.getTitle() + ", probability set: "
-                    + scenario.getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY));
-        }
-    }
-
-    /**
-     * Reduces the probability of all incident scenarios by subtracting the
-     * effect of all linked and implemented controls.
-     */
-    private void reduceRiskOfScenarios() {
-        Set<CnATreeElement> scenarios = graph.getElements(IncidentScenario.TYPE_ID);
-        for (CnATreeElement scenario : scenarios) {
-            reduceRiskOfSzenario((IncidentScenario) scenario);
+            LOG.debug("Scenario: " + scenario.getElement().getTitle() + ", probability set: "
+                    + scenario.get(IncidentScenario.PROP_SCENARIO_PROBABILITY));
         }
     }
 
@@ -151,19 +323,18 @@ public class RiskAnalysisJob {
      * linked and implemented controls.
      *
      * @param scenario
-     *            A single incident scenario
+     *            The values of a single incident scenario
      */
-    private void reduceRiskOfSzenario(IncidentScenario scenario) {
+    private void reduceRiskOfSzenario(ElementValues scenario) {
         // init probability values to value without controls:
-        scenario.setNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_CONTROLS,
-                scenario.getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY));
-        scenario.setNumericProperty(
-                IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_PLANNED_CONTROLS,
-                scenario.getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY));
-        scenario.setNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITHOUT_NA_CONTROLS,
-                scenario.getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY));
-
-        Set<CnATreeElement> controlSet = graph.getLinkTargetsByElementType(scenario,
+        int probability = scenario.get(IncidentScenario.PROP_SCENARIO_PROBABILITY);
+        scenario.set(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_CONTROLS, probability);
+        scenario.set(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_PLANNED_CONTROLS,
+                probability);
+        scenario.set(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITHOUT_NA_CONTROLS,
+                probability);
+
+        Set<CnATreeElement> controlSet = graph.getLinkTargetsByElementType(scenario.getElement(),
                 Control.TYPE_ID);
         // deduct controls from probability:
         for (CnATreeElement control : controlSet) {
@@ -171,33 +342,31 @@ public class RiskAnalysisJob {
         }
     }
 
-    private void reduceRiskOfSzenarioWithControl(IncidentScenario scenario,
+    private void reduceRiskOfSzenarioWithControl(ElementValues scenario,
             CnATreeElement control) {
         int controlEffect = control.getNumericProperty(Control.PROP_CONTROL_EFFECT_P);
         int probAfterControl;
 
         // Risk with all controls
-        probAfterControl = scenario.getNumericProperty(
+        probAfterControl = scenario.get(
                 IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_PLANNED_CONTROLS) - controlEffect;
-        scenario.setNumericProperty(
-                IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_PLANNED_CONTROLS,
+        scenario.set(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_PLANNED_CONTROLS,
                 positiveOrZero(probAfterControl));
 
         // Risk with implemented controls
         if (Control.isImplemented(control.getEntity())) {
 
-            probAfterControl = scenario.getNumericProperty(
+            probAfterControl = scenario.get(
                     IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_CONTROLS) - controlEffect;
-            scenario.setNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_CONTROLS,
+            scenario.set(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_CONTROLS,
                     positiveOrZero(probAfterControl));
         }
 
         // Risk with planned implemented controls
         if (Control.isPlanned(control.getEntity())) {
-            probAfterControl = scenario.getNumericProperty(
+            probAfterControl = scenario.get(
                     IncidentScenario.PROP_SCENARIO_PROBABILITY_WITHOUT_NA_CONTROLS) - controlEffect;
-            scenario.setNumericProperty(
-                    IncidentScenario.PROP_SCENARIO_PROBABILITY_WITHOUT_NA_CONTROLS,
+            scenario.set(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITHOUT_NA_CONTROLS,
                     positiveOrZero(probAfterControl));
         }
     }
@@ -218,48 +387,32 @@ public class RiskAnalysisJob {
     }
 
     /**
-     * Analyses the risk of all assets which are linked to incident scenarios in
-     * a given verinice graph.
-     * 
-     * @throws CommandException
-     */
-    private void analyseRiskOfAssets() {
-        Set<CnATreeElement> scenarios = graph.getElements(IncidentScenario.TYPE_ID);
-        // determine risk originating from scenarios for all linked assets:
-        for (CnATreeElement scenario : scenarios) {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Determine Risk for Scenario: " + scenario.getTitle());
-            }
-            analyseRiskOfAssets((IncidentScenario) scenario);
-        }
-    }
-
-    /**
-     * Analyses the risk of all assets which are linked to a given incident
-     * scenario.
+     * Analyses the risk of an asset which is linked to incident scenarios.
+     * The risk values of the asset are reset first and the risk of every
+     * scenario is added afterwards.
      *
-     * @param graph
-     *            A verinice graph with all elements which are analyzed
-     * @param scenario
-     *            A single incident scenario
-     * @throws CommandException
+     * @param asset
+     *            A single asset
+     * @return The new values of the asset with the links from scenarios to
+     *         the asset whose risk values changed
      */
-    private void analyseRiskOfAssets(IncidentScenario scenario) {
-        Set<Edge> edgesToAsset = graph.getEdgesByElementType(scenario, Asset.TYPE_ID);
-
-        for (Edge edge : edgesToAsset) {
-            analyseRiskOfAsset(graph, scenario, edge);
-        }
-        if (LOG.isInfoEnabled()) {
-            LOG.info("Number of links from scenario to assets: " + edgesToAsset.size());
-        }
-        long time = RiskAnalysisServiceImpl.initRuntime();
-        // Update cnalinks
-        for (Edge edge : edgesToAsset) {
-            saveLink(edge);
+    private ElementValues analyseRiskOfAsset(CnATreeElement asset) {
+        ElementValues assetValues = new ElementValues(asset);
+        resetRisks(assetValues);
+        ElementValues reducedCIAValues = reduceCIAValues(graph, asset);
+        Set<Edge> edgesToScenario = graph.getEdgesByElementType(asset, IncidentScenario.TYPE_ID);
+        for (Edge edge : edgesToScenario) {
+            if (!asset.equals(edge.getTarget())) {
+                continue;
+            }
+            IncidentScenario scenario = (IncidentScenario) edge.getSource();
+            LinkRisk linkRisk = new LinkRisk(edge);
+            analyseRiskOfAsset(scenario, assetValues, linkRisk, reducedCIAValues);
+            if (linkRisk.isChanged()) {
+                assetValues.addChangedLink(linkRisk);
+            }
         }
-        RiskAnalysisServiceImpl.logRuntime("Updating links from scenarios to assets runtime : ",
-                time);
+        return assetValues;
     }
 
     /**
@@ -268,26 +421,25 @@ public class RiskAnalysisJob {
      * 
      * @param scenario
      *            An incident scenario
-     * @param edgeToAsset
-     *            An edge that connects an incident scenario with an asset
+     * @param asset
+     *            The values of the asset
+     * @param linkRisk
+     *            The risk values of the link from the scenario to the asset
+     * @param reducedCIAValues
+     *            The CIA values of the asset reduced by its controls
      */
-    private void analyseRiskOfAsset(VeriniceGraph graph, IncidentScenario scenario,
-            Edge edgeToAsset) {
-        Asset asset = (Asset) edgeToAsset.getTarget();
-        Asset assetWithReducedCIAValues = reduceCIAValues(graph, asset);
-
-        resetRisks(edgeToAsset);
-
+    private void analyseRiskOfAsset(IncidentScenario scenario, ElementValues asset,
+            LinkRisk linkRisk, ElementValues reducedCIAValues) {
         if (scenarioAffectsConfidentiality(scenario)) {
-            analyseRiskCOfAsset(scenario, edgeToAsset, assetWithReducedCIAValues);
+            analyseRiskCOfAsset(scenario, asset, linkRisk, reducedCIAValues);
         }
 
         if (scenarioAffectsIntegrity(scenario)) {
-            analyseRiskIOfAsset(scenario, edgeToAsset, assetWithReducedCIAValues);
+            analyseRiskIOfAsset(scenario, asset, linkRisk, reducedCIAValues);
         }
 
         if (scenarioAffectsAvailability(scenario)) {
-            analyseRiskAOfAsset(scenario, edgeToAsset, assetWithReducedCIAValues);
+            analyseRiskAOfAsset(scenario, asset, linkRisk, reducedCIAValues);
         }
     }
 
@@ -296,58 +448,50 @@ public class RiskAnalysisJob {
      * business impact: bi - confidentiality: C
      * 
      * @param scenario
-     * @param edgeToAsset
-     * @param assetWithReducedCIAValues
+     * @param asset
+     * @param linkRisk
+     * @param reducedCIAValues
      */
-    private void analyseRiskCOfAsset(IncidentScenario scenario, Edge edgeToAsset,
-            Asset assetWithReducedCIAValues) {
-        Asset asset = (Asset) edgeToAsset.getTarget();
-
+    private void analyseRiskCOfAsset(IncidentScenario scenario, ElementValues asset,
+            LinkRisk linkRisk, ElementValues reducedCIAValues) {
         // Without controls:
-        int biC = asset.getNumericProperty(Asset.ASSET_VALUE_CONFIDENTIALITY);
+        int biC = asset.get(Asset.ASSET_VALUE_CONFIDENTIALITY);
         int probability = scenario.getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY);
         int riskC = calculateRisk(biC, probability);
-        asset.setNumericProperty(Asset.ASSET_RISK_C,
-                positiveOrZero(asset.getNumericProperty(Asset.ASSET_RISK_C) + riskC));
-        edgeToAsset.setRiskConfidentiality(positiveOrZero(riskC));
+        asset.set(Asset.ASSET_RISK_C, positiveOrZero(asset.get(Asset.ASSET_RISK_C) + riskC));
+        linkRisk.setRiskConfidentiality(positiveOrZero(riskC));
 
         // With implemented controls
-        int biWithImplementedControlsC = assetWithReducedCIAValues
-                .getNumericProperty(Asset.ASSET_CONTROLRISK_C);
+        int biWithImplementedControlsC = reducedCIAValues.get(Asset.ASSET_CONTROLRISK_C);
         int probabilityWithImplementedControls = scenario
                 .getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_CONTROLS);
         int riskWithImplementedControlsC = calculateRisk(biWithImplementedControlsC,
                 probabilityWithImplementedControls);
-        asset.setNumericProperty(Asset.ASSET_CONFIDENTIALITY_WITH_IMPLEMENTED_CONTROLS,
+        asset.set(Asset.ASSET_CONFIDENTIALITY_WITH_IMPLEMENTED_CONTROLS,
                 biWithImplementedControlsC);
-        asset.setNumericProperty(Asset.ASSET_CONTROLRISK_C,
-                positiveOrZero(asset.getNumericProperty(Asset.ASSET_CONTROLRISK_C)
-                        + riskWithImplementedControlsC));
-        edgeToAsset
-                .setRiskConfidentialityWithControls(positiveOrZero(riskWithImplementedControlsC));
+        asset.set(Asset.ASSET_CONTROLRISK_C, positiveOrZero(
+                asset.get(Asset.ASSET_CONTROLRISK_C) + riskWithImplementedControlsC));
+        linkRisk.setRiskConfidentialityWithControls(positiveOrZero(riskWithImplementedControlsC));
 
         // With all controls
-        int biWithAllControlsC = assetWithReducedCIAValues
-                .getNumericProperty(Asset.ASSET_PLANCONTROLRISK_C);
+        int biWithAllControlsC = reducedCIAValues.get(Asset.ASSET_PLANCONTROLRISK_C);
         int probabilityWithAllControls = scenario.getNumericProperty(
                 IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_PLANNED_CONTROLS);
         int riskWithAllControlsC = calculateRisk(biWithAllControlsC, probabilityWithAllControls);
-        asset.setNumericProperty(Asset.ASSET_CONFIDENTIALITY_WITH_CONTROLS, biWithAllControlsC);
-        asset.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_C, positiveOrZero(
-                asset.getNumericProperty(Asset.ASSET_PLANCONTROLRISK_C) + riskWithAllControlsC));
+        asset.set(Asset.ASSET_CONFIDENTIALITY_WITH_CONTROLS, biWithAllControlsC);
+        asset.set(Asset.ASSET_PLANCONTROLRISK_C,
+                positiveOrZero(asset.get(Asset.ASSET_PLANCONTROLRISK_C) + riskWithAllControlsC));
 
         // With planned controls
-        int biWithPlannedControlsC = assetWithReducedCIAValues
-                .getNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C);
+        int biWithPlannedControlsC = reducedCIAValues
+                .get(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C);
         int probabilityWithPlannedControls = scenario
                 .getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITHOUT_NA_CONTROLS);
         int riskWithPlannedControlsC = calculateRisk(biWithPlannedControlsC,
                 probabilityWithPlannedControls);
-        asset.setNumericProperty(Asset.ASSET_CONFIDENTIALITY_WITH_PLANNED_CONTROLS,
-                biWithPlannedControlsC);
-        asset.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C,
-                positiveOrZero(asset.getNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C)
-                        + riskWithPlannedControlsC));
+        asset.set(Asset.ASSET_CONFIDENTIALITY_WITH_PLANNED_CONTROLS, biWithPlannedControlsC);
+        asset.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C, positiveOrZero(
+                asset.get(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C) + riskWithPlannedControlsC));
     }
 
     /**
@@ -355,57 +499,49 @@ public class RiskAnalysisJob {
      * Business impact: bi - Integrity: I
      * 
      * @param scenario
-     * @param edgeToAsset
-     * @param assetWithReducedCIAValues
+     * @param asset
+     * @param linkRisk
+     * @param reducedCIAValues
      */
-    private void analyseRiskIOfAsset(IncidentScenario scenario, Edge edgeToAsset,
-            Asset assetWithReducedCIAValues) {
-        Asset asset = (Asset) edgeToAsset.getTarget();
-
+    private void analyseRiskIOfAsset(IncidentScenario scenario, ElementValues asset,
+            LinkRisk linkRisk, ElementValues reducedCIAValues) {
         // Without controls:
-        int biI = asset.getNumericProperty(Asset.ASSET_VALUE_INTEGRITY);
+        int biI = asset.get(Asset.ASSET_VALUE_INTEGRITY);
         int probability = scenario.getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY);
         int riskI = calculateRisk(biI, probability);
-        asset.setNumericProperty(Asset.ASSET_RISK_I,
-                positiveOrZero(asset.getNumericProperty(Asset.ASSET_RISK_I) + riskI));
-        edgeToAsset.setRiskIntegrity(positiveOrZero(riskI));
+        asset.set(Asset.ASSET_RISK_I, positiveOrZero(asset.get(Asset.ASSET_RISK_I) + riskI));
+        linkRisk.setRiskIntegrity(positiveOrZero(riskI));
 
         // With implemented controls
-        int biWithImplementedControlsI = assetWithReducedCIAValues
-                .getNumericProperty(Asset.ASSET_CONTROLRISK_I);
+        int biWithImplementedControlsI = reducedCIAValues.get(Asset.ASSET_CONTROLRISK_I);
         int probabilityWithImplementedControls = scenario
                 .getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_CONTROLS);
         int riskWithImplementedControlsI = calculateRisk(biWithImplementedControlsI,
                 probabilityWithImplementedControls);
-        asset.setNumericProperty(Asset.ASSET_INTEGRITY_WITH_IMPLEMENTED_CONTROLS,
-                biWithImplementedControlsI);
-        asset.setNumericProperty(Asset.ASSET_CONTROLRISK_I,
-                positiveOrZero(asset.getNumericProperty(Asset.ASSET_CONTROLRISK_I)
-                        + riskWithImplementedControlsI));
-        edgeToAsset.setRiskIntegrityWithControls(positiveOrZero(riskWithImplementedControlsI));
+        asset.set(Asset.ASSET_INTEGRITY_WITH_IMPLEMENTED_CONTROLS, biWithImplementedControlsI);
+        asset.set(Asset.ASSET_CONTROLRISK_I, positiveOrZero(
+                asset.get(Asset.ASSET_CONTROLRISK_I) + riskWithImplementedControlsI));
+        linkRisk.setRiskIntegrityWithControls(positiveOrZero(riskWithImplementedControlsI));
 
         // With all controls
-        int biWithAllControlsI = assetWithReducedCIAValues
-                .getNumericProperty(Asset.ASSET_PLANCONTROLRISK_I);
+        int biWithAllControlsI = reducedCIAValues.get(Asset.ASSET_PLANCONTROLRISK_I);
         int probabilityWithAllControls = scenario.getNumericProperty(
                 IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_PLANNED_CONTROLS);
         int riskWithAllControlsI = calculateRisk(biWithAllControlsI, probabilityWithAllControls);
-        asset.setNumericProperty(Asset.ASSET_INTEGRITY_WITH_CONTROLS, biWithAllControlsI);
-        asset.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_I, positiveOrZero(
-                asset.getNumericProperty(Asset.ASSET_PLANCONTROLRISK_I) + riskWithAllControlsI));
+        asset.set(Asset.ASSET_INTEGRITY_WITH_CONTROLS, biWithAllControlsI);
+        asset.set(Asset.ASSET_PLANCONTROLRISK_I,
+                positiveOrZero(asset.get(Asset.ASSET_PLANCONTROLRISK_I) + riskWithAllControlsI));
 
         // With planned controls
-        int biWithPlannedControlsI = assetWithReducedCIAValues
-                .getNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I);
+        int biWithPlannedControlsI = reducedCIAValues
+                .get(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I);
         int probabilityWithPlannedControls = scenario
                 .getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITHOUT_NA_CONTROLS);
         int riskWithPlannedControlsI = calculateRisk(biWithPlannedControlsI,
                 probabilityWithPlannedControls);
-        asset.setNumericProperty(Asset.ASSET_INTEGRITY_WITH_PLANNED_CONTROLS,
-                biWithPlannedControlsI);
-        asset.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I,
-                positiveOrZero(asset.getNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I)
-                        + riskWithPlannedControlsI));
+        asset.set(Asset.ASSET_INTEGRITY_WITH_PLANNED_CONTROLS, biWithPlannedControlsI);
+        asset.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I, positiveOrZero(
+                asset.get(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I) + riskWithPlannedControlsI));
     }
 
     /**
@@ -413,103 +549,87 @@ public class RiskAnalysisJob {
      * Business impact: bi - Availability: A
      * 
      * @param scenario
-     * @param edgeToAsset
-     * @param assetWithReducedCIAValues
+     * @param asset
+     * @param linkRisk
+     * @param reducedCIAValues
      */
-    private void analyseRiskAOfAsset(IncidentScenario scenario, Edge edgeToAsset,
-            Asset assetWithReducedCIAValues) {
-        Asset asset = (Asset) edgeToAsset.getTarget();
-
+    private void analyseRiskAOfAsset(IncidentScenario scenario, ElementValues asset,
+            LinkRisk linkRisk, ElementValues reducedCIAValues) {
         // Without controls:
-        int biA = asset.getNumericProperty(Asset.ASSET_VALUE_AVAILABILITY);
+        int biA = asset.get(Asset.ASSET_VALUE_AVAILABILITY);
         int probability = scenario.getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY);
         int riskA = calculateRisk(biA, probability);
-        asset.setNumericProperty(Asset.ASSET_RISK_A,
-                positiveOrZero(asset.getNumericProperty(Asset.ASSET_RISK_A) + riskA));
-        edgeToAsset.setRiskAvailability(positiveOrZero(riskA));
+        asset.set(Asset.ASSET_RISK_A, positiveOrZero(asset.get(Asset.ASSET_RISK_A) + riskA));
+        linkRisk.setRiskAvailability(positiveOrZero(riskA));
 
         // With implemented controls
-        int biWithImplementedControlsA = assetWithReducedCIAValues
-                .getNumericProperty(Asset.ASSET_CONTROLRISK_A);
+        int biWithImplementedControlsA = reducedCIAValues.get(Asset.ASSET_CONTROLRISK_A);
         int probabilityWithImplementedControls = scenario
                 .getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_CONTROLS);
         int riskWithImplementedControlsA = calculateRisk(biWithImplementedControlsA,
                 probabilityWithImplementedControls);
-        asset.setNumericProperty(Asset.ASSET_AVAILABILITY_WITH_IMPLEMENTED_CONTROLS,
-                biWithImplementedControlsA);
-        asset.setNumericProperty(Asset.ASSET_CONTROLRISK_A,
-                positiveOrZero(asset.getNumericProperty(Asset.ASSET_CONTROLRISK_A)
-                        + riskWithImplementedControlsA));
-        edgeToAsset.setRiskAvailabilityWithControls(positiveOrZero(riskWithImplementedControlsA));
+        asset.set(Asset.ASSET_AVAILABILITY_WITH_IMPLEMENTED_CONTROLS, biWithImplementedControlsA);
+        asset.set(Asset.ASSET_CONTROLRISK_A, positiveOrZero(
+                asset.get(Asset.ASSET_CONTROLRISK_A) + riskWithImplementedControlsA));
+        linkRisk.setRiskAvailabilityWithControls(positiveOrZero(riskWithImplementedControlsA));
 
         // With all controls
-        int biWithAllControlsA = assetWithReducedCIAValues
-                .getNumericProperty(Asset.ASSET_PLANCONTROLRISK_A);
+        int biWithAllControlsA = reducedCIAValues.get(Asset.ASSET_PLANCONTROLRISK_A);
         int probabilityWithAllControls = scenario.getNumericProperty(
                 IncidentScenario.PROP_SCENARIO_PROBABILITY_WITH_PLANNED_CONTROLS);
         int riskWithAllControlsA = calculateRisk(biWithAllControlsA, probabilityWithAllControls);
-        asset.setNumericProperty(Asset.ASSET_AVAILABILITY_WITH_CONTROLS, biWithAllControlsA);
-        asset.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_A, positiveOrZero(
-                asset.getNumericProperty(Asset.ASSET_PLANCONTROLRISK_A) + riskWithAllControlsA));
+        asset.set(Asset.ASSET_AVAILABILITY_WITH_CONTROLS, biWithAllControlsA);
+        asset.set(Asset.ASSET_PLANCONTROLRISK_A,
+                positiveOrZero(asset.get(Asset.ASSET_PLANCONTROLRISK_A) + riskWithAllControlsA));
 
         // With planned controls
-        int biWithPlannedControlsA = assetWithReducedCIAValues
-                .getNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A);
+        int biWithPlannedControlsA = reducedCIAValues
+                .get(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A);
         int probabilityWithPlannedControls = scenario
                 .getNumericProperty(IncidentScenario.PROP_SCENARIO_PROBABILITY_WITHOUT_NA_CONTROLS);
         int riskWithPlannedControlsA = calculateRisk(biWithPlannedControlsA,
                 probabilityWithPlannedControls);
-        asset.setNumericProperty(Asset.ASSET_AVAILABILITY_WITH_PLANNED_CONTROLS,
-                biWithPlannedControlsA);
-        asset.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A,
-                positiveOrZero(asset.getNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A)
-                        + riskWithPlannedControlsA));
+        asset.set(Asset.ASSET_AVAILABILITY_WITH_PLANNED_CONTROLS, biWithPlannedControlsA);
+        asset.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A, positiveOrZero(
+                asset.get(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A) + riskWithPlannedControlsA));
     }
 
     /**
      * Reduce the CIA values of an given asset with the effect of all controls
-     * which are linked to this asset. Returns a copy of the given asset with
-     * reduced values.
+     * which are linked to this asset. The asset is not changed.
      * 
      * @param graph
      *            A verinice graph with all elements which are analyzed
      * @param asset
      *            An asset with CIA values
-     * @return A copy of the given asset with reduced CIA values.
+     * @return The reduced CIA values of the given asset
      */
-    private Asset reduceCIAValues(VeriniceGraph graph, Asset asset) {
-        Asset assetWithReducedCIAValues = new Asset();
-        assetWithReducedCIAValues.getEntity().copyEntity(asset.getEntity());
+    private ElementValues reduceCIAValues(VeriniceGraph graph, CnATreeElement asset) {
+        ElementValues reducedCIAValues = new ElementValues(asset);
 
         // Reset risk values to prevent summation when running risk analysis
         // multiple times
-        assetWithReducedCIAValues.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_C,
-                asset.getNumericProperty(Asset.ASSET_VALUE_CONFIDENTIALITY));
-        assetWithReducedCIAValues.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_I,
-                asset.getNumericProperty(Asset.ASSET_VALUE_INTEGRITY));
-        assetWithReducedCIAValues.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_A,
-                asset.getNumericProperty(Asset.ASSET_VALUE_AVAILABILITY));
-
-        assetWithReducedCIAValues.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C,
-                asset.getNumericProperty(Asset.ASSET_VALUE_CONFIDENTIALITY));
-        assetWithReducedCIAValues.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I,
-                asset.getNumericProperty(Asset.ASSET_VALUE_INTEGRITY));
-        assetWithReducedCIAValues.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A,
-                asset.getNumericProperty(Asset.ASSET_VALUE_AVAILABILITY));
-
-        assetWithReducedCIAValues.setNumericProperty(Asset.ASSET_CONTROLRISK_C,
-                asset.getNumericProperty(Asset.ASSET_VALUE_CONFIDENTIALITY));
-        assetWithReducedCIAValues.setNumericProperty(Asset.ASSET_CONTROLRISK_I,
-                asset.getNumericProperty(Asset.ASSET_VALUE_INTEGRITY));
-        assetWithReducedCIAValues.setNumericProperty(Asset.ASSET_CONTROLRISK_A,
-                asset.getNumericProperty(Asset.ASSET_VALUE_AVAILABILITY));
+        int valueC = asset.getNumericProperty(Asset.ASSET_VALUE_CONFIDENTIALITY);
+        int valueI = asset.getNumericProperty(Asset.ASSET_VALUE_INTEGRITY);
+        int valueA = asset.getNumericProperty(Asset.ASSET_VALUE_AVAILABILITY);
+        reducedCIAValues.set(Asset.ASSET_PLANCONTROLRISK_C, valueC);
+        reducedCIAValues.set(Asset.ASSET_PLANCONTROLRISK_I, valueI);
+        reducedCIAValues.set(Asset.ASSET_PLANCONTROLRISK_A, valueA);
+
+        reducedCIAValues.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C, valueC);
+        reducedCIAValues.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I, valueI);
+        reducedCIAValues.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A, valueA);
+
+        reducedCIAValues.set(Asset.ASSET_CONTROLRISK_C, valueC);
+        reducedCIAValues.set(Asset.ASSET_CONTROLRISK_I, valueI);
+        reducedCIAValues.set(Asset.ASSET_CONTROLRISK_A, valueA);
 
         Set<CnATreeElement> linkedControls = graph.getLinkTargetsByElementType(asset,
                 Control.TYPE_ID);
         for (CnATreeElement control : linkedControls) {
-            reduceCIAValues(assetWithReducedCIAValues, control);
+            reduceCIAValues(reducedCIAValues, control);
         }
-        return assetWithReducedCIAValues;
+        return reducedCIAValues;
     }
 
     /**
@@ -517,44 +637,41 @@ public class RiskAnalysisJob {
      * control.
      * 
      * @param asset
-     *            An asset with CIA values
+     *            The CIA values of an asset
      * @param control
      *            A control which reduces the CIA values
      */
-    private void reduceCIAValues(Asset asset, CnATreeElement control) {
+    private void reduceCIAValues(ElementValues asset, CnATreeElement control) {
         int controlEffectC = control.getNumericProperty(Control.PROP_EFFECTIVENESS_CONFIDENTIALITY);
         int controlEffectI = control.getNumericProperty(Control.PROP_EFFECTIVENESS_INTEGRITY);
         int controlEffectA = control.getNumericProperty(Control.PROP_EFFECTIVENESS_AVAILABILITY);
 
         // Reduce regardless of implementation status
-        asset.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_C,
-                asset.getNumericProperty(Asset.ASSET_PLANCONTROLRISK_C) - controlEffectC);
-        asset.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_I,
-                asset.getNumericProperty(Asset.ASSET_PLANCONTROLRISK_I) - controlEffectI);
-        asset.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_A,
-                asset.getNumericProperty(Asset.ASSET_PLANCONTROLRISK_A) - controlEffectA);
+        asset.set(Asset.ASSET_PLANCONTROLRISK_C,
+                asset.get(Asset.ASSET_PLANCONTROLRISK_C) - controlEffectC);
+        asset.set(Asset.ASSET_PLANCONTROLRISK_I,
+                asset.get(Asset.ASSET_PLANCONTROLRISK_I) - controlEffectI);
+        asset.set(Asset.ASSET_PLANCONTROLRISK_A,
+                asset.get(Asset.ASSET_PLANCONTROLRISK_A) - controlEffectA);
 
         // Reduce if implementation status is "planned"
         if (Control.isPlanned(control.getEntity())) {
-            asset.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C,
-                    asset.getNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C)
-                            - controlEffectC);
-            asset.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I,
-                    asset.getNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I)
-                            - controlEffectI);
-            asset.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A,
-                    asset.getNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A)
-                            - controlEffectA);
+            asset.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C,
+                    asset.get(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C) - controlEffectC);
+            asset.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I,
+                    asset.get(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I) - controlEffectI);
+            asset.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A,
+                    asset.get(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A) - controlEffectA);
         }
 
         // Reduce if implementation status is "implemented"
         if (Control.isImplemented(control.getEntity())) {
-            asset.setNumericProperty(Asset.ASSET_CONTROLRISK_C,
-                    asset.getNumericProperty(Asset.ASSET_CONTROLRISK_C) - controlEffectC);
-            asset.setNumericProperty(Asset.ASSET_CONTROLRISK_I,
-                    asset.getNumericProperty(Asset.ASSET_CONTROLRISK_I) - controlEffectI);
-            asset.setNumericProperty(Asset.ASSET_CONTROLRISK_A,
-                    asset.getNumericProperty(Asset.ASSET_CONTROLRISK_A) - controlEffectA);
+            asset.set(Asset.ASSET_CONTROLRISK_C,
+                    asset.get(Asset.ASSET_CONTROLRISK_C) - controlEffectC);
+            asset.set(Asset.ASSET_CONTROLRISK_I,
+                    asset.get(Asset.ASSET_CONTROLRISK_I) - controlEffectI);
+            asset.set(Asset.ASSET_CONTROLRISK_A,
+                    asset.get(Asset.ASSET_CONTROLRISK_A) - controlEffectA);
         }
 
     }
@@ -564,47 +681,37 @@ public class RiskAnalysisJob {
      * 
      * @param asset
      */
-    private void resetRisks(Asset asset) {
-        asset.setNumericProperty(Asset.ASSET_CONFIDENTIALITY_WITH_CONTROLS, 0);
-        asset.setNumericProperty(Asset.ASSET_INTEGRITY_WITH_CONTROLS, 0);
-        asset.setNumericProperty(Asset.ASSET_AVAILABILITY_WITH_CONTROLS, 0);
-        asset.setNumericProperty(Asset.ASSET_CONFIDENTIALITY_WITH_PLANNED_CONTROLS, 0);
-        asset.setNumericProperty(Asset.ASSET_INTEGRITY_WITH_PLANNED_CONTROLS, 0);
-        asset.setNumericProperty(Asset.ASSET_AVAILABILITY_WITH_PLANNED_CONTROLS, 0);
-        asset.setNumericProperty(Asset.ASSET_CONFIDENTIALITY_WITH_IMPLEMENTED_CONTROLS, 0);
-        asset.setNumericProperty(Asset.ASSET_INTEGRITY_WITH_IMPLEMENTED_CONTROLS, 0);
-        asset.setNumericProperty(Asset.ASSET_AVAILABILITY_WITH_IMPLEMENTED_CONTROLS, 0);
-        asset.setNumericProperty(Asset.ASSET_RISK_C, 0);
-        asset.setNumericProperty(Asset.ASSET_RISK_I, 0);
-        asset.setNumericProperty(Asset.ASSET_RISK_A, 0);
-        asset.setNumericProperty(Asset.ASSET_CONTROLRISK_C, 0);
-        asset.setNumericProperty(Asset.ASSET_CONTROLRISK_I, 0);
-        asset.setNumericProperty(Asset.ASSET_CONTROLRISK_A, 0);
-        asset.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_C, 0);
-        asset.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_I, 0);
-        asset.setNumericProperty(Asset.ASSET_PLANCONTROLRISK_A, 0);
-        asset.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C, 0);
-        asset.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I, 0);
-        asset.setNumericProperty(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A, 0);
-    }
-
-    private void resetRisks(Edge edgeToAsset) {
-        edgeToAsset.setRiskConfidentiality(0);
-        edgeToAsset.setRiskConfidentialityWithControls(0);
-
-        edgeToAsset.setRiskIntegrity(0);
-        edgeToAsset.setRiskIntegrityWithControls(0);
-
-        edgeToAsset.setRiskAvailability(0);
-        edgeToAsset.setRiskAvailabilityWithControls(0);
+    private void resetRisks(ElementValues asset) {
+        asset.set(Asset.ASSET_CONFIDENTIALITY_WITH_CONTROLS, 0);
+        asset.set(Asset.ASSET_INTEGRITY_WITH_CONTROLS, 0);
+        asset.set(Asset.ASSET_AVAILABILITY_WITH_CONTROLS, 0);
+        asset.set(Asset.ASSET_CONFIDENTIALITY_WITH_PLANNED_CONTROLS, 0);
+        asset.set(Asset.ASSET_INTEGRITY_WITH_PLANNED_CONTROLS, 0);
+        asset.set(Asset.ASSET_AVAILABILITY_WITH_PLANNED_CONTROLS, 0);
+        asset.set(Asset.ASSET_CONFIDENTIALITY_WITH_IMPLEMENTED_CONTROLS, 0);
+        asset.set(Asset.ASSET_INTEGRITY_WITH_IMPLEMENTED_CONTROLS, 0);
+        asset.set(Asset.ASSET_AVAILABILITY_WITH_IMPLEMENTED_CONTROLS, 0);
+        asset.set(Asset.ASSET_RISK_C, 0);
+        asset.set(Asset.ASSET_RISK_I, 0);
+        asset.set(Asset.ASSET_RISK_A, 0);
+        asset.set(Asset.ASSET_CONTROLRISK_C, 0);
+        asset.set(Asset.ASSET_CONTROLRISK_I, 0);
+        asset.set(Asset.ASSET_CONTROLRISK_A, 0);
+        asset.set(Asset.ASSET_PLANCONTROLRISK_C, 0);
+        asset.set(Asset.ASSET_PLANCONTROLRISK_I, 0);
+        asset.set(Asset.ASSET_PLANCONTROLRISK_A, 0);
+        asset.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_C, 0);
+        asset.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_I, 0);
+        asset.set(Asset.ASSET_WITHOUT_NA_PLANCONTROLRISK_A, 0);
     }
 
     private void getProbabilityFromThreatAndVulnerability(VeriniceGraph graph,
-            IncidentScenario scenario) {
+            ElementValues scenario) {
         // only calculate if threat AND vulnerability is linked to scenario:
-        Set<CnATreeElement> threatSet = graph.getLinkTargetsByElementType(scenario, Threat.TYPE_ID);
-        Set<CnATreeElement> vulnerabilitySet = graph.getLinkTargetsByElementType(scenario,
-                Vulnerability.TYPE_ID);
+        Set<CnATreeElement> threatSet = graph.getLinkTargetsByElementType(scenario.getElement(),
+                Threat.TYPE_ID);
+        Set<CnATreeElement> vulnerabilitySet = graph
+                .getLinkTargetsByElementType(scenario.getElement(), Vulnerability.TYPE_ID);
 
         if (!threatSet.isEmpty() && !vulnerabilitySet.isEmpty()) {
             int threatImpact = 0;
@@ -624,10 +731,8 @@ public class RiskAnalysisJob {
             }
 
             // set values to highest found:
-            scenario.setNumericProperty(IncidentScenario.PROP_SCENARIO_THREAT_PROBABILITY,
-                    threatImpact);
-            scenario.setNumericProperty(IncidentScenario.PROP_SCENARIO_VULN_PROBABILITY,
-                    exploitability);
+            scenario.set(IncidentScenario.PROP_SCENARIO_THREAT_PROBABILITY, threatImpact);
+            scenario.set(IncidentScenario.PROP_SCENARIO_VULN_PROBABILITY, exploitability);
         }
     }
 
@@ -652,18 +757,54 @@ public class RiskAnalysisJob {
         return n < 0 ? 0 : n;
     }
 
-    private void saveLink(Edge edge) {
-        CnALink link = new CnALink(edge.getSource(), edge.getTarget(), edge.getType(),
-                edge.getDescription());
-        link.setRiskConfidentiality(edge.getRiskConfidentiality());
-        link.setRiskIntegrity(edge.getRiskIntegrity());
-        link.setRiskAvailability(edge.getRiskAvailability());
-        link.setRiskConfidentialityWithControls(edge.getRiskConfidentialityWithControls());
-        link.setRiskIntegrityWithControls(edge.getRiskIntegrityWithControls());
-        link.setRiskAvailabilityWithControls(edge.getRiskAvailabilityWithControls());
-        link.setRiskTreatment(edge.getRiskTreatment());
-        cnaLinkDao.merge(link);
+    /**
+     * Sets the new risk values to the edges and to the links of the edges.
+     * The links are grouped by their new risk values, the links of a group
+     * are updated by bulk updates with up to {@link #MAX_LINKS_PER_UPDATE}
+     * links. Bulk updates evict the cached links from the second level
+     * cache.
+     */
+    private void saveLinks(List<LinkRisk> changedLinks) {
+        Map<List<Integer>, List<CnALink.Id>> linkIdsByRiskValues = new HashMap<>();
+        for (LinkRisk linkRisk : changedLinks) {
+            linkRisk.apply();
+            Edge edge = linkRisk.getEdge();
+            List<Integer> riskValues = Arrays.asList(edge.getRiskConfidentiality(),
+                    edge.getRiskIntegrity(), edge.getRiskAvailability(),
+                    edge.getRiskConfidentialityWithControls(),
+                    edge.getRiskIntegrityWithControls(), edge.getRiskAvailabilityWithControls());
+            linkIdsByRiskValues.computeIfAbsent(riskValues, key -> new ArrayList<>())
+                    .add(new CnALink.Id(edge.getSource().getDbId(), edge.getTarget().getDbId(),
+                            edge.getType()));
+        }
+        for (Map.Entry<List<Integer>, List<CnALink.Id>> entry : linkIdsByRiskValues
+                .entrySet()) {
+            List<CnALink.Id> linkIds = entry.getValue();
+            for (int i = 0; i < linkIds.size(); i += MAX_LINKS_PER_UPDATE) {
+                updateLinks(entry.getKey(),
+                        linkIds.subList(i, Math.min(i + MAX_LINKS_PER_UPDATE, linkIds.size())));
+            }
+        }
+    }
 
+    private void updateLinks(List<Integer> riskValues, List<CnALink.Id> linkIds) {
+        StringBuilder hql = new StringBuilder(HQL_UPDATE_LINK_RISKS);
+        List<Object> values = new ArrayList<>(riskValues.size() + 3 * linkIds.size());
+        values.addAll(riskValues);
+        for (CnALink.Id linkId : linkIds) {
+            if (values.size() > riskValues.size()) {
+                hql.append(" or ");
+            }
+            hql.append(HQL_LINK_ID);
+            values.add(linkId.getDependantId());
+            values.add(linkId.getDependencyId());
+            values.add(linkId.getTypeId());
+        }
+        int numberOfUpdatedLinks = cnaLinkDao.updateByQuery(hql.toString(), values.toArray());
+        if (numberOfUpdatedLinks != linkIds.size()) {
+            LOG.warn("Links not found, updated " + numberOfUpdatedLinks + " of "
+                    + linkIds.size() + " links: " + linkIds);
+        }
     }
 
     public RiskCalculator getRiskCalculator() {
@@ -677,6 +818,19 @@ public class RiskAnalysisJob {
         this.riskCalculator = riskCalculator;
     }
 
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    /**
+     * @param numberOfThreads
+     *            The number of threads which analyse scenarios and assets, 1
+     *            runs the analysis in the calling thread
+     */
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
     public IBaseDao<CnALink, Serializable> getCnaLinkDao() {
         return cnaLinkDao;
     }
@@ -684,4 +838,122 @@ public class RiskAnalysisJob {
     public void setCnaLinkDao(IBaseDao<CnALink, Serializable> cnaLinkDao) {
         this.cnaLinkDao = cnaLinkDao;
     }
+
+    /**
+     * The numeric property values of an element which are computed by the
+     * risk analysis. Values which are not computed are read from the element.
+     * The computed values are set to the element by {@link #apply()}.
+     */
+    private static final class ElementValues {
+
+        private final CnATreeElement element;
+
+        private final Map<String, Integer> values = new HashMap<>();
+
+        private final List<LinkRisk> changedLinks = new LinkedList<>();
+
+        ElementValues(CnATreeElement element) {
+            this.element = element;
+        }
+
+        CnATreeElement getElement() {
+            return element;
+        }
+
+        int get(String propertyTypeId) {
+            Integer value = values.get(propertyTypeId);
+            return value != null ? value : element.getNumericProperty(propertyTypeId);
+        }
+
+        void set(String propertyTypeId, int value) {
+            values.put(propertyTypeId, value);
+        }
+
+        List<LinkRisk> getChangedLinks() {
+            return changedLinks;
+        }
+
+        void addChangedLink(LinkRisk linkRisk) {
+            changedLinks.add(linkRisk);
+        }
+
+        void apply() {
+            for (Map.Entry<String, Integer> entry : values.entrySet()) {
+                element.setNumericProperty(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * The risk values of an edge from a scenario to an asset which are
+     * computed by the risk analysis. The values are set to the edge by
+     * {@link #apply()}.
+     */
+    private static final class LinkRisk {
+
+        private final Edge edge;
+
+        private int riskConfidentiality;
+        private int riskIntegrity;
+        private int riskAvailability;
+        private int riskConfidentialityWithControls;
+        private int riskIntegrityWithControls;
+        private int riskAvailabilityWithControls;
+
+        LinkRisk(Edge edge) {
+            this.edge = edge;
+        }
+
+        Edge getEdge() {
+            return edge;
+        }
+
+        void setRiskConfidentiality(int riskConfidentiality) {
+            this.riskConfidentiality = riskConfidentiality;
+        }
+
+        void setRiskIntegrity(int riskIntegrity) {
+            this.riskIntegrity = riskIntegrity;
+        }
+
+        void setRiskAvailability(int riskAvailability) {
+            this.riskAvailability = riskAvailability;
+        }
+
+        void setRiskConfidentialityWithControls(int riskConfidentialityWithControls) {
+            this.riskConfidentialityWithControls = riskConfidentialityWithControls;
+        }
+
+        void setRiskIntegrityWithControls(int riskIntegrityWithControls) {
+            this.riskIntegrityWithControls = riskIntegrityWithControls;
+        }
+
+        void setRiskAvailabilityWithControls(int riskAvailabilityWithControls) {
+            this.riskAvailabilityWithControls = riskAvailabilityWithControls;
+        }
+
+        /**
+         * @return true if the values differ from the values of the edge
+         */
+        boolean isChanged() {
+            return !Integer.valueOf(riskConfidentiality).equals(edge.getRiskConfidentiality())
+                    || !Integer.valueOf(riskIntegrity).equals(edge.getRiskIntegrity())
+                    || !Integer.valueOf(riskAvailability).equals(edge.getRiskAvailability())
+                    || !Integer.valueOf(riskConfidentialityWithControls)
+                            .equals(edge.getRiskConfidentialityWithControls())
+                    || !Integer.valueOf(riskIntegrityWithControls)
+                            .equals(edge.getRiskIntegrityWithControls())
+                    || !Integer.valueOf(riskAvailabilityWithControls)
+                            .equals(edge.getRiskAvailabilityWithControls());
+        }
+
+        void apply() {
+            edge.setRiskConfidentiality(riskConfidentiality);
+            edge.setRiskIntegrity(riskIntegrity);
+            edge.setRiskAvailability(riskAvailability);
+            edge.setRiskConfidentialityWithControls(riskConfidentialityWithControls);
+            edge.setRiskIntegrityWithControls(riskIntegrityWithControls);
+            edge.setRiskAvailabilityWithControls(riskAvailabilityWithControls);
+        }
+    }
 }
@@ -79,6 +79,9 @@ public interface RiskAnalysisService {
      * the risk analysis is run on all organizations in the database. 
      * Running a risk analysis on all organizations might be a performance issue.
      * 
+     * If the configuration contains changed elements, only the scenarios and
+     * assets affected by these elements are analyzed.
+     * 
      * @param configuration Configuration details for the execution of a risk analysis.
      */
     void runRiskAnalysis(RiskAnalysisConfiguration configuration);
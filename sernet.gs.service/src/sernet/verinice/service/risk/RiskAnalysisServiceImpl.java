@@ -77,6 +77,12 @@ public class RiskAnalysisServiceImpl implements RiskAnalysisService {
      */
     private RiskCalculationMethod riskCalculationMethod = RISK_CALCULATION_METHOD_DEFAULT;
 
+    /**
+     * The number of threads of a risk analysis, 1 runs the analysis in the
+     * calling thread.
+     */
+    private int numberOfThreads = 1;
+
     private IGraphService graphService;
     private IBaseDao<CnALink, Serializable> cnaLinkDao;
 
@@ -109,7 +115,12 @@ public class RiskAnalysisServiceImpl implements RiskAnalysisService {
 
         RiskAnalysisJob job = new RiskAnalysisJob(graph, getCnaLinkDao());
         configureRiskCalculator(job);
-        job.runRiskAnalysis();
+        job.setNumberOfThreads(getNumberOfThreads());
+        if (configuration.isIncremental()) {
+            job.runRiskAnalysis(configuration.getChangedElementUuids());
+        } else {
+            job.runRiskAnalysis();
+        }
 
         logRuntime("runRiskAnalysis() runtime : ", time);
     }
@@ -152,6 +163,14 @@ public class RiskAnalysisServiceImpl implements RiskAnalysisService {
         this.riskCalculationMethod = riskCalculationArithmetic;
     }
 
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
     public IBaseDao<CnALink, Serializable> getCnaLinkDao() {
         return cnaLinkDao;
     }
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.sync;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.sernet.sync.data.SyncAttribute;
+import de.sernet.sync.data.SyncData;
+import de.sernet.sync.data.SyncFile;
+import de.sernet.sync.data.SyncLink;
+import de.sernet.sync.data.SyncObject;
+import de.sernet.sync.mapping.SyncMapping;
+import de.sernet.sync.sync.SyncRequest;
+import de.sernet.sync.sync.SyncRequest.SyncVnaSchemaVersion;
+import sernet.verinice.interfaces.CommandException;
+
+/**
+ * Reads a sync request (verinice.xml) from a file with StAX without loading
+ * the sync data into memory.
+ * 
+ * {@link #readHeader()} returns the sync request without sync data.
+ * {@link #readSyncData(Handler)} passes the sync objects and links one by one
+ * to a {@link Handler}. Only the attributes, files and ids of the current
+ * object are kept in memory, children are passed to the handler after their
+ * parent was started.
+ */
+public class SyncRequestReader {
+
+    /**
+     * Receives the content of the sync data in document order.
+     */
+    public interface Handler {
+
+        /**
+         * Called for every sync object before its children. The object
+         * contains attributes, ext-id, type and icon but no children and no
+         * files.
+         */
+        void startSyncObject(SyncObject syncObject) throws CommandException;
+
+        /**
+         * Called for every sync object after its children. The files of the
+         * object are set.
+         */
+        void endSyncObject(SyncObject syncObject) throws CommandException;
+
+        /**
+         * Called for every sync link after all sync objects.
+         */
+        void syncLink(SyncLink syncLink) throws CommandException;
+    }
+
+    private static final String SYNC_DATA = "syncData";
+    private static final String SYNC_MAPPING = "syncMapping";
+    private static final String SYNC_VNA_SCHEMA_VERSION = "syncVnaSchemaVersion";
+    private static final String SYNC_OBJECT = "syncObject";
+    private static final String SYNC_LINK = "syncLink";
+    private static final String SYNC_ATTRIBUTE = "syncAttribute";
+    private static final String CHILDREN = "children";
+    private static final String FILE = "file";
+    private static final String EXT_ID = "extId";
+    private static final String EXT_OBJECT_TYPE = "extObjectType";
+    private static final String ICON = "icon";
+
+    private final File file;
+    private final XMLInputFactory inputFactory;
+    private Unmarshaller unmarshaller;
+
+    public SyncRequestReader(File file) {
+        this.file = file;
+        this.inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /**
+     * Reads the source id, the mapping and the schema version of the sync
+     * request. The sync data of the returned request is empty.
+     */
+    public SyncRequest readHeader() throws IOException {
+        SyncRequest syncRequest = new SyncRequest();
+        syncRequest.setSyncData(new SyncData());
+        try (InputStream in = openStream()) {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                reader.nextTag();
+                syncRequest.setSourceId(reader.getAttributeValue(null, "sourceId"));
+                syncRequest.setInsert(readBooleanAttribute(reader, "insert"));
+                syncRequest.setUpdate(readBooleanAttribute(reader, "update"));
+                syncRequest.setDelete(readBooleanAttribute(reader, "delete"));
+                nextChild(reader);
+                while (reader.isStartElement()) {
+                    String localName = reader.getLocalName();
+                    if (SYNC_MAPPING.equals(localName)) {
+                        syncRequest.setSyncMapping(
+                                getUnmarshaller().unmarshal(reader, SyncMapping.class).getValue());
+                    } else if (SYNC_VNA_SCHEMA_VERSION.equals(localName)) {
+                        syncRequest.setSyncVnaSchemaVersion(getUnmarshaller()
+                                .unmarshal(reader, SyncVnaSchemaVersion.class).getValue());
+                    } else {
+                        skipElement(reader);
+                    }
+                    skipToTag(reader);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | JAXBException e) {
+            throw new IOException("Error while reading sync request: " + file, e);
+        }
+        return syncRequest;
+    }
+
+    /**
+     * Passes all sync objects and links of the sync data to the handler.
+     */
+    public void readSyncData(Handler handler) throws IOException, CommandException {
+        try (InputStream in = openStream()) {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                reader.nextTag();
+                nextChild(reader);
+                while (reader.isStartElement() && !SYNC_DATA.equals(reader.getLocalName())) {
+                    skipElement(reader);
+                    skipToTag(reader);
+                }
+                if (!reader.isStartElement()) {
+                    return;
+                }
+                nextChild(reader);
+                while (reader.isStartElement()) {
+                    String localName = reader.getLocalName();
+                    if (SYNC_OBJECT.equals(localName)) {
+                        readSyncObject(reader, handler);
+                    } else if (SYNC_LINK.equals(localName)) {
+                        handler.syncLink(
+                                getUnmarshaller().unmarshal(reader, SyncLink.class).getValue());
+                    } else {
+                        skipElement(reader);
+                    }
+                    skipToTag(reader);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | JAXBException e) {
+            throw new IOException("Error while reading sync data: " + file, e);
+        }
+    }
+
+    /**
+     * Reads a sync object, the reader is positioned at its start tag. When
+     * the method returns the reader is positioned behind its end tag.
+     */
+    private void readSyncObject(XMLStreamReader reader, Handler handler)
+            throws XMLStreamException, JAXBException, CommandException {
+        SyncObject syncObject = new SyncObject();
+        boolean started = false;
+        nextChild(reader);
+        while (reader.isStartElement()) {
+            String localName = reader.getLocalName();
+            if (SYNC_ATTRIBUTE.equals(localName)) {
+                syncObject.getSyncAttribute()
+                        .add(getUnmarshaller().unmarshal(reader, SyncAttribute.class).getValue());
+            } else if (EXT_ID.equals(localName)) {
+                syncObject.setExtId(readText(reader));
+            } else if (EXT_OBJECT_TYPE.equals(localName)) {
+                syncObject.setExtObjectType(readText(reader));
+            } else if (ICON.equals(localName)) {
+                syncObject.setIcon(readText(reader));
+            } else if (CHILDREN.equals(localName)) {
+                if (!started) {
+                    handler.startSyncObject(syncObject);
+                    started = true;
+                }
+                readSyncObject(reader, handler);
+            } else if (FILE.equals(localName)) {
+                syncObject.getFile()
+                        .add(getUnmarshaller().unmarshal(reader, SyncFile.class).getValue());
+            } else {
+                skipElement(reader);
+            }
+            skipToTag(reader);
+        }
+        if (!started) {
+            handler.startSyncObject(syncObject);
+        }
+        handler.endSyncObject(syncObject);
+        reader.next();
+    }
+
+    /**
+     * Moves the reader from a start tag to the first child element or the
+     * end tag of the element.
+     */
+    private static void nextChild(XMLStreamReader reader) throws XMLStreamException {
+        reader.next();
+        skipToTag(reader);
+    }
+
+    private static void skipToTag(XMLStreamReader reader) throws XMLStreamException {
+        while (!reader.isStartElement() && !reader.isEndElement() && reader.hasNext()) {
+            reader.next();
+        }
+    }
+
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        String text = reader.getElementText();
+        reader.next();
+        return text;
+    }
+
+    /**
+     * Skips an element with all its children, the reader is positioned
+     * behind its end tag afterwards.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamReader.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamReader.END_ELEMENT) {
+                depth--;
+            }
+        }
+        reader.next();
+    }
+
+    private static Boolean readBooleanAttribute(XMLStreamReader reader, String localName) {
+        String value = reader.getAttributeValue(null, localName);
+        return (value != null) ? Boolean.valueOf(value.trim()) : null;
+    }
+
+    private InputStream openStream() throws IOException {
+        return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    private Unmarshaller getUnmarshaller() throws JAXBException {
+        if (unmarshaller == null) {
+            unmarshaller = JAXBContext.newInstance(SyncRequest.class).createUnmarshaller();
+        }
+        return unmarshaller;
+    }
+
+}
@@ -21,8 +21,10 @@ package sernet.verinice.service.sync;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
@@ -85,13 +87,30 @@ public class VeriniceArchive extends PureXml implements IVeriniceArchive {
      *             In case of a missing entry
      */
     public VeriniceArchive(byte[] data) throws VeriniceArchiveNotValidException {
+        this(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Creates a verinice archive instance out of a file. The entries are
+     * extracted from the file without loading the archive into memory.
+     * 
+     * @param file
+     *            a verinice archive (zip archive)
+     * @throws VeriniceArchiveNotValidException
+     *             In case of a missing entry
+     */
+    public VeriniceArchive(File file) throws VeriniceArchiveNotValidException {
+        this(openFile(file));
+    }
+
+    private VeriniceArchive(InputStream in) throws VeriniceArchiveNotValidException {
         super();
         uuid = UUID.randomUUID().toString();
         if (LOG.isDebugEnabled()) {
             LOG.debug("Creating new VeriniceArchive...");
         }
         try {
-            extractZipEntries(data);
+            extractZipEntries(in);
         } catch (VeriniceArchiveNotValidException e) {
             LOG.error("Error while reading verinice archive", e);
             throw e;
@@ -101,6 +120,15 @@ public class VeriniceArchive extends PureXml implements IVeriniceArchive {
         }
     }
 
+    private static InputStream openFile(File file) {
+        try {
+            return new FileInputStream(file);
+        } catch (IOException e) {
+            LOG.error("Error while reading verinice archive", e);
+            throw new VeriniceArchiveNotValidException(e);
+        }
+    }
+
     @Override
     public byte[] getFileData(String fileName) {
         String fullPath = getFullPath(fileName);
@@ -127,44 +155,47 @@ public class VeriniceArchive extends PureXml implements IVeriniceArchive {
      * @throws IOException
      */
     public void extractZipEntries(byte[] zipFileData) throws IOException {
+        extractZipEntries(new ByteArrayInputStream(zipFileData));
+    }
+
+    private void extractZipEntries(InputStream in) throws IOException {
         byte[] buffer = new byte[1024];
-        ;
         new File(getTempDirName()).mkdirs();
         // get the zip file content
-        ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipFileData));
-        // get the zipped file list entry
-        ZipEntry ze = zis.getNextEntry();
-
-        while (ze != null) {
-            if (!ze.isDirectory()) {
-                String fileName = ze.getName();
-                File newFile = new File(getTempDirName() + File.separator + fileName);
-                new File(newFile.getParent()).mkdirs();
-
-                boolean stillInTempFolder = newFile.toPath().normalize()
-                        .startsWith(getTempDirName());
-                if (!stillInTempFolder) {
-                    throw new VeriniceArchiveNotValidException(
-                            "Path Traversal in VNA detected! Stopping import.");
-                }
-
-                FileOutputStream fos = new FileOutputStream(newFile);
-
-                int len;
-                while ((len = zis.read(buffer)) > 0) {
-                    fos.write(buffer, 0, len);
-                }
-
-                fos.close();
-
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("File unzipped: " + newFile.getAbsoluteFile());
+        try (ZipInputStream zis = new ZipInputStream(in)) {
+            // get the zipped file list entry
+            ZipEntry ze = zis.getNextEntry();
+
+            while (ze != null) {
+                if (!ze.isDirectory()) {
+                    String fileName = ze.getName();
+                    File newFile = new File(getTempDirName() + File.separator + fileName);
+                    new File(newFile.getParent()).mkdirs();
+
+                    boolean stillInTempFolder = newFile.toPath().normalize()
+                            .startsWith(getTempDirName());
+                    if (!stillInTempFolder) {
+                        throw new VeriniceArchiveNotValidException(
+                                "Path Traversal in VNA detected! Stopping import.");
+                    }
+
+                    FileOutputStream fos = new FileOutputStream(newFile);
+
+                    int len;
+                    while ((len = zis.read(buffer)) > 0) {
+                        fos.write(buffer, 0, len);
+                    }
+
+                    fos.close();
+
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("File unzipped: " + newFile.getAbsoluteFile());
+                    }
                 }
+                ze = zis.getNextEntry();
             }
-            ze = zis.getNextEntry();
+            zis.closeEntry();
         }
-        zis.closeEntry();
-        zis.close();
     }
 
     /*
@@ -204,6 +235,15 @@ public class VeriniceArchive extends PureXml implements IVeriniceArchive {
         return getFileData(VERINICE_XML);
     }
 
+    /**
+     * Returns the extracted file verinice.xml of the archive.
+     * 
+     * @return verinice.xml from the archive
+     */
+    public File getVeriniceXmlFile() {
+        return new File(getFullPath(VERINICE_XML));
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.service.linktable.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import sernet.verinice.service.linktable.RowComparator;
+
+/**
+ * Compares {@link GraphLinkedTableCreator#convertToTable(List, Map, List)}
+ * with the implementation it replaced on generated rows.
+ */
+public class GraphLinkedTableCreatorTest {
+
+    private static final Logger LOG = Logger.getLogger(GraphLinkedTableCreatorTest.class);
+
+    private static final int NUMBER_OF_ROWS = 50000;
+    private static final int NUMBER_OF_COLUMNS = 8;
+    private static final int NUMBER_OF_RUNS = 5;
+
+    @Test
+    public void testConvertToTableReturnsSameTable() {
+        Map<String, Integer> columnPath2TablePosition = createColumnPaths();
+        List<String> header = createHeader();
+        List<Map<String, String>> rows = createRows(columnPath2TablePosition, 4711);
+
+        List<List<String>> expected = convertToTableBaseline(rows, columnPath2TablePosition,
+                header);
+        List<List<String>> actual = GraphLinkedTableCreator.convertToTable(rows,
+                columnPath2TablePosition, header);
+
+        assertEquals(NUMBER_OF_ROWS + 1, actual.size());
+        assertEquals(header, actual.get(0));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testConvertToTableOfEmptyResult() {
+        Map<String, Integer> columnPath2TablePosition = createColumnPaths();
+        List<String> header = createHeader();
+        List<Map<String, String>> rows = Collections.emptyList();
+
+        assertEquals(convertToTableBaseline(rows, columnPath2TablePosition, header),
+                GraphLinkedTableCreator.convertToTable(rows, columnPath2TablePosition,
+                        header));
+    }
+
+    @Test
+    public void testConvertToTableIsNotSlower() {
+        Map<String, Integer> columnPath2TablePosition = createColumnPaths();
+        List<String> header = createHeader();
+        List<Map<String, String>> rows = createRows(columnPath2TablePosition, 42);
+
+        // warm up
+        convertToTableBaseline(rows, columnPath2TablePosition, header);
+        GraphLinkedTableCreator.convertToTable(rows, columnPath2TablePosition, header);
+
+        long baseline = Long.MAX_VALUE;
+        long current = Long.MAX_VALUE;
+        for (int i = 0; i < NUMBER_OF_RUNS; i++) {
+            long start = System.nanoTime();
+            convertToTableBaseline(rows, columnPath2TablePosition, header);
+            baseline = Math.min(baseline, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            GraphLinkedTableCreator.convertToTable(rows, columnPath2TablePosition, header);
+            current = Math.min(current, System.nanoTime() - start);
+        }
+        LOG.info("Converting " + NUMBER_OF_ROWS + " rows, previous implementation: "
+                + baseline / 1000000 + " ms, current implementation: " + current / 1000000
+                + " ms");
+
+        // lenient bound, timings of a shared build machine vary
+        assertTrue("Conversion is slower than before: " + current / 1000000 + " ms instead of "
+                + baseline / 1000000 + " ms", current <= 2 * baseline + 50000000L);
+    }
+
+    /**
+     * The implementation of convertToTable before the header was added in
+     * front and only the data rows were sorted.
+     */
+    private static List<List<String>> convertToTableBaseline(List<Map<String, String>> table,
+            Map<String, Integer> columnPath2TablePosition, List<String> header) {
+
+        List<List<String>> stringTable = new LinkedList<>();
+
+        for (Map<String, String> map : table) {
+
+            String[] row = new String[columnPath2TablePosition.size()];
+
+            for (Entry<String, Integer> pos : columnPath2TablePosition.entrySet()) {
+                row[pos.getValue()] = map.containsKey(pos.getKey()) ? map.get(pos.getKey()) : "";
+            }
+
+            stringTable.add(Arrays.asList(row));
+        }
+
+        Collections.sort(stringTable, new RowComparator());
+        stringTable.add(0, header);
+        return stringTable;
+    }
+
+    private static Map<String, Integer> createColumnPaths() {
+        Map<String, Integer> columnPath2TablePosition = new HashMap<>();
+        columnPath2TablePosition.put("asset.asset_name", 0);
+        columnPath2TablePosition.put("asset.asset_abbr", 1);
+        for (int i = 2; i < NUMBER_OF_COLUMNS; i++) {
+            columnPath2TablePosition.put("asset/control" + i + ".control_name", i);
+        }
+        return columnPath2TablePosition;
+    }
+
+    private static List<String> createHeader() {
+        List<String> header = new ArrayList<>(NUMBER_OF_COLUMNS);
+        for (int i = 0; i < NUMBER_OF_COLUMNS; i++) {
+            header.add("column " + i);
+        }
+        return header;
+    }
+
+    /**
+     * Creates rows with few distinct values, so that many rows are compared
+     * column by column, and with missing and null values.
+     */
+    private static List<Map<String, String>> createRows(
+            Map<String, Integer> columnPath2TablePosition, long seed) {
+        Random random = new Random(seed);
+        List<Map<String, String>> rows = new ArrayList<>(NUMBER_OF_ROWS);
+        for (int i = 0; i < NUMBER_OF_ROWS; i++) {
+            Map<String, String> row = new HashMap<>();
+            for (String columnPath : columnPath2TablePosition.keySet()) {
+                int value = random.nextInt(12);
+                if (value == 0) {
+                    continue;
+                } else if (value == 1) {
+                    row.put(columnPath, null);
+                } else {
+                    row.put(columnPath, "Element " + value);
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -19,10 +19,12 @@ package sernet.verinice.service.linktable.mergevql;
  *     @author Benjamin Weißenfels <bw[at]sernet[dot]de> - initial API and implementation
  ******************************************************************************/
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static sernet.verinice.service.linktable.vlt.VeriniceLinkTableIO.readLinkTableConfiguration;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.jgrapht.Graph;
@@ -74,6 +76,27 @@ public class VqlAstTest {
         }
     }
 
+    @Test
+    public void testOutgoingEdgesByTargetType() {
+        ILinkTableConfiguration conf = readLinkTableConfiguration(getFilePath(TEST_VLT_FILE));
+        VqlAst mergedVqlAst = new VqlAst(conf);
+        Graph<VqlNode, VqlEdge> vqlAst = mergedVqlAst.getVqlGraph();
+
+        for (VqlNode node : vqlAst.vertexSet()) {
+            for (VqlEdge edge : vqlAst.outgoingEdgesOf(node)) {
+                String targetTypeId = vqlAst.getEdgeTarget(edge).getTypeId();
+                List<VqlEdge> edges = mergedVqlAst.getOutgoingEdges(node, targetTypeId);
+                assertTrue(edge + " is not indexed for type " + targetTypeId,
+                        edges.contains(edge));
+                for (VqlEdge indexedEdge : edges) {
+                    assertEquals(targetTypeId, vqlAst.getEdgeTarget(indexedEdge).getTypeId());
+                }
+            }
+        }
+        assertTrue(mergedVqlAst.getOutgoingEdges(mergedVqlAst.getRoot(), "unknown-type")
+                .isEmpty());
+    }
+
     private void assertUniquePath(Set<String> pathes, VqlEdge edge) {
         assertTrue("path " + edge.getPath() + " already inserted, path must be unique",
                 pathes.add(edge.getPath()));
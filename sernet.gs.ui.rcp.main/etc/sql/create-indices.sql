@@ -5,4 +5,5 @@ CREATE INDEX parent_idx ON cnatreeelement (parent);
 CREATE INDEX typedlist_id_idx ON propertylist (typedlist_id);
 CREATE INDEX properties_id_idx ON properties (properties_id);
 CREATE INDEX cte_id_idx ON permission (cte_id);
-CREATE INDEX cnatreeelement_id_idx ON note (cnatreeelement_id);
\ No newline at end of file
+CREATE INDEX cnatreeelement_id_idx ON note (cnatreeelement_id);
+CREATE INDEX cnatreeelement_tree_path_pattern_idx ON cnatreeelement (tree_path varchar_pattern_ops);
\ No newline at end of file
@@ -322,6 +322,7 @@ public class Activator extends AbstractUIPlugin implements IMain {
                 getPreferences().getString(PreferenceConstants.DB_DIALECT));
         internalServer.configureSearch(
                 getPreferences().getBoolean(PreferenceConstants.SEARCH_DISABLE),
+                getPreferences().getBoolean(PreferenceConstants.SEARCH_EMBEDDED_LUCENE),
                 getPreferences().getBoolean(PreferenceConstants.SEARCH_INDEX_ON_STARTUP));
     }
 
@@ -647,7 +648,8 @@ public class Activator extends AbstractUIPlugin implements IMain {
         }
 
         @Override
-        public void configureSearch(boolean disable, boolean indexOnStartup) {
+        public void configureSearch(boolean disable, boolean embeddedLucene,
+                boolean indexOnStartup) {
             // Intentionally do nothing.
         }
 
@@ -435,6 +435,7 @@ public class CnAWorkspace {
 
         Activator.getDefault().getInternalServer().configureSearch(
                 prefs.getBoolean(PreferenceConstants.SEARCH_DISABLE),
+                prefs.getBoolean(PreferenceConstants.SEARCH_EMBEDDED_LUCENE),
                 prefs.getBoolean(PreferenceConstants.SEARCH_INDEX_ON_STARTUP));
 
         createGstoolImportDatabaseConfig(prefs.getString(PreferenceConstants.GS_DB_URL),
@@ -18,6 +18,7 @@
 package sernet.gs.ui.rcp.main.common.model;
 
 import java.net.MalformedURLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +35,7 @@ import sernet.gs.ui.rcp.main.service.ServiceFactory;
 import sernet.hui.common.connect.HitroUtil;
 import sernet.verinice.interfaces.CnATreeElementBuildException;
 import sernet.verinice.interfaces.CommandException;
+import sernet.verinice.interfaces.ICommand;
 import sernet.verinice.interfaces.ICommandService;
 import sernet.verinice.interfaces.IProgress;
 import sernet.verinice.model.bp.IBpElement;
@@ -977,14 +979,47 @@ public final class CnAElementFactory {
         try {
             fireClosed();
             reloadBsiModelFromDatabasePrivate();
-            reloadIsoModelFromDatabasePrivate();
-            reloadBpModelFromDatabasePrivate();
-            reloadCatalogModelFromDatabasePrivate();
+            reloadOtherModelsFromDatabasePrivate();
         } catch (Exception e) {
             logger.error(Messages.getString("CnAElementFactory.5"), e); //$NON-NLS-1$
         }
     }
 
+    /**
+     * Reloads the loaded ISO, base protection and catalog models with one
+     * request to the server.
+     */
+    private void reloadOtherModelsFromDatabasePrivate() throws CommandException {
+        List<ICommand> commands = new ArrayList<>(3);
+        if (isIsoModelLoaded()) {
+            commands.add(new LoadModel<>(ISO27KModel.class));
+        }
+        if (isBpModelLoaded()) {
+            commands.add(new LoadBpModel());
+        }
+        if (isModernizedBpCatalogLoaded()) {
+            commands.add(new LoadModel<>(CatalogModel.class));
+        }
+        if (commands.isEmpty()) {
+            return;
+        }
+        for (ICommand command : getCommandService().executeCommands(commands)) {
+            CnATreeElement model = (command instanceof LoadBpModel)
+                    ? ((LoadBpModel) command).getModel()
+                    : ((LoadModel<?>) command).getModel();
+            if (model instanceof ISO27KModel) {
+                fireLoad((ISO27KModel) model);
+                reloadIsoModel((ISO27KModel) model);
+            } else if (model instanceof BpModel) {
+                fireLoad((BpModel) model);
+                reloadBpModel((BpModel) model);
+            } else if (model instanceof CatalogModel) {
+                fireLoad((CatalogModel) model);
+                reloadCatalogModel((CatalogModel) model);
+            }
+        }
+    }
+
     public void reloadBsiModelFromDatabase() {
         fireClosed();
         try {
@@ -1015,17 +1050,20 @@ public final class CnAElementFactory {
 
     private void reloadIsoModelFromDatabasePrivate() {
         if (isIsoModelLoaded()) {
-            ISO27KModel newModel = loadIsoModel();
-            if (logger.isDebugEnabled()) {
-                logger.debug("reloadModelFromDatabase, ISO-model loaded"); //$NON-NLS-1$
-            }
-            isoModel.modelReload(newModel);
-            isoModel.moveListener(newModel);
-            isoModel = newModel;
-            fireLoad(isoModel);
+            reloadIsoModel(loadIsoModel());
         }
     }
 
+    private void reloadIsoModel(ISO27KModel newModel) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("reloadModelFromDatabase, ISO-model loaded"); //$NON-NLS-1$
+        }
+        isoModel.modelReload(newModel);
+        isoModel.moveListener(newModel);
+        isoModel = newModel;
+        fireLoad(isoModel);
+    }
+
     public void reloadBpModelFromDatabase() {
         fireClosed();
         try {
@@ -1037,18 +1075,21 @@ public final class CnAElementFactory {
 
     private void reloadBpModelFromDatabasePrivate() {
         if (isBpModelLoaded()) {
-            BpModel newModel = loadBpModel();
-            if (logger.isDebugEnabled()) {
-                logger.debug(
-                        "reloadBpModelFromDatabasePrivate, (renewed) base protection model loaded"); //$NON-NLS-1$
-            }
-            boModel.modelReload(newModel);
-            boModel.moveListener(newModel);
-            boModel = newModel;
-            fireLoad(boModel);
+            reloadBpModel(loadBpModel());
         }
     }
 
+    private void reloadBpModel(BpModel newModel) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(
+                    "reloadBpModelFromDatabasePrivate, (renewed) base protection model loaded"); //$NON-NLS-1$
+        }
+        boModel.modelReload(newModel);
+        boModel.moveListener(newModel);
+        boModel = newModel;
+        fireLoad(boModel);
+    }
+
     public void reloadCatalogModelFromDatabase() {
         fireClosed();
         try {
@@ -1060,15 +1101,18 @@ public final class CnAElementFactory {
 
     private void reloadCatalogModelFromDatabasePrivate() {
         if (isModernizedBpCatalogLoaded()) {
-            CatalogModel newModel = loadCatalogModel();
-            if (logger.isDebugEnabled()) {
-                logger.debug("reloadCatalogModelFromDatabasePrivate,catalog model loaded"); //$NON-NLS-1$
-            }
-            catalogModel.modelReload(newModel);
-            catalogModel.moveListener(newModel);
-            catalogModel = newModel;
-            fireLoad(catalogModel);
+            reloadCatalogModel(loadCatalogModel());
+        }
+    }
+
+    private void reloadCatalogModel(CatalogModel newModel) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("reloadCatalogModelFromDatabasePrivate,catalog model loaded"); //$NON-NLS-1$
         }
+        catalogModel.modelReload(newModel);
+        catalogModel.moveListener(newModel);
+        catalogModel = newModel;
+        fireLoad(catalogModel);
     }
 
     private ICommandService getCommandService() {
@@ -150,6 +150,7 @@ public class PreferenceConstants {
     public static final String SEARCH_CSV_EXPORT_SEPERATOR = "search_csv_export_seperator";
     public static final String SEARCH_INDEX_ON_STARTUP = "search_index_on_startup";
     public static final String SEARCH_DISABLE = "search_disable";
+    public static final String SEARCH_EMBEDDED_LUCENE = "search_embedded_lucene";
 
     public static final String EXPORT_RISK_ANALYSIS = "export_risk_analysis";
 
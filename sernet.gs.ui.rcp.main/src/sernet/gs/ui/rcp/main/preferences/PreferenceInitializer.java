@@ -99,6 +99,7 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
 
         store.setDefault(PreferenceConstants.SEARCH_INDEX_ON_STARTUP, true);
         store.setDefault(PreferenceConstants.SEARCH_DISABLE, false);
+        store.setDefault(PreferenceConstants.SEARCH_EMBEDDED_LUCENE, false);
         store.setDefault(PreferenceConstants.SEARCH_SORT_COLUMN_BY_SNCA,
                 PreferenceConstants.SEARCH_SORT_COLUMN_BY_SNCA);
         store.setDefault(PreferenceConstants.SEARCH_CSV_EXPORT_SEPERATOR,
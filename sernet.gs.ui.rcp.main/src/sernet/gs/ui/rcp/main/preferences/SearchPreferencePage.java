@@ -59,6 +59,7 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
     private ComboFieldEditor encodingFieldEditor;
     private BooleanFieldEditor disableField;
     private BooleanFieldEditor startField;
+    private BooleanFieldEditor luceneField;
     private Group commonSettings;
     private boolean standalone;
 
@@ -94,6 +95,11 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
             startField.setPreferenceStore(getPreferenceStore());
             startField.load();
             startField.setEnabled(disableIndexOnStartUp(), commonSettings);
+
+            luceneField = new BooleanFieldEditor(PreferenceConstants.SEARCH_EMBEDDED_LUCENE, Messages.getString("SearchPreferencePage.17"), commonSettings);
+            luceneField.setPreferenceStore(getPreferenceStore());
+            luceneField.load();
+            luceneField.setEnabled(disableIndexOnStartUp(), commonSettings);
         }
 
         Group sortingComposite = new Group(top, SWT.FILL | SWT.BORDER);
@@ -156,6 +162,8 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
         if (standalone) {
             startField.loadDefault();
             startField.setEnabled(true, commonSettings);
+            luceneField.loadDefault();
+            luceneField.setEnabled(true, commonSettings);
             disableField.loadDefault();
         }
         
@@ -171,6 +179,7 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
         
         if (standalone) {
             startField.store();
+            luceneField.store();
             disableField.store();
         }
         
@@ -178,8 +187,9 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
     }
 
     /**
-     * Sets the {@link SearchPreferencePage#startField} to false, if the
-     * disableField is set to true.
+     * Disables the {@link SearchPreferencePage#startField} and the
+     * {@link SearchPreferencePage#luceneField}, if the disableField is set to
+     * true.
      *
      * @author Benjamin Weißenfels <bw[at]sernet[dot]de>
      */
@@ -200,8 +210,10 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
         public void propertyChange(org.eclipse.jface.util.PropertyChangeEvent arg0) {
             if (disableField.getBooleanValue() == false) {
                 startField.setEnabled(true, commonSettings);
+                luceneField.setEnabled(true, commonSettings);
             } else {
                 startField.setEnabled(false, commonSettings);
+                luceneField.setEnabled(false, commonSettings);
             }
         }
     }
@@ -74,8 +74,9 @@ public class ExportLinkTableHandler extends RightsEnabledHandler {
         super(false);
         this.fromEditor = fromEditor;
         this.veriniceLinkTable = veriniceLinkTable;
-        this.linkTableService = new LinkTableService();
-        linkedTableCreator = new GraphLinkedTableCreator();
+        int numberOfThreads = GraphLinkedTableCreator.getConfiguredNumberOfThreads();
+        this.linkTableService = new LinkTableService(numberOfThreads);
+        linkedTableCreator = new GraphLinkedTableCreator(numberOfThreads);
         this.linkTableService.setLinkTableCreator(linkedTableCreator);
         this.csvExportHandler.setCharset(VeriniceCharset.CHARSET_WINDOWS_1250);
     }
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.springclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sernet.verinice.interfaces.CommandException;
+import sernet.verinice.interfaces.GenericCommand;
+import sernet.verinice.interfaces.IBaseDao;
+import sernet.verinice.interfaces.ICachedCommand;
+import sernet.verinice.interfaces.ICommand;
+import sernet.verinice.interfaces.ICommandService;
+import sernet.verinice.service.sync.VnaSchemaVersion;
+
+/**
+ * Tests that {@link CommandCacheClient} answers cachable commands from the
+ * cache during a report run and sends only the remaining commands to the
+ * server.
+ */
+public class CommandCacheClientTest {
+
+    private CountingCommandService commandService;
+
+    private CommandCacheClient client;
+
+    @Before
+    public void setUp() {
+        commandService = new CountingCommandService();
+        client = new CommandCacheClient();
+        client.setCommandService(commandService);
+    }
+
+    @Test
+    public void testExecuteCommandsOutsideOfReportRun() throws CommandException {
+        List<ICommand> commands = Arrays.<ICommand> asList(new CachedTestCommand("a"),
+                new TestCommand("b"));
+        List<ICommand> executedCommands = client.executeCommands(commands);
+        assertEquals(commands, executedCommands);
+
+        client.executeCommands(Arrays.<ICommand> asList(new CachedTestCommand("a")));
+        assertEquals(Arrays.asList(2, 1), commandService.batchSizes);
+    }
+
+    @Test
+    public void testExecuteCommandsSendsOnlyUncachedCommands() throws CommandException {
+        client.startReportRun(this);
+        try {
+            client.executeCommands(Arrays.<ICommand> asList(new CachedTestCommand("a"),
+                    new CachedTestCommand("b"), new TestCommand("c")));
+            assertEquals(Arrays.asList(3), commandService.batchSizes);
+
+            List<ICommand> commands = Arrays.<ICommand> asList(new CachedTestCommand("b"),
+                    new TestCommand("c"), new CachedTestCommand("d"),
+                    new CachedTestCommand("a"));
+            List<ICommand> executedCommands = client.executeCommands(commands);
+
+            assertEquals(Arrays.asList(3, 2), commandService.batchSizes);
+            assertEquals(commands.size(), executedCommands.size());
+            for (int i = 0; i < commands.size(); i++) {
+                TestCommand command = (TestCommand) executedCommands.get(i);
+                assertSame(commands.get(i), command);
+                assertEquals("result-" + command.getId(), command.getResult());
+            }
+            assertEquals(0, ((TestCommand) executedCommands.get(0)).getExecutions());
+            assertEquals(1, ((TestCommand) executedCommands.get(1)).getExecutions());
+            assertEquals(1, ((TestCommand) executedCommands.get(2)).getExecutions());
+            assertEquals(0, ((TestCommand) executedCommands.get(3)).getExecutions());
+
+            // all commands cached, no request
+            client.executeCommands(Arrays.<ICommand> asList(new CachedTestCommand("d")));
+            assertEquals(Arrays.asList(3, 2), commandService.batchSizes);
+            assertEquals(0, commandService.singleRequests);
+        } finally {
+            client.endReportRun(this);
+        }
+    }
+
+    @Test
+    public void testResultsAreDiscardedAtEndOfReportRun() throws CommandException {
+        client.startReportRun(this);
+        client.executeCommands(Arrays.<ICommand> asList(new CachedTestCommand("a")));
+        client.endReportRun(this);
+
+        client.startReportRun(this);
+        try {
+            CachedTestCommand command = client.executeCommand(new CachedTestCommand("a"));
+            assertEquals(1, command.getExecutions());
+            assertEquals(1, commandService.singleRequests);
+        } finally {
+            client.endReportRun(this);
+        }
+    }
+
+    @Test
+    public void testNestedRunsShareResults() throws CommandException {
+        Object outerOwner = new Object();
+        Object innerOwner = new Object();
+        client.startReportRun(outerOwner);
+        client.executeCommand(new CachedTestCommand("a"));
+
+        client.startReportRun(innerOwner);
+        assertEquals(0, client.executeCommand(new CachedTestCommand("a")).getExecutions());
+        client.executeCommand(new CachedTestCommand("b"));
+
+        // the run ends with its last owner, ending an owner twice has no effect
+        client.endReportRun(outerOwner);
+        client.endReportRun(outerOwner);
+        assertEquals(0, client.executeCommand(new CachedTestCommand("a")).getExecutions());
+        assertEquals(0, client.executeCommand(new CachedTestCommand("b")).getExecutions());
+        assertEquals(2, commandService.singleRequests);
+
+        client.endReportRun(innerOwner);
+        assertEquals(1, client.executeCommand(new CachedTestCommand("a")).getExecutions());
+        assertEquals(1, client.executeCommand(new CachedTestCommand("a")).getExecutions());
+        assertEquals(4, commandService.singleRequests);
+    }
+
+    @Test
+    public void testRunEndedInAnotherThread() throws Exception {
+        final Object owner = new Object();
+        client.startReportRun(owner);
+        client.executeCommand(new CachedTestCommand("a"));
+        assertEquals(0, client.executeCommand(new CachedTestCommand("a")).getExecutions());
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                client.endReportRun(owner);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        // the thread is no longer in a report run
+        assertEquals(1, client.executeCommand(new CachedTestCommand("a")).getExecutions());
+        assertEquals(1, client.executeCommand(new CachedTestCommand("a")).getExecutions());
+        assertEquals(3, commandService.singleRequests);
+
+        // a new run does not find the results of the ended run
+        client.startReportRun(owner);
+        try {
+            assertEquals(1, client.executeCommand(new CachedTestCommand("a")).getExecutions());
+            assertEquals(0, client.executeCommand(new CachedTestCommand("a")).getExecutions());
+        } finally {
+            client.endReportRun(owner);
+        }
+    }
+
+    /**
+     * Executes the commands locally and counts the requests.
+     */
+    static final class CountingCommandService implements ICommandService {
+
+        int singleRequests = 0;
+
+        final List<Integer> batchSizes = new ArrayList<>();
+
+        @Override
+        public <T extends ICommand> T executeCommand(T command) throws CommandException {
+            singleRequests++;
+            command.execute();
+            return command;
+        }
+
+        @Override
+        public <T extends ICommand> List<T> executeCommands(List<T> commands)
+                throws CommandException {
+            batchSizes.add(commands.size());
+            for (T command : commands) {
+                command.execute();
+            }
+            return new ArrayList<>(commands);
+        }
+
+        @Override
+        public void configureFilter(IBaseDao dao) {
+        }
+
+        @Override
+        public void disableFilter(IBaseDao dao) {
+        }
+
+        @Override
+        public void discardUserData() {
+        }
+
+        @Override
+        public Properties getProperties() {
+            return new Properties();
+        }
+
+        @Override
+        public VnaSchemaVersion getVnaSchemaVersion() {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static class TestCommand extends GenericCommand {
+
+        private final String id;
+
+        private String result;
+
+        private int executions = 0;
+
+        TestCommand(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void execute() {
+            executions++;
+            result = "result-" + id;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        int getExecutions() {
+            return executions;
+        }
+
+        String getResult() {
+            return result;
+        }
+
+        void setResult(String result) {
+            this.result = result;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class CachedTestCommand extends TestCommand implements ICachedCommand {
+
+        CachedTestCommand(String id) {
+            super(id);
+        }
+
+        @Override
+        public String getCacheID() {
+            return getId();
+        }
+
+        @Override
+        public void injectCacheResult(Object result) {
+            setResult((String) result);
+        }
+
+        @Override
+        public Object getCacheableResult() {
+            return getResult();
+        }
+    }
+}
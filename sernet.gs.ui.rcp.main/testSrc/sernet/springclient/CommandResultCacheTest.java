@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.springclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link CommandResultCache} is bounded by the estimated size of
+ * the results and removes the entries of scopes.
+ */
+public class CommandResultCacheTest {
+
+    private static final String SCOPE = "scope";
+
+    @Test
+    public void testCacheIsBoundedBySize() {
+        long size = estimateSize("value-a");
+        CommandResultCache cache = new CommandResultCache(3 * size);
+        cache.put(SCOPE, "a", "value-a");
+        cache.put(SCOPE, "b", "value-b");
+        cache.put(SCOPE, "c", "value-c");
+        assertEquals(3, cache.size());
+        assertEquals(3 * size, cache.getUsedBytes());
+
+        // "a" is used recently, "b" is the least recently used entry
+        assertEquals("value-a", cache.get(SCOPE, "a"));
+        cache.put(SCOPE, "d", "value-d");
+        assertEquals(3, cache.size());
+        assertEquals(3 * size, cache.getUsedBytes());
+        assertNull(cache.get(SCOPE, "b"));
+        assertEquals("value-a", cache.get(SCOPE, "a"));
+        assertEquals("value-c", cache.get(SCOPE, "c"));
+        assertEquals("value-d", cache.get(SCOPE, "d"));
+
+        // replacing an entry does not count its size twice
+        cache.put(SCOPE, "d", "value-e");
+        assertEquals(3 * size, cache.getUsedBytes());
+        assertEquals("value-e", cache.get(SCOPE, "d"));
+    }
+
+    @Test
+    public void testLargeAndNotSerializableResultsAreNotCached() {
+        long size = estimateSize("value-a");
+        CommandResultCache cache = new CommandResultCache(size);
+        cache.put(SCOPE, "a", "value-a-is-too-large");
+        cache.put(SCOPE, "b", new Object());
+        cache.put(SCOPE, "c", null);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedBytes());
+
+        cache.put(SCOPE, "a", "value-a");
+        assertEquals("value-a", cache.get(SCOPE, "a"));
+    }
+
+    @Test
+    public void testRemoveScope() {
+        CommandResultCache cache = new CommandResultCache(1024 * 1024);
+        cache.put("run-1", "a", "value-1");
+        cache.put("run-2", "a", "value-2");
+        cache.put("run-2", "b", "value-3");
+        assertNull(cache.get("run-3", "a"));
+
+        cache.removeScope("run-2");
+        assertEquals(1, cache.size());
+        assertEquals(estimateSize("value-1"), cache.getUsedBytes());
+        assertEquals("value-1", cache.get("run-1", "a"));
+        assertNull(cache.get("run-2", "a"));
+        assertNull(cache.get("run-2", "b"));
+    }
+
+    @Test
+    public void testRetainWatermarkScope() {
+        CommandResultCache cache = new CommandResultCache(1024 * 1024);
+        cache.put("watermark-1", "a", "value-1");
+        cache.put("watermark-1", "b", "value-2");
+        cache.put("watermark-2", "a", "value-3");
+
+        cache.retainScope("watermark-2");
+        assertEquals(1, cache.size());
+        assertEquals(estimateSize("value-3"), cache.getUsedBytes());
+        assertEquals("value-3", cache.get("watermark-2", "a"));
+        assertNull(cache.get("watermark-1", "a"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    private static long estimateSize(String value) {
+        CommandResultCache cache = new CommandResultCache(Long.MAX_VALUE);
+        cache.put(SCOPE, "key", value);
+        return cache.getUsedBytes();
+    }
+}
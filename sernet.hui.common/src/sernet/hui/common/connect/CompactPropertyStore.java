@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.hui.common.connect;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, read-only representation of the properties of an {@link Entity}.
+ *
+ * Property type ids are interned and sorted, the values of all properties are
+ * kept in flat arrays. Values which are integers are kept as primitive ints,
+ * short values like option ids are interned. Use {@link Entity#compact()} to
+ * replace the property lists of a detached entity with a store.
+ * 
+ * The database ids and uuids of the property lists and properties are kept,
+ * so that property lists which are created from a store update the existing
+ * rows when the entity is saved.
+ */
+final class CompactPropertyStore implements Serializable {
+
+    private static final long serialVersionUID = 6414906823212286470L;
+
+    /**
+     * Values up to this length are interned, they are repeated in many
+     * entities
+     */
+    private static final int MAX_LENGTH_INTERNED = 64;
+
+    private final String[] propertyTypeIds;
+
+    /**
+     * The values of property type i are stored from index offsets[i] to
+     * offsets[i+1]-1 in numbers or strings
+     */
+    private final int[] offsets;
+
+    private final boolean[] numeric;
+
+    private final int[] numbers;
+
+    private final String[] strings;
+
+    private final Integer[] listDbIds;
+
+    private final String[] listUuids;
+
+    private final Integer[] listEntityIds;
+
+    private final Integer[] propertyDbIds;
+
+    private CompactPropertyStore(String[] propertyTypeIds, int[] offsets, boolean[] numeric,
+            int[] numbers, String[] strings, PropertyList[] propertyLists) {
+        this.propertyTypeIds = propertyTypeIds;
+        this.offsets = offsets;
+        this.numeric = numeric;
+        this.numbers = numbers;
+        this.strings = strings;
+        this.listDbIds = new Integer[propertyLists.length];
+        this.listUuids = new String[propertyLists.length];
+        this.listEntityIds = new Integer[propertyLists.length];
+        this.propertyDbIds = new Integer[strings.length];
+        for (int i = 0; i < propertyLists.length; i++) {
+            if (propertyLists[i] == null) {
+                continue;
+            }
+            listDbIds[i] = propertyLists[i].getDbId();
+            listUuids[i] = propertyLists[i].getUuid();
+            listEntityIds[i] = propertyLists[i].getEntityId();
+            int index = offsets[i];
+            for (Property property : getProperties(propertyLists[i])) {
+                propertyDbIds[index++] = property.getDbId();
+            }
+        }
+    }
+
+    /**
+     * Creates a store with the values of the given property lists. Returns
+     * null if a property can not be represented in a store, e.g. a property
+     * with a limited license.
+     */
+    static CompactPropertyStore create(Map<String, PropertyList> propertyLists) {
+        String[] typeIds = propertyLists.keySet().toArray(new String[propertyLists.size()]);
+        Arrays.sort(typeIds);
+        int[] offsets = new int[typeIds.length + 1];
+        for (int i = 0; i < typeIds.length; i++) {
+            List<Property> properties = getProperties(propertyLists.get(typeIds[i]));
+            for (Property property : properties) {
+                if (isLicenseRestricted(property)) {
+                    return null;
+                }
+            }
+            offsets[i + 1] = offsets[i] + properties.size();
+        }
+        boolean[] numeric = new boolean[typeIds.length];
+        int[] numbers = new int[offsets[typeIds.length]];
+        String[] strings = new String[offsets[typeIds.length]];
+        PropertyList[] lists = new PropertyList[typeIds.length];
+        for (int i = 0; i < typeIds.length; i++) {
+            lists[i] = propertyLists.get(typeIds[i]);
+            List<Property> properties = getProperties(lists[i]);
+            numeric[i] = !properties.isEmpty();
+            for (Property property : properties) {
+                numeric[i] = numeric[i] && isInteger(property.getPropertyValue());
+            }
+            int index = offsets[i];
+            for (Property property : properties) {
+                if (numeric[i]) {
+                    numbers[index] = Integer.parseInt(property.getPropertyValue());
+                } else {
+                    strings[index] = intern(property.getPropertyValue());
+                }
+                index++;
+            }
+            typeIds[i] = typeIds[i].intern();
+        }
+        return new CompactPropertyStore(typeIds, offsets, numeric, numbers, strings, lists);
+    }
+
+    private static List<Property> getProperties(PropertyList propertyList) {
+        if (propertyList == null || propertyList.getProperties() == null) {
+            return Collections.emptyList();
+        }
+        return propertyList.getProperties();
+    }
+
+    private static boolean isLicenseRestricted(Property property) {
+        return property.getLicenseContentId() != null
+                || Boolean.TRUE.equals(property.isLimitedLicense());
+    }
+
+    /**
+     * Returns true if the value is the canonical string of an int, only these
+     * values can be restored unchanged from a primitive int.
+     */
+    private static boolean isInteger(String value) {
+        if (value == null || value.isEmpty() || value.length() > 11) {
+            return false;
+        }
+        try {
+            return Integer.toString(Integer.parseInt(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String intern(String value) {
+        if (value != null && value.length() <= MAX_LENGTH_INTERNED) {
+            return value.intern();
+        }
+        return value;
+    }
+
+    /**
+     * @return The index of the property type or a negative number if there
+     *         are no properties of this type
+     */
+    int indexOf(String propertyTypeId) {
+        return Arrays.binarySearch(propertyTypeIds, propertyTypeId);
+    }
+
+    /**
+     * @return The number of values of the property type with the given index
+     */
+    int size(int index) {
+        return (index < 0) ? 0 : offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * @return The value i of the property type with the given index
+     */
+    String getValue(int index, int i) {
+        int position = offsets[index] + i;
+        return numeric[index] ? Integer.toString(numbers[position]) : strings[position];
+    }
+
+    /**
+     * Returns the first value of the property type with the given index as an
+     * int or {@link Property#UNDEF} if it is not a number.
+     */
+    int getInt(int index) {
+        if (size(index) == 0) {
+            return Property.UNDEF;
+        }
+        if (numeric[index]) {
+            return numbers[offsets[index]];
+        }
+        try {
+            return Integer.parseInt(strings[offsets[index]]);
+        } catch (NumberFormatException e) {
+            return Property.UNDEF;
+        }
+    }
+
+    /**
+     * Returns the single value of the property type with the given index as
+     * an Integer or null if there is not exactly one value which is a number.
+     */
+    Integer getInteger(int index) {
+        if (size(index) != 1) {
+            return null;
+        }
+        if (numeric[index]) {
+            return numbers[offsets[index]];
+        }
+        try {
+            return Integer.valueOf(strings[offsets[index]]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if one of the values of the property type with the given
+     * index equals the given value.
+     */
+    boolean contains(int index, String value) {
+        for (int i = 0; i < size(index); i++) {
+            if (value != null && value.equals(getValue(index, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if one of the values of any property type equals the given
+     * value.
+     */
+    boolean containsValue(String value) {
+        for (int index = 0; index < propertyTypeIds.length; index++) {
+            if (contains(index, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates new property lists with the values and the ids of this store.
+     */
+    Map<String, PropertyList> toPropertyLists(Entity entity) {
+        Map<String, PropertyList> propertyLists = new HashMap<>();
+        for (int index = 0; index < propertyTypeIds.length; index++) {
+            propertyLists.put(propertyTypeIds[index], toPropertyList(entity, index));
+        }
+        return propertyLists;
+    }
+
+    /**
+     * Creates a new property list with the values and the ids of the property
+     * type with the given index. Returns null if the index is negative.
+     */
+    PropertyList toPropertyList(Entity entity, int index) {
+        if (index < 0) {
+            return null;
+        }
+        PropertyList propertyList = new PropertyList(size(index));
+        propertyList.setDbId(listDbIds[index]);
+        if (listUuids[index] != null) {
+            propertyList.setUuid(listUuids[index]);
+        }
+        propertyList.setEntityId(listEntityIds[index]);
+        for (int i = 0; i < size(index); i++) {
+            Property property = new Property(entity);
+            property.setDbId(propertyDbIds[offsets[index] + i]);
+            property.setPropertyType(propertyTypeIds[index]);
+            property.setPropertyValue(getValue(index, i), false);
+            propertyList.add(property);
+        }
+        return propertyList;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (int i = 0; i < propertyTypeIds.length; i++) {
+            propertyTypeIds[i] = propertyTypeIds[i].intern();
+        }
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = intern(strings[i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CompactPropertyStore [");
+        for (int index = 0; index < propertyTypeIds.length; index++) {
+            if (index > 0) {
+                sb.append(", ");
+            }
+            sb.append(propertyTypeIds[index]).append("=[");
+            for (int i = 0; i < size(index); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(getValue(index, i));
+            }
+            sb.append("]");
+        }
+        return sb.append("]").toString();
+    }
+}
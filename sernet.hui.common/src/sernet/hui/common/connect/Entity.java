@@ -17,6 +17,9 @@
  ******************************************************************************/
 package sernet.hui.common.connect;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -32,12 +35,15 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
+import sernet.hui.common.io.CompactObjectInputStream;
+import sernet.hui.common.io.CompactObjectOutputStream;
 import sernet.hui.common.multiselectionlist.IMLPropertyOption;
 import sernet.hui.common.multiselectionlist.IMLPropertyType;
 import sernet.hui.common.multiselectionlist.ISelectOptionHandler;
@@ -79,13 +85,27 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
     // key: propertyTypeId, value: PropertyList with propertyTypeId
     private Map<String, PropertyList> typedPropertyLists = new HashMap<>();
 
+    /**
+     * A compact, read-only copy of the properties which replaces
+     * typedPropertyLists after {@link #compact()} was called. The default
+     * serialized form contains the property lists instead, see
+     * {@link #writeObject(ObjectOutputStream)}.
+     *
+     * Compacted entities are shared by several threads, e.g. in a graph
+     * snapshot. Read the field once into a local variable, it is set to null
+     * by another thread if the entity is decompacted.
+     */
+    private transient volatile CompactPropertyStore compactProperties;
+
     private transient List<IEntityChangedListener> changeListeners;
 
     /**
      * This map caches the values of properties which are defined with input
      * type "reference" in SNCA.xml. The map is used in method
      * {@link #getValue(String)} and
-     * {@link #getValueOfReferenceProperty(PropertyType)}
+     * {@link #getValueOfReferenceProperty(PropertyType)}. It is a
+     * ConcurrentHashMap since reference values of compacted entities are
+     * cached while the entity is read by several threads.
      */
     private Map<String, String> referenceValueCache;
 
@@ -175,32 +195,45 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
             return getValueOfReferenceProperty(propertyType);
         }
 
-        PropertyList propertyList = typedPropertyLists.get(propertyTypeId);
         StringBuilder sb = new StringBuilder();
+        CompactPropertyStore compact = compactProperties;
+        if (compact != null) {
+            int index = compact.indexOf(propertyTypeId);
+            for (int i = 0; i < compact.size(index); i++) {
+                appendPropertyValue(sb, propertyType, compact.getValue(index, i), i == 0);
+            }
+            return sb.toString();
+        }
+        PropertyList propertyList = getTypedPropertyLists().get(propertyTypeId);
         if (propertyList != null) {
             boolean firstProperty = true;
             for (Property property : propertyList.getProperties()) {
-                if (!firstProperty) {
-                    sb.append(", ");
-                }
-                String value;
-                if (propertyType.isSingleSelect() || propertyType.isMultiselect()) {
-                    value = getValueOfOptionProperty(propertyType, property);
-                } else if (propertyType.isDate()) {
-                    value = getValueOfDateProperty(property);
-                } else {
-                    value = property.getPropertyValue();
-                }
-
-                if (value != null) {
-                    sb.append(value);
-                }
+                appendPropertyValue(sb, propertyType, property.getPropertyValue(), firstProperty);
                 firstProperty = false;
             }
         }
         return sb.toString();
     }
 
+    private void appendPropertyValue(StringBuilder sb, PropertyType propertyType,
+            String propertyValue, boolean firstProperty) {
+        if (!firstProperty) {
+            sb.append(", ");
+        }
+        String value;
+        if (propertyType.isSingleSelect() || propertyType.isMultiselect()) {
+            value = getValueOfOptionProperty(propertyType, propertyValue);
+        } else if (propertyType.isDate()) {
+            value = getValueOfDateProperty(propertyValue);
+        } else {
+            value = propertyValue;
+        }
+
+        if (value != null) {
+            sb.append(value);
+        }
+    }
+
     /**
      * Convenience method to set a String representation of the given
      * propertyTypeId.
@@ -215,9 +248,9 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
     public void setPropertyValue(String propertyTypeId, String value) {
         PropertyType propertyType = HUITypeFactory.getInstance().getPropertyType(this.entityType,
                 propertyTypeId);
-        PropertyList propertyList = typedPropertyLists.get(propertyTypeId);
+        PropertyList propertyList = getTypedPropertyLists().get(propertyTypeId);
         if (propertyType.isReference() || propertyType.isMultiselect()) {
-            typedPropertyLists.put(propertyTypeId, null);
+            getTypedPropertyLists().put(propertyTypeId, null);
             setMultiselectProperty(propertyTypeId, value);
         } else {
             if (propertyList != null) {
@@ -252,7 +285,7 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
     private String loadValueOfReferenceProperty(PropertyType type) {
         String propertyTypeId = type.getId();
         StringBuilder sb = new StringBuilder();
-        PropertyList propertyList = typedPropertyLists.get(propertyTypeId);
+        PropertyList propertyList = getPropertyListForReading(propertyTypeId);
         if (propertyList != null) {
             try {
                 List<IMLPropertyOption> referencedEntities = type
@@ -283,8 +316,8 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
         return sb.toString();
     }
 
-    private String getValueOfOptionProperty(PropertyType type, Property property) {
-        PropertyOption option = type.getOption(property.getPropertyValue());
+    private String getValueOfOptionProperty(PropertyType type, String propertyValue) {
+        PropertyOption option = type.getOption(propertyValue);
         return (option != null) ? option.getName() : "";
     }
 
@@ -311,9 +344,9 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
         }
     }
 
-    private String getValueOfDateProperty(Property property) {
+    private String getValueOfDateProperty(String value) {
         String date = null;
-        String propertyValue = property.getPropertyValue();
+        String propertyValue = value;
         if (propertyValue == null) {
             return date;
         }
@@ -405,8 +438,12 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
      * @return The raw value of property
      */
     public String getRawPropertyValue(String propertyTypeId) {
+        CompactPropertyStore compact = compactProperties;
+        if (compact != null) {
+            return getRawPropertyValueFromCompactProperties(compact, propertyTypeId);
+        }
         String result = null;
-        PropertyList propertyList = typedPropertyLists.get(propertyTypeId);
+        PropertyList propertyList = getTypedPropertyLists().get(propertyTypeId);
         if (propertyList != null && !propertyList.getProperties().isEmpty()) {
             result = joinPropertyValues(propertyList);
         }
@@ -427,8 +464,27 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
         return sb.toString();
     }
 
+    private static String getRawPropertyValueFromCompactProperties(CompactPropertyStore compact,
+            String propertyTypeId) {
+        int index = compact.indexOf(propertyTypeId);
+        if (compact.size(index) == 0) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < compact.size(index); i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            String propertyValue = compact.getValue(index, i);
+            if (propertyValue != null) {
+                sb.append(propertyValue);
+            }
+        }
+        return sb.toString();
+    }
+
     public void setSimpleValue(PropertyType type, String value) {
-        PropertyList list = typedPropertyLists.get(type.getId());
+        PropertyList list = getTypedPropertyLists().get(type.getId());
         if (list == null || list.getProperties().isEmpty()) {
             createNewProperty(type, value);
         } else {
@@ -437,6 +493,14 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
     }
 
     public Integer getNumericValue(String propertyType) {
+        CompactPropertyStore compact = compactProperties;
+        if (compact != null) {
+            PropertyType type = HUITypeFactory.getInstance().getPropertyType(this.entityType,
+                    propertyType);
+            if (type != null && !type.isReference() && !type.isEnum() && !type.isDate()) {
+                return compact.getInteger(compact.indexOf(propertyType));
+            }
+        }
         try {
             return Integer.valueOf(getPropertyValue(propertyType));
         } catch (NumberFormatException ex) {
@@ -482,10 +546,10 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
             List<String> foreignProperties, List<Boolean> foreignLimitedLicense,
             List<String> foreignContentId, boolean licenseManagement) {
         boolean propertyValueChanged = false;
-        PropertyList pl = typedPropertyLists.get(propertyTypeId);
+        PropertyList pl = getTypedPropertyLists().get(propertyTypeId);
         if (pl == null) {
             pl = new PropertyList();
-            typedPropertyLists.put(propertyTypeId, pl);
+            getTypedPropertyLists().put(propertyTypeId, pl);
             propertyValueChanged = true;
         }
 
@@ -616,7 +680,7 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
             }
         }
         if (!newPropertyList.getProperties().isEmpty()) {
-            typedPropertyLists.put(propertyListMapEntry.getKey(), newPropertyList);
+            getTypedPropertyLists().put(propertyListMapEntry.getKey(), newPropertyList);
         }
     }
 
@@ -631,7 +695,11 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
      * @return
      */
     public boolean isSelected(String optionId) {
-        for (String propertyTypeId : typedPropertyLists.keySet()) {
+        CompactPropertyStore compact = compactProperties;
+        if (compact != null) {
+            return compact.containsValue(optionId);
+        }
+        for (String propertyTypeId : getTypedPropertyLists().keySet()) {
             if (isSelected(propertyTypeId, optionId)) {
                 return true;
             }
@@ -648,10 +716,14 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
     }
 
     public boolean isSelected(String propertyTypeId, String optionId) {
+        CompactPropertyStore compact = compactProperties;
+        if (compact != null) {
+            return compact.contains(compact.indexOf(propertyTypeId), optionId);
+        }
         boolean result = false;
-        PropertyList propertyList = typedPropertyLists.get(propertyTypeId);
+        PropertyList propertyList = getTypedPropertyLists().get(propertyTypeId);
         if (propertyList != null) {
-            List<Property> entries = typedPropertyLists.get(propertyTypeId).getProperties();
+            List<Property> entries = getTypedPropertyLists().get(propertyTypeId).getProperties();
             if (entries != null) {
                 for (Property prop : entries) {
                     if (prop.getPropertyValue() != null
@@ -694,13 +766,13 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
         try {
             Tester.assertTrue("Eigenschaft nicht mehr definiert für Wert: '"
                     + property.getPropertyValue() + "'.", property.getPropertyTypeID() != null);
-            PropertyList typeList = this.typedPropertyLists.get(property.getPropertyTypeID());
+            PropertyList typeList = getTypedPropertyLists().get(property.getPropertyTypeID());
             if (typeList != null) {
                 typeList.add(property);
             } else {
                 typeList = new PropertyList(1);
                 typeList.add(property);
-                typedPropertyLists.put(property.getPropertyTypeID(), typeList);
+                getTypedPropertyLists().put(property.getPropertyTypeID(), typeList);
             }
         } catch (AssertException e) {
             logger.error(e);
@@ -717,7 +789,7 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
      *            The values of the property
      */
     public void remove(PropertyType propertyType, String propertyValue) {
-        PropertyList list = typedPropertyLists.get(propertyType.getId());
+        PropertyList list = getTypedPropertyLists().get(propertyType.getId());
         if (list == null) {
             return;
         }
@@ -744,7 +816,17 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
      * @return Int value of a property
      */
     public int getInt(String propertyTypeId) {
-        PropertyList propertyList = typedPropertyLists.get(propertyTypeId);
+        CompactPropertyStore compact = compactProperties;
+        if (compact != null) {
+            int index = compact.indexOf(propertyTypeId);
+            if (compact.size(index) == 0) {
+                return Property.UNDEF;
+            }
+            PropertyType type = HUITypeFactory.getInstance().getPropertyType(this.entityType,
+                    propertyTypeId);
+            return type.isNumericSelect() ? compact.getInt(index) : Property.UNDEF;
+        }
+        PropertyList propertyList = getTypedPropertyLists().get(propertyTypeId);
         if (propertyList == null || propertyList.getProperties().isEmpty()) {
             return Property.UNDEF;
         }
@@ -757,6 +839,27 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
 
     }
 
+    /**
+     * Returns the first value of a property as an int regardless of its input
+     * type. If there is no property with the given type id or the value is
+     * not a number {@link Property}.UNDEF is returned.
+     *
+     * @param propertyTypeId
+     *            The type id of a property
+     * @return Int value of the first property
+     */
+    public int getFirstIntValue(String propertyTypeId) {
+        CompactPropertyStore compact = compactProperties;
+        if (compact != null) {
+            return compact.getInt(compact.indexOf(propertyTypeId));
+        }
+        PropertyList propertyList = getTypedPropertyLists().get(propertyTypeId);
+        if (propertyList == null || propertyList.getProperties().isEmpty()) {
+            return Property.UNDEF;
+        }
+        return propertyList.getProperties().get(0).getNumericPropertyValue();
+    }
+
     /**
      * Returns the value (not the translated title) of an single select option
      * property.
@@ -771,19 +874,30 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
      */
     public String getOptionValue(String propertyTypeId) {
         String value = null;
-        PropertyList propertyList = typedPropertyLists.get(propertyTypeId);
-        if (propertyList != null && propertyList.getProperties().size() == 1) {
+        int size;
+        String firstValue;
+        CompactPropertyStore compact = compactProperties;
+        if (compact != null) {
+            int index = compact.indexOf(propertyTypeId);
+            size = compact.size(index);
+            firstValue = (size > 0) ? compact.getValue(index, 0) : null;
+        } else {
+            PropertyList propertyList = getTypedPropertyLists().get(propertyTypeId);
+            size = (propertyList != null) ? propertyList.getProperties().size() : 0;
+            firstValue = (size > 0) ? propertyList.getProperties().get(0).getPropertyValue()
+                    : null;
+        }
+        if (size == 1) {
             PropertyType type = HUITypeFactory.getInstance().getPropertyType(this.entityType,
                     propertyTypeId);
             if (type.isSingleSelect()) {
-                Property prop = propertyList.getProperties().get(0);
-                value = prop.getPropertyValue();
+                value = firstValue;
             } else {
                 logger.warn("Property " + propertyTypeId + " is not of type "
                         + PropertyType.INPUT_SINGLEOPTION
                         + ". Can not determine option value. Entity id is: " + this.getDbId());
             }
-        } else if (propertyList != null && propertyList.getProperties().size() > 1) {
+        } else if (size > 1) {
             logger.warn("Property list " + propertyTypeId
                     + " contains more than entry. Can not determine option value. Entity id is: "
                     + this.getDbId());
@@ -853,10 +967,10 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
     }
 
     protected List<Property> initializePropertyListForImport(String propertyTypeId) {
-        PropertyList propertyList = typedPropertyLists.get(propertyTypeId);
+        PropertyList propertyList = getTypedPropertyLists().get(propertyTypeId);
         if (propertyList == null) {
             propertyList = new PropertyList();
-            typedPropertyLists.put(propertyTypeId, propertyList);
+            getTypedPropertyLists().put(propertyTypeId, propertyList);
         }
 
         // It would be possible to create a new list and make the PropertyList
@@ -990,11 +1104,73 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
     }
 
     public Map<String, PropertyList> getTypedPropertyLists() {
+        if (compactProperties != null) {
+            decompact();
+        }
         return typedPropertyLists;
     }
 
+    /**
+     * Replaces the compact properties by new property lists. The lists are
+     * set before the compact properties are reset, a thread which finds no
+     * compact properties always sees the lists.
+     */
+    private synchronized void decompact() {
+        CompactPropertyStore compact = compactProperties;
+        if (compact != null) {
+            typedPropertyLists = compact.toPropertyLists(this);
+            compactProperties = null;
+        }
+    }
+
+    /**
+     * Returns the property list with the given type id without decompacting
+     * the entity. The list of a compacted entity is a new copy, changes are
+     * not applied to the entity.
+     */
+    private PropertyList getPropertyListForReading(String propertyTypeId) {
+        CompactPropertyStore compact = compactProperties;
+        if (compact != null) {
+            return compact.toPropertyList(this, compact.indexOf(propertyTypeId));
+        }
+        return getTypedPropertyLists().get(propertyTypeId);
+    }
+
     public void setTypedPropertyLists(Map<String, PropertyList> typedPropertyLists) {
         this.typedPropertyLists = typedPropertyLists;
+        this.compactProperties = null;
+    }
+
+    /**
+     * Replaces the property lists of this entity by a compact, read-only
+     * representation which needs much less memory. Reading property values
+     * works as before. Every other access to the properties of the entity
+     * creates new property lists from the compact representation.
+     *
+     * Only compact detached entities, the property lists of an entity which
+     * is attached to a Hibernate session must not be replaced. Entities with
+     * properties with a limited license are not compacted.
+     *
+     * @return true if the entity was compacted
+     */
+    public synchronized boolean compact() {
+        if (compactProperties != null) {
+            return true;
+        }
+        if (typedPropertyLists == null) {
+            return false;
+        }
+        CompactPropertyStore compact = CompactPropertyStore.create(typedPropertyLists);
+        if (compact == null) {
+            return false;
+        }
+        compactProperties = compact;
+        typedPropertyLists = null;
+        return true;
+    }
+
+    public boolean isCompact() {
+        return compactProperties != null;
     }
 
     /**
@@ -1006,7 +1182,7 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
      * @return Returns all properties with the given property type id
      */
     public PropertyList getProperties(String propertyTypeId) {
-        PropertyList propertyList = typedPropertyLists.get(propertyTypeId);
+        PropertyList propertyList = getTypedPropertyLists().get(propertyTypeId);
         if (propertyList == null) {
             propertyList = new PropertyList();
         }
@@ -1014,12 +1190,14 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
     }
 
     public void addToReferenceValueCache(String propertyTypeId, String value) {
-        getReferenceValueCache().put(propertyTypeId, value);
+        if (value != null) {
+            getReferenceValueCache().put(propertyTypeId, value);
+        }
     }
 
-    private Map<String, String> getReferenceValueCache() {
+    private synchronized Map<String, String> getReferenceValueCache() {
         if (referenceValueCache == null) {
-            referenceValueCache = new HashMap<>();
+            referenceValueCache = new ConcurrentHashMap<>();
         }
         return referenceValueCache;
     }
@@ -1082,4 +1260,83 @@ public class Entity implements ISelectOptionHandler, ITypedElement, Serializable
         return "Entity [entityType=" + entityType + ", dbId=" + dbId + ", uuid=" + uuid + "]";
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (!(out instanceof CompactObjectOutputStream)) {
+            writeDefaultObject(out);
+            return;
+        }
+        CompactObjectOutputStream compactOut = (CompactObjectOutputStream) out;
+        compactOut.writeUuid(uuid);
+        compactOut.writeInteger(dbId);
+        compactOut.writeSymbol(entityType);
+        CompactPropertyStore compact = compactProperties;
+        out.writeObject((compact != null) ? null : typedPropertyLists);
+        out.writeObject(compact);
+        out.writeObject(referenceValueCache);
+        compactOut.writeSymbol(createdBy);
+        compactOut.writeDate(createdAt);
+        compactOut.writeSymbol(changedBy);
+        compactOut.writeDate(changedAt);
+    }
+
+    /**
+     * Writes the default serialized form. The properties of a compacted
+     * entity are written as property lists, the entity itself is not
+     * changed since it may be serialized by several threads at once.
+     */
+    private void writeDefaultObject(ObjectOutputStream out) throws IOException {
+        CompactPropertyStore compact = compactProperties;
+        if (compact == null) {
+            out.defaultWriteObject();
+            return;
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("uuid", uuid);
+        fields.put("dbId", dbId);
+        fields.put("entityType", entityType);
+        fields.put("typedPropertyLists", compact.toPropertyLists(this));
+        fields.put("referenceValueCache", referenceValueCache);
+        fields.put("createdBy", createdBy);
+        fields.put("createdAt", createdAt);
+        fields.put("changedBy", changedBy);
+        fields.put("changedAt", changedAt);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        if (!(in instanceof CompactObjectInputStream)) {
+            in.defaultReadObject();
+            referenceValueCache = toConcurrentMap(referenceValueCache);
+            return;
+        }
+        CompactObjectInputStream compactIn = (CompactObjectInputStream) in;
+        uuid = compactIn.readUuid();
+        dbId = compactIn.readInteger();
+        entityType = compactIn.readSymbol();
+        typedPropertyLists = (Map<String, PropertyList>) in.readObject();
+        compactProperties = (CompactPropertyStore) in.readObject();
+        referenceValueCache = toConcurrentMap((Map<String, String>) in.readObject());
+        createdBy = compactIn.readSymbol();
+        createdAt = compactIn.readDate();
+        changedBy = compactIn.readSymbol();
+        changedAt = compactIn.readDate();
+    }
+
+    /**
+     * Streams written by older versions contain a HashMap as reference value
+     * cache.
+     */
+    private static Map<String, String> toConcurrentMap(Map<String, String> map) {
+        if (map == null || map instanceof ConcurrentHashMap) {
+            return map;
+        }
+        Map<String, String> concurrentMap = new ConcurrentHashMap<>();
+        for (Entry<String, String> entry : map.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                concurrentMap.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return concurrentMap;
+    }
 }
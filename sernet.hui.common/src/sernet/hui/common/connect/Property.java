@@ -17,9 +17,15 @@
  ******************************************************************************/
 package sernet.hui.common.connect;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Calendar;
 
+import sernet.hui.common.io.CompactObjectInputStream;
+import sernet.hui.common.io.CompactObjectOutputStream;
+
 
 
 /**
@@ -224,4 +230,32 @@ public class Property implements Serializable, ITypedElement {
     public String toString() {
         return "Property [dbId=" + dbId + ", propertyType=" + propertyType + ", propertyValue=" + propertyValue + "]";
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (!(out instanceof CompactObjectOutputStream)) {
+            out.defaultWriteObject();
+            return;
+        }
+        CompactObjectOutputStream compactOut = (CompactObjectOutputStream) out;
+        compactOut.writeInteger(dbId);
+        compactOut.writeSymbol(propertyType);
+        out.writeObject(propertyValue);
+        out.writeObject(parent);
+        compactOut.writeSymbol(licenseContentId);
+        compactOut.writeNullableBoolean(limitedLicense);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        if (!(in instanceof CompactObjectInputStream)) {
+            in.defaultReadObject();
+            return;
+        }
+        CompactObjectInputStream compactIn = (CompactObjectInputStream) in;
+        dbId = compactIn.readInteger();
+        propertyType = compactIn.readSymbol();
+        propertyValue = (String) in.readObject();
+        parent = (Entity) in.readObject();
+        licenseContentId = compactIn.readSymbol();
+        limitedLicense = compactIn.readNullableBoolean();
+    }
 }
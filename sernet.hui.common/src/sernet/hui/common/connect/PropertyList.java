@@ -17,11 +17,17 @@
  ******************************************************************************/
 package sernet.hui.common.connect;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+import sernet.hui.common.io.CompactObjectInputStream;
+import sernet.hui.common.io.CompactObjectOutputStream;
+
 
 /**
  * All properties of a given type for one entity.
@@ -129,4 +135,28 @@ public class PropertyList implements Serializable, ITypedElement  {
                 + entityId + ", uuid=" + uuid + "]";
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (!(out instanceof CompactObjectOutputStream)) {
+            out.defaultWriteObject();
+            return;
+        }
+        CompactObjectOutputStream compactOut = (CompactObjectOutputStream) out;
+        compactOut.writeUuid(uuid);
+        compactOut.writeInteger(dbId);
+        compactOut.writeInteger(entityId);
+        out.writeObject(properties);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        if (!(in instanceof CompactObjectInputStream)) {
+            in.defaultReadObject();
+            return;
+        }
+        CompactObjectInputStream compactIn = (CompactObjectInputStream) in;
+        uuid = compactIn.readUuid();
+        dbId = compactIn.readInteger();
+        entityId = compactIn.readInteger();
+        properties = (List<Property>) in.readObject();
+    }
 }
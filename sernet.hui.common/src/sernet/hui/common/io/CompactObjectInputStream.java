@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.hui.common.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.core.ConfigurableObjectInputStream;
+
+/**
+ * Reads a stream written by a {@link CompactObjectOutputStream}.
+ */
+public class CompactObjectInputStream extends ConfigurableObjectInputStream {
+
+    private final List<String> symbols = new ArrayList<>();
+
+    /**
+     * @param in
+     *            the stream to read from
+     * @param classLoader
+     *            the class loader used to resolve classes, or null to use the
+     *            default class loader
+     */
+    public CompactObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+        super(in, classLoader);
+    }
+
+    public String readSymbol() throws IOException {
+        int index = readVarInt();
+        if (index == CompactObjectOutputStream.SYMBOL_NULL) {
+            return null;
+        }
+        if (index == CompactObjectOutputStream.SYMBOL_NEW) {
+            String symbol = readUTF();
+            symbols.add(symbol);
+            return symbol;
+        }
+        index -= CompactObjectOutputStream.SYMBOL_OFFSET;
+        if (index < 0 || index >= symbols.size()) {
+            throw new StreamCorruptedException("Invalid symbol index: " + index);
+        }
+        return symbols.get(index);
+    }
+
+    public Integer readInteger() throws IOException {
+        long v = readVarLong();
+        if (v == 0) {
+            return null;
+        }
+        v--;
+        return (int) ((v >>> 1) ^ -(v & 1));
+    }
+
+    public String readUuid() throws IOException, ClassNotFoundException {
+        byte type = readByte();
+        if (type == CompactObjectOutputStream.UUID_BINARY) {
+            return new UUID(readLong(), readLong()).toString();
+        }
+        if (type == CompactObjectOutputStream.UUID_OBJECT) {
+            return (String) readObject();
+        }
+        throw new StreamCorruptedException("Invalid UUID type: " + type);
+    }
+
+    public Date readDate() throws IOException, ClassNotFoundException {
+        byte type = readByte();
+        switch (type) {
+        case CompactObjectOutputStream.DATE_NULL:
+            return null;
+        case CompactObjectOutputStream.DATE_MILLIS:
+            return new Date(readVarLong());
+        case CompactObjectOutputStream.DATE_OBJECT:
+            return (Date) readObject();
+        default:
+            throw new StreamCorruptedException("Invalid date type: " + type);
+        }
+    }
+
+    public Boolean readNullableBoolean() throws IOException {
+        byte value = readByte();
+        switch (value) {
+        case CompactObjectOutputStream.BOOLEAN_NULL:
+            return null;
+        case CompactObjectOutputStream.BOOLEAN_FALSE:
+            return Boolean.FALSE;
+        case CompactObjectOutputStream.BOOLEAN_TRUE:
+            return Boolean.TRUE;
+        default:
+            throw new StreamCorruptedException("Invalid boolean value: " + value);
+        }
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+}
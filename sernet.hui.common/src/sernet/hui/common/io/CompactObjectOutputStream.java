@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.hui.common.io;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An object output stream which writes the objects of the verinice model in
+ * a compact form. The stream is still a Java serialization stream, classes
+ * like {@link sernet.hui.common.connect.Entity} check in their
+ * <code>writeObject</code> method whether they are written to a compact
+ * stream and use the methods of this class to write their fields. All other
+ * objects are written by the default Java serialization.
+ *
+ * Type ids and property ids are written to a symbol table and written as
+ * varints when repeated, integers are written as varints and UUIDs in binary
+ * form. Short strings with the same value are written only once.
+ *
+ * A compact stream must be read by a {@link CompactObjectInputStream}.
+ */
+public class CompactObjectOutputStream extends ObjectOutputStream {
+
+    /**
+     * Strings up to this length are written once, repeated strings are
+     * written as back-references
+     */
+    private static final int MAX_LENGTH_SHARED_STRING = 256;
+
+    static final int SYMBOL_NULL = 0;
+    static final int SYMBOL_NEW = 1;
+    static final int SYMBOL_OFFSET = 2;
+
+    static final byte UUID_BINARY = 0;
+    static final byte UUID_OBJECT = 1;
+
+    static final byte DATE_NULL = 0;
+    static final byte DATE_MILLIS = 1;
+    static final byte DATE_OBJECT = 2;
+
+    static final byte BOOLEAN_NULL = 0;
+    static final byte BOOLEAN_FALSE = 1;
+    static final byte BOOLEAN_TRUE = 2;
+
+    private final Map<String, Integer> symbols = new HashMap<>();
+
+    private final Map<String, String> sharedStrings = new HashMap<>();
+
+    public CompactObjectOutputStream(OutputStream out) throws IOException {
+        super(out);
+        enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) throws IOException {
+        if (obj instanceof String && ((String) obj).length() <= MAX_LENGTH_SHARED_STRING) {
+            String shared = sharedStrings.putIfAbsent((String) obj, (String) obj);
+            return shared != null ? shared : obj;
+        }
+        return obj;
+    }
+
+    /**
+     * Writes a string which is likely repeated in the stream, e.g. a type id
+     * or a property id. The first occurrence of a symbol is written in full,
+     * all further occurrences as the varint index in the symbol table.
+     */
+    public void writeSymbol(String symbol) throws IOException {
+        if (symbol == null) {
+            writeVarInt(SYMBOL_NULL);
+            return;
+        }
+        Integer index = symbols.get(symbol);
+        if (index != null) {
+            writeVarInt(index + SYMBOL_OFFSET);
+            return;
+        }
+        symbols.put(symbol, symbols.size());
+        writeVarInt(SYMBOL_NEW);
+        writeUTF(symbol);
+    }
+
+    /**
+     * Writes a nullable integer as a zigzag encoded varint.
+     */
+    public void writeInteger(Integer value) throws IOException {
+        if (value == null) {
+            writeVarLong(0);
+        } else {
+            long v = value;
+            writeVarLong(((v << 1) ^ (v >> 63)) + 1);
+        }
+    }
+
+    /**
+     * Writes a UUID string in binary form. Strings which are not in the
+     * canonical UUID form are written as objects.
+     */
+    public void writeUuid(String uuid) throws IOException {
+        UUID binary = parseUuid(uuid);
+        if (binary == null) {
+            writeByte(UUID_OBJECT);
+            writeObject(uuid);
+        } else {
+            writeByte(UUID_BINARY);
+            writeLong(binary.getMostSignificantBits());
+            writeLong(binary.getLeastSignificantBits());
+        }
+    }
+
+    /**
+     * Writes a nullable date. Instances of {@link Date} are written as varint
+     * milliseconds, subclasses like {@link java.sql.Timestamp} as objects.
+     */
+    public void writeDate(Date date) throws IOException {
+        if (date == null) {
+            writeByte(DATE_NULL);
+        } else if (date.getClass() == Date.class) {
+            writeByte(DATE_MILLIS);
+            writeVarLong(date.getTime());
+        } else {
+            writeByte(DATE_OBJECT);
+            writeObject(date);
+        }
+    }
+
+    public void writeNullableBoolean(Boolean value) throws IOException {
+        if (value == null) {
+            writeByte(BOOLEAN_NULL);
+        } else {
+            writeByte(value ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+        }
+    }
+
+    public void writeVarInt(int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        writeByte(v);
+    }
+
+    public void writeVarLong(long value) throws IOException {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        writeByte((int) v);
+    }
+
+    private static UUID parseUuid(String uuid) {
+        if (uuid == null || uuid.length() != 36) {
+            return null;
+        }
+        try {
+            UUID binary = UUID.fromString(uuid);
+            return binary.toString().equals(uuid) ? binary : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
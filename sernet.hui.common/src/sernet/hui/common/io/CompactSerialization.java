@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.hui.common.io;
+
+/**
+ * Content types of the compact object transport, see
+ * {@link CompactObjectOutputStream}.
+ */
+public final class CompactSerialization {
+
+    /**
+     * Content type of a stream written by a {@link CompactObjectOutputStream}
+     */
+    public static final String CONTENT_TYPE = "application/x-verinice-compact-object";
+
+    /**
+     * Content type of a gzip compressed stream written by a
+     * {@link CompactObjectOutputStream}
+     */
+    public static final String CONTENT_TYPE_GZIP = CONTENT_TYPE + "+gzip";
+
+    private CompactSerialization() {
+        super();
+    }
+
+    /**
+     * Returns true if the content type denotes a compact stream, with or
+     * without compression.
+     */
+    public static boolean isCompact(String contentType) {
+        return contentType != null && contentType.startsWith(CONTENT_TYPE);
+    }
+
+    /**
+     * Returns true if the content type denotes a gzip compressed compact
+     * stream.
+     */
+    public static boolean isCompressed(String contentType) {
+        return contentType != null && contentType.startsWith(CONTENT_TYPE_GZIP);
+    }
+}
@@ -1,5 +1,12 @@
 package sernet.springclient;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
 import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
@@ -7,6 +14,11 @@ import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.log4j.Logger;
 import org.springframework.remoting.httpinvoker.CommonsHttpInvokerRequestExecutor;
+import org.springframework.remoting.support.RemoteInvocation;
+
+import sernet.hui.common.io.CompactObjectInputStream;
+import sernet.hui.common.io.CompactObjectOutputStream;
+import sernet.hui.common.io.CompactSerialization;
 
 import sernet.verinice.interfaces.IVeriniceConstants;
 import sernet.verinice.service.auth.KerberosStatusService;
@@ -19,6 +31,9 @@ public abstract class AbstractExecuter extends CommonsHttpInvokerRequestExecutor
     private int readTimeout = DEFAULT_READ_TIMEOUT_MILLISECONDS;
     private int connectionTimeout = DEFAULT_CONNECTION_TIMEOUT_MILLISECONDS;
 
+    private boolean compactTransport = false;
+    private boolean compressTransport = false;
+
     public static final int MAX_TOTAL_CONNECTIONS = 20;
     public static final int MAX_CONNECTIONS_PER_HOST = 5;
 
@@ -119,6 +134,72 @@ public abstract class AbstractExecuter extends CommonsHttpInvokerRequestExecutor
         this.connectionTimeout = connectionTimeout;
     }
 
+    /**
+     * Writes the invocation with a {@link CompactObjectOutputStream} if the
+     * compact transport is enabled.
+     */
+    @Override
+    protected void writeRemoteInvocation(RemoteInvocation invocation, OutputStream os)
+            throws IOException {
+        if (!isCompactTransport()) {
+            super.writeRemoteInvocation(invocation, os);
+            return;
+        }
+        OutputStream out = isCompressTransport() ? new GZIPOutputStream(os) : os;
+        ObjectOutputStream oos = new CompactObjectOutputStream(out);
+        try {
+            doWriteRemoteInvocation(invocation, oos);
+            oos.flush();
+        } finally {
+            oos.close();
+        }
+    }
+
+    @Override
+    protected ObjectInputStream createObjectInputStream(InputStream is, String codebaseUrl)
+            throws IOException {
+        if (!isCompactTransport()) {
+            return super.createObjectInputStream(is, codebaseUrl);
+        }
+        return new CompactObjectInputStream(is, getBeanClassLoader());
+    }
+
+    @Override
+    public String getContentType() {
+        if (!isCompactTransport()) {
+            return super.getContentType();
+        }
+        return isCompressTransport() ? CompactSerialization.CONTENT_TYPE_GZIP
+                : CompactSerialization.CONTENT_TYPE;
+    }
+
+    public boolean isCompactTransport() {
+        return compactTransport;
+    }
+
+    /**
+     * @param compactTransport
+     *            If true, invocations and results are transferred in the
+     *            compact format of {@link CompactObjectOutputStream}. The
+     *            server must support the compact format.
+     */
+    public void setCompactTransport(boolean compactTransport) {
+        this.compactTransport = compactTransport;
+    }
+
+    public boolean isCompressTransport() {
+        return compressTransport;
+    }
+
+    /**
+     * @param compressTransport
+     *            If true, invocations and results in the compact format are
+     *            compressed with gzip
+     */
+    public void setCompressTransport(boolean compressTransport) {
+        this.compressTransport = compressTransport;
+    }
+
     public static AbstractExecuter initExecuter() {
 
         KerberosStatusService kerberosStatusService = SpringClientPlugin.getDefault().getKerberosStatusService();
@@ -18,76 +18,80 @@
 package sernet.springclient;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
-
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.CacheManager;
-import net.sf.ehcache.Element;
-import net.sf.ehcache.Statistics;
-import net.sf.ehcache.Status;
+import java.util.WeakHashMap;
 
 import org.apache.log4j.Logger;
 
 import sernet.verinice.interfaces.CommandException;
-import sernet.verinice.interfaces.GenericCommand;
 import sernet.verinice.interfaces.IBaseDao;
 import sernet.verinice.interfaces.ICachedCommand;
 import sernet.verinice.interfaces.ICommand;
 import sernet.verinice.interfaces.ICommandCacheClient;
 import sernet.verinice.interfaces.ICommandService;
+import sernet.verinice.service.commands.task.LoadChangeLogWatermark;
 import sernet.verinice.service.sync.VnaSchemaVersion;
 
 /**
+ * A command service for reports which caches the results of commands
+ * implementing {@link ICachedCommand}.
+ *
+ * Results are only cached during a report run, see
+ * {@link #startReportRun(Object)}. Commands executed outside of a report run
+ * are passed to the server. By default the results of a run are discarded
+ * when the run ends. If cross-run caching is enabled, results are shared by
+ * all runs until the data on the server changes. Changes are detected by the
+ * highest id of the transaction log, see {@link LoadChangeLogWatermark}.
  *
+ * The cache is bounded by the estimated memory of the cached results.
  */
 public class CommandCacheClient implements ICommandCacheClient {
-    
-    private ICommandService commandService;
-    
-    
-    private transient CacheManager manager = null;
-    private String globalCacheId = null;
-    private transient Cache globalCache = null;
+
     private static final Logger log = Logger.getLogger(CommandCacheClient.class);
-    
+
+    public static final long DEFAULT_MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+    private static final String WATERMARK_SCOPE_PREFIX = "watermark-";
+
+    private ICommandService commandService;
+
+    private boolean enabled = true;
+
+    private boolean crossRunCaching = false;
+
+    private long maxCacheBytes = DEFAULT_MAX_CACHE_BYTES;
+
+    private CommandResultCache cache;
+
+    private final ThreadLocal<ReportRun> currentRun = new ThreadLocal<>();
+
+    /**
+     * key: owner of a report run, the owners are referenced weakly so a run
+     * which is never ended does not keep its owner in memory
+     */
+    private final Map<Object, ReportRun> runsByOwner = Collections
+            .synchronizedMap(new WeakHashMap<Object, ReportRun>());
+
     /* (non-Javadoc)
      * @see sernet.verinice.interfaces.ICommandCacheClient#executeCachableCommand(sernet.verinice.interfaces.GenericCommand)
      */
     @Override
     public ICommand executeCachableCommand(ICommand command) throws CommandException {
-        if(command instanceof ICachedCommand){
-            ICachedCommand cacheCommand = (ICachedCommand)command;
-            if(log.isDebugEnabled()){
-                logCacheStatistics();
-            }
-            
-            if(getGlobalCache().isKeyInCache(cacheCommand.getCacheID()) 
-                    && getGlobalCache().get(cacheCommand.getCacheID()) != null 
-                    && getGlobalCache().get(cacheCommand.getCacheID()).getValue() != null){
-                Object cachedValue = getGlobalCache().get(cacheCommand.getCacheID()).getValue();
-                if(log.isDebugEnabled() && cachedValue instanceof ArrayList<?>){
-                    ArrayList<?> list = (ArrayList<?>)cachedValue;
-                    log.debug("injecting List with " + list.size() + " elements into:\t" + cacheCommand.getCacheID());
-                }
-                cacheCommand.injectCacheResult(cachedValue);
-                return cacheCommand;
-            } else {
-                command = getCommandService().executeCommand((GenericCommand)command);
-                cacheCommand = (ICachedCommand)command;
-
-                Object cachedValue = cacheCommand.getCacheableResult();
-                if(log.isDebugEnabled() && cachedValue instanceof ArrayList<?>){
-                    ArrayList<?> list = (ArrayList<?>)cachedValue;
-                    log.debug("putting List with " + list.size() + " elements from "  + cacheCommand.getCacheID() + " to Cache");
-                }
-                getGlobalCache().put(new Element(cacheCommand.getCacheID(), cacheCommand.getCacheableResult()));
-                return command;
-            }
-
-        } else {
-            return getCommandService().executeCommand((GenericCommand)command);
+        ReportRun run = getCacheRun();
+        if (run == null || !(command instanceof ICachedCommand)) {
+            return getCommandService().executeCommand(command);
         }
+        if (injectCachedResult(run, command)) {
+            return command;
+        }
+        ICommand executedCommand = getCommandService().executeCommand(command);
+        putResult(run, executedCommand);
+        return executedCommand;
     }
 
     /* (non-Javadoc)
@@ -95,7 +99,103 @@ public class CommandCacheClient implements ICommandCacheClient {
      */
     @Override
     public boolean isEnabled() {
-        return false;
+        return enabled;
+    }
+
+    /* (non-Javadoc)
+     * @see sernet.verinice.interfaces.ICommandCacheClient#setUseCache(boolean)
+     */
+    @Override
+    public void setUseCache(boolean useCache) {
+        this.enabled = useCache;
+        if (!useCache) {
+            resetCache();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see sernet.verinice.interfaces.ICommandCacheClient#startReportRun(java.lang.Object)
+     */
+    @Override
+    public void startReportRun(Object owner) {
+        ReportRun run = getActiveRun();
+        if (run == null) {
+            run = new ReportRun(createScope());
+            currentRun.set(run);
+        }
+        run.addOwner(owner);
+        runsByOwner.put(owner, run);
+    }
+
+    /* (non-Javadoc)
+     * @see sernet.verinice.interfaces.ICommandCacheClient#endReportRun(java.lang.Object)
+     */
+    @Override
+    public void endReportRun(Object owner) {
+        ReportRun run = runsByOwner.remove(owner);
+        if (run == null) {
+            return;
+        }
+        if (run.removeOwner(owner)) {
+            finishRun(run);
+        }
+        if (currentRun.get() == run && run.isEnded()) {
+            currentRun.remove();
+        }
+    }
+
+    /**
+     * Returns the report run of the current thread or null if there is no
+     * run. The run of a thread is also removed if it was ended in another
+     * thread or if all owners were garbage collected without ending it.
+     */
+    private ReportRun getActiveRun() {
+        ReportRun run = currentRun.get();
+        if (run != null && run.isEnded()) {
+            currentRun.remove();
+            finishRun(run);
+            return null;
+        }
+        return run;
+    }
+
+    private void finishRun(ReportRun run) {
+        if (!run.finish()) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Report run finished, cache hits: " + run.hits + ", misses: " + run.misses
+                    + ", cached results: " + getCache().size() + ", estimated size: "
+                    + getCache().getUsedBytes() / 1024 + " KB");
+        }
+        if (!run.scope.startsWith(WATERMARK_SCOPE_PREFIX)) {
+            getCache().removeScope(run.scope);
+        }
+    }
+
+    /**
+     * Returns the scope of a new report run. With cross-run caching the scope
+     * is derived from the current change log watermark and the results of
+     * older watermarks are removed. Otherwise every run has its own scope.
+     */
+    private String createScope() {
+        if (isCrossRunCaching()) {
+            try {
+                LoadChangeLogWatermark command = getCommandService()
+                        .executeCommand(new LoadChangeLogWatermark());
+                String scope = WATERMARK_SCOPE_PREFIX + command.getWatermark();
+                getCache().retainScope(scope);
+                return scope;
+            } catch (CommandException e) {
+                log.warn("Could not load change log watermark, caching results for this run only",
+                        e);
+            }
+        }
+        return UUID.randomUUID().toString();
+    }
+
+    private ReportRun getCacheRun() {
+        return isEnabled() ? getActiveRun() : null;
     }
 
     public ICommandService getCommandService() {
@@ -105,44 +205,128 @@ public class CommandCacheClient implements ICommandCacheClient {
     public void setCommandService(ICommandService commandService) {
         this.commandService = commandService;
     }
-    
-    private Cache getGlobalCache() {
-        if (manager == null || Status.STATUS_SHUTDOWN.equals(manager.getStatus()) || globalCache == null || !Status.STATUS_ALIVE.equals(globalCache.getStatus())) {
-            globalCache = createCache();
-        } else {
-            globalCache = manager.getCache(globalCacheId);
-        }
-        return globalCache;
+
+    public boolean isCrossRunCaching() {
+        return crossRunCaching;
     }
-    
-    private Cache createCache() {
-        final int maxElementsInMemory = 20000;
-        final int timeToLiveSeconds = 600;
-        final int timeToIdleSeconds = 500;
-        globalCacheId = UUID.randomUUID().toString();
-        manager = CacheManager.create();
-        globalCache = new Cache(globalCacheId, maxElementsInMemory, false, false, timeToLiveSeconds, timeToIdleSeconds);
-        manager.addCache(globalCache);
-        if(log.isDebugEnabled()){
-            log.debug("Global Report Cache created! Storing cache in:\t" + manager.getDiskStorePath());
+
+    /**
+     * @param crossRunCaching
+     *            If true, cached results are shared by all report runs until
+     *            the change log watermark changes. If false, results are
+     *            discarded at the end of each report run.
+     */
+    public void setCrossRunCaching(boolean crossRunCaching) {
+        this.crossRunCaching = crossRunCaching;
+    }
+
+    public long getMaxCacheBytes() {
+        return maxCacheBytes;
+    }
+
+    /**
+     * @param maxCacheBytes
+     *            the maximum estimated memory of all cached results in bytes
+     */
+    public synchronized void setMaxCacheBytes(long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+        this.cache = null;
+    }
+
+    private synchronized CommandResultCache getCache() {
+        if (cache == null) {
+            cache = new CommandResultCache(maxCacheBytes);
         }
-        
-        return globalCache;
+        return cache;
+    }
+
+    /**
+     * Returns the key of a command in the cache, consisting of the class of
+     * the command and its cache id which is built from the parameters of the
+     * command.
+     */
+    private static String getCacheKey(ICachedCommand command) {
+        return command.getClass().getName() + ':' + command.getCacheID();
     }
 
     /* (non-Javadoc)
      * @see sernet.verinice.interfaces.ICommandService#executeCommand(sernet.verinice.interfaces.ICommand)
      */
+    @SuppressWarnings("unchecked")
     @Override
     public <T extends ICommand> T executeCommand(T command) throws CommandException {
         return (T) executeCachableCommand(command);
     }
 
-    /* (non-Javadoc)
+    /**
+     * Injects cached results into all cachable commands found in the cache and
+     * sends the remaining commands to the server in one request.
+     * 
+     * @see sernet.verinice.interfaces.ICommandService#executeCommands(java.util.List)
+     */
+    @Override
+    public <T extends ICommand> List<T> executeCommands(List<T> commands) throws CommandException {
+        ReportRun run = getCacheRun();
+        if (run == null) {
+            return getCommandService().executeCommands(commands);
+        }
+        List<T> result = new ArrayList<>(commands);
+        List<Integer> uncachedIndexes = new ArrayList<>();
+        List<T> uncachedCommands = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i++) {
+            T command = commands.get(i);
+            if (!injectCachedResult(run, command)) {
+                uncachedIndexes.add(i);
+                uncachedCommands.add(command);
+            }
+        }
+        if (!uncachedCommands.isEmpty()) {
+            List<T> executedCommands = getCommandService().executeCommands(uncachedCommands);
+            for (int i = 0; i < executedCommands.size(); i++) {
+                T command = executedCommands.get(i);
+                putResult(run, command);
+                result.set(uncachedIndexes.get(i), command);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug((commands.size() - uncachedCommands.size()) + " of " + commands.size()
+                    + " commands served from cache");
+        }
+        return result;
+    }
+
+    private boolean injectCachedResult(ReportRun run, ICommand command) {
+        if (!(command instanceof ICachedCommand)) {
+            return false;
+        }
+        ICachedCommand cacheCommand = (ICachedCommand) command;
+        Object cachedValue = getCache().get(run.scope, getCacheKey(cacheCommand));
+        if (cachedValue == null) {
+            run.misses++;
+            return false;
+        }
+        run.hits++;
+        cacheCommand.injectCacheResult(cachedValue);
+        return true;
+    }
+
+    private void putResult(ReportRun run, ICommand command) {
+        if (command instanceof ICachedCommand) {
+            ICachedCommand cacheCommand = (ICachedCommand) command;
+            getCache().put(run.scope, getCacheKey(cacheCommand),
+                    cacheCommand.getCacheableResult());
+        }
+    }
+
+    /**
+     * Discards the data of the current user and all cached results, the
+     * results depend on the permissions of the user.
+     * 
      * @see sernet.verinice.interfaces.ICommandService#discardUserData()
      */
     @Override
     public void discardUserData() {
+        resetCache();
         getCommandService().discardUserData();
     }
 
@@ -156,32 +340,7 @@ public class CommandCacheClient implements ICommandCacheClient {
     
     @Override
     public void resetCache(){
-        getGlobalCache().removeAll();
-    }
-    
-    private void logCacheStatistics(){
-        Statistics stats = getGlobalCache().getStatistics();
-        log.debug("################start Cache Stats###################");
-        log.debug("AvgGetTime:\t" + stats.getAverageGetTime());
-        log.debug("CacheHits:\t" + stats.getCacheHits());
-        log.debug("CacheMisses:\t" + stats.getCacheMisses());
-        log.debug("DiskStoreObjectCount:\t" + stats.getDiskStoreObjectCount());
-        log.debug("EvictionCount:\t" + stats.getEvictionCount());
-        log.debug("InMemoryHits:\t" + stats.getInMemoryHits());
-        log.debug("MemoryStoreObjectCount:\t" + stats.getMemoryStoreObjectCount());
-        log.debug("ObjectCount:\t" + stats.getObjectCount());
-        log.debug("OnDiskHits:\t" + stats.getOnDiskHits());
-        log.debug("StatisticAccuracy:\t" + stats.getStatisticsAccuracy());
-        log.debug("StatisticAccuracyDescription:\t" + stats.getStatisticsAccuracyDescription());
-        log.debug("################end Cache Stats###################");
-    }
-
-    /* (non-Javadoc)
-     * @see sernet.verinice.interfaces.ICommandCacheClient#setUseCache(boolean)
-     */
-    @Override
-    public void setUseCache(boolean useCache) {
-        
+        getCache().clear();
     }
 
     /* (non-Javadoc)
@@ -207,4 +366,47 @@ public class CommandCacheClient implements ICommandCacheClient {
         return commandService.getVnaSchemaVersion();
     }
 
+    /**
+     * A report run, it is bound to the thread which started it and ends when
+     * all its owners ended it
+     */
+    private static final class ReportRun {
+        private final String scope;
+        private final Set<Object> owners = Collections
+                .newSetFromMap(new WeakHashMap<Object, Boolean>());
+        private boolean finished = false;
+        private int hits = 0;
+        private int misses = 0;
+
+        private ReportRun(String scope) {
+            this.scope = scope;
+        }
+
+        private synchronized void addOwner(Object owner) {
+            owners.add(owner);
+        }
+
+        /**
+         * @return true if the last owner was removed
+         */
+        private synchronized boolean removeOwner(Object owner) {
+            owners.remove(owner);
+            return owners.isEmpty();
+        }
+
+        private synchronized boolean isEnded() {
+            return finished || owners.isEmpty();
+        }
+
+        /**
+         * @return true if the run was not finished before
+         */
+        private synchronized boolean finish() {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            return true;
+        }
+    }
 }
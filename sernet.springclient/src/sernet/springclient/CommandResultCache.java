@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.springclient;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A least recently used cache for the results of commands, bounded by the
+ * estimated memory of the results. The memory of a result is estimated by the
+ * size of its serialized form.
+ *
+ * Every entry belongs to a scope, e.g. a report run. Entries are only found
+ * in the scope they were added to, the same command can be cached in several
+ * scopes.
+ */
+final class CommandResultCache {
+
+    private static final Logger log = Logger.getLogger(CommandResultCache.class);
+
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long usedBytes = 0;
+
+    /**
+     * @param maxBytes
+     *            the maximum estimated memory of all cached results in bytes
+     */
+    CommandResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached result of a command in the given scope or null if
+     * the result is not cached.
+     */
+    synchronized Object get(String scope, String key) {
+        Entry entry = entries.get(createKey(scope, key));
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Adds the result of a command to the cache. Least recently used entries
+     * are removed until the estimated memory of all entries is below the
+     * limit. Results which are not serializable or larger than the limit are
+     * not cached.
+     */
+    void put(String scope, String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        long size = estimateSize(value);
+        if (size < 0 || size > maxBytes) {
+            if (log.isDebugEnabled()) {
+                log.debug("Result of " + key + " is not cached, size: " + size);
+            }
+            return;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(createKey(scope, key), new Entry(scope, value, size));
+            if (previous != null) {
+                usedBytes -= previous.size;
+            }
+            usedBytes += size;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (usedBytes > maxBytes && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                usedBytes -= eldest.size;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries of the given scope.
+     */
+    synchronized void removeScope(String scope) {
+        removeIf(scope, true);
+    }
+
+    /**
+     * Removes all entries which do not belong to the given scope.
+     */
+    synchronized void retainScope(String scope) {
+        removeIf(scope, false);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private void removeIf(String scope, boolean inScope) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.scope.equals(scope) == inScope) {
+                usedBytes -= entry.size;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String createKey(String scope, String key) {
+        return scope + '\n' + key;
+    }
+
+    private static long estimateSize(Object value) {
+        CountingOutputStream counter = new CountingOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+            out.writeObject(value);
+        } catch (NotSerializableException e) {
+            return -1;
+        } catch (IOException e) {
+            log.warn("Could not estimate the size of a command result", e);
+            return -1;
+        }
+        return counter.count;
+    }
+
+    private static final class Entry {
+        private final String scope;
+        private final Object value;
+        private final long size;
+
+        private Entry(String scope, Object value, long size) {
+            this.scope = scope;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -43,19 +43,23 @@ public class ExecuterFactoryBean {
 
     private int readTimeout = DEFAULT_READ_TIMEOUT_MILLISECONDS;
     private int connectionTimeout = DEFAULT_CONNECTION_TIMEOUT_MILLISECONDS;
+
+    private boolean compactTransport = false;
+    private boolean compressTransport = false;
     
     public AbstractExecuter getExecuter() throws Exception {
         KerberosStatusService kerberosStatusService = SpringClientPlugin.getDefault().getKerberosStatusService();
 
+        AbstractExecuter executer;
         if (kerberosStatusService != null && kerberosStatusService.isActive()) {
-            KerberosExecuter executer = new KerberosExecuter(connectionTimeout, readTimeout);
-            executer.init();
-            return executer;
+            executer = new KerberosExecuter(connectionTimeout, readTimeout);
         } else {
-            CommonsExecuter commonsExecuter = new CommonsExecuter(connectionTimeout, readTimeout);
-            commonsExecuter.init();
-            return commonsExecuter;
+            executer = new CommonsExecuter(connectionTimeout, readTimeout);
         }
+        executer.init();
+        executer.setCompactTransport(compactTransport);
+        executer.setCompressTransport(compressTransport);
+        return executer;
     }
     
     public int getReadTimeout() {
@@ -74,4 +78,26 @@ public class ExecuterFactoryBean {
         this.connectionTimeout = connectionTimeout;
     }
 
+    public boolean isCompactTransport() {
+        return compactTransport;
+    }
+
+    /**
+     * @see AbstractExecuter#setCompactTransport(boolean)
+     */
+    public void setCompactTransport(boolean compactTransport) {
+        this.compactTransport = compactTransport;
+    }
+
+    public boolean isCompressTransport() {
+        return compressTransport;
+    }
+
+    /**
+     * @see AbstractExecuter#setCompressTransport(boolean)
+     */
+    public void setCompressTransport(boolean compressTransport) {
+        this.compressTransport = compressTransport;
+    }
+
 }
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+import org.apache.log4j.Logger;
 import org.eclipse.datatools.connectivity.oda.IConnection;
 import org.eclipse.datatools.connectivity.oda.IDataSetMetaData;
 import org.eclipse.datatools.connectivity.oda.IQuery;
@@ -29,6 +30,10 @@ import org.eclipse.datatools.connectivity.oda.OdaException;
 
 import com.ibm.icu.util.ULocale;
 
+import bsh.EvalError;
+
+import sernet.verinice.interfaces.ICommandCacheClient;
+import sernet.verinice.interfaces.ICommandService;
 import sernet.verinice.interfaces.oda.IVeriniceOdaDriver;
 import sernet.verinice.oda.driver.Activator;
 
@@ -37,12 +42,18 @@ import sernet.verinice.oda.driver.Activator;
  */
 public class Connection implements IConnection {
 
+    private static final Logger log = Logger.getLogger(Connection.class);
+
     private boolean isOpen = false;
 
     private Object appContext;
 
     private Map<String, List<List<String>>> queryCache;
 
+    private QueryInterpreter queryInterpreter;
+
+    private ICommandCacheClient commandCacheClient;
+
     /*
      * @see org.eclipse.datatools.connectivity.oda.IConnection#open(java.util.
      * Properties )
@@ -53,6 +64,20 @@ public class Connection implements IConnection {
         Activator.getDefault().getMain().updateServerURI(uri);
         isOpen = true;
         queryCache = new HashMap<>();
+        queryInterpreter = null;
+        startReportRun();
+    }
+
+    /**
+     * Starts a report run of the command cache if the cache is used, results
+     * of commands are cached until the connection is closed.
+     */
+    private void startReportRun() {
+        ICommandService commandService = Activator.getDefault().getCommandService();
+        if (commandService instanceof ICommandCacheClient) {
+            commandCacheClient = (ICommandCacheClient) commandService;
+            commandCacheClient.startReportRun(this);
+        }
     }
 
     public void setAppContext(Object context) throws OdaException {
@@ -65,6 +90,11 @@ public class Connection implements IConnection {
     public void close() throws OdaException {
         isOpen = false;
         queryCache = null;
+        queryInterpreter = null;
+        if (commandCacheClient != null) {
+            commandCacheClient.endReportRun(this);
+            commandCacheClient = null;
+        }
     }
 
     /*
@@ -99,11 +129,24 @@ public class Connection implements IConnection {
             query = new sernet.verinice.oda.linktable.driver.impl.Query(rootElementIds,
                     queryCache);
         } else {
-            query = new Query(rootElementIds);
+            query = new Query(rootElementIds, getQueryInterpreter());
         }
         return query;
     }
 
+    private QueryInterpreter getQueryInterpreter() throws OdaException {
+        if (queryInterpreter == null) {
+            IVeriniceOdaDriver odaDriver = Activator.getDefault().getOdaDriver();
+            try {
+                queryInterpreter = new QueryInterpreter(odaDriver.getScriptVariables());
+            } catch (EvalError e) {
+                log.error("Error while evaluating a BeanShell script for an ODA query.", e);
+                throw new OdaException(e);
+            }
+        }
+        return queryInterpreter;
+    }
+
     private Integer[] getRootElementIds() {
         Integer[] rootElementIds = null;
         if (appContext != null) {
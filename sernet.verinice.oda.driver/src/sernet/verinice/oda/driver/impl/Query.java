@@ -26,6 +26,7 @@ import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -43,17 +44,16 @@ import org.eclipse.datatools.connectivity.oda.SortSpec;
 import org.eclipse.datatools.connectivity.oda.spec.QuerySpecification;
 
 import bsh.EvalError;
-import bsh.Interpreter;
 import bsh.TargetError;
 import sernet.hui.common.VeriniceContext;
 import sernet.hui.common.connect.Entity;
 import sernet.hui.common.connect.HUITypeFactory;
 import sernet.verinice.interfaces.CommandException;
+import sernet.verinice.interfaces.ICachedCommand;
 import sernet.verinice.interfaces.ICommand;
-import sernet.verinice.interfaces.oda.IVeriniceOdaDriver;
+import sernet.verinice.interfaces.ICommandService;
 import sernet.verinice.model.common.CnATreeElement;
 import sernet.verinice.oda.driver.Activator;
-import sernet.verinice.security.report.ReportClassLoader;
 
 
 
@@ -72,11 +72,15 @@ public class Query implements IQuery
     
     private Integer[] vnRootElements;
     
-    private Interpreter setupInterpreter, interpreter;
+    private QueryInterpreter interpreter;
+
+    private Helper helper = new Helper();
     
     private Map<String, String> properties = new HashMap<String, String>();
     
     private Map<String, Object> inParameterValues = new HashMap<String, Object>();
+
+    private Map<String, Object> prefetchedResults = new HashMap<String, Object>();
     
     private Object result;
     
@@ -84,7 +88,7 @@ public class Query implements IQuery
     
     public static final String PROP_SETUP_QUERY_TEXT = "setupQueryText";
     
-    Query(Integer[] rootElementIds){
+    Query(Integer[] rootElementIds, QueryInterpreter interpreter){
         if(rootElementIds!=null && rootElementIds.length == 1 ) {
             vnRootElement = rootElementIds[0]; 
             vnRootElements = null;
@@ -92,69 +96,15 @@ public class Query implements IQuery
         	vnRootElement = -1;
         	vnRootElements = (rootElementIds != null) ? rootElementIds.clone() : null;
         }
-    	init();
+        this.interpreter = interpreter;
     }
     
-    Query(Integer rootElementId) {
+    Query(Integer rootElementId, QueryInterpreter interpreter) {
         vnRootElement = rootElementId; 
         vnRootElements = null;
-        init();
+        this.interpreter = interpreter;
     }
 
-    private void init() {
-    	IVeriniceOdaDriver odaDriver = Activator.getDefault().getOdaDriver();
-    	ReportClassLoader securedClassLoader = new ReportClassLoader(Query.class.getClassLoader());	
-
-    	try {
-    	    // "Setup" BSH environment:
-    		setupInterpreter = new Interpreter();
-    		setupInterpreter.setClassLoader(securedClassLoader);
-    		
-    		setupInterpreter.set("__columns", null);
-    		setupInterpreter.eval("columns(c) { __columns = c; }");
-			
-    		setupInterpreter.set("__inParameters", null);
-    		setupInterpreter.eval("inParameters(ip) { __inParameters = ip; }");
-    		setupInterpreter.set("helper", new Helper());
-
-    		// BSH environment:
-    		interpreter = new Interpreter();
-    		interpreter.setClassLoader(securedClassLoader);
-    		
-    		
-			interpreter.set("_inpv", inParameterValues);
-			interpreter.eval(
-					"inpv(s) {" +
-					" v = _inpv.get(s);" +
-					" return (v == null) ? \"input parameter value \" + s + \" does not exist.\" : v;" +
-					"}");
-
-			interpreter.set("_vars", odaDriver.getScriptVariables());
-			interpreter.eval(
-					"vars(s) {" +
-					" v = _vars.get(s);" +
-					" return (v == null) ? s + \" does not exist.\" : v;" +
-					"}");
-			
-    		interpreter.set("helper", new Helper());
-    		interpreter.eval("gpt(entityType) { return helper.getAllPropertyTypes(entityType); }");
-    		interpreter.set("properties", properties);
-    		
-
-    		
-    		
-		} catch (EvalError e) {
-		    log.error("Error while evaluating a BeanShell script for an ODA query.", e);
-			throw new RuntimeException("Error while evaluating a BeanShell script for an ODA query.", e);
-		} catch (RuntimeException e) {
-            log.error("RuntimeException while creating an ODA query.", e);
-            throw e;
-        } catch (Exception e) {
-		    log.error("Exception while creating an ODA query.", e);
-            throw new RuntimeException("Error while evaluating a BeanShell script for an ODA query.", e);
-        }
-    }
-    
     /**
      * A class with utility methods which are supposed to be used by report scripts.
      * 
@@ -165,15 +115,78 @@ public class Query implements IQuery
         
     	public ICommand execute(ICommand c)
     	{
+    	    if (injectPrefetchedResult(c)) {
+    	        return c;
+    	    }
     		try
     		{
-    			return Activator.getDefault().getCommandService().executeCommand(c);
+    			return getCommandService().executeCommand(c);
     		} catch (CommandException e)
     		{
     		    log.error("Query Helper: running a command failed.", e);
     			throw new IllegalStateException("Running the command failed.", e);
     		}
     	}
+
+        /**
+         * Executes a list of commands with one request to the server.
+         * 
+         * @param commands
+         * @return the executed commands in the same order
+         */
+        public List<ICommand> executeAll(List<ICommand> commands) {
+            try {
+                return getCommandService().executeCommands(commands);
+            } catch (CommandException e) {
+                log.error("Query Helper: running commands failed.", e);
+                throw new IllegalStateException("Running the commands failed.", e);
+            }
+        }
+
+        public ICommand[] executeAll(ICommand[] commands) {
+            return executeAll(Arrays.asList(commands)).toArray(new ICommand[commands.length]);
+        }
+
+        /**
+         * Executes a list of commands with one request to the server and keeps
+         * the results of cachable commands until the data set is closed. A
+         * later call of {@link #execute(ICommand)} with a command of the same
+         * cache ID is answered without a request to the server.
+         * 
+         * Report scripts can use this to collect the commands of a data set in
+         * the setup query and run them in a single round trip.
+         * 
+         * @param commands
+         */
+        public void prefetch(List<ICommand> commands) {
+            for (ICommand command : executeAll(commands)) {
+                if (command instanceof ICachedCommand) {
+                    ICachedCommand cachedCommand = (ICachedCommand) command;
+                    prefetchedResults.put(cachedCommand.getCacheID(),
+                            cachedCommand.getCacheableResult());
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Query Helper: " + prefetchedResults.size() + " results prefetched");
+            }
+        }
+
+        public void prefetch(ICommand[] commands) {
+            prefetch(Arrays.asList(commands));
+        }
+
+        private boolean injectPrefetchedResult(ICommand command) {
+            if (!(command instanceof ICachedCommand)) {
+                return false;
+            }
+            ICachedCommand cachedCommand = (ICachedCommand) command;
+            Object result = prefetchedResults.get(cachedCommand.getCacheID());
+            if (result == null) {
+                return false;
+            }
+            cachedCommand.injectCacheResult(result);
+            return true;
+        }
     	
         /**
          * A variant of 'retrieveEntityValues' which does not specify the type of the properties. (Defaults
@@ -206,7 +219,7 @@ public class Query implements IQuery
     		LoadEntityValues command = new LoadEntityValues(typeId, propertyNames, classes );
 
     			try {
-    				command = Activator.getDefault().getCommandService().executeCommand(command);
+    				command = getCommandService().executeCommand(command);
     			} catch (CommandException e) {
     				return Collections.emptyList();
     			}
@@ -371,6 +384,7 @@ public class Query implements IQuery
 	{
         queryText = null;
         result = null;
+        prefetchedResults.clear();
 	}
 
     /*
@@ -396,14 +410,18 @@ public class Query implements IQuery
         if (setupQueryText == null) {
             return;
         }
-        setupInterpreter.eval(setupQueryText);
-        Object cols = setupInterpreter.get("__columns");
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("__columns", null);
+        variables.put("__inParameters", null);
+        variables.put("helper", helper);
+        interpreter.eval(setupQueryText, variables);
+        Object cols = interpreter.get("__columns");
         if (cols instanceof String[]) {
             columns = (String[]) cols;
         } else {
             columns = null;
         }
-        Object inp = setupInterpreter.get("__inParameters");
+        Object inp = interpreter.get("__inParameters");
         if (inp instanceof String[]) {
             inParameters = (String[]) inp;
         } else {
@@ -411,6 +429,18 @@ public class Query implements IQuery
         }
     }
 
+    /**
+     * Returns the command service which executes the commands of the report
+     * scripts.
+     */
+    ICommandService getCommandService() {
+        return Activator.getDefault().getCommandService();
+    }
+
+    Helper getHelper() {
+        return helper;
+    }
+
     private Object runQuery() throws OdaException {
         try {
             return doRunQuery();
@@ -422,7 +452,11 @@ public class Query implements IQuery
 
 
     private Object doRunQuery() throws EvalError {
-        result = interpreter.eval(queryText);
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("_inpv", inParameterValues);
+        variables.put("helper", helper);
+        variables.put("properties", properties);
+        result = interpreter.eval(queryText, variables);
         return result;
     }
 
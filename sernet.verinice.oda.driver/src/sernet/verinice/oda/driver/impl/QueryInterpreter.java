@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Jochen Kemnade.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+package sernet.verinice.oda.driver.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.log4j.Logger;
+
+import bsh.EvalError;
+import bsh.Interpreter;
+import bsh.NameSpace;
+import sernet.verinice.security.report.ReportClassLoader;
+
+/**
+ * A BeanShell interpreter which is shared by all queries of a
+ * {@link Connection}.
+ *
+ * The interpreter, its class loader and the helper functions for the scripts
+ * ({@code columns}, {@code inParameters}, {@code inpv}, {@code vars} and
+ * {@code gpt}) are created once per connection. Every script is declared as a
+ * method of the interpreter when it is evaluated for the first time. Later
+ * evaluations of the same script text only invoke this method, the script is
+ * not parsed again.
+ *
+ * The variables of a query are set in the global namespace of the interpreter
+ * before a script is evaluated. Instances of this class are not thread-safe,
+ * a connection is used by one report run.
+ */
+final class QueryInterpreter {
+
+    private static final Logger LOG = Logger.getLogger(QueryInterpreter.class);
+
+    private static final String METHOD_PREFIX = "__script";
+
+    private final Interpreter interpreter;
+
+    /**
+     * key: script text, value: name of the method which runs the script or
+     * null if the script can not be declared as a method
+     */
+    private final Map<String, String> scriptMethods = new HashMap<>();
+
+    QueryInterpreter(Map<String, Object> scriptVariables) throws EvalError {
+        interpreter = new Interpreter();
+        interpreter.setClassLoader(new ReportClassLoader(Query.class.getClassLoader()));
+
+        interpreter.set("__columns", null);
+        interpreter.eval("columns(c) { __columns = c; }");
+
+        interpreter.set("__inParameters", null);
+        interpreter.eval("inParameters(ip) { __inParameters = ip; }");
+
+        interpreter.set("_inpv", null);
+        interpreter.eval("inpv(s) {" + " v = _inpv.get(s);"
+                + " return (v == null) ? \"input parameter value \" + s + \" does not exist.\" : v;"
+                + "}");
+
+        interpreter.set("_vars", scriptVariables);
+        interpreter.eval("vars(s) {" + " v = _vars.get(s);"
+                + " return (v == null) ? s + \" does not exist.\" : v;" + "}");
+
+        interpreter.set("helper", null);
+        interpreter.eval("gpt(entityType) { return helper.getAllPropertyTypes(entityType); }");
+    }
+
+    /**
+     * Sets the variables and evaluates the script.
+     *
+     * @param script
+     *            A BeanShell script
+     * @param variables
+     *            The variables which are set before the script is evaluated
+     * @return The result of the script
+     */
+    Object eval(String script, Map<String, Object> variables) throws EvalError {
+        for (Entry<String, Object> variable : variables.entrySet()) {
+            interpreter.set(variable.getKey(), variable.getValue());
+        }
+        String methodName = getScriptMethod(script);
+        if (methodName == null) {
+            return interpreter.eval(script, new NameSpace(interpreter.getNameSpace(), "query"));
+        }
+        return interpreter.eval(methodName + "()");
+    }
+
+    Object get(String name) throws EvalError {
+        return interpreter.get(name);
+    }
+
+    private String getScriptMethod(String script) {
+        if (scriptMethods.containsKey(script)) {
+            return scriptMethods.get(script);
+        }
+        String methodName = METHOD_PREFIX + scriptMethods.size();
+        // an expression at the end of the script is the return value of the
+        // method, as it is for a script which is evaluated directly
+        String body = script.endsWith(";") ? script : script + ";";
+        try {
+            interpreter.eval(methodName + "() {\n" + body + "\n}");
+        } catch (EvalError e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Script can not be declared as a method, it is evaluated directly.", e);
+            }
+            methodName = null;
+        }
+        scriptMethods.put(script, methodName);
+        return methodName;
+    }
+}
@@ -41,6 +41,7 @@ import org.springframework.remoting.RemoteConnectFailureException;
 import sernet.verinice.service.linktable.ColumnPathParser;
 import sernet.verinice.service.linktable.ILinkTableConfiguration;
 import sernet.verinice.service.linktable.LinkTableService;
+import sernet.verinice.service.linktable.generator.GraphLinkedTableCreator;
 import sernet.verinice.service.linktable.vlt.VeriniceLinkTable;
 import sernet.verinice.service.linktable.vlt.VeriniceLinkTableIO;
 
@@ -122,7 +123,8 @@ public class Query implements IQuery {
     }
 
     private List<List<String>> createTable() {
-        LinkTableService linkTableService = new LinkTableService();
+        LinkTableService linkTableService = new LinkTableService(
+                GraphLinkedTableCreator.getConfiguredNumberOfThreads());
         List<List<String>> table = linkTableService.createTable(createLinkTableConfiguration());
         // Remove the heading line of the table
         table.remove(0);